@@ -1,6 +1,7 @@
 package boncp;
 
 import com.jolbox.bonecp.BoneCPDataSource;
+import dbutils.InstrumentedDataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationContext;
@@ -19,6 +20,7 @@ public class JdbcUtil {
 
     private static Logger log = LoggerFactory.getLogger(JdbcUtil.class);
     private static BoneCPDataSource dataSource;
+    private static volatile InstrumentedDataSource instrumentedDataSource;
 
     /**
      * 初始化连接池(Spring方式)
@@ -62,15 +64,39 @@ public class JdbcUtil {
      * @throws Exception
      */
     public static Connection getConnection() throws Exception {
+        InstrumentedDataSource instrumented = instrumentedDataSource;
+        if (instrumented != null) {
+            return instrumented.getConnection();
+        }
         return (dataSource != null) ? dataSource.getConnection() : null;
     }
 
+    /**
+     * 统计连接的等待和占用时间并注册到JMX，之后getConnection()从统计的数据源借出连接
+     *
+     * @return 统计数据源，toPrometheusText()取得快照
+     */
+    public static synchronized InstrumentedDataSource instrument() {
+        if (dataSource == null) {
+            throw new IllegalStateException("Pool not initialized");
+        }
+        if (instrumentedDataSource == null) {
+            instrumentedDataSource = new InstrumentedDataSource("boncp", dataSource);
+            instrumentedDataSource.register();
+        }
+        return instrumentedDataSource;
+    }
+
     /**
      * 关闭数据库连接池
      *
      * @throws Exception
      */
-    public static void closeDataSource() throws Exception {
+    public static synchronized void closeDataSource() throws Exception {
+        if (instrumentedDataSource != null) {
+            instrumentedDataSource.unregister();
+            instrumentedDataSource = null;
+        }
         dataSource.close();
     }
 
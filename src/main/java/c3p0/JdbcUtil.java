@@ -1,6 +1,7 @@
 package c3p0;
 
 import com.mchange.v2.c3p0.ComboPooledDataSource;
+import dbutils.InstrumentedDataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -17,6 +18,7 @@ public class JdbcUtil {
 
     private static Logger log = LoggerFactory.getLogger(JdbcUtil.class);
     private static ComboPooledDataSource dataSource;
+    private static volatile InstrumentedDataSource instrumentedDataSource;
 
     public static ComboPooledDataSource initDataSoucePool() {
         if (dataSource == null) {
@@ -33,7 +35,24 @@ public class JdbcUtil {
      * @throws Exception
      */
     public static Connection getConnection() throws Exception {
-        return dataSource.getConnection();
+        InstrumentedDataSource instrumented = instrumentedDataSource;
+        return instrumented != null ? instrumented.getConnection() : dataSource.getConnection();
+    }
+
+    /**
+     * 统计连接的等待和占用时间并注册到JMX，之后getConnection()从统计的数据源借出连接
+     *
+     * @return 统计数据源，toPrometheusText()取得快照
+     */
+    public static synchronized InstrumentedDataSource instrument() {
+        if (dataSource == null) {
+            throw new IllegalStateException("Pool not initialized");
+        }
+        if (instrumentedDataSource == null) {
+            instrumentedDataSource = new InstrumentedDataSource("c3p0", dataSource);
+            instrumentedDataSource.register();
+        }
+        return instrumentedDataSource;
     }
 
     /**
@@ -41,7 +60,11 @@ public class JdbcUtil {
      *
      * @throws Exception
      */
-    public static void closeDataSource() throws Exception {
+    public static synchronized void closeDataSource() throws Exception {
+        if (instrumentedDataSource != null) {
+            instrumentedDataSource.unregister();
+            instrumentedDataSource = null;
+        }
         dataSource.close();
     }
 }
\ No newline at end of file
@@ -0,0 +1,501 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 把结果集的一行映射为Bean，取代commons-dbutils中基于反射的BeanProcessor
+ * <p/>
+ * 每个(Bean类型, 结果集列布局)只编译一次：列和属性的对应关系、每列使用的getLong/getString/getInt等
+ * 类型化读取方法、以及setter的MethodHandle都在编译时确定，之后每行只做直接调用。
+ * 列与属性的匹配规则与BeanProcessor一致：列标签(没有标签时用列名)与属性名忽略大小写相等；
+ * 基本类型属性遇到NULL时取默认值，包装类型及其他引用类型为null。
+ */
+public final class BeanRowMapper<T> implements RowMapper<T> {
+    private static final int MAX_CACHED_MAPPERS = 1024;
+    private static final ConcurrentMap<Key, BeanRowMapper<?>> MAPPERS = new ConcurrentHashMap<Key, BeanRowMapper<?>>();
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+    private final Class<T> type;
+    private final MethodHandle constructor;
+    private final ColumnSetter[] setters;
+
+    private BeanRowMapper(Class<T> type, MethodHandle constructor, ColumnSetter[] setters) {
+        this.type = type;
+        this.constructor = constructor;
+        this.setters = setters;
+    }
+
+    /**
+     * 取得type与rs列布局对应的映射器，第一次使用时编译并缓存
+     *
+     * @param type Bean类型，需要有public的无参构造函数
+     * @param rs   结果集
+     * @return 映射器
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> BeanRowMapper<T> of(Class<T> type, ResultSet rs) throws SQLException {
+        ResultSetMetaData rsmd = rs.getMetaData();
+        String[] columns = new String[rsmd.getColumnCount()];
+        for (int i = 0; i < columns.length; i++) {
+            String column = rsmd.getColumnLabel(i + 1);
+            if (column == null || column.length() == 0) {
+                column = rsmd.getColumnName(i + 1);
+            }
+            columns[i] = column;
+        }
+        Key key = new Key(type, columns);
+        BeanRowMapper<?> mapper = MAPPERS.get(key);
+        if (mapper == null) {
+            mapper = compile(type, columns);
+            if (MAPPERS.size() < MAX_CACHED_MAPPERS) {
+                BeanRowMapper<?> existing = MAPPERS.putIfAbsent(key, mapper);
+                if (existing != null) {
+                    mapper = existing;
+                }
+            }
+        }
+        return (BeanRowMapper<T>) mapper;
+    }
+
+    /**
+     * 把结果集当前行映射为Bean
+     */
+    @SuppressWarnings("unchecked")
+    public T mapRow(ResultSet rs) throws SQLException {
+        Object bean;
+        try {
+            bean = constructor.invokeExact();
+        } catch (Throwable e) {
+            throw new SQLException("Cannot create " + type.getName() + ": " + e.getMessage(), e);
+        }
+        for (ColumnSetter setter : setters) {
+            try {
+                setter.set(rs, bean);
+            } catch (SQLException e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new SQLException("Cannot set " + setter.property + ": " + e.getMessage(), e);
+            }
+        }
+        return (T) bean;
+    }
+
+    /**
+     * 按属性读取当前行的值，基本类型装箱，结果与mapValues配合使用(QueryResultCache保存Bean结果)
+     */
+    Object[] readRow(ResultSet rs) throws SQLException {
+        Object[] values = new Object[setters.length];
+        for (int i = 0; i < setters.length; i++) {
+            values[i] = setters[i].read(rs);
+        }
+        return values;
+    }
+
+    /**
+     * 用readRow读取的值创建新的Bean，Date和byte[]复制后写入，多次映射得到的Bean互不共享
+     */
+    @SuppressWarnings("unchecked")
+    T mapValues(Object[] values) throws SQLException {
+        Object bean;
+        try {
+            bean = constructor.invokeExact();
+        } catch (Throwable e) {
+            throw new SQLException("Cannot create " + type.getName() + ": " + e.getMessage(), e);
+        }
+        for (int i = 0; i < setters.length; i++) {
+            try {
+                setters[i].write(bean, values[i]);
+            } catch (Throwable e) {
+                throw new SQLException("Cannot set " + setters[i].property + ": " + e.getMessage(), e);
+            }
+        }
+        return (T) bean;
+    }
+
+    private static <T> BeanRowMapper<T> compile(Class<T> type, String[] columns) throws SQLException {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle constructor;
+        try {
+            constructor = lookup.findConstructor(type, MethodType.methodType(void.class)).asType(CONSTRUCTOR_TYPE);
+        } catch (Exception e) {
+            throw new SQLException("Cannot create " + type.getName() + ": " + e.getMessage(), e);
+        }
+        PropertyDescriptor[] props;
+        try {
+            props = Introspector.getBeanInfo(type).getPropertyDescriptors();
+        } catch (IntrospectionException e) {
+            throw new SQLException("Bean introspection failed: " + e.getMessage(), e);
+        }
+        List<ColumnSetter> setters = new ArrayList<ColumnSetter>();
+        for (int i = 0; i < columns.length; i++) {
+            for (PropertyDescriptor prop : props) {
+                Method writer = prop.getWriteMethod();
+                if (writer != null && columns[i].equalsIgnoreCase(prop.getName())) {
+                    setters.add(columnSetter(lookup, i + 1, prop.getName(), writer));
+                    break;
+                }
+            }
+        }
+        return new BeanRowMapper<T>(type, constructor, setters.toArray(new ColumnSetter[setters.size()]));
+    }
+
+    private static ColumnSetter columnSetter(MethodHandles.Lookup lookup, int index, String property, Method writer)
+            throws SQLException {
+        MethodHandle setter;
+        try {
+            if (!Modifier.isPublic(writer.getDeclaringClass().getModifiers())) {
+                writer.setAccessible(true);
+            }
+            setter = lookup.unreflect(writer);
+        } catch (Exception e) {
+            throw new SQLException("Cannot access " + writer + ": " + e.getMessage(), e);
+        }
+        Class<?> propType = writer.getParameterTypes()[0];
+        if (propType.isPrimitive()) {
+            setter = setter.asType(MethodType.methodType(void.class, Object.class, propType));
+            if (propType == long.class) {
+                return new LongSetter(index, property, setter);
+            } else if (propType == int.class) {
+                return new IntSetter(index, property, setter);
+            } else if (propType == double.class) {
+                return new DoubleSetter(index, property, setter);
+            } else if (propType == float.class) {
+                return new FloatSetter(index, property, setter);
+            } else if (propType == boolean.class) {
+                return new BooleanSetter(index, property, setter);
+            } else if (propType == short.class) {
+                return new ShortSetter(index, property, setter);
+            } else if (propType == byte.class) {
+                return new ByteSetter(index, property, setter);
+            }
+            throw new SQLException("Unsupported property type " + propType + " of " + property);
+        }
+        setter = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+        return new ObjectSetter(index, property, setter, ObjectSetter.readerOf(propType));
+    }
+
+    /**
+     * 缓存的键：Bean类型和结果集各列的标签
+     */
+    private static final class Key {
+        private final Class<?> type;
+        private final String[] columns;
+        private final int hash;
+
+        Key(Class<?> type, String[] columns) {
+            this.type = type;
+            this.columns = columns;
+            this.hash = 31 * type.hashCode() + Arrays.hashCode(columns);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return type == other.type && Arrays.equals(columns, other.columns);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * 把一列的值写入Bean的一个属性
+     */
+    private abstract static class ColumnSetter {
+        final int index;
+        final String property;
+        final MethodHandle setter;
+
+        ColumnSetter(int index, String property, MethodHandle setter) {
+            this.index = index;
+            this.property = property;
+            this.setter = setter;
+        }
+
+        abstract void set(ResultSet rs, Object bean) throws Throwable;
+
+        abstract Object read(ResultSet rs) throws SQLException;
+
+        abstract void write(Object bean, Object value) throws Throwable;
+    }
+
+    private static final class LongSetter extends ColumnSetter {
+        LongSetter(int index, String property, MethodHandle setter) {
+            super(index, property, setter);
+        }
+
+        void set(ResultSet rs, Object bean) throws Throwable {
+            setter.invokeExact(bean, rs.getLong(index));
+        }
+
+        Object read(ResultSet rs) throws SQLException {
+            return rs.getLong(index);
+        }
+
+        void write(Object bean, Object value) throws Throwable {
+            setter.invokeExact(bean, ((Long) value).longValue());
+        }
+    }
+
+    private static final class IntSetter extends ColumnSetter {
+        IntSetter(int index, String property, MethodHandle setter) {
+            super(index, property, setter);
+        }
+
+        void set(ResultSet rs, Object bean) throws Throwable {
+            setter.invokeExact(bean, rs.getInt(index));
+        }
+
+        Object read(ResultSet rs) throws SQLException {
+            return rs.getInt(index);
+        }
+
+        void write(Object bean, Object value) throws Throwable {
+            setter.invokeExact(bean, ((Integer) value).intValue());
+        }
+    }
+
+    private static final class DoubleSetter extends ColumnSetter {
+        DoubleSetter(int index, String property, MethodHandle setter) {
+            super(index, property, setter);
+        }
+
+        void set(ResultSet rs, Object bean) throws Throwable {
+            setter.invokeExact(bean, rs.getDouble(index));
+        }
+
+        Object read(ResultSet rs) throws SQLException {
+            return rs.getDouble(index);
+        }
+
+        void write(Object bean, Object value) throws Throwable {
+            setter.invokeExact(bean, ((Double) value).doubleValue());
+        }
+    }
+
+    private static final class FloatSetter extends ColumnSetter {
+        FloatSetter(int index, String property, MethodHandle setter) {
+            super(index, property, setter);
+        }
+
+        void set(ResultSet rs, Object bean) throws Throwable {
+            setter.invokeExact(bean, rs.getFloat(index));
+        }
+
+        Object read(ResultSet rs) throws SQLException {
+            return rs.getFloat(index);
+        }
+
+        void write(Object bean, Object value) throws Throwable {
+            setter.invokeExact(bean, ((Float) value).floatValue());
+        }
+    }
+
+    private static final class BooleanSetter extends ColumnSetter {
+        BooleanSetter(int index, String property, MethodHandle setter) {
+            super(index, property, setter);
+        }
+
+        void set(ResultSet rs, Object bean) throws Throwable {
+            setter.invokeExact(bean, rs.getBoolean(index));
+        }
+
+        Object read(ResultSet rs) throws SQLException {
+            return rs.getBoolean(index);
+        }
+
+        void write(Object bean, Object value) throws Throwable {
+            setter.invokeExact(bean, ((Boolean) value).booleanValue());
+        }
+    }
+
+    private static final class ShortSetter extends ColumnSetter {
+        ShortSetter(int index, String property, MethodHandle setter) {
+            super(index, property, setter);
+        }
+
+        void set(ResultSet rs, Object bean) throws Throwable {
+            setter.invokeExact(bean, rs.getShort(index));
+        }
+
+        Object read(ResultSet rs) throws SQLException {
+            return rs.getShort(index);
+        }
+
+        void write(Object bean, Object value) throws Throwable {
+            setter.invokeExact(bean, ((Short) value).shortValue());
+        }
+    }
+
+    private static final class ByteSetter extends ColumnSetter {
+        ByteSetter(int index, String property, MethodHandle setter) {
+            super(index, property, setter);
+        }
+
+        void set(ResultSet rs, Object bean) throws Throwable {
+            setter.invokeExact(bean, rs.getByte(index));
+        }
+
+        Object read(ResultSet rs) throws SQLException {
+            return rs.getByte(index);
+        }
+
+        void write(Object bean, Object value) throws Throwable {
+            setter.invokeExact(bean, ((Byte) value).byteValue());
+        }
+    }
+
+    /**
+     * 引用类型的属性，按属性类型选择读取方法，NULL映射为null
+     */
+    private static final class ObjectSetter extends ColumnSetter {
+        private static final int STRING = 0;
+        private static final int LONG = 1;
+        private static final int INTEGER = 2;
+        private static final int DOUBLE = 3;
+        private static final int FLOAT = 4;
+        private static final int BOOLEAN = 5;
+        private static final int SHORT = 6;
+        private static final int BYTE = 7;
+        private static final int BIG_DECIMAL = 8;
+        private static final int TIMESTAMP = 9;
+        private static final int DATE = 10;
+        private static final int TIME = 11;
+        private static final int OBJECT = 12;
+
+        private final int reader;
+
+        ObjectSetter(int index, String property, MethodHandle setter, int reader) {
+            super(index, property, setter);
+            this.reader = reader;
+        }
+
+        static int readerOf(Class<?> propType) {
+            if (propType == String.class) {
+                return STRING;
+            } else if (propType == Long.class) {
+                return LONG;
+            } else if (propType == Integer.class) {
+                return INTEGER;
+            } else if (propType == Double.class) {
+                return DOUBLE;
+            } else if (propType == Float.class) {
+                return FLOAT;
+            } else if (propType == Boolean.class) {
+                return BOOLEAN;
+            } else if (propType == Short.class) {
+                return SHORT;
+            } else if (propType == Byte.class) {
+                return BYTE;
+            } else if (propType == BigDecimal.class) {
+                return BIG_DECIMAL;
+            } else if (propType == Timestamp.class || propType == java.util.Date.class) {
+                return TIMESTAMP;
+            } else if (propType == java.sql.Date.class) {
+                return DATE;
+            } else if (propType == Time.class) {
+                return TIME;
+            }
+            return OBJECT;
+        }
+
+        void set(ResultSet rs, Object bean) throws Throwable {
+            setter.invokeExact(bean, read(rs));
+        }
+
+        Object read(ResultSet rs) throws SQLException {
+            Object value;
+            switch (reader) {
+                case STRING:
+                    value = rs.getString(index);
+                    break;
+                case LONG:
+                    value = rs.getLong(index);
+                    break;
+                case INTEGER:
+                    value = rs.getInt(index);
+                    break;
+                case DOUBLE:
+                    value = rs.getDouble(index);
+                    break;
+                case FLOAT:
+                    value = rs.getFloat(index);
+                    break;
+                case BOOLEAN:
+                    value = rs.getBoolean(index);
+                    break;
+                case SHORT:
+                    value = rs.getShort(index);
+                    break;
+                case BYTE:
+                    value = rs.getByte(index);
+                    break;
+                case BIG_DECIMAL:
+                    value = rs.getBigDecimal(index);
+                    break;
+                case TIMESTAMP:
+                    value = rs.getTimestamp(index);
+                    break;
+                case DATE:
+                    value = rs.getDate(index);
+                    break;
+                case TIME:
+                    value = rs.getTime(index);
+                    break;
+                default:
+                    value = rs.getObject(index);
+            }
+            return rs.wasNull() ? null : value;
+        }
+
+        void write(Object bean, Object value) throws Throwable {
+            if (value instanceof java.util.Date) {
+                value = ((java.util.Date) value).clone();
+            } else if (value instanceof byte[]) {
+                value = ((byte[]) value).clone();
+            }
+            setter.invokeExact(bean, value);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 并行批量写入的结果，按块记录每块的执行情况
+ */
+public class BulkLoadResult {
+    /**
+     * 按块号排序的每块结果
+     */
+    List<Chunk> chunks;
+    /**
+     * 总耗时，纳秒
+     */
+    long elapsedNanos;
+
+    public BulkLoadResult(List<Chunk> chunks, long elapsedNanos) {
+        this.chunks = chunks;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public List<Chunk> getChunks() {
+        return chunks;
+    }
+
+    /**
+     * 没有成功提交的块，包括执行出错的和因为其他块出错而回滚或跳过的
+     */
+    public List<Chunk> getFailedChunks() {
+        List<Chunk> failed = new ArrayList<Chunk>();
+        for (Chunk chunk : chunks) {
+            if (!chunk.isSuccess()) {
+                failed.add(chunk);
+            }
+        }
+        return failed;
+    }
+
+    public boolean hasFailures() {
+        for (Chunk chunk : chunks) {
+            if (!chunk.isSuccess()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 成功提交的行数
+     */
+    public long getRowCount() {
+        long rows = 0;
+        for (Chunk chunk : chunks) {
+            if (chunk.isSuccess()) {
+                rows += chunk.rowCount;
+            }
+        }
+        return rows;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * 一块数据的执行结果
+     */
+    public static class Chunk {
+        /**
+         * 块号，从0开始
+         */
+        int index;
+        /**
+         * 本块第一行在输入中的位置，从0开始
+         */
+        long firstRow;
+        /**
+         * 本块行数
+         */
+        int rowCount;
+        /**
+         * executeBatch()的返回值，未执行时为null
+         */
+        int[] updateCounts;
+        /**
+         * 执行本块时的异常，成功或被跳过时为null
+         */
+        SQLException error;
+        /**
+         * 是否已提交
+         */
+        boolean committed;
+        /**
+         * 执行本块的耗时，纳秒
+         */
+        long elapsedNanos;
+
+        Chunk(int index, long firstRow, int rowCount) {
+            this.index = index;
+            this.firstRow = firstRow;
+            this.rowCount = rowCount;
+        }
+
+        public boolean isSuccess() {
+            return error == null && committed;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public long getFirstRow() {
+            return firstRow;
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        public int[] getUpdateCounts() {
+            return updateCounts;
+        }
+
+        public SQLException getError() {
+            return error;
+        }
+
+        public boolean isCommitted() {
+            return committed;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+    }
+}
@@ -0,0 +1,386 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import org.apache.commons.dbutils.DbUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 并行分块批量写入
+ * <p/>
+ * 把输入按chunkSize分块，由parallelism个线程各自持有一个连接池中的连接执行addBatch/executeBatch，
+ * 最多maxInFlight块在队列中等待，输入可以是大于内存的Iterator。
+ * <code>
+ * BulkLoader loader = dbUtilsTemplate.bulkLoader();
+ * loader.setParallelism(8);
+ * BulkLoadResult result = loader.load("INSERT INTO record(description,content) VALUES(?,?)", rows);
+ * </code>
+ * commitPerChunk为true(默认)时每块单独提交，出错的块回滚并记录在结果中，其余块照常写入；
+ * 为false时各连接在全部块执行完后才提交，任意一块出错则全部回滚。
+ * 后者各连接依次提交，提交阶段本身出错时无法撤销已经提交的连接，不是严格的原子操作。
+ * 本类不是线程安全的，配置好后可以重复调用load。
+ */
+public final class BulkLoader {
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    private static final Logger LOG = LoggerFactory.getLogger(BulkLoader.class);
+
+    /**
+     * 通知工作线程结束的标记
+     */
+    private static final PendingChunk END = new PendingChunk(null, null);
+
+    private static final Comparator<BulkLoadResult.Chunk> BY_INDEX = new Comparator<BulkLoadResult.Chunk>() {
+        public int compare(BulkLoadResult.Chunk o1, BulkLoadResult.Chunk o2) {
+            return o1.index < o2.index ? -1 : (o1.index == o2.index ? 0 : 1);
+        }
+    };
+
+    private final DataSource dataSource;
+    private final DbUtilsTemplate template;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private int maxInFlight = 0;
+    private boolean commitPerChunk = true;
+
+    BulkLoader(DataSource dataSource, DbUtilsTemplate template) {
+        this.dataSource = dataSource;
+        this.template = template;
+    }
+
+    /**
+     * 每块的行数，默认1000
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * 并行的线程数，也是占用的连接数，默认4，不要超过连接池的最大连接数
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * 等待执行的块数上限，默认0表示parallelism的两倍，限制内存占用
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * 是否每块单独提交，默认true
+     */
+    public void setCommitPerChunk(boolean commitPerChunk) {
+        this.commitPerChunk = commitPerChunk;
+    }
+
+    /**
+     * 批量执行sql
+     *
+     * @param sql  sql语句
+     * @param rows 参数二维数组
+     * @return 每块的执行结果
+     */
+    public BulkLoadResult load(String sql, Object[][] rows) throws SQLException {
+        if (rows == null) {
+            throw new SQLException("Null parameters. If parameters aren't need, pass an empty array.");
+        }
+        return load(sql, Arrays.asList(rows).iterator());
+    }
+
+    /**
+     * 批量执行sql，边读取rows边写入
+     *
+     * @param sql  sql语句
+     * @param rows 每行的参数
+     * @return 每块的执行结果
+     */
+    public BulkLoadResult load(String sql, Iterator<Object[]> rows) throws SQLException {
+        long start = System.nanoTime();
+        Load load = new Load(sql, commitPerChunk);
+        BlockingQueue<PendingChunk> queue = new ArrayBlockingQueue<PendingChunk>(
+                maxInFlight > 0 ? maxInFlight : parallelism * 2);
+        Thread[] workers = new Thread[parallelism];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(new Worker(load, queue), "bulk-loader-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        boolean interrupted = false;
+        boolean completed = false;
+        try {
+            int index = 0;
+            long firstRow = 0;
+            while (rows.hasNext() && !interrupted) {
+                List<Object[]> chunk = new ArrayList<Object[]>(chunkSize);
+                while (chunk.size() < chunkSize && rows.hasNext()) {
+                    chunk.add(rows.next());
+                }
+                try {
+                    queue.put(new PendingChunk(new BulkLoadResult.Chunk(index++, firstRow, chunk.size()), chunk));
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+                firstRow += chunk.size();
+            }
+            completed = !interrupted;
+        } finally {
+            for (Thread ignored : workers) {
+                interrupted |= putUninterruptibly(queue, END);
+            }
+            for (Thread worker : workers) {
+                interrupted |= joinUninterruptibly(worker);
+            }
+            load.finish(completed);
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        template.invalidateCaches(sql);
+        List<BulkLoadResult.Chunk> chunks = new ArrayList<BulkLoadResult.Chunk>(load.results);
+        Collections.sort(chunks, BY_INDEX);
+        return new BulkLoadResult(chunks, System.nanoTime() - start);
+    }
+
+    private static boolean putUninterruptibly(BlockingQueue<PendingChunk> queue, PendingChunk chunk) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(chunk);
+                return interrupted;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+    }
+
+    private static boolean joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                return interrupted;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+    }
+
+    private static void rollbackQuietly(Connection conn) {
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            LOG.warn("Error occured while attempting to rollback", e);
+        }
+    }
+
+    /**
+     * 归还连接前恢复自动提交
+     */
+    private static void release(Connection conn, boolean autoCommit) {
+        try {
+            if (autoCommit) {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            LOG.warn("Error occured while attempting to restore auto-commit", e);
+        } finally {
+            DbUtils.closeQuietly(conn);
+        }
+    }
+
+    private static final class PendingChunk {
+        final BulkLoadResult.Chunk chunk;
+        final List<Object[]> rows;
+
+        PendingChunk(BulkLoadResult.Chunk chunk, List<Object[]> rows) {
+            this.chunk = chunk;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * 一次load的共享状态
+     */
+    private static final class Load {
+        final String sql;
+        final boolean commitPerChunk;
+        final List<BulkLoadResult.Chunk> results =
+                Collections.synchronizedList(new ArrayList<BulkLoadResult.Chunk>());
+        /**
+         * commitPerChunk为false时，工作线程结束后留下的未提交连接
+         */
+        final List<HeldConnection> held = Collections.synchronizedList(new ArrayList<HeldConnection>());
+        volatile boolean failed;
+
+        Load(String sql, boolean commitPerChunk) {
+            this.sql = sql;
+            this.commitPerChunk = commitPerChunk;
+        }
+
+        /**
+         * 全部工作线程结束后，提交或回滚留下的连接
+         */
+        void finish(boolean completed) {
+            boolean commit = completed && !failed;
+            for (HeldConnection connection : held) {
+                try {
+                    if (commit) {
+                        connection.conn.commit();
+                        for (BulkLoadResult.Chunk chunk : connection.chunks) {
+                            chunk.committed = true;
+                        }
+                    } else {
+                        rollbackQuietly(connection.conn);
+                    }
+                } catch (SQLException e) {
+                    LOG.error("Error occured while attempting to commit bulk load", e);
+                    for (BulkLoadResult.Chunk chunk : connection.chunks) {
+                        chunk.error = e;
+                    }
+                    // 之后的连接不再提交
+                    commit = false;
+                    rollbackQuietly(connection.conn);
+                } finally {
+                    release(connection.conn, connection.autoCommit);
+                }
+            }
+        }
+    }
+
+    private static final class HeldConnection {
+        final Connection conn;
+        final boolean autoCommit;
+        final List<BulkLoadResult.Chunk> chunks;
+
+        HeldConnection(Connection conn, boolean autoCommit, List<BulkLoadResult.Chunk> chunks) {
+            this.conn = conn;
+            this.autoCommit = autoCommit;
+            this.chunks = chunks;
+        }
+    }
+
+    /**
+     * 工作线程，持有一个连接依次执行队列中的块
+     */
+    private final class Worker implements Runnable {
+        private final Load load;
+        private final BlockingQueue<PendingChunk> queue;
+        private final List<BulkLoadResult.Chunk> uncommitted = new ArrayList<BulkLoadResult.Chunk>();
+        private Connection conn;
+        private PreparedStatement stmt;
+        private boolean autoCommit;
+
+        Worker(Load load, BlockingQueue<PendingChunk> queue) {
+            this.load = load;
+            this.queue = queue;
+        }
+
+        public void run() {
+            try {
+                PendingChunk pending;
+                while ((pending = take()) != END) {
+                    // 整体提交时已有块出错，剩下的块不再执行
+                    if (load.commitPerChunk || !load.failed) {
+                        execute(pending);
+                    }
+                    load.results.add(pending.chunk);
+                }
+            } finally {
+                DbUtils.closeQuietly(stmt);
+                if (conn != null) {
+                    if (load.commitPerChunk) {
+                        release(conn, autoCommit);
+                    } else {
+                        load.held.add(new HeldConnection(conn, autoCommit, uncommitted));
+                    }
+                }
+            }
+        }
+
+        private PendingChunk take() {
+            while (true) {
+                try {
+                    return queue.take();
+                } catch (InterruptedException e) {
+                    // 只有load()会放入END，继续等待
+                }
+            }
+        }
+
+        private void execute(PendingChunk pending) {
+            BulkLoadResult.Chunk chunk = pending.chunk;
+            long begin = System.nanoTime();
+            try {
+                if (conn == null) {
+                    conn = dataSource.getConnection();
+                    autoCommit = conn.getAutoCommit();
+                    if (autoCommit) {
+                        conn.setAutoCommit(false);
+                    }
+                }
+                if (stmt == null) {
+                    stmt = conn.prepareStatement(load.sql);
+                }
+                for (Object[] row : pending.rows) {
+                    template.fillStatement(load.sql, stmt, row);
+                    stmt.addBatch();
+                }
+                chunk.updateCounts = stmt.executeBatch();
+                if (load.commitPerChunk) {
+                    conn.commit();
+                    chunk.committed = true;
+                } else {
+                    uncommitted.add(chunk);
+                }
+            } catch (SQLException e) {
+                LOG.error("Error occured while attempting to load chunk " + chunk.index, e);
+                chunk.error = e;
+                load.failed = true;
+                DbUtils.closeQuietly(stmt);
+                stmt = null;
+                if (conn != null) {
+                    rollbackQuietly(conn);
+                }
+            } finally {
+                chunk.elapsedNanos = System.nanoTime() - begin;
+            }
+        }
+    }
+}
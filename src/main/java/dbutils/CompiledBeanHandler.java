@@ -0,0 +1,42 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import org.apache.commons.dbutils.ResultSetHandler;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 将ResultSet中第一行的数据转化成类对象，没有数据时返回null
+ * <p/>
+ * 与BeanHandler用法相同，但使用编译好的BeanRowMapper映射
+ */
+public class CompiledBeanHandler<T> implements ResultSetHandler<T> {
+    private final Class<T> type;
+
+    public CompiledBeanHandler(Class<T> type) {
+        this.type = type;
+    }
+
+    Class<T> getType() {
+        return type;
+    }
+
+    public T handle(ResultSet rs) throws SQLException {
+        return rs.next() ? BeanRowMapper.of(type, rs).mapRow(rs) : null;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import org.apache.commons.dbutils.ResultSetHandler;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 将ResultSet中所有的数据转化成List，List中存放的是类对象
+ * <p/>
+ * 与BeanListHandler用法相同，但使用编译好的BeanRowMapper逐行映射，不再每行反射调用setter
+ */
+public class CompiledBeanListHandler<T> implements ResultSetHandler<List<T>> {
+    private final Class<T> type;
+
+    public CompiledBeanListHandler(Class<T> type) {
+        this.type = type;
+    }
+
+    Class<T> getType() {
+        return type;
+    }
+
+    public List<T> handle(ResultSet rs) throws SQLException {
+        List<T> list = new ArrayList<T>();
+        if (!rs.next()) {
+            return list;
+        }
+        BeanRowMapper<T> mapper = BeanRowMapper.of(type, rs);
+        do {
+            list.add(mapper.mapRow(rs));
+        } while (rs.next());
+        return list;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+/**
+ * InstrumentedDataSource在JMX中的属性，注册为dbutils:type=ConnectionPool,name=连接池名
+ */
+public interface ConnectionPoolMXBean {
+    String getName();
+
+    /**
+     * 成功借出的连接数
+     */
+    long getCheckouts();
+
+    /**
+     * 借出未归还的连接数
+     */
+    long getActive();
+
+    /**
+     * 连接池中的空闲连接数，连接池不提供时为-1
+     */
+    long getIdle();
+
+    /**
+     * 正在等待借出连接的线程数
+     */
+    long getPending();
+
+    /**
+     * 等待超时的次数
+     */
+    long getTimeouts();
+
+    /**
+     * 借出失败的次数，包括超时
+     */
+    long getFailures();
+
+    double getWaitMeanMillis();
+
+    double getWaitP99Millis();
+
+    double getWaitMaxMillis();
+
+    double getHoldMeanMillis();
+
+    double getHoldP99Millis();
+
+    double getHoldMaxMillis();
+}
@@ -0,0 +1,207 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按(sql, 参数)缓存分页查询的总记录数
+ * <p/>
+ * 缓存项在TTL后过期；通过DbUtilsTemplate执行的update/insert/batchUpdate会让涉及同一张表的缓存项立即失效，
+ * 其他程序的写入只能等TTL过期。TTL为0(默认)时不缓存。
+ */
+public final class CountCache {
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    private final ConcurrentMap<Key, Entry> cache = new ConcurrentHashMap<Key, Entry>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    /**
+     * 每次失效加1，计数期间发生过失效的结果不放入缓存
+     */
+    private final AtomicLong version = new AtomicLong();
+    private volatile long ttlNanos;
+    private volatile int maxSize = DEFAULT_MAX_SIZE;
+
+    public boolean isEnabled() {
+        return ttlNanos > 0 && maxSize > 0;
+    }
+
+    /**
+     * 当前版本号，开始计数前取得，put时传回
+     */
+    long version() {
+        return version.get();
+    }
+
+    /**
+     * 取得缓存的总记录数
+     *
+     * @return 总记录数，没有缓存或已过期时返回-1
+     */
+    int get(String sql, Object[] params) {
+        Key key = new Key(sql, params);
+        Entry entry = cache.get(key);
+        if (entry != null) {
+            if (entry.expiresAt - System.nanoTime() > 0) {
+                hits.incrementAndGet();
+                return entry.count;
+            }
+            cache.remove(key, entry);
+        }
+        misses.incrementAndGet();
+        return -1;
+    }
+
+    /**
+     * 放入缓存，计数期间有过失效时放弃
+     *
+     * @param version 开始计数前的version()
+     */
+    void put(String sql, Object[] params, int count, long version) {
+        if (!isEnabled()) {
+            return;
+        }
+        while (cache.size() >= maxSize) {
+            Iterator<Key> it = cache.keySet().iterator();
+            if (!it.hasNext()) {
+                break;
+            }
+            cache.remove(it.next());
+        }
+        // 调用方可能复用参数数组，缓存中保存一份拷贝
+        Key key = new Key(sql, params == null ? null : params.clone());
+        Entry entry = new Entry(count, System.nanoTime() + ttlNanos, SqlScanner.tableNames(sql));
+        cache.put(key, entry);
+        // 放入后再检查一次，避免和invalidate交错时留下旧值
+        if (this.version.get() != version) {
+            cache.remove(key, entry);
+        }
+    }
+
+    /**
+     * 写操作执行后调用，让涉及同一张表的缓存项失效；找不到表名时清空缓存
+     *
+     * @param sql 写操作的sql语句
+     */
+    void invalidate(String sql) {
+        Set<String> tables = SqlScanner.tableNames(sql);
+        if (tables.isEmpty()) {
+            clear();
+        } else {
+            invalidateTables(tables);
+        }
+    }
+
+    /**
+     * 让涉及table的缓存项失效，供DbUtilsTemplate之外的写入通知使用
+     */
+    public void invalidateTable(String table) {
+        invalidateTables(Collections.singleton(table.toLowerCase()));
+    }
+
+    private void invalidateTables(Set<String> tables) {
+        version.incrementAndGet();
+        for (Iterator<Map.Entry<Key, Entry>> it = cache.entrySet().iterator(); it.hasNext(); ) {
+            Set<String> entryTables = it.next().getValue().tables;
+            if (entryTables.isEmpty() || !Collections.disjoint(entryTables, tables)) {
+                it.remove();
+            }
+        }
+    }
+
+    public void clear() {
+        version.incrementAndGet();
+        cache.clear();
+    }
+
+    public void setTtl(long ttl, TimeUnit unit) {
+        this.ttlNanos = unit.toNanos(ttl);
+    }
+
+    public long getTtl(TimeUnit unit) {
+        return unit.convert(ttlNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    private static final class Key {
+        private final String sql;
+        private final Object[] params;
+        private final int hash;
+
+        Key(String sql, Object[] params) {
+            this.sql = sql;
+            this.params = params;
+            this.hash = 31 * sql.hashCode() + Arrays.hashCode(params);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && sql.equals(other.sql) && Arrays.equals(params, other.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry {
+        final int count;
+        final long expiresAt;
+        final Set<String> tables;
+
+        Entry(int count, long expiresAt, Set<String> tables) {
+            this.count = count;
+            this.expiresAt = expiresAt;
+            this.tables = tables;
+        }
+    }
+}
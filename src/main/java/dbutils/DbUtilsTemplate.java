@@ -17,14 +17,18 @@ package dbutils;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import javax.sql.DataSource;
 
+import org.apache.commons.dbutils.BasicRowProcessor;
 import org.apache.commons.dbutils.DbUtils;
-import org.apache.commons.dbutils.QueryRunner;
-import org.apache.commons.dbutils.handlers.BeanHandler;
-import org.apache.commons.dbutils.handlers.BeanListHandler;
+import org.apache.commons.dbutils.ResultSetHandler;
 import org.apache.commons.dbutils.handlers.MapHandler;
 import org.apache.commons.dbutils.handlers.MapListHandler;
 import org.apache.commons.dbutils.handlers.ScalarHandler;
@@ -40,6 +44,10 @@ import org.slf4j.LoggerFactory;
  * public void setDbUtilsTemplate(DbUtilsTemplate dbUtilsTemplate) {
  * this.dbUtilsTemplate = dbUtilsTemplate;
  * }
+ * </code>
+ * 本类是线程安全的，配置完成后同一个实例可供所有线程共享：
+ * 执行过程不修改任何成员变量，ResultSetHandler按类型/列缓存复用，
+ * 单参数的重载方法直接绑定参数，不再为每次调用包装新的参数数组。
  *
  * @author XiongNeng
  * @version 1.0
@@ -47,18 +55,277 @@ import org.slf4j.LoggerFactory;
  */
 public class DbUtilsTemplate {
     private DataSource dataSource;
-    private QueryRunner queryRunner;
-    private boolean pmdKnownBroken = false;
+    private volatile boolean pmdKnownBroken = false;
+    private int streamFetchSize = 0;
+    private volatile Boolean mySql;
+    private volatile PageCountMode pageCountMode = PageCountMode.TWO_QUERIES;
+    /**
+     * 实际使用的取总数方式，单次查询方式在数据库上执行失败后会退到下一种
+     */
+    private volatile PageCountMode effectivePageCountMode = PageCountMode.TWO_QUERIES;
     private static final Logger LOG = LoggerFactory.getLogger(DbUtilsTemplate.class);
 
+    /**
+     * 单参数调用的标记，表示参数不在数组中而是单独传入，避免每次调用都new Object[]{param}
+     */
+    static final Object[] SINGLE_PARAM = new Object[1];
+
+    /**
+     * 无状态的Handler，所有线程共用
+     */
+    private static final MapListHandler MAP_LIST_HANDLER = new MapListHandler();
+    private static final MapHandler MAP_HANDLER = new MapHandler();
+    private static final BasicRowProcessor ROW_PROCESSOR = new BasicRowProcessor();
+    /**
+     * 把一行映射为Map，与MapListHandler相同，ShardedDbUtilsTemplate也使用
+     */
+    static final RowMapper<Map<String, Object>> MAP_ROW_MAPPER = new RowMapper<Map<String, Object>>() {
+        public Map<String, Object> mapRow(ResultSet rs) throws SQLException {
+            return ROW_PROCESSOR.toMap(rs);
+        }
+    };
+
+    /**
+     * 非MySQL数据库流式查询时默认的fetchSize
+     */
+    private static final int DEFAULT_STREAM_FETCH_SIZE = 1000;
+
+    /**
+     * WINDOW方式下总记录数所在列的别名
+     */
+    private static final String PAGE_TOTAL_LABEL = "_page_total";
+
+    /**
+     * 多行INSERT每条语句的默认最大行数
+     */
+    public static final int DEFAULT_MULTI_ROW_INSERT_SIZE = 1000;
+    /**
+     * 取不到max_allowed_packet时每条多行INSERT语句的字节数上限
+     */
+    private static final long DEFAULT_MAX_STATEMENT_BYTES = 1024 * 1024;
+    private static final int MAX_CACHED_INSERTS = 256;
+    private static final String LIMIT_CLAUSE = " limit ?, ?";
+    private static final int MAX_CACHED_KEYSET_QUERIES = 256;
+
+    /**
+     * 有状态的Handler按Bean类型或列缓存，Handler本身是线程安全的。
+     * Bean的映射使用按(类型, 列布局)编译缓存的BeanRowMapper，见CompiledBeanListHandler
+     */
+    private final ConcurrentMap<Class<?>, CompiledBeanListHandler<?>> beanListHandlers =
+            new ConcurrentHashMap<Class<?>, CompiledBeanListHandler<?>>();
+    private final ConcurrentMap<Class<?>, CompiledBeanHandler<?>> beanHandlers =
+            new ConcurrentHashMap<Class<?>, CompiledBeanHandler<?>>();
+    private final ConcurrentMap<Object, ScalarHandler<Object>> scalarHandlers =
+            new ConcurrentHashMap<Object, ScalarHandler<Object>>();
+
+    /**
+     * 按sql缓存参数个数和类型，避免每次执行都调用getParameterMetaData()
+     */
+    private final ParameterMetaDataCache parameterMetaDataCache = new ParameterMetaDataCache();
+
+    /**
+     * findPageResult的总记录数缓存，默认不启用
+     */
+    private final CountCache countCache = new CountCache();
+    private volatile boolean approximateCount = false;
+
+    /**
+     * find/findFirst/findBy的查询结果缓存，默认不启用
+     */
+    private final QueryResultCache resultCache = new QueryResultCache();
+    /**
+     * withoutResultCache执行期间为TRUE
+     */
+    private final ThreadLocal<Boolean> resultCacheBypassed = new ThreadLocal<Boolean>();
+    /**
+     * 按sql指纹汇总的执行统计和慢查询日志，默认不启用
+     */
+    private final StatementStats statementStats = new StatementStats();
+
+    /**
+     * batchUpdate中INSERT语句的解析结果，以及MySQL的max_allowed_packet
+     */
+    private final ConcurrentMap<String, MultiRowInsert> multiRowInserts =
+            new ConcurrentHashMap<String, MultiRowInsert>();
+    /**
+     * findKeysetPage按(sql, keyColumn)缓存改写后的分页sql
+     */
+    private final ConcurrentMap<List<String>, KeysetQuery> keysetQueries =
+            new ConcurrentHashMap<List<String>, KeysetQuery>();
+    private volatile int multiRowInsertSize = DEFAULT_MULTI_ROW_INSERT_SIZE;
+    private volatile long maxAllowedPacket = -1;
+    private volatile int autoIncLockMode = -1;
+    /**
+     * 对冲读，默认不启用
+     */
+    private volatile HedgedReads hedgedReads;
+
+    public DbUtilsTemplate() {
+    }
+
+    public DbUtilsTemplate(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * 数据源是ReadWriteDataSource时，查询走从库，写入走主库
+     */
     public void setDataSource(DataSource dataSource) {
         this.dataSource = dataSource;
     }
 
+    /**
+     * 是否按sql指纹统计每条语句的次数、耗时、行数和出错次数，超过慢查询阈值的语句连同参数写入日志，默认不启用
+     */
+    public void setStatementStatsEnabled(boolean enabled) {
+        statementStats.setEnabled(enabled);
+    }
+
+    /**
+     * 设置慢查询阈值，默认1秒
+     */
+    public void setSlowQueryThreshold(long threshold, TimeUnit unit) {
+        statementStats.setSlowThreshold(threshold, unit);
+    }
+
+    /**
+     * 语句统计，可以查看各指纹的统计项或调整上限
+     */
+    public StatementStats getStatementStats() {
+        return statementStats;
+    }
+
+    /**
+     * 设置对冲读，查询慢于延迟阈值时在另一个连接池上再执行一次；null(默认)表示不对冲
+     */
+    public void setHedgedReads(HedgedReads hedgedReads) {
+        this.hedgedReads = hedgedReads;
+    }
+
+    public HedgedReads getHedgedReads() {
+        return hedgedReads;
+    }
+
     public void setPmdKnownBroken(boolean pmdKnownBroken) {
         this.pmdKnownBroken = pmdKnownBroken;
     }
 
+    /**
+     * 设置参数元数据缓存的最大sql条数，0表示不缓存
+     */
+    public void setParameterMetaDataCacheSize(int size) {
+        parameterMetaDataCache.setMaxSize(size);
+    }
+
+    /**
+     * 参数元数据缓存，可查看命中/未命中次数
+     */
+    public ParameterMetaDataCache getParameterMetaDataCache() {
+        return parameterMetaDataCache;
+    }
+
+    /**
+     * 设置流式查询的fetchSize，默认0表示自动：
+     * MySQL使用Integer.MIN_VALUE逐行流式读取，其他数据库使用1000。
+     * MySQL连接串中设置了useCursorFetch=true时，可以设为正数改用服务端游标分批读取
+     */
+    public void setStreamFetchSize(int streamFetchSize) {
+        this.streamFetchSize = streamFetchSize;
+    }
+
+    /**
+     * 设置batchUpdate把单行INSERT改写为多行INSERT时每条语句的最大行数，默认1000，小于2时不改写。
+     * 实际行数还受max_allowed_packet和65535个占位符的限制
+     */
+    public void setMultiRowInsertSize(int multiRowInsertSize) {
+        this.multiRowInsertSize = multiRowInsertSize;
+    }
+
+    /**
+     * 设置findPageResult总记录数的缓存时间，0(默认)表示不缓存。
+     * 通过本类执行的写操作会让涉及同一张表的缓存立即失效，其他程序的写入最多延迟ttl后才反映到总数上
+     */
+    public void setCountCacheTtl(long ttl, TimeUnit unit) {
+        countCache.setTtl(ttl, unit);
+    }
+
+    /**
+     * 总记录数缓存，可查看命中/未命中次数或手动失效
+     */
+    public CountCache getCountCache() {
+        return countCache;
+    }
+
+    /**
+     * 设置find/findFirst/findBy查询结果的缓存时间，0(默认)表示不缓存。
+     * 通过本类执行的写操作会让读取同一张表的缓存立即失效，其他程序的写入最多延迟ttl后才反映到查询结果上。
+     * 个别查询不想使用缓存时放在withoutResultCache中执行
+     */
+    public void setResultCacheTtl(long ttl, TimeUnit unit) {
+        resultCache.setTtl(ttl, unit);
+    }
+
+    /**
+     * 在当前线程执行action，其中的查询不读也不写查询结果缓存，可以嵌套调用
+     * <code>
+     * List&lt;Team&gt; teams = dbUtilsTemplate.withoutResultCache(new Callable&lt;List&lt;Team&gt;&gt;() {
+     *     public List&lt;Team&gt; call() {
+     *         return dbUtilsTemplate.find(Team.class, "SELECT * FROM test_team");
+     *     }
+     * });
+     * </code>
+     *
+     * @return action的返回值
+     */
+    public <V> V withoutResultCache(Callable<V> action) throws Exception {
+        if (resultCacheBypassed.get() != null) {
+            return action.call();
+        }
+        resultCacheBypassed.set(Boolean.TRUE);
+        try {
+            return action.call();
+        } finally {
+            resultCacheBypassed.remove();
+        }
+    }
+
+    /**
+     * 查询结果缓存，可设置条数/内存上限和缓存的表，查看命中率、内存占用或手动失效
+     */
+    public QueryResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * 设置是否对不带条件的单表查询使用估算的总记录数(MySQL的information_schema.tables.table_rows)，默认false。
+     * InnoDB的估算值可能有较大误差，只适合"约xx条"之类的展示
+     */
+    public void setApproximateCount(boolean approximateCount) {
+        this.approximateCount = approximateCount;
+    }
+
+    /**
+     * 设置findPageResult取总记录数的方式，默认TWO_QUERIES。
+     * WINDOW/FOUND_ROWS/AUTO在一个连接上一次取回当前页和总数。
+     * 执行失败时本次调用改用下一种方式；只有固定的探测语句也因语法错误或不支持而失败时，
+     * 才认为数据库不支持，之后一直改用下一种方式。锁等待超时、连接断开等错误不影响之后的调用
+     */
+    public void setPageCountMode(PageCountMode pageCountMode) {
+        this.pageCountMode = pageCountMode;
+        this.effectivePageCountMode = pageCountMode == PageCountMode.AUTO ? PageCountMode.WINDOW : pageCountMode;
+    }
+
+    public PageCountMode getPageCountMode() {
+        return pageCountMode;
+    }
+
+    /**
+     * 当前实际使用的取总数方式，AUTO或数据库不支持时与getPageCountMode()不同
+     */
+    public PageCountMode getEffectivePageCountMode() {
+        return effectivePageCountMode;
+    }
+
     /**
      * 执行sql语句
      *
@@ -80,7 +347,7 @@ public class DbUtilsTemplate {
      * @return 受影响的行数
      */
     public int update(String sql, Object param) throws SQLException {
-        return update(sql, new Object[]{param});
+        return executeUpdate(sql, SINGLE_PARAM, param);
     }
 
     /**
@@ -91,17 +358,21 @@ public class DbUtilsTemplate {
      * @return 受影响的行数
      */
     public int update(String sql, Object[] params) throws SQLException {
-        queryRunner = new QueryRunner();
+        return executeUpdate(sql, params, null);
+    }
+
+    private int executeUpdate(String sql, Object[] params, Object param) throws SQLException {
         int affectedRows = 0;
+        long start = statementStats.start();
+        long rows = -1;
         Connection conn = null;
+        PreparedStatement stmt = null;
         try {
             conn = dataSource.getConnection();
-            if (params == null) {
-                affectedRows = queryRunner.update(conn, sql);
-            } else {
-                affectedRows = queryRunner.update(conn, sql, params);
-            }
-
+            stmt = conn.prepareStatement(sql);
+            bindParams(sql, stmt, params, param);
+            affectedRows = stmt.executeUpdate();
+            rows = affectedRows;
         } catch (SQLException e) {
             LOG.error("Error occured while attempting to update data", e);
             if (conn != null) {
@@ -109,9 +380,15 @@ public class DbUtilsTemplate {
             }
             throw e;
         } finally {
-            if (conn != null)
-                DbUtils.commitAndClose(conn);
+            DbUtils.closeQuietly(stmt);
+            try {
+                if (conn != null)
+                    DbUtils.commitAndClose(conn);
+            } finally {
+                statementStats.record(sql, start, rows, params, param);
+            }
         }
+        invalidateCaches(sql);
         return affectedRows;
     }
 
@@ -136,7 +413,7 @@ public class DbUtilsTemplate {
      * @return 受影响的行数
      */
     public long insert(String sql, Object param) throws SQLException {
-        return insert(sql, new Object[]{param});
+        return executeInsert(sql, SINGLE_PARAM, param);
     }
 
     /**
@@ -148,19 +425,29 @@ public class DbUtilsTemplate {
      * @throws SQLException
      */
     public long insert(String sql, Object[] params) throws SQLException {
+        return executeInsert(sql, params, null);
+    }
+
+    private long executeInsert(String sql, Object[] params, Object param) throws SQLException {
         long result = -1L;
+        long start = statementStats.start();
+        long rows = -1;
         Connection conn = null;
         PreparedStatement stmt = null;
         ResultSet rs = null;
         try {
             conn = dataSource.getConnection();
-            stmt = conn.prepareStatement(sql);
-            fillStatement(stmt, params);
+            stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            bindParams(sql, stmt, params, param);
             int affectCount = stmt.executeUpdate();
-            if (affectCount <= 0) return -1L;
+            if (affectCount <= 0) {
+                rows = 0;
+                return -1L;
+            }
             rs = stmt.getGeneratedKeys();
             result = rs.next() ? rs.getLong(1) : -1;
             conn.commit();
+            rows = affectCount;
         } catch (SQLException e) {
             LOG.error("Error occured while attempting to insert data", e);
             if (conn != null) {
@@ -169,69 +456,114 @@ public class DbUtilsTemplate {
             throw e;
         } finally {
             DbUtils.closeQuietly(conn, stmt, rs);
+            statementStats.record(sql, start, rows, params, param);
         }
+        invalidateCaches(sql);
         return result;
     }
 
     public void fillStatement(PreparedStatement stmt, Object... params) throws SQLException {
+        fillStatement(null, stmt, params);
+    }
+
+    /**
+     * 填充参数，sql不为null时参数元数据从缓存中取
+     */
+    void fillStatement(String sql, PreparedStatement stmt, Object[] params) throws SQLException {
+        int paramsCount = params == null ? 0 : params.length;
+        ParameterMetaDataCache.Entry pmd = checkParameterCount(sql, stmt, paramsCount);
+
+        // nothing to do here
+        if (params == null) {
+            return;
+        }
+
+        for (int i = 0; i < params.length; i++) {
+            setParameter(stmt, pmd, i + 1, params[i]);
+        }
+    }
 
+    /**
+     * 绑定参数，params为SINGLE_PARAM时绑定单独传入的param
+     */
+    private void bindParams(String sql, PreparedStatement stmt, Object[] params, Object param)
+            throws SQLException {
+        if (params == SINGLE_PARAM) {
+            ParameterMetaDataCache.Entry pmd = checkParameterCount(sql, stmt, 1);
+            setParameter(stmt, pmd, 1, param);
+        } else {
+            fillStatement(sql, stmt, params);
+        }
+    }
+
+    /**
+     * 检查参数个数是否和语句中的占位符个数一致
+     *
+     * @return 参数元数据，pmdKnownBroken时返回null
+     */
+    private ParameterMetaDataCache.Entry checkParameterCount(String sql, PreparedStatement stmt, int paramsCount)
+            throws SQLException {
         // check the parameter count, if we can
-        ParameterMetaData pmd = null;
+        ParameterMetaDataCache.Entry pmd = null;
         if (!pmdKnownBroken) {
-            pmd = stmt.getParameterMetaData();
-            int stmtCount = pmd.getParameterCount();
-            int paramsCount = params == null ? 0 : params.length;
+            pmd = sql == null
+                    ? ParameterMetaDataCache.Entry.of(stmt.getParameterMetaData())
+                    : parameterMetaDataCache.get(sql, stmt);
+            int stmtCount = pmd.count;
 
             if (stmtCount != paramsCount) {
                 throw new SQLException("Wrong number of parameters: expected "
                         + stmtCount + ", was given " + paramsCount);
             }
         }
+        return pmd;
+    }
 
-        // nothing to do here
-        if (params == null) {
-            return;
-        }
-
-        for (int i = 0; i < params.length; i++) {
-            if (params[i] != null) {
-                stmt.setObject(i + 1, params[i]);
-            } else {
-                // VARCHAR works with many drivers regardless
-                // of the actual column type. Oddly, NULL and
-                // OTHER don't work with Oracle's drivers.
-                int sqlType = Types.VARCHAR;
-                if (!pmdKnownBroken) {
-                    try {
-                        /*
-                         * It's not possible for pmdKnownBroken to change from
-                         * true to false, (once true, always true) so pmd cannot
-                         * be null here.
-                         */
-                        sqlType = pmd.getParameterType(i + 1);
-                    } catch (SQLException e) {
-                        pmdKnownBroken = true;
-                    }
-                }
-                stmt.setNull(i + 1, sqlType);
-            }
+    private void setParameter(PreparedStatement stmt, ParameterMetaDataCache.Entry pmd, int index, Object value)
+            throws SQLException {
+        if (value != null) {
+            stmt.setObject(index, value);
+        } else {
+            // VARCHAR works with many drivers regardless
+            // of the actual column type. Oddly, NULL and
+            // OTHER don't work with Oracle's drivers.
+            stmt.setNull(index, pmd == null ? Types.VARCHAR : pmd.type(index));
         }
     }
 
     /**
-     * 执行批量sql语句
+     * 执行批量sql语句，所有语句在一个事务中执行，出错时全部回滚
      *
      * @param sql    sql语句
      * @param params 二维参数数组
      * @return 受影响的行数的数组
      */
     public int[] batchUpdate(String sql, Object[][] params) throws SQLException {
-        queryRunner = new QueryRunner();
+        if (params == null) {
+            throw new SQLException("Null parameters. If parameters aren't need, pass an empty array.");
+        }
+        if (multiRowInsertSize > 1 && params.length > 1) {
+            MultiRowInsert insert = multiRowInsert(sql);
+            if (insert != MultiRowInsert.NOT_REWRITABLE) {
+                return executeMultiRowInsert(sql, insert, params, null);
+            }
+        }
         int[] affectedRows = new int[0];
+        long start = statementStats.start();
+        long rows = -1;
         Connection conn = null;
+        boolean autoCommit = false;
+        PreparedStatement stmt = null;
         try {
             conn = dataSource.getConnection();
-            affectedRows = queryRunner.batch(conn, sql, params);
+            autoCommit = beginTransaction(conn);
+            stmt = conn.prepareStatement(sql);
+            for (Object[] param : params) {
+                fillStatement(sql, stmt, param);
+                stmt.addBatch();
+            }
+            affectedRows = stmt.executeBatch();
+            rows = affectedRows(affectedRows);
         } catch (SQLException e) {
             LOG.error("Error occured while attempting to batch update data", e);
             if (conn != null) {
@@ -239,113 +571,381 @@ public class DbUtilsTemplate {
             }
             throw e;
         } finally {
-            if (conn != null) {
-                DbUtils.commitAndClose(conn);
+            DbUtils.closeQuietly(stmt);
+            try {
+                if (conn != null) {
+                    commitAndClose(conn, autoCommit);
+                }
+            } finally {
+                statementStats.record(sql, start, rows, params, null);
             }
         }
+        invalidateCaches(sql);
         return affectedRows;
     }
 
     /**
-     * 执行查询，将每行的结果保存到一个Map对象中，然后将所有Map对象保存到List中
+     * 批量插入记录，并按输入顺序返回自增主键
+     * <code>
+     * long[] ids = batchInsert("INSERT INTO record(description,content) VALUES(?,?)", params);
+     * </code>
+     * 普通INSERT会像batchUpdate一样改写为多行INSERT。MySQL对一条多行INSERT只返回第一行的主键，
+     * 驱动按auto_increment_increment推算其余各行，这要求一条语句分配到的主键是连续的：
+     * innodb_autoinc_lock_mode为2(MySQL 8默认)时不保证连续，此时退回逐行执行，主键仍然准确。
+     * 各行不能自己指定自增列的值。所有行在一个事务中插入，出错时全部回滚。
      *
-     * @param sql sql语句
-     * @return 查询结果
+     * @param sql    sql语句
+     * @param params 参数二维数组
+     * @return 自增主键，与params一一对应，没有生成主键的行为-1
      */
-    public List<Map<String, Object>> find(String sql) {
-        return find(sql, null);
+    public long[] batchInsert(String sql, Object[][] params) throws SQLException {
+        if (params == null) {
+            throw new SQLException("Null parameters. If parameters aren't need, pass an empty array.");
+        }
+        long[] keys = new long[params.length];
+        if (params.length == 0) {
+            return keys;
+        }
+        if (multiRowInsertSize > 1 && params.length > 1) {
+            MultiRowInsert insert = multiRowInsert(sql);
+            if (insert != MultiRowInsert.NOT_REWRITABLE) {
+                executeMultiRowInsert(sql, insert, params, keys);
+                return keys;
+            }
+        }
+        long start = statementStats.start();
+        long rows = -1;
+        Connection conn = null;
+        boolean autoCommit = false;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = dataSource.getConnection();
+            autoCommit = beginTransaction(conn);
+            stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            for (Object[] param : params) {
+                fillStatement(sql, stmt, param);
+                stmt.addBatch();
+            }
+            rows = affectedRows(stmt.executeBatch());
+            rs = stmt.getGeneratedKeys();
+            readKeys(rs, keys, 0, keys.length);
+        } catch (SQLException e) {
+            rows = -1;
+            LOG.error("Error occured while attempting to batch insert data", e);
+            if (conn != null) {
+                conn.rollback();
+            }
+            throw e;
+        } finally {
+            DbUtils.closeQuietly(rs);
+            DbUtils.closeQuietly(stmt);
+            try {
+                if (conn != null) {
+                    commitAndClose(conn, autoCommit);
+                }
+            } finally {
+                statementStats.record(sql, start, rows, params, null);
+            }
+        }
+        invalidateCaches(sql);
+        return keys;
     }
 
     /**
-     * 执行查询，将每行的结果保存到一个Map对象中，然后将所有Map对象保存到List中
+     * 批处理在一个事务中执行：连接是自动提交时临时关闭自动提交，中途出错时已执行的语句一起回滚
      *
-     * @param sql   sql语句
-     * @param param 参数
-     * @return 查询结果
+     * @return 连接原来是否自动提交
      */
-    public List<Map<String, Object>> find(String sql, Object param) {
-        return find(sql, new Object[]{param});
+    private static boolean beginTransaction(Connection conn) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        if (autoCommit) {
+            conn.setAutoCommit(false);
+        }
+        return autoCommit;
     }
 
     /**
-     * 执行查询，将每行的结果保存到一个Map对象中，然后将所有Map对象保存到List中
-     *
-     * @param sql    sql语句
-     * @param params 参数数组
-     * @return 查询结果
+     * 提交，恢复自动提交后归还连接
      */
-    public List<Map<String, Object>> find(String sql, Object[] params) {
-        queryRunner = new QueryRunner();
-        List<Map<String, Object>> list = new ArrayList<Map<String, Object>>();
-        Connection conn = null;
+    private static void commitAndClose(Connection conn, boolean autoCommit) throws SQLException {
         try {
-            conn = dataSource.getConnection();
-            if (params == null) {
-                list = queryRunner.query(conn, sql, new MapListHandler());
-            } else {
-                list = queryRunner.query(conn, sql, new MapListHandler(), params);
+            conn.commit();
+            if (autoCommit) {
+                conn.setAutoCommit(true);
             }
-        } catch (SQLException e) {
-            LOG.error("Error occured while attempting to query data", e);
         } finally {
-            if (conn != null) {
-                DbUtils.closeQuietly(conn);
-            }
+            conn.close();
         }
-        return list;
     }
 
     /**
-     * 执行查询，将每行的结果保存到Bean中，然后将所有Bean保存到List中
-     *
-     * @param entityClass 类名
-     * @param sql         sql语句
-     * @return 查询结果
+     * 批处理影响的总行数，驱动返回SUCCESS_NO_INFO的按1行计算
      */
-    public <T> List<T> find(Class<T> entityClass, String sql) {
-        return find(entityClass, sql, null);
+    private static long affectedRows(int[] counts) {
+        long rows = 0;
+        for (int count : counts) {
+            rows += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(0, count);
+        }
+        return rows;
     }
 
     /**
-     * 执行查询，将每行的结果保存到Bean中，然后将所有Bean保存到List中
-     *
-     * @param entityClass 类名
-     * @param sql         sql语句
-     * @param param       参数
-     * @return 查询结果
+     * 读取生成的主键到keys[from, from + count)，不足的填-1
      */
-    public <T> List<T> find(Class<T> entityClass, String sql, Object param) {
-        return find(entityClass, sql, new Object[]{param});
+    private static void readKeys(ResultSet rs, long[] keys, int from, int count) throws SQLException {
+        int i = 0;
+        while (i < count && rs.next()) {
+            keys[from + i++] = rs.getLong(1);
+        }
+        while (i < count) {
+            keys[from + i++] = -1L;
+        }
     }
 
     /**
-     * 执行查询，将每行的结果保存到Bean中，然后将所有Bean保存到List中
+     * 把单行INSERT的批处理改写为多行INSERT执行，与驱动是否开启rewriteBatchedStatements无关。
+     * 每行影响1行，返回的更新数与逐行执行一致
      *
-     * @param entityClass 类名
-     * @param sql         sql语句
-     * @param params      参数数组
-     * @return 查询结果
+     * @param keys 不为null时按顺序写入生成的主键
      */
-    @SuppressWarnings("unchecked")
-    public <T> List<T> find(Class<T> entityClass, String sql, Object[] params) {
-        queryRunner = new QueryRunner();
+    private int[] executeMultiRowInsert(String sql, MultiRowInsert insert, Object[][] params, long[] keys)
+            throws SQLException {
+        int[] affectedRows = new int[params.length];
+        int paramsPerRow = insert.paramsPerRow;
+        int keysFlag = keys == null ? Statement.NO_GENERATED_KEYS : Statement.RETURN_GENERATED_KEYS;
+        long started = statementStats.start();
+        long affected = -1;
         Connection conn = null;
-        List<T> list = new ArrayList<T>();
+        boolean autoCommit = false;
+        PreparedStatement fullStmt = null;
+        PreparedStatement tailStmt = null;
         try {
             conn = dataSource.getConnection();
-            if (params == null) {
-                list = (List<T>) queryRunner.query(conn, sql, new BeanListHandler(entityClass));
-            } else {
-                list = (List<T>) queryRunner.query(conn, sql, new BeanListHandler(entityClass), params);
+            autoCommit = beginTransaction(conn);
+            int rowsPerStatement = keys != null && !consecutiveAutoIncrement(conn)
+                    ? 1 : insert.rowsPerStatement(params, multiRowInsertSize, maxStatementBytes(conn));
+            for (int start = 0; start < params.length; start += rowsPerStatement) {
+                int rows = Math.min(rowsPerStatement, params.length - start);
+                String shape = insert.sql(rows);
+                PreparedStatement stmt;
+                if (rows == rowsPerStatement) {
+                    if (fullStmt == null) {
+                        fullStmt = conn.prepareStatement(shape, keysFlag);
+                    }
+                    stmt = fullStmt;
+                } else {
+                    tailStmt = conn.prepareStatement(shape, keysFlag);
+                    stmt = tailStmt;
+                }
+                ParameterMetaDataCache.Entry pmd = checkParameterCount(shape, stmt, rows * paramsPerRow);
+                for (int row = 0; row < rows; row++) {
+                    Object[] values = params[start + row];
+                    int length = values == null ? 0 : values.length;
+                    if (length != paramsPerRow) {
+                        throw new SQLException("Wrong number of parameters in row " + (start + row)
+                                + ": expected " + paramsPerRow + ", was given " + length);
+                    }
+                    for (int i = 0; i < paramsPerRow; i++) {
+                        setParameter(stmt, pmd, row * paramsPerRow + i + 1, values[i]);
+                    }
+                }
+                int count = stmt.executeUpdate();
+                // 普通INSERT每行影响1行；触发器等导致总数对不上时，与驱动一样返回SUCCESS_NO_INFO
+                int perRow = count == rows ? 1 : Statement.SUCCESS_NO_INFO;
+                for (int row = 0; row < rows; row++) {
+                    affectedRows[start + row] = perRow;
+                }
+                if (keys != null) {
+                    ResultSet rs = stmt.getGeneratedKeys();
+                    try {
+                        readKeys(rs, keys, start, rows);
+                    } finally {
+                        DbUtils.closeQuietly(rs);
+                    }
+                }
             }
+            affected = affectedRows(affectedRows);
         } catch (SQLException e) {
-            LOG.error("Error occured while attempting to query data", e);
-        } finally {
+            LOG.error("Error occured while attempting to batch update data", e);
             if (conn != null) {
-                DbUtils.closeQuietly(conn);
+                conn.rollback();
+            }
+            throw e;
+        } finally {
+            DbUtils.closeQuietly(fullStmt);
+            DbUtils.closeQuietly(tailStmt);
+            try {
+                if (conn != null) {
+                    commitAndClose(conn, autoCommit);
+                }
+            } finally {
+                statementStats.record(sql, started, affected, params, null);
+            }
+        }
+        invalidateCaches(sql);
+        return affectedRows;
+    }
+
+    /**
+     * 一条多行INSERT分配到的自增主键是否连续，不连续时驱动推算的主键不可靠
+     */
+    private boolean consecutiveAutoIncrement(Connection conn) throws SQLException {
+        if (!isMySql(conn)) {
+            // 其他驱动直接返回每行实际生成的主键
+            return true;
+        }
+        int lockMode = autoIncLockMode;
+        if (lockMode < 0) {
+            Statement stmt = null;
+            ResultSet rs = null;
+            try {
+                stmt = conn.createStatement();
+                rs = stmt.executeQuery("select @@innodb_autoinc_lock_mode");
+                lockMode = rs.next() ? rs.getInt(1) : 1;
+            } catch (SQLException e) {
+                LOG.warn("Cannot read innodb_autoinc_lock_mode, assuming consecutive keys", e);
+                lockMode = 1;
+            } finally {
+                DbUtils.closeQuietly(rs);
+                DbUtils.closeQuietly(stmt);
+            }
+            autoIncLockMode = lockMode;
+        }
+        return lockMode < 2;
+    }
+
+    private MultiRowInsert multiRowInsert(String sql) {
+        MultiRowInsert insert = multiRowInserts.get(sql);
+        if (insert == null) {
+            insert = MultiRowInsert.of(sql);
+            if (multiRowInserts.size() < MAX_CACHED_INSERTS) {
+                multiRowInserts.putIfAbsent(sql, insert);
             }
         }
-        return list;
+        return insert;
+    }
+
+    /**
+     * 每条多行INSERT的字节数上限：MySQL取max_allowed_packet的3/4，留出协议开销
+     */
+    private long maxStatementBytes(Connection conn) throws SQLException {
+        long packet = maxAllowedPacket;
+        if (packet < 0) {
+            packet = 0;
+            if (isMySql(conn)) {
+                Statement stmt = null;
+                ResultSet rs = null;
+                try {
+                    stmt = conn.createStatement();
+                    rs = stmt.executeQuery("select @@max_allowed_packet");
+                    packet = rs.next() ? rs.getLong(1) : 0;
+                } finally {
+                    DbUtils.closeQuietly(rs);
+                    DbUtils.closeQuietly(stmt);
+                }
+            }
+            maxAllowedPacket = packet;
+        }
+        return packet > 0 ? packet / 4 * 3 : DEFAULT_MAX_STATEMENT_BYTES;
+    }
+
+    /**
+     * 创建MySQL的LOAD DATA LOCAL INFILE导入器，大批量导入时比batchUpdate快得多
+     *
+     * @return 使用本类数据源的LocalInfileLoader
+     */
+    public LocalInfileLoader localInfileLoader() {
+        return new LocalInfileLoader(dataSource, this);
+    }
+
+    /**
+     * 创建合并单行INSERT的后写缓冲，高频的单条insert改为攒批写入
+     *
+     * @param batchSize 每批最多的行数，如500
+     * @param maxDelay  一行最多等待多久就写入，如5毫秒
+     * @param unit      maxDelay的单位
+     * @param capacity  排队的最大行数，超过时insert阻塞
+     * @return 已启动的WriteBehindInserter，用完需要close
+     */
+    public WriteBehindInserter writeBehindInserter(int batchSize, long maxDelay, TimeUnit unit, int capacity) {
+        return new WriteBehindInserter(this, batchSize, maxDelay, unit, capacity);
+    }
+
+    /**
+     * 创建并行分块的批量写入器，大批量写入时代替batchUpdate，把数据分块后由多个连接并行执行
+     *
+     * @return 使用本类数据源和参数绑定方式的BulkLoader
+     */
+    public BulkLoader bulkLoader() {
+        return new BulkLoader(dataSource, this);
+    }
+
+    /**
+     * 执行查询，将每行的结果保存到一个Map对象中，然后将所有Map对象保存到List中
+     *
+     * @param sql sql语句
+     * @return 查询结果
+     */
+    public List<Map<String, Object>> find(String sql) {
+        return find(sql, null);
+    }
+
+    /**
+     * 执行查询，将每行的结果保存到一个Map对象中，然后将所有Map对象保存到List中
+     *
+     * @param sql   sql语句
+     * @param param 参数
+     * @return 查询结果
+     */
+    public List<Map<String, Object>> find(String sql, Object param) {
+        return listOrEmpty(cachedQuery(sql, MAP_LIST_HANDLER, SINGLE_PARAM, param));
+    }
+
+    /**
+     * 执行查询，将每行的结果保存到一个Map对象中，然后将所有Map对象保存到List中
+     *
+     * @param sql    sql语句
+     * @param params 参数数组
+     * @return 查询结果
+     */
+    public List<Map<String, Object>> find(String sql, Object[] params) {
+        return listOrEmpty(cachedQuery(sql, MAP_LIST_HANDLER, params, null));
+    }
+
+    /**
+     * 执行查询，将每行的结果保存到Bean中，然后将所有Bean保存到List中
+     *
+     * @param entityClass 类名
+     * @param sql         sql语句
+     * @return 查询结果
+     */
+    public <T> List<T> find(Class<T> entityClass, String sql) {
+        return find(entityClass, sql, null);
+    }
+
+    /**
+     * 执行查询，将每行的结果保存到Bean中，然后将所有Bean保存到List中
+     *
+     * @param entityClass 类名
+     * @param sql         sql语句
+     * @param param       参数
+     * @return 查询结果
+     */
+    public <T> List<T> find(Class<T> entityClass, String sql, Object param) {
+        return listOrEmpty(cachedQuery(sql, beanListHandler(entityClass), SINGLE_PARAM, param));
+    }
+
+    /**
+     * 执行查询，将每行的结果保存到Bean中，然后将所有Bean保存到List中
+     *
+     * @param entityClass 类名
+     * @param sql         sql语句
+     * @param params      参数数组
+     * @return 查询结果
+     */
+    public <T> List<T> find(Class<T> entityClass, String sql, Object[] params) {
+        return listOrEmpty(cachedQuery(sql, beanListHandler(entityClass), params, null));
     }
 
     /**
@@ -372,7 +972,7 @@ public class DbUtilsTemplate {
      * @return 查询结果
      */
     public <T> List<T> find(Class<T> entityClass, String sql, Object param, int page, int pageSize) {
-        return find(entityClass, sql, new Object[]{param}, page, pageSize);
+        return findPage(entityClass, sql, SINGLE_PARAM, param, page, pageSize);
     }
 
     /**
@@ -385,28 +985,30 @@ public class DbUtilsTemplate {
      * @param pageSize    每页记录条数
      * @return 查询结果
      */
-    @SuppressWarnings("unchecked")
     public <T> List<T> find(Class<T> entityClass, String sql, Object[] params, int page, int pageSize) {
-        queryRunner = new QueryRunner();
-        Connection conn = null;
-        List<T> list = new ArrayList<T>();
-        int startFlag = (((page < 1 ? 1 : page) - 1) * pageSize);
-        String pageSql = " limit " + startFlag + " , " + startFlag + pageSize;
-        try {
-            conn = dataSource.getConnection();
-            if (params == null) {
-                list = (List<T>) queryRunner.query(conn, sql + pageSql, new BeanListHandler(entityClass));
-            } else {
-                list = (List<T>) queryRunner.query(conn, sql + pageSql, new BeanListHandler(entityClass), params);
-            }
-        } catch (SQLException e) {
-            LOG.error("Error occured while attempting to query data", e);
-        } finally {
-            if (conn != null) {
-                DbUtils.closeQuietly(conn);
-            }
+        return findPage(entityClass, sql, params, null, page, pageSize);
+    }
+
+    private <T> List<T> findPage(Class<T> entityClass, String sql, Object[] params, Object param,
+                                 int page, int pageSize) {
+        return listOrEmpty(query(sql + LIMIT_CLAUSE, beanListHandler(entityClass),
+                pageParams(params, param, page, pageSize), null));
+    }
+
+    /**
+     * 分页参数：原参数后追加offset和pageSize。分页条件以占位符绑定，各页共用同一条sql，
+     * 不会每个页号在参数元数据缓存中占一项
+     */
+    private static Object[] pageParams(Object[] params, Object param, int page, int pageSize) {
+        Object[] original = params == SINGLE_PARAM ? new Object[]{param} : params;
+        int length = original == null ? 0 : original.length;
+        Object[] result = new Object[length + 2];
+        if (length > 0) {
+            System.arraycopy(original, 0, result, 0, length);
         }
-        return list;
+        result[length] = ((page < 1 ? 1 : page) - 1) * pageSize;
+        result[length + 1] = pageSize;
+        return result;
     }
 
     /**
@@ -433,7 +1035,7 @@ public class DbUtilsTemplate {
      * @return PageResult对象
      */
     public <T> PageResult findPageResult(Class<T> entityClass, String sql, Object param, int page, int pageSize) {
-        return findPageResult(entityClass, sql, new Object[]{param}, page, pageSize);
+        return findPageResult(entityClass, sql, SINGLE_PARAM, param, page, pageSize);
     }
 
     /**
@@ -446,36 +1048,141 @@ public class DbUtilsTemplate {
      * @param pageSize    每页记录条数
      * @return PageResult对象
      */
-    @SuppressWarnings("unchecked")
     public <T> PageResult findPageResult(Class<T> entityClass, String sql, Object[] params, int page, int pageSize) {
-        queryRunner = new QueryRunner();
-        Connection conn = null;
-        List<T> list = new ArrayList<T>();
+        return findPageResult(entityClass, sql, params, null, page, pageSize);
+    }
+
+    private <T> PageResult findPageResult(Class<T> entityClass, String sql, Object[] params, Object param,
+                                          int page, int pageSize) {
         int startPage = page < 1 ? 1 : page;
-        int startFlag = ((startPage - 1) * pageSize);
-        String pageSql = " limit " + startFlag + " , " + startFlag + pageSize;
-        try {
-            conn = dataSource.getConnection();
-            if (params == null) {
-                list = (List<T>) queryRunner.query(conn, sql + pageSql, new BeanListHandler(entityClass));
-            } else {
-                list = (List<T>) queryRunner.query(conn, sql + pageSql, new BeanListHandler(entityClass), params);
+        if (approximateCount) {
+            int estimate = estimateCount(sql);
+            if (estimate >= 0) {
+                return pageWithCount(entityClass, sql, params, param, startPage, pageSize, estimate,
+                        PageResult.CountType.ESTIMATED);
             }
-        } catch (SQLException e) {
-            LOG.error("Error occured while attempting to query data", e);
-        } finally {
-            if (conn != null) {
-                DbUtils.closeQuietly(conn);
+        }
+        if (!countCache.isEnabled()) {
+            return countPage(entityClass, sql, params, param, startPage, pageSize);
+        }
+        Object[] cacheParams = params == SINGLE_PARAM ? new Object[]{param} : params;
+        int cached = countCache.get(sql, cacheParams);
+        if (cached >= 0) {
+            return pageWithCount(entityClass, sql, params, param, startPage, pageSize, cached,
+                    PageResult.CountType.CACHED);
+        }
+        long version = countCache.version();
+        PageResult result = countPage(entityClass, sql, params, param, startPage, pageSize);
+        countCache.put(sql, cacheParams, result.count, version);
+        return result;
+    }
+
+    private <T> PageResult pageWithCount(Class<T> entityClass, String sql, Object[] params, Object param,
+                                         int startPage, int pageSize, int count, PageResult.CountType countType) {
+        List<T> list = findPage(entityClass, sql, params, param, startPage, pageSize);
+        return new PageResult(getBeginPage(startPage, pageSize, count), pageSize, list, count, countType);
+    }
+
+    /**
+     * 查询当前页并精确计算总记录数
+     */
+    private <T> PageResult countPage(Class<T> entityClass, String sql, Object[] params, Object param,
+                                     int startPage, int pageSize) {
+        PageCountMode mode = effectivePageCountMode;
+        while (mode != PageCountMode.TWO_QUERIES) {
+            try {
+                PageResult result = findPageAndCount(mode, entityClass, sql, params, param, startPage, pageSize);
+                if (result == null) {
+                    // 这条sql不适合改写，只对本次调用使用两次查询
+                    break;
+                }
+                return result;
+            } catch (SQLException e) {
+                LOG.warn("Error occured while attempting to query page and count with " + mode, e);
+                PageCountMode next = nextPageCountMode(mode);
+                if (isUnsupported(mode)) {
+                    downgradePageCountMode(mode, next);
+                }
+                mode = next;
             }
         }
+        List<T> list = query(sql + LIMIT_CLAUSE, beanListHandler(entityClass),
+                pageParams(params, param, startPage, pageSize), null);
+        if (list == null) {
+            list = new ArrayList<T>();
+        }
         // 计算总行数
-        int count = getCount(sql, params);
+        int count = count(sql, params, param);
         // 计算当前页号
         int currentPage = getBeginPage(startPage, pageSize, count);
 
         return new PageResult(currentPage, pageSize, list, count);
     }
 
+    /**
+     * 执行键集(seek)分页查询，将每行的结果保存到Bean中
+     *
+     * @param entityClass 类名
+     * @param sql         sql语句
+     * @param keyColumn   有序且唯一的键，必须在查询列中
+     * @param afterKey    上一页返回的nextKey，查询首页时为null
+     * @param pageSize    每页记录条数
+     * @return 当前页记录及下一页的起始键
+     * @see #findKeysetPage(Class, String, Object[], String, Object, int)
+     */
+    public <T> KeysetPage<T> findKeysetPage(Class<T> entityClass, String sql, String keyColumn, Object afterKey,
+                                            int pageSize) {
+        return findKeysetPage(entityClass, sql, null, keyColumn, afterKey, pageSize);
+    }
+
+    /**
+     * 执行键集(seek)分页查询，将每行的结果保存到Bean中
+     * <p/>
+     * 与limit offset分页不同，翻到第n页不需要扫描并丢弃前面的记录，深分页的耗时不随页号增长；
+     * 分页条件和limit都以参数绑定，所有页共用同一条sql。sql中不能包含order by和limit，
+     * 结果按keyColumn升序排列：
+     * <code>
+     * KeysetPage&lt;Record&gt; page = findKeysetPage(Record.class, "select id, description from record", null, "id", null, 100);
+     * while (page.hasNext()) {
+     *     page = findKeysetPage(Record.class, "select id, description from record", null, "id", page.getNextKey(), 100);
+     * }
+     * </code>
+     *
+     * @param entityClass 类名
+     * @param sql         sql语句
+     * @param params      参数数组
+     * @param keyColumn   有序且唯一的键，必须在查询列中，如id或r.id
+     * @param afterKey    上一页返回的nextKey，查询首页时为null
+     * @param pageSize    每页记录条数
+     * @return 当前页记录及下一页的起始键
+     */
+    public <T> KeysetPage<T> findKeysetPage(Class<T> entityClass, String sql, Object[] params, String keyColumn,
+                                            Object afterKey, int pageSize) {
+        KeysetQuery query = keysetQuery(sql, keyColumn);
+        // 多取一行判断是否还有下一页
+        KeysetPage<T> page;
+        if (afterKey == null) {
+            page = query(query.firstSql, new KeysetHandler<T>(entityClass, keyColumn, pageSize),
+                    KeysetQuery.firstParams(params, pageSize + 1), null);
+        } else {
+            page = query(query.nextSql, new KeysetHandler<T>(entityClass, keyColumn, pageSize),
+                    query.nextParams(params, afterKey, pageSize + 1), null);
+        }
+        return page == null ? new KeysetPage<T>(pageSize, new ArrayList<T>(), null) : page;
+    }
+
+    private KeysetQuery keysetQuery(String sql, String keyColumn) {
+        List<String> key = Arrays.asList(sql, keyColumn);
+        KeysetQuery query = keysetQueries.get(key);
+        if (query == null) {
+            query = KeysetQuery.of(sql, keyColumn);
+            if (keysetQueries.size() < MAX_CACHED_KEYSET_QUERIES) {
+                keysetQueries.putIfAbsent(key, query);
+            }
+        }
+        return query;
+    }
+
     /**
      * 查询出结果集中的第一条记录，并封装成对象
      *
@@ -496,7 +1203,7 @@ public class DbUtilsTemplate {
      * @return 对象
      */
     public <T> T findFirst(Class<T> entityClass, String sql, Object param) {
-        return findFirst(entityClass, sql, new Object[]{param});
+        return cachedQuery(sql, beanHandler(entityClass), SINGLE_PARAM, param);
     }
 
     /**
@@ -507,26 +1214,8 @@ public class DbUtilsTemplate {
      * @param params      参数数组
      * @return 对象
      */
-    @SuppressWarnings("unchecked")
     public <T> T findFirst(Class<T> entityClass, String sql, Object[] params) {
-        queryRunner = new QueryRunner();
-        Connection conn = null;
-        Object object = null;
-        try {
-            conn = dataSource.getConnection();
-            if (params == null) {
-                object = queryRunner.query(conn, sql, new BeanHandler(entityClass));
-            } else {
-                object = queryRunner.query(conn, sql, new BeanHandler(entityClass), params);
-            }
-        } catch (SQLException e) {
-            LOG.error("Error occured while attempting to query data", e);
-        } finally {
-            if (conn != null) {
-                DbUtils.closeQuietly(conn);
-            }
-        }
-        return (T) object;
+        return cachedQuery(sql, beanHandler(entityClass), params, null);
     }
 
     /**
@@ -547,7 +1236,7 @@ public class DbUtilsTemplate {
      * @return 封装为Map的对象
      */
     public Map<String, Object> findFirst(String sql, Object param) {
-        return findFirst(sql, new Object[]{param});
+        return cachedQuery(sql, MAP_HANDLER, SINGLE_PARAM, param);
     }
 
     /**
@@ -557,26 +1246,8 @@ public class DbUtilsTemplate {
      * @param params 参数数组
      * @return 封装为Map的对象
      */
-    @SuppressWarnings("unchecked")
     public Map<String, Object> findFirst(String sql, Object[] params) {
-        queryRunner = new QueryRunner();
-        Connection conn = null;
-        Map<String, Object> map = null;
-        try {
-            conn = dataSource.getConnection();
-            if (params == null) {
-                map = queryRunner.query(conn, sql, new MapHandler());
-            } else {
-                map = queryRunner.query(conn, sql, new MapHandler(), params);
-            }
-        } catch (SQLException e) {
-            LOG.error("Error occured while attempting to query data", e);
-        } finally {
-            if (conn != null) {
-                DbUtils.closeQuietly(conn);
-            }
-        }
-        return map;
+        return cachedQuery(sql, MAP_HANDLER, params, null);
     }
 
     /**
@@ -599,7 +1270,7 @@ public class DbUtilsTemplate {
      * @return 结果对象
      */
     public Object findBy(String sql, String columnName, Object param) {
-        return findBy(sql, columnName, new Object[]{param});
+        return cachedQuery(sql, scalarHandler(columnName), SINGLE_PARAM, param);
     }
 
     /**
@@ -611,24 +1282,7 @@ public class DbUtilsTemplate {
      * @return 结果对象
      */
     public Object findBy(String sql, String columnName, Object[] params) {
-        queryRunner = new QueryRunner();
-        Connection conn = null;
-        Object object = null;
-        try {
-            conn = dataSource.getConnection();
-            if (params == null) {
-                object = queryRunner.query(conn, sql, new ScalarHandler(columnName));
-            } else {
-                object = queryRunner.query(conn, sql, new ScalarHandler(columnName), params);
-            }
-        } catch (SQLException e) {
-            LOG.error("Error occured while attempting to query data", e);
-        } finally {
-            if (conn != null) {
-                DbUtils.closeQuietly(conn);
-            }
-        }
-        return object;
+        return cachedQuery(sql, scalarHandler(columnName), params, null);
     }
 
     /**
@@ -651,7 +1305,7 @@ public class DbUtilsTemplate {
      * @return 结果对象
      */
     public Object findBy(String sql, int columnIndex, Object param) {
-        return findBy(sql, columnIndex, new Object[]{param});
+        return cachedQuery(sql, scalarHandler(columnIndex), SINGLE_PARAM, param);
     }
 
     /**
@@ -663,24 +1317,77 @@ public class DbUtilsTemplate {
      * @return 结果对象
      */
     public Object findBy(String sql, int columnIndex, Object[] params) {
-        queryRunner = new QueryRunner();
-        Connection conn = null;
-        Object object = null;
-        try {
-            conn = dataSource.getConnection();
-            if (params == null) {
-                object = queryRunner.query(conn, sql, new ScalarHandler(columnIndex));
-            } else {
-                object = queryRunner.query(conn, sql, new ScalarHandler(columnIndex), params);
-            }
-        } catch (SQLException e) {
-            LOG.error("Error occured while attempting to query data", e);
-        } finally {
-            if (conn != null) {
-                DbUtils.closeQuietly(conn);
-            }
-        }
-        return object;
+        return cachedQuery(sql, scalarHandler(columnIndex), params, null);
+    }
+
+    /**
+     * 流式查询，将每行的结果保存到Bean中并回调，不把全部结果放入内存
+     * <code>
+     * findEach(Record.class, "select id, description, content from record", null, new RowCallback&lt;Record&gt;() {
+     *     public void processRow(Record row) { ... }
+     * });
+     * </code>
+     *
+     * @param entityClass 类名
+     * @param sql         sql语句
+     * @param params      参数数组
+     * @param callback    逐行回调
+     * @return 处理的行数
+     */
+    public <T> int findEach(Class<T> entityClass, String sql, Object[] params, RowCallback<? super T> callback)
+            throws SQLException {
+        return forEach(openCursor(sql, params, entityClass, null), callback);
+    }
+
+    /**
+     * 流式查询，将每行的结果保存到一个Map对象中并回调，不把全部结果放入内存
+     *
+     * @param sql      sql语句
+     * @param params   参数数组
+     * @param callback 逐行回调
+     * @return 处理的行数
+     */
+    public int findEach(String sql, Object[] params, RowCallback<? super Map<String, Object>> callback)
+            throws SQLException {
+        return forEach(openCursor(sql, params, null, MAP_ROW_MAPPER), callback);
+    }
+
+    /**
+     * 流式查询，返回逐行读取的游标，每行保存到Bean中。
+     * 游标占用一个连接直到读完或调用close()，用完必须关闭
+     *
+     * @param entityClass 类名
+     * @param sql         sql语句
+     * @param params      参数数组
+     * @return 游标
+     */
+    public <T> ResultCursor<T> findCursor(Class<T> entityClass, String sql, Object[] params) throws SQLException {
+        return openCursor(sql, params, entityClass, null);
+    }
+
+    /**
+     * 流式查询，返回逐行读取的游标，每行保存到一个Map对象中。
+     * 游标占用一个连接直到读完或调用close()，用完必须关闭
+     *
+     * @param sql    sql语句
+     * @param params 参数数组
+     * @return 游标
+     */
+    public ResultCursor<Map<String, Object>> findCursor(String sql, Object[] params) throws SQLException {
+        return openCursor(sql, params, null, MAP_ROW_MAPPER);
+    }
+
+    /**
+     * 流式查询，返回逐行读取的游标，每行用rowMapper映射。
+     * 游标占用一个连接直到读完或调用close()，用完必须关闭
+     *
+     * @param rowMapper 行映射
+     * @param sql       sql语句
+     * @param params    参数数组
+     * @return 游标
+     */
+    public <T> ResultCursor<T> findCursor(RowMapper<T> rowMapper, String sql, Object[] params) throws SQLException {
+        return openCursor(sql, params, null, rowMapper);
     }
 
     /**
@@ -701,7 +1408,7 @@ public class DbUtilsTemplate {
      * @return 记录总数
      */
     public int getCount(String sql, Object param) {
-        return getCount(sql, new Object[]{param});
+        return count(sql, SINGLE_PARAM, param);
     }
 
     /**
@@ -712,15 +1419,488 @@ public class DbUtilsTemplate {
      * @return 记录总数
      */
     public int getCount(String sql, Object[] params) {
-        String newSql = "select count(1) from (" + sql + ") _c";
-        if (params == null) {
-            return ((Long) findBy(newSql, 1)).intValue();
-        } else {
-            return ((Long) findBy(newSql, 1, params)).intValue();
+        return count(sql, params, null);
+    }
+
+    private int count(String sql, Object[] params, Object param) {
+        return ((Number) query(countSql(sql), scalarHandler(1), params, param)).intValue();
+    }
+
+    /**
+     * 估算不带条件的单表查询的总记录数
+     *
+     * @return 估算值，sql带条件、不是MySQL或取不到统计信息时返回-1
+     */
+    private int estimateCount(String sql) {
+        if (Boolean.FALSE.equals(mySql) || !isUnfiltered(sql)) {
+            return -1;
         }
+        String table = SqlScanner.tableNames(sql).iterator().next();
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = readConnection();
+            if (!isMySql(conn)) {
+                return -1;
+            }
+            stmt = conn.prepareStatement("select table_rows from information_schema.tables "
+                    + "where table_schema = database() and table_name = ?");
+            stmt.setString(1, table);
+            rs = stmt.executeQuery();
+            if (rs.next()) {
+                long rows = rs.getLong(1);
+                if (!rs.wasNull()) {
+                    return (int) Math.min(rows, Integer.MAX_VALUE);
+                }
+            }
+            return -1;
+        } catch (SQLException e) {
+            LOG.warn("Error occured while attempting to estimate count", e);
+            return -1;
+        } finally {
+            DbUtils.closeQuietly(conn, stmt, rs);
+        }
+    }
+
+    /**
+     * 只查一张表(不是子查询)且没有where/group by/having/distinct/union/limit的查询，总数就是表的行数
+     */
+    private static boolean isUnfiltered(String sql) {
+        int from = SqlScanner.indexOfKeyword(sql, "from");
+        if (from < 0 || SqlScanner.tableNames(sql).size() != 1
+                || sql.substring(from + "from".length()).trim().startsWith("(")) {
+            return false;
+        }
+        for (String keyword : new String[]{"where", "join", "group", "having", "distinct", "union", "limit"}) {
+            if (SqlScanner.indexOfKeyword(sql, keyword) >= 0) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    private int getBeginPage(int beginPage, int pageSize, int count) {
+    /**
+     * 写操作执行后让涉及同一张表的总记录数和查询结果缓存失效
+     */
+    void invalidateCaches(String sql) {
+        if (countCache.isEnabled()) {
+            countCache.invalidate(sql);
+        }
+        if (resultCache.isEnabled()) {
+            resultCache.invalidate(sql);
+        }
+    }
+
+    /**
+     * 不经过sql写入table后(如LOAD DATA)让相关缓存失效
+     */
+    void invalidateTable(String table) {
+        countCache.invalidateTable(table);
+        resultCache.invalidateTable(table);
+    }
+
+    private static String countSql(String sql) {
+        return "select count(1) from (" + sql + ") _c";
+    }
+
+    /**
+     * 在同一个连接上查询当前页和总记录数
+     *
+     * @return 分页结果，sql不适合按mode改写时返回null
+     */
+    private <T> PageResult findPageAndCount(PageCountMode mode, Class<T> entityClass, String sql, Object[] params,
+                                            Object param, int page, int pageSize) throws SQLException {
+        String rewritten = mode == PageCountMode.WINDOW ? windowCountSql(sql) : foundRowsSql(sql);
+        if (rewritten == null) {
+            return null;
+        }
+        String pageSql = rewritten + LIMIT_CLAUSE;
+        Object[] pageParams = pageParams(params, param, page, pageSize);
+        long start = statementStats.start();
+        long rows = -1;
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = readConnection();
+            // 先确定数据库类型，失败后AUTO据此决定是否尝试FOUND_ROWS
+            isMySql(conn);
+            stmt = conn.prepareStatement(pageSql);
+            bindParams(pageSql, stmt, pageParams, null);
+            rs = stmt.executeQuery();
+            List<T> list = new ArrayList<T>();
+            int count = -1;
+            if (rs.next()) {
+                BeanRowMapper<T> mapper = BeanRowMapper.of(entityClass, rs);
+                if (mode == PageCountMode.WINDOW) {
+                    count = rs.getInt(PAGE_TOTAL_LABEL);
+                }
+                do {
+                    list.add(mapper.mapRow(rs));
+                } while (rs.next());
+            }
+            if (mode == PageCountMode.FOUND_ROWS) {
+                count = queryInt(conn, "select FOUND_ROWS()", null, null);
+            } else if (count < 0) {
+                // 页号超出范围时取不到窗口函数的值，在同一连接上补查总数
+                count = page == 1 ? 0 : queryInt(conn, countSql(sql), params, param);
+            }
+            rows = list.size();
+            return new PageResult(getBeginPage(page, pageSize, count), pageSize, list, count);
+        } finally {
+            DbUtils.closeQuietly(conn, stmt, rs);
+            statementStats.record(pageSql, start, rows, pageParams, null);
+        }
+    }
+
+    private int queryInt(Connection conn, String sql, Object[] params, Object param) throws SQLException {
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = conn.prepareStatement(sql);
+            bindParams(sql, stmt, params, param);
+            rs = stmt.executeQuery();
+            return rs.next() ? rs.getInt(1) : 0;
+        } finally {
+            DbUtils.closeQuietly(rs);
+            DbUtils.closeQuietly(stmt);
+        }
+    }
+
+    /**
+     * 在顶层查询列后追加count(*) over()；distinct、union或没有from的查询包一层再加，
+     * 包一层后外层不能保证内层的order by，这种情况返回null
+     */
+    private static String windowCountSql(String sql) {
+        String total = "count(*) over() as " + PAGE_TOTAL_LABEL;
+        int from = SqlScanner.indexOfKeyword(sql, "from");
+        if (from < 0 || SqlScanner.indexOfKeyword(sql, "distinct") >= 0
+                || SqlScanner.indexOfKeyword(sql, "union") >= 0) {
+            if (SqlScanner.indexOfKeyword(sql, "order") >= 0) {
+                return null;
+            }
+            return "select _p.*, " + total + " from (" + sql + ") _p";
+        }
+        return sql.substring(0, from) + ", " + total + " " + sql.substring(from);
+    }
+
+    /**
+     * 在开头的select后加SQL_CALC_FOUND_ROWS，union查询返回null
+     */
+    private static String foundRowsSql(String sql) {
+        int select = SqlScanner.indexOfKeyword(sql, "select");
+        if (select < 0 || sql.substring(0, select).trim().length() > 0
+                || SqlScanner.indexOfKeyword(sql, "union") >= 0) {
+            return null;
+        }
+        int end = select + "select".length();
+        return sql.substring(0, end) + " SQL_CALC_FOUND_ROWS" + sql.substring(end);
+    }
+
+    /**
+     * 单次查询方式失败后的下一种方式：AUTO下MySQL从WINDOW退到FOUND_ROWS，其余退到TWO_QUERIES
+     */
+    private PageCountMode nextPageCountMode(PageCountMode mode) {
+        if (mode == PageCountMode.WINDOW && pageCountMode == PageCountMode.AUTO && Boolean.TRUE.equals(mySql)) {
+            return PageCountMode.FOUND_ROWS;
+        }
+        return PageCountMode.TWO_QUERIES;
+    }
+
+    /**
+     * 用固定的探测语句判断数据库是否不支持mode。
+     * 探测成功说明失败的是那条查询本身，探测因语法错误、不支持以外的原因失败时无法判断，都返回false
+     */
+    private boolean isUnsupported(PageCountMode mode) {
+        Connection conn = null;
+        try {
+            conn = readConnection();
+            if (mode == PageCountMode.WINDOW) {
+                queryInt(conn, "select count(*) over() from (select 1 as _x) _p", null, null);
+            } else {
+                queryInt(conn, "select SQL_CALC_FOUND_ROWS 1", null, null);
+                queryInt(conn, "select FOUND_ROWS()", null, null);
+            }
+            return false;
+        } catch (SQLException e) {
+            String state = e.getSQLState();
+            boolean unsupported = e instanceof SQLSyntaxErrorException || e instanceof SQLFeatureNotSupportedException
+                    || state != null && (state.startsWith("42") || state.startsWith("0A"));
+            if (!unsupported) {
+                LOG.warn("Error occured while attempting to probe page count mode " + mode, e);
+            }
+            return unsupported;
+        } finally {
+            DbUtils.closeQuietly(conn);
+        }
+    }
+
+    private void downgradePageCountMode(PageCountMode from, PageCountMode to) {
+        if (from != to && effectivePageCountMode == from) {
+            LOG.warn("Page count mode " + from + " is not supported by the database, using " + to);
+            effectivePageCountMode = to;
+        }
+    }
+
+    /**
+     * 执行查询并用rsh处理结果集，查询出错时记录日志并返回null
+     */
+    private <T> T query(String sql, ResultSetHandler<T> rsh, Object[] params, Object param) {
+        try {
+            return queryOrThrow(sql, rsh, params, param);
+        } catch (SQLException e) {
+            LOG.error("Error occured while attempting to query data", e);
+            return null;
+        }
+    }
+
+    private <T> T queryOrThrow(final String sql, final ResultSetHandler<T> rsh, final Object[] params,
+                               final Object param) throws SQLException {
+        long start = statementStats.start();
+        long rows = -1;
+        try {
+            T result;
+            HedgedReads hedging = hedgedReads;
+            if (hedging == null) {
+                result = executeQuery(null, null, sql, rsh, params, param);
+            } else {
+                result = hedging.query(new HedgedReads.Read<T>() {
+                    public T run(DataSource ds, HedgedReads.Attempt attempt) throws SQLException {
+                        return executeQuery(ds, attempt, sql, rsh, params, param);
+                    }
+                });
+            }
+            rows = rowCount(result);
+            return result;
+        } finally {
+            statementStats.record(sql, start, rows, params, param);
+        }
+    }
+
+    /**
+     * @param ds      为null时使用readConnection()
+     * @param attempt 对冲读时用来从其他线程取消语句，不对冲时为null
+     */
+    private <T> T executeQuery(DataSource ds, HedgedReads.Attempt attempt, String sql, ResultSetHandler<T> rsh,
+                               Object[] params, Object param) throws SQLException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = ds == null ? readConnection() : ds.getConnection();
+            stmt = conn.prepareStatement(sql);
+            if (attempt != null) {
+                attempt.started(stmt);
+            }
+            bindParams(sql, stmt, params, param);
+            rs = stmt.executeQuery();
+            return rsh.handle(rs);
+        } finally {
+            if (attempt != null) {
+                attempt.finished();
+            }
+            DbUtils.closeQuietly(conn, stmt, rs);
+        }
+    }
+
+    /**
+     * 查询结果的行数：List和KeysetPage按条数，其他非null结果(Bean、Map、单个值)为1行
+     */
+    private static long rowCount(Object result) {
+        if (result instanceof List) {
+            return ((List<?>) result).size();
+        }
+        if (result instanceof KeysetPage) {
+            return ((KeysetPage<?>) result).getBeanList().size();
+        }
+        if (result instanceof QueryResultCache.BeanRows) {
+            return ((QueryResultCache.BeanRows) result).size();
+        }
+        return result == null ? 0 : 1;
+    }
+
+    /**
+     * 先查查询结果缓存，未命中时执行查询并放入缓存；查询出错的结果不缓存。Bean结果只缓存各行的值，返回的都是新的拷贝，见QueryResultCache。
+     * rsh按类型/列缓存复用，作为缓存键中的结果类型
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T cachedQuery(String sql, ResultSetHandler<T> rsh, Object[] params, Object param) {
+        if (!resultCache.isEnabled() || resultCacheBypassed.get() != null || !resultCache.isCacheable(sql)) {
+            return query(sql, rsh, params, param);
+        }
+        Object[] keyParams = params == SINGLE_PARAM ? new Object[]{param} : params;
+        try {
+            Object cached = resultCache.get(sql, keyParams, rsh);
+            if (cached != null) {
+                return cached == QueryResultCache.NULL ? null : (T) QueryResultCache.copyOf(cached);
+            }
+            long version = resultCache.version();
+            Object frozen = QueryResultCache.freeze(queryOrThrow(sql, QueryResultCache.loader(rsh), params, param));
+            resultCache.put(sql, keyParams, rsh, frozen, version);
+            return (T) QueryResultCache.copyOf(frozen);
+        } catch (SQLException e) {
+            LOG.error("Error occured while attempting to query data", e);
+            return null;
+        }
+    }
+
+    /**
+     * 以流式方式执行查询，entityClass和rowMapper二选一
+     */
+    private <T> ResultCursor<T> openCursor(String sql, Object[] params, Class<T> entityClass, RowMapper<T> rowMapper)
+            throws SQLException {
+        long start = statementStats.start();
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = readConnection();
+            stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(streamFetchSize(conn));
+            bindParams(sql, stmt, params, null);
+            rs = stmt.executeQuery();
+            RowMapper<T> mapper = rowMapper != null ? rowMapper : BeanRowMapper.of(entityClass, rs);
+            ResultCursor<T> cursor = new ResultCursor<T>(conn, stmt, rs, mapper);
+            if (start != StatementStats.NOT_TIMED) {
+                // 游标关闭时记录，耗时包括调用方处理各行的时间
+                cursor.recordTo(statementStats, sql, start, params);
+            }
+            return cursor;
+        } catch (SQLException e) {
+            LOG.error("Error occured while attempting to query data", e);
+            DbUtils.closeQuietly(conn, stmt, rs);
+            statementStats.record(sql, start, -1, params, null);
+            throw e;
+        }
+    }
+
+    private static <T> int forEach(ResultCursor<T> cursor, RowCallback<? super T> callback) throws SQLException {
+        try {
+            while (cursor.hasNext()) {
+                callback.processRow(cursor.next());
+            }
+            return cursor.getRowCount();
+        } catch (IllegalStateException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw e;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private int streamFetchSize(Connection conn) throws SQLException {
+        if (streamFetchSize != 0) {
+            return streamFetchSize;
+        }
+        // MySQL驱动只有fetchSize为Integer.MIN_VALUE时才逐行读取，否则会把整个结果集读入内存
+        return isMySql(conn) ? Integer.MIN_VALUE : DEFAULT_STREAM_FETCH_SIZE;
+    }
+
+    /**
+     * 查询使用的连接，数据源是ReadWriteDataSource时从从库取
+     */
+    private Connection readConnection() throws SQLException {
+        DataSource ds = dataSource;
+        return ds instanceof ReadWriteDataSource ? ((ReadWriteDataSource) ds).getReadConnection() : ds.getConnection();
+    }
+
+    private boolean isMySql(Connection conn) throws SQLException {
+        Boolean isMySql = mySql;
+        if (isMySql == null) {
+            isMySql = "MySQL".equalsIgnoreCase(conn.getMetaData().getDatabaseProductName());
+            mySql = isMySql;
+        }
+        return isMySql;
+    }
+
+    /**
+     * 读取一页记录，记下最后一条的键；多取的一行只用来判断是否还有下一页
+     */
+    private static final class KeysetHandler<T> implements ResultSetHandler<KeysetPage<T>> {
+        private final Class<T> entityClass;
+        private final String keyLabel;
+        private final int pageSize;
+
+        KeysetHandler(Class<T> entityClass, String keyColumn, int pageSize) {
+            this.entityClass = entityClass;
+            this.keyLabel = keyColumn.substring(keyColumn.lastIndexOf('.') + 1);
+            this.pageSize = pageSize;
+        }
+
+        public KeysetPage<T> handle(ResultSet rs) throws SQLException {
+            List<T> list = new ArrayList<T>(pageSize);
+            Object lastKey = null;
+            boolean hasMore = false;
+            if (rs.next()) {
+                BeanRowMapper<T> mapper = BeanRowMapper.of(entityClass, rs);
+                int keyIndex = rs.findColumn(keyLabel);
+                do {
+                    if (list.size() == pageSize) {
+                        hasMore = true;
+                        break;
+                    }
+                    list.add(mapper.mapRow(rs));
+                    lastKey = rs.getObject(keyIndex);
+                } while (rs.next());
+            }
+            return new KeysetPage<T>(pageSize, list, hasMore ? lastKey : null);
+        }
+    }
+
+    private static <T> List<T> listOrEmpty(List<T> list) {
+        return list == null ? new ArrayList<T>() : list;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CompiledBeanListHandler<T> beanListHandler(Class<T> entityClass) {
+        CompiledBeanListHandler<?> handler = beanListHandlers.get(entityClass);
+        if (handler == null) {
+            handler = new CompiledBeanListHandler<T>(entityClass);
+            CompiledBeanListHandler<?> existing = beanListHandlers.putIfAbsent(entityClass, handler);
+            if (existing != null) {
+                handler = existing;
+            }
+        }
+        return (CompiledBeanListHandler<T>) handler;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CompiledBeanHandler<T> beanHandler(Class<T> entityClass) {
+        CompiledBeanHandler<?> handler = beanHandlers.get(entityClass);
+        if (handler == null) {
+            handler = new CompiledBeanHandler<T>(entityClass);
+            CompiledBeanHandler<?> existing = beanHandlers.putIfAbsent(entityClass, handler);
+            if (existing != null) {
+                handler = existing;
+            }
+        }
+        return (CompiledBeanHandler<T>) handler;
+    }
+
+    /**
+     * @param column 列名(String)或列索引(Integer)
+     */
+    private ScalarHandler<Object> scalarHandler(Object column) {
+        ScalarHandler<Object> handler = scalarHandlers.get(column);
+        if (handler == null) {
+            handler = column instanceof Integer
+                    ? new ScalarHandler<Object>((Integer) column)
+                    : new ScalarHandler<Object>((String) column);
+            ScalarHandler<Object> existing = scalarHandlers.putIfAbsent(column, handler);
+            if (existing != null) {
+                handler = existing;
+            }
+        }
+        return handler;
+    }
+
+    /**
+     * 页号超出总页数时改为最后一页
+     */
+    static int getBeginPage(int beginPage, int pageSize, int count) {
         if (count == 0) {
             return 1;
         }
@@ -0,0 +1,414 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 对冲读：查询在延迟阈值内没有返回时，在另一个连接池上执行同样的查询，先返回的结果胜出，另一个用Statement.cancel()取消
+ * <p/>
+ * 延迟阈值是最近1024次查询耗时的percentile分位数(默认p95)，不小于minDelay；至少有100次查询之后才开始对冲。
+ * 对冲的额外查询数不超过budgetPercent(默认5%)：每次查询积累budgetPercent%个令牌，每次对冲消耗一个，最多积累10个。
+ * <p/>
+ * 原查询在调用线程中执行，没有对冲时不切换线程；对冲查询在后台线程中执行，先返回时取消原查询，调用线程随即返回对冲的结果。
+ * 对冲只用于DbUtilsTemplate中一次读完结果集的查询(find*、findFirst、findBy、getCount)，流式的findCursor/findEach不对冲。
+ * 对冲池应该是和原查询数据相同的另一个从库：对冲查询不经过ReadWriteDataSource的读己之写判断，可能读到稍旧的数据。
+ * <code>
+ * HedgedReads hedgedReads = new HedgedReads(replica2);
+ * dbUtilsTemplate.setHedgedReads(hedgedReads);
+ * </code>
+ */
+public class HedgedReads implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(HedgedReads.class);
+    private static final int WINDOW_SIZE = 1024;
+    private static final int MIN_SAMPLES = 100;
+    private static final int RECOMPUTE_INTERVAL = 64;
+    private static final long TOKEN = 1000;
+    private static final long MAX_TOKENS = 10 * TOKEN;
+
+    private final DataSource hedgeDataSource;
+    private final ExecutorService executor;
+    private final ScheduledThreadPoolExecutor timer;
+
+    private volatile double percentile = 95;
+    private volatile long tokensPerRead = 50;
+    private volatile long minDelayNanos = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AtomicLongArray latencies = new AtomicLongArray(WINDOW_SIZE);
+    private final AtomicLong samples = new AtomicLong();
+    private volatile long delayNanos = -1;
+    private volatile boolean closed;
+    private final AtomicLong tokens = new AtomicLong(MAX_TOKENS);
+
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong budgetRejections = new AtomicLong();
+
+    /**
+     * @param hedgeDataSource 对冲查询使用的连接池
+     */
+    public HedgedReads(DataSource hedgeDataSource) {
+        this.hedgeDataSource = hedgeDataSource;
+        final AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "hedged-read-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "hedged-read-timer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // 大多数计时任务在到期前取消，取消时移出队列
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * 延迟阈值取查询耗时的哪个分位数，默认95
+     */
+    public void setPercentile(double percentile) {
+        if (percentile <= 0 || percentile >= 100) {
+            throw new IllegalArgumentException("percentile must be in (0, 100): " + percentile);
+        }
+        this.percentile = percentile;
+    }
+
+    /**
+     * 对冲查询占查询总数的最大百分比，默认5
+     */
+    public void setBudgetPercent(double budgetPercent) {
+        if (budgetPercent < 0 || budgetPercent > 100) {
+            throw new IllegalArgumentException("budgetPercent must be in [0, 100]: " + budgetPercent);
+        }
+        this.tokensPerRead = Math.round(budgetPercent * TOKEN / 100);
+    }
+
+    /**
+     * 延迟阈值的下限，默认1毫秒
+     */
+    public void setMinDelay(long minDelay, TimeUnit unit) {
+        this.minDelayNanos = unit.toNanos(minDelay);
+    }
+
+    /**
+     * 执行查询，必要时在对冲池上再执行一次
+     */
+    <T> T query(final Read<T> read) throws SQLException {
+        reads.incrementAndGet();
+        addTokens();
+        final long start = System.nanoTime();
+        final Race<T> race = new Race<T>();
+        long delay = delayNanos;
+        ScheduledFuture<?> launch = null;
+        if (delay >= 0 && !closed) {
+            launch = timer.schedule(new Runnable() {
+                public void run() {
+                    if (!takeToken()) {
+                        budgetRejections.incrementAndGet();
+                        return;
+                    }
+                    if (!race.launch()) {
+                        tokens.addAndGet(TOKEN);
+                        return;
+                    }
+                    hedges.incrementAndGet();
+                    executor.execute(new Runnable() {
+                        public void run() {
+                            hedge(read, race);
+                        }
+                    });
+                }
+            }, Math.max(delay, minDelayNanos), TimeUnit.NANOSECONDS);
+        }
+        T result;
+        try {
+            result = read.run(null, race.primary);
+        } catch (SQLException e) {
+            cancel(launch);
+            T hedged = race.awaitHedge(e);
+            record(System.nanoTime() - start);
+            return hedged;
+        } catch (RuntimeException e) {
+            cancel(launch);
+            race.abandon();
+            throw e;
+        }
+        cancel(launch);
+        record(System.nanoTime() - start);
+        if (race.primaryWon()) {
+            race.hedge.cancel();
+            return result;
+        }
+        // 对冲查询先返回，原查询的结果丢弃
+        return race.awaitHedge(null);
+    }
+
+    private void hedge(Read<?> read, Race<?> race) {
+        try {
+            Object result = read.run(hedgeDataSource, race.hedge);
+            if (race.hedgeSucceeded(result)) {
+                hedgeWins.incrementAndGet();
+                race.primary.cancel();
+            }
+        } catch (SQLException e) {
+            race.hedgeFailed(e);
+        } catch (RuntimeException e) {
+            race.hedgeFailed(new SQLException(e));
+        }
+    }
+
+    private static void cancel(ScheduledFuture<?> launch) {
+        if (launch != null) {
+            launch.cancel(false);
+        }
+    }
+
+    /**
+     * 记录一次查询耗时，输给对冲查询的原查询记录到被取消为止的耗时
+     */
+    private void record(long nanos) {
+        long n = samples.getAndIncrement();
+        latencies.set((int) (n % WINDOW_SIZE), nanos);
+        if (n + 1 >= MIN_SAMPLES && (n + 1) % RECOMPUTE_INTERVAL == 0 || n + 1 == MIN_SAMPLES) {
+            int count = (int) Math.min(n + 1, WINDOW_SIZE);
+            long[] sorted = new long[count];
+            for (int i = 0; i < count; i++) {
+                sorted[i] = latencies.get(i);
+            }
+            Arrays.sort(sorted);
+            delayNanos = sorted[Math.min(count - 1, (int) Math.ceil(count * percentile / 100) - 1)];
+        }
+    }
+
+    private void addTokens() {
+        long perRead = tokensPerRead;
+        long current;
+        do {
+            current = tokens.get();
+            if (current >= MAX_TOKENS) {
+                return;
+            }
+        } while (!tokens.compareAndSet(current, Math.min(MAX_TOKENS, current + perRead)));
+    }
+
+    private boolean takeToken() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current < TOKEN) {
+                return false;
+            }
+        } while (!tokens.compareAndSet(current, current - TOKEN));
+        return true;
+    }
+
+    /**
+     * 当前的延迟阈值，还没有足够的样本时返回-1
+     */
+    public long getDelayMillis() {
+        long delay = delayNanos;
+        return delay < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(Math.max(delay, minDelayNanos));
+    }
+
+    public long getReads() {
+        return reads.get();
+    }
+
+    /**
+     * 发出的对冲查询数
+     */
+    public long getHedges() {
+        return hedges.get();
+    }
+
+    /**
+     * 对冲查询先返回的次数
+     */
+    public long getHedgeWins() {
+        return hedgeWins.get();
+    }
+
+    /**
+     * 超过延迟阈值但因为预算用完没有对冲的次数
+     */
+    public long getBudgetRejections() {
+        return budgetRejections.get();
+    }
+
+    /**
+     * 停止后台线程，不关闭对冲池
+     */
+    public void close() {
+        closed = true;
+        timer.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return "HedgedReads{reads=" + reads + ", hedges=" + hedges + ", hedgeWins=" + hedgeWins
+                + ", budgetRejections=" + budgetRejections + ", delayMillis=" + getDelayMillis() + '}';
+    }
+
+    /**
+     * 在指定连接池上执行一次查询
+     */
+    interface Read<T> {
+        /**
+         * @param dataSource 为null时使用DbUtilsTemplate自己的连接池
+         * @param attempt    创建语句后调用started，关闭语句前调用finished
+         */
+        T run(DataSource dataSource, Attempt attempt) throws SQLException;
+    }
+
+    /**
+     * 一次执行中的查询，可以从其他线程取消
+     */
+    static final class Attempt {
+        private Statement statement;
+        private boolean cancelled;
+
+        synchronized void started(Statement statement) throws SQLException {
+            if (cancelled) {
+                throw new SQLException("Hedged read cancelled");
+            }
+            this.statement = statement;
+        }
+
+        synchronized void finished() {
+            statement = null;
+        }
+
+        /**
+         * 在锁内取消，保证语句还没有关闭、连接还没有还给连接池
+         */
+        synchronized void cancel() {
+            cancelled = true;
+            if (statement != null) {
+                try {
+                    statement.cancel();
+                } catch (SQLException e) {
+                    LOG.debug("Error occured while attempting to cancel hedged read", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 原查询和对冲查询的竞争结果
+     */
+    private static final class Race<T> {
+        final Attempt primary = new Attempt();
+        final Attempt hedge = new Attempt();
+        private boolean launched;
+        private boolean decided;
+        private boolean primaryFailed;
+        private boolean hedgeDone;
+        private T hedgeResult;
+        private SQLException hedgeError;
+
+        synchronized boolean launch() {
+            if (decided || primaryFailed) {
+                return false;
+            }
+            launched = true;
+            return true;
+        }
+
+        /**
+         * 原查询出现非SQLException的异常时不再等待对冲查询
+         */
+        void abandon() {
+            synchronized (this) {
+                primaryFailed = true;
+                decided = true;
+            }
+            hedge.cancel();
+        }
+
+        synchronized boolean primaryWon() {
+            if (decided) {
+                return false;
+            }
+            decided = true;
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized boolean hedgeSucceeded(Object result) {
+            hedgeDone = true;
+            hedgeResult = (T) result;
+            notifyAll();
+            if (decided) {
+                return false;
+            }
+            decided = true;
+            return true;
+        }
+
+        synchronized void hedgeFailed(SQLException e) {
+            hedgeDone = true;
+            hedgeError = e;
+            notifyAll();
+        }
+
+        /**
+         * 原查询失败或者输了时取对冲查询的结果；没有对冲或者对冲也失败时抛出原查询的异常
+         */
+        synchronized T awaitHedge(SQLException primaryError) throws SQLException {
+            if (!launched) {
+                primaryFailed = true;
+                throw primaryError;
+            }
+            while (!hedgeDone) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    hedge.cancel();
+                    throw new SQLException("Interrupted while waiting for hedged read", e);
+                }
+            }
+            if (hedgeError == null) {
+                decided = true;
+                return hedgeResult;
+            }
+            throw primaryError != null ? primaryError : hedgeError;
+        }
+    }
+}
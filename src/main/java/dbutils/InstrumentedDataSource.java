@@ -0,0 +1,300 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import com.mchange.v2.c3p0.PooledDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 统计连接池使用情况的DataSource，可以包装BoneCP、c3p0等任何连接池
+ * <p/>
+ * 记录借出连接的等待时间、连接从借出到归还的占用时间(直方图)，以及借出中、等待中的连接数和超时次数。
+ * 记录只用LongAdder和不加锁的直方图，多线程同时借还连接时不会在统计上排队。
+ * 空闲连接数只有c3p0提供，其他连接池返回-1。借出失败的异常是SQLTimeoutException或者消息中有"timed out"
+ * (BoneCP的connectionTimeout、c3p0的checkoutTimeout)时计为超时。
+ * <p/>
+ * register()注册到JMX，toPrometheusText()输出Prometheus文本格式的快照。
+ * <code>
+ * InstrumentedDataSource dataSource = new InstrumentedDataSource("boncp", boneCPDataSource);
+ * dataSource.register();
+ * DbUtilsTemplate template = new DbUtilsTemplate(dataSource);
+ * </code>
+ */
+public class InstrumentedDataSource implements DataSource, ConnectionPoolMXBean {
+    private static final Logger LOG = LoggerFactory.getLogger(InstrumentedDataSource.class);
+
+    private final String name;
+    private final DataSource target;
+    private final LatencyHistogram waitHistogram = new LatencyHistogram();
+    private final LatencyHistogram holdHistogram = new LatencyHistogram();
+    private final LongAdder checkouts = new LongAdder();
+    private final LongAdder active = new LongAdder();
+    private final LongAdder pending = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile ObjectName objectName;
+
+    /**
+     * @param name   连接池名，作为JMX的name和Prometheus的pool标签
+     * @param target 被统计的连接池
+     */
+    public InstrumentedDataSource(String name, DataSource target) {
+        this.name = name;
+        this.target = target;
+    }
+
+    public DataSource getTarget() {
+        return target;
+    }
+
+    public Connection getConnection() throws SQLException {
+        return checkout(false, null, null);
+    }
+
+    public Connection getConnection(String username, String password) throws SQLException {
+        return checkout(true, username, password);
+    }
+
+    private Connection checkout(boolean credentials, String username, String password) throws SQLException {
+        pending.increment();
+        long start = System.nanoTime();
+        Connection conn;
+        try {
+            conn = credentials ? target.getConnection(username, password) : target.getConnection();
+        } catch (SQLException e) {
+            failed(e);
+            throw e;
+        } catch (RuntimeException e) {
+            failures.increment();
+            throw e;
+        } finally {
+            pending.decrement();
+        }
+        long acquired = System.nanoTime();
+        waitHistogram.record(acquired - start);
+        checkouts.increment();
+        active.increment();
+        return wrap(conn, acquired);
+    }
+
+    private void failed(SQLException e) {
+        failures.increment();
+        String message = e.getMessage();
+        if (e instanceof SQLTimeoutException || message != null && message.toLowerCase().contains("timed out")) {
+            timeouts.increment();
+        }
+    }
+
+    /**
+     * 第一次close()时记录占用时间
+     */
+    private Connection wrap(Connection conn, final long acquired) {
+        return new DelegatingConnection(conn) {
+            protected void onClose() {
+                holdHistogram.record(System.nanoTime() - acquired);
+                active.decrement();
+            }
+        };
+    }
+
+    /**
+     * 注册到平台MBeanServer，已经注册过同名连接池时替换
+     */
+    public synchronized void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName on = new ObjectName("dbutils:type=ConnectionPool,name=" + ObjectName.quote(name));
+            if (server.isRegistered(on)) {
+                server.unregisterMBean(on);
+            }
+            server.registerMBean(this, on);
+            objectName = on;
+        } catch (JMException e) {
+            LOG.error("Error occured while attempting to register pool " + name, e);
+        }
+    }
+
+    /**
+     * 从MBeanServer注销，不关闭连接池
+     */
+    public synchronized void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            LOG.warn("Error occured while attempting to unregister pool " + name, e);
+        }
+        objectName = null;
+    }
+
+    /**
+     * Prometheus文本格式的快照
+     */
+    public String toPrometheusText() {
+        StringBuilder out = new StringBuilder(4096);
+        String labels = "pool=\"" + name.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+        out.append("# HELP db_pool_checkout_wait_seconds Time spent waiting to check out a connection\n");
+        out.append("# TYPE db_pool_checkout_wait_seconds histogram\n");
+        waitHistogram.writePrometheus(out, "db_pool_checkout_wait_seconds", labels);
+        out.append("# HELP db_pool_hold_seconds Time a connection was held before being returned\n");
+        out.append("# TYPE db_pool_hold_seconds histogram\n");
+        holdHistogram.writePrometheus(out, "db_pool_hold_seconds", labels);
+        gauge(out, "db_pool_active_connections", "Connections checked out and not yet returned", labels, getActive());
+        long idle = getIdle();
+        if (idle >= 0) {
+            gauge(out, "db_pool_idle_connections", "Idle connections in the pool", labels, idle);
+        }
+        gauge(out, "db_pool_pending_checkouts", "Threads waiting to check out a connection", labels, getPending());
+        counter(out, "db_pool_checkouts_total", "Successful checkouts", labels, getCheckouts());
+        counter(out, "db_pool_checkout_timeouts_total", "Checkouts that timed out", labels, getTimeouts());
+        counter(out, "db_pool_checkout_failures_total", "Failed checkouts, including timeouts", labels,
+                getFailures());
+        return out.toString();
+    }
+
+    private static void gauge(StringBuilder out, String metric, String help, String labels, long value) {
+        metric(out, metric, "gauge", help, labels, value);
+    }
+
+    private static void counter(StringBuilder out, String metric, String help, String labels, long value) {
+        metric(out, metric, "counter", help, labels, value);
+    }
+
+    private static void metric(StringBuilder out, String metric, String type, String help, String labels,
+                               long value) {
+        out.append("# HELP ").append(metric).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(metric).append(' ').append(type).append('\n');
+        out.append(metric).append('{').append(labels).append("} ").append(value).append('\n');
+    }
+
+    public LatencyHistogram getWaitHistogram() {
+        return waitHistogram;
+    }
+
+    public LatencyHistogram getHoldHistogram() {
+        return holdHistogram;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCheckouts() {
+        return checkouts.sum();
+    }
+
+    public long getActive() {
+        return active.sum();
+    }
+
+    public long getIdle() {
+        if (target instanceof PooledDataSource) {
+            try {
+                return ((PooledDataSource) target).getNumIdleConnectionsDefaultUser();
+            } catch (SQLException e) {
+                LOG.debug("Error occured while attempting to read idle connections", e);
+            }
+        }
+        return -1;
+    }
+
+    public long getPending() {
+        return pending.sum();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public double getWaitMeanMillis() {
+        return millis(waitHistogram.getMeanNanos());
+    }
+
+    public double getWaitP99Millis() {
+        return millis(waitHistogram.percentileNanos(99));
+    }
+
+    public double getWaitMaxMillis() {
+        return millis(waitHistogram.getMaxNanos());
+    }
+
+    public double getHoldMeanMillis() {
+        return millis(holdHistogram.getMeanNanos());
+    }
+
+    public double getHoldP99Millis() {
+        return millis(holdHistogram.percentileNanos(99));
+    }
+
+    public double getHoldMaxMillis() {
+        return millis(holdHistogram.getMaxNanos());
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    public PrintWriter getLogWriter() throws SQLException {
+        return target.getLogWriter();
+    }
+
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        target.setLogWriter(out);
+    }
+
+    public void setLoginTimeout(int seconds) throws SQLException {
+        target.setLoginTimeout(seconds);
+    }
+
+    public int getLoginTimeout() throws SQLException {
+        return target.getLoginTimeout();
+    }
+
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(target)) {
+            return (T) target;
+        }
+        return target.unwrap(iface);
+    }
+
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(target) || target.isWrapperFor(iface);
+    }
+}
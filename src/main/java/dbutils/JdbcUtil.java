@@ -18,6 +18,7 @@ public class JdbcUtil {
 
     private static Logger log = LoggerFactory.getLogger(JdbcUtil.class);
     private static ComboPooledDataSource dataSource;
+    private static volatile InstrumentedDataSource instrumentedDataSource;
 
     public synchronized static ComboPooledDataSource initDataSourcePool() {
         if (dataSource == null) {
@@ -28,7 +29,8 @@ public class JdbcUtil {
     }
 
     public static DataSource getDataSource() {
-        return dataSource;
+        InstrumentedDataSource instrumented = instrumentedDataSource;
+        return instrumented != null ? instrumented : dataSource;
     }
 
     /**
@@ -38,7 +40,24 @@ public class JdbcUtil {
      * @throws Exception
      */
     public static Connection getConnection() throws Exception {
-        return dataSource.getConnection();
+        InstrumentedDataSource instrumented = instrumentedDataSource;
+        return instrumented != null ? instrumented.getConnection() : dataSource.getConnection();
+    }
+
+    /**
+     * 统计连接的等待和占用时间并注册到JMX，之后getConnection()从统计的数据源借出连接
+     *
+     * @return 统计数据源，toPrometheusText()取得快照
+     */
+    public static synchronized InstrumentedDataSource instrument() {
+        if (dataSource == null) {
+            throw new IllegalStateException("Pool not initialized");
+        }
+        if (instrumentedDataSource == null) {
+            instrumentedDataSource = new InstrumentedDataSource("dbutils", dataSource);
+            instrumentedDataSource.register();
+        }
+        return instrumentedDataSource;
     }
 
     /**
@@ -46,7 +65,11 @@ public class JdbcUtil {
      *
      * @throws Exception
      */
-    public static void closeDataSource() throws Exception {
+    public static synchronized void closeDataSource() throws Exception {
+        if (instrumentedDataSource != null) {
+            instrumentedDataSource.unregister();
+            instrumentedDataSource = null;
+        }
         dataSource.close();
     }
 }
\ No newline at end of file
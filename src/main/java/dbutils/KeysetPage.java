@@ -0,0 +1,64 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import java.util.List;
+
+/**
+ * 键集(seek)分页的结果：当前页记录及继续翻页用的键
+ */
+public class KeysetPage<T> {
+    /**
+     * 每页记录数量
+     */
+    int pageSize;
+    /**
+     * 页面记录列表
+     */
+    List<T> beanList;
+    /**
+     * 本页最后一条记录的键，作为下一页的afterKey传入；没有下一页时为null
+     */
+    Object nextKey;
+
+    /**
+     * 构造函数
+     * @param pageSize 每页记录数量
+     * @param beanList 页面记录列表
+     * @param nextKey 下一页的起始键，没有下一页时为null
+     */
+    public KeysetPage(int pageSize, List<T> beanList, Object nextKey) {
+        this.pageSize = pageSize;
+        this.beanList = beanList;
+        this.nextKey = nextKey;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public List<T> getBeanList() {
+        return beanList;
+    }
+
+    public Object getNextKey() {
+        return nextKey;
+    }
+
+    public boolean hasNext() {
+        return nextKey != null;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+/**
+ * 键集(seek)分页的sql改写
+ * <p/>
+ * 在原sql上追加按键排序和 limit ?，非首页时在where条件中追加 key &gt; ?：
+ * <code>
+ * select id, description from record where content like ?
+ * =&gt; 首页: select id, description from record where content like ? order by id limit ?
+ * =&gt; 后续: select id, description from record where (content like ?) and id &gt; ? order by id limit ?
+ * </code>
+ * 每种sql只有两种形态，分页参数都以占位符绑定，所有页共用同一个PreparedStatement。
+ * 原sql顶层不能含有order by、limit或union。
+ */
+final class KeysetQuery {
+    /**
+     * 首页sql
+     */
+    final String firstSql;
+    /**
+     * 后续页sql
+     */
+    final String nextSql;
+    /**
+     * 后续页sql中 key &gt; ? 之前的原sql参数个数
+     */
+    final int keyParamIndex;
+
+    private KeysetQuery(String firstSql, String nextSql, int keyParamIndex) {
+        this.firstSql = firstSql;
+        this.nextSql = nextSql;
+        this.keyParamIndex = keyParamIndex;
+    }
+
+    /**
+     * @param sql       原sql，不含order by和limit
+     * @param keyColumn 有序且唯一的键，如id或r.id
+     */
+    static KeysetQuery of(String sql, String keyColumn) {
+        if (SqlScanner.indexOfKeyword(sql, "order") >= 0 || SqlScanner.indexOfKeyword(sql, "limit") >= 0
+                || SqlScanner.indexOfKeyword(sql, "union") >= 0) {
+            throw new IllegalArgumentException("Keyset pagination does not support order by, limit or union: " + sql);
+        }
+        int where = SqlScanner.indexOfKeyword(sql, "where");
+        int tail = sql.length();
+        for (String keyword : new String[]{"group", "having"}) {
+            int index = SqlScanner.indexOfKeyword(sql, keyword);
+            if (index >= 0 && index < tail) {
+                tail = index;
+            }
+        }
+        String head = sql.substring(0, tail).trim();
+        String rest = tail < sql.length() ? " " + sql.substring(tail).trim() : "";
+        String suffix = " order by " + keyColumn + " limit ?";
+        String nextHead;
+        if (where >= 0) {
+            nextHead = sql.substring(0, where) + "where (" + sql.substring(where + 5, tail).trim() + ") and "
+                    + keyColumn + " > ?";
+        } else {
+            nextHead = head + " where " + keyColumn + " > ?";
+        }
+        return new KeysetQuery(sql.trim() + suffix, nextHead + rest + suffix, SqlScanner.countPlaceholders(head));
+    }
+
+    /**
+     * 组装后续页的参数：原参数中插入afterKey，最后是limit
+     */
+    Object[] nextParams(Object[] params, Object afterKey, int limit) {
+        int length = params == null ? 0 : params.length;
+        Object[] result = new Object[length + 2];
+        if (length > 0) {
+            System.arraycopy(params, 0, result, 0, keyParamIndex);
+            System.arraycopy(params, keyParamIndex, result, keyParamIndex + 1, length - keyParamIndex);
+        }
+        result[keyParamIndex] = afterKey;
+        result[length + 1] = limit;
+        return result;
+    }
+
+    /**
+     * 组装首页的参数：原参数后追加limit
+     */
+    static Object[] firstParams(Object[] params, int limit) {
+        int length = params == null ? 0 : params.length;
+        Object[] result = new Object[length + 1];
+        if (length > 0) {
+            System.arraycopy(params, 0, result, 0, length);
+        }
+        result[length] = limit;
+        return result;
+    }
+}
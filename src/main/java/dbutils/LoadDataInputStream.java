@@ -0,0 +1,212 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.Iterator;
+
+/**
+ * 把逐行读取的参数编码成LOAD DATA默认格式的输入流：UTF-8编码，字段以\t分隔，行以\n结束，
+ * 反斜杠、制表符、换行、回车和\0用反斜杠转义，null写作\N。
+ * 边读边编码，不把全部数据放在内存里。
+ */
+final class LoadDataInputStream extends InputStream {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Iterator<Object[]> rows;
+    private final int columns;
+    private byte[] buf = new byte[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private long rowCount;
+    /**
+     * 编码出错时的异常，驱动可能吞掉read抛出的异常，执行完后由调用方检查
+     */
+    private IOException error;
+
+    LoadDataInputStream(Iterator<Object[]> rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buf[pos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        int n = Math.min(len, limit - pos);
+        System.arraycopy(buf, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return limit - pos;
+    }
+
+    long getRowCount() {
+        return rowCount;
+    }
+
+    IOException getError() {
+        return error;
+    }
+
+    /**
+     * 编码若干行到缓冲区，直到缓冲区用了大半或没有更多的行
+     *
+     * @return 是否有数据可读
+     */
+    private boolean fill() throws IOException {
+        pos = 0;
+        limit = 0;
+        try {
+            while (limit < BUFFER_SIZE / 2 && rows.hasNext()) {
+                writeRow(rows.next());
+            }
+        } catch (RuntimeException e) {
+            error = new IOException("Cannot encode row " + rowCount + ": " + e.getMessage(), e);
+            throw error;
+        } catch (IOException e) {
+            error = e;
+            throw e;
+        }
+        return limit > 0;
+    }
+
+    private void writeRow(Object[] row) throws IOException {
+        int length = row == null ? 0 : row.length;
+        if (length != columns) {
+            throw new IOException("Wrong number of values in row " + rowCount + ": expected " + columns
+                    + ", was given " + length);
+        }
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                write('\t');
+            }
+            writeValue(row[i]);
+        }
+        write('\n');
+        rowCount++;
+    }
+
+    private void writeValue(Object value) {
+        if (value == null) {
+            write('\\');
+            write('N');
+        } else if (value instanceof byte[]) {
+            for (byte b : (byte[]) value) {
+                writeEscaped(b & 0xff);
+            }
+        } else if (value instanceof Boolean) {
+            write((Boolean) value ? '1' : '0');
+        } else if (value instanceof BigDecimal) {
+            writeString(((BigDecimal) value).toPlainString());
+        } else if (value instanceof Date && !(value instanceof java.sql.Date) && !(value instanceof java.sql.Time)) {
+            Timestamp timestamp = value instanceof Timestamp ? (Timestamp) value : new Timestamp(((Date) value).getTime());
+            writeString(timestamp.toString());
+        } else {
+            writeString(value.toString());
+        }
+    }
+
+    /**
+     * 按UTF-8编码字符串并转义
+     */
+    private void writeString(String s) {
+        ensureCapacity(s.length() * 4);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                writeEscaped(c);
+            } else if (c < 0x800) {
+                write(0xc0 | (c >> 6));
+                write(0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                write(0xf0 | (cp >> 18));
+                write(0x80 | ((cp >> 12) & 0x3f));
+                write(0x80 | ((cp >> 6) & 0x3f));
+                write(0x80 | (cp & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                // 不成对的代理字符，与String.getBytes一样替换为?
+                write('?');
+            } else {
+                write(0xe0 | (c >> 12));
+                write(0x80 | ((c >> 6) & 0x3f));
+                write(0x80 | (c & 0x3f));
+            }
+        }
+    }
+
+    private void writeEscaped(int b) {
+        switch (b) {
+            case '\\':
+                write('\\');
+                write('\\');
+                break;
+            case '\t':
+                write('\\');
+                write('t');
+                break;
+            case '\n':
+                write('\\');
+                write('n');
+                break;
+            case '\r':
+                write('\\');
+                write('r');
+                break;
+            case 0:
+                write('\\');
+                write('0');
+                break;
+            default:
+                write(b);
+        }
+    }
+
+    private void write(int b) {
+        if (limit == buf.length) {
+            ensureCapacity(1);
+        }
+        buf[limit++] = (byte) b;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (limit + extra > buf.length) {
+            byte[] bigger = new byte[Math.max(buf.length * 2, limit + extra)];
+            System.arraycopy(buf, 0, bigger, 0, limit);
+            buf = bigger;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import org.apache.commons.dbutils.DbUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * 用MySQL的LOAD DATA LOCAL INFILE批量导入数据
+ * <p/>
+ * 数据边读边编码成LOAD DATA的文本格式，通过Connector/J的setLocalInfileInputStream直接交给驱动，
+ * 不写临时文件。比批量INSERT快得多，适合每晚导入record之类的大批量写入：
+ * <code>
+ * LocalInfileLoader loader = dbUtilsTemplate.localInfileLoader();
+ * loader.loadBeans("record", new String[]{"description", "content"}, Record.class, records);
+ * </code>
+ * 需要连接串允许allowLoadLocalInfile(5.1驱动默认允许)并且服务器开启local_infile。
+ * LOAD DATA遇到无法转换的值时只产生警告而不报错，警告会记录到日志。
+ */
+public final class LocalInfileLoader {
+    public static final String DEFAULT_CHARSET = "utf8";
+
+    private static final Logger LOG = LoggerFactory.getLogger(LocalInfileLoader.class);
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private final DataSource dataSource;
+    private final DbUtilsTemplate template;
+    private String charset = DEFAULT_CHARSET;
+
+    LocalInfileLoader(DataSource dataSource, DbUtilsTemplate template) {
+        this.dataSource = dataSource;
+        this.template = template;
+    }
+
+    /**
+     * 数据的MySQL字符集名称，数据总是按UTF-8编码，只能是utf8或utf8mb4，默认utf8
+     */
+    public void setCharset(String charset) {
+        if (!"utf8".equalsIgnoreCase(charset) && !"utf8mb4".equalsIgnoreCase(charset)) {
+            throw new IllegalArgumentException("Only utf8 and utf8mb4 are supported: " + charset);
+        }
+        this.charset = charset;
+    }
+
+    /**
+     * 导入数据
+     *
+     * @param table   表名
+     * @param columns 列名，与每行参数的顺序一致
+     * @param rows    参数二维数组
+     * @return 导入的行数
+     */
+    public int load(String table, String[] columns, Object[][] rows) throws SQLException {
+        return load(table, columns, Arrays.asList(rows).iterator());
+    }
+
+    /**
+     * 导入数据，边读取rows边写入
+     *
+     * @param table   表名
+     * @param columns 列名，与每行参数的顺序一致
+     * @param rows    每行的参数
+     * @return 导入的行数
+     */
+    public int load(String table, String[] columns, Iterator<Object[]> rows) throws SQLException {
+        String sql = loadDataSql(table, columns);
+        LoadDataInputStream in = new LoadDataInputStream(rows, columns.length);
+        Connection conn = null;
+        Statement stmt = null;
+        int affectedRows;
+        try {
+            conn = dataSource.getConnection();
+            stmt = conn.createStatement();
+            mySqlStatement(stmt).setLocalInfileInputStream(in);
+            affectedRows = stmt.executeUpdate(sql);
+            IOException error = in.getError();
+            if (error != null) {
+                throw new SQLException(error.getMessage(), error);
+            }
+            logWarnings(stmt.getWarnings());
+        } catch (SQLException e) {
+            LOG.error("Error occured while attempting to load data into " + table, e);
+            if (conn != null) {
+                conn.rollback();
+            }
+            throw e;
+        } finally {
+            DbUtils.closeQuietly(stmt);
+            if (conn != null) {
+                DbUtils.commitAndClose(conn);
+            }
+        }
+        template.invalidateTable(table.substring(table.lastIndexOf('.') + 1));
+        return affectedRows;
+    }
+
+    /**
+     * 导入Bean，每一列取Bean中同名(忽略大小写)属性的值
+     *
+     * @param table   表名
+     * @param columns 列名，也是属性名
+     * @param type    Bean的类型
+     * @param beans   Bean
+     * @return 导入的行数
+     */
+    public <T> int loadBeans(String table, String[] columns, Class<T> type, Iterable<? extends T> beans)
+            throws SQLException {
+        return load(table, columns, new BeanValues<T>(getters(type, columns), beans.iterator()));
+    }
+
+    /**
+     * 把数据编码为本类LOAD DATA语句所用格式的输入流，可用于写文件后交给mysqlimport等工具
+     *
+     * @param columns 每行的值个数
+     * @param rows    每行的参数
+     * @return 边读边编码的输入流
+     */
+    public static InputStream encode(int columns, Iterator<Object[]> rows) {
+        return new LoadDataInputStream(rows, columns);
+    }
+
+    String loadDataSql(String table, String[] columns) {
+        StringBuilder sql = new StringBuilder("LOAD DATA LOCAL INFILE 'stream' INTO TABLE ");
+        sql.append(quote(table)).append(" CHARACTER SET ").append(charset)
+                .append(" FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n' (");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                sql.append(',');
+            }
+            sql.append(quote(columns[i]));
+        }
+        return sql.append(')').toString();
+    }
+
+    /**
+     * 给库名.表名的每一段加反引号
+     */
+    private static String quote(String name) {
+        StringBuilder quoted = new StringBuilder();
+        for (String part : name.split("\\.")) {
+            if (quoted.length() > 0) {
+                quoted.append('.');
+            }
+            quoted.append('`').append(part.replace("`", "``")).append('`');
+        }
+        return quoted.toString();
+    }
+
+    /**
+     * 取得驱动的Statement，连接池返回的是包装后的Statement
+     */
+    private static com.mysql.jdbc.Statement mySqlStatement(Statement stmt) throws SQLException {
+        if (stmt instanceof com.mysql.jdbc.Statement) {
+            return (com.mysql.jdbc.Statement) stmt;
+        }
+        try {
+            return stmt.unwrap(com.mysql.jdbc.Statement.class);
+        } catch (SQLException e) {
+            throw new SQLException("LOAD DATA LOCAL INFILE needs a MySQL Connector/J connection", e);
+        } catch (AbstractMethodError e) {
+            throw new SQLException("LOAD DATA LOCAL INFILE needs a MySQL Connector/J connection", e);
+        }
+    }
+
+    private static void logWarnings(SQLWarning warning) {
+        int count = 0;
+        for (SQLWarning w = warning; w != null; w = w.getNextWarning()) {
+            if (count++ < 10) {
+                LOG.warn("LOAD DATA warning: " + w.getMessage());
+            }
+        }
+        if (count > 10) {
+            LOG.warn("LOAD DATA produced " + count + " warnings");
+        }
+    }
+
+    private static MethodHandle[] getters(Class<?> type, String[] columns) throws SQLException {
+        PropertyDescriptor[] props;
+        try {
+            props = Introspector.getBeanInfo(type).getPropertyDescriptors();
+        } catch (IntrospectionException e) {
+            throw new SQLException("Bean introspection failed: " + e.getMessage(), e);
+        }
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle[] getters = new MethodHandle[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            for (PropertyDescriptor prop : props) {
+                if (prop.getReadMethod() != null && columns[i].equalsIgnoreCase(prop.getName())) {
+                    try {
+                        getters[i] = lookup.unreflect(prop.getReadMethod()).asType(GETTER_TYPE);
+                    } catch (IllegalAccessException e) {
+                        throw new SQLException("Cannot read " + prop.getName() + ": " + e.getMessage(), e);
+                    }
+                    break;
+                }
+            }
+            if (getters[i] == null) {
+                throw new SQLException("No readable property for column " + columns[i] + " in " + type.getName());
+            }
+        }
+        return getters;
+    }
+
+    /**
+     * 把Bean逐个转为参数数组，数组在行之间复用
+     */
+    private static final class BeanValues<T> implements Iterator<Object[]> {
+        private final MethodHandle[] getters;
+        private final Iterator<? extends T> beans;
+        private final Object[] values;
+
+        BeanValues(MethodHandle[] getters, Iterator<? extends T> beans) {
+            this.getters = getters;
+            this.beans = beans;
+            this.values = new Object[getters.length];
+        }
+
+        public boolean hasNext() {
+            return beans.hasNext();
+        }
+
+        public Object[] next() {
+            Object bean = beans.next();
+            for (int i = 0; i < getters.length; i++) {
+                try {
+                    values[i] = getters[i].invokeExact(bean);
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return values;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 把单行的INSERT ... VALUES (?,?)改写为多行的VALUES (?,?),(?,?),...
+ * <p/>
+ * 只改写普通的INSERT：INSERT IGNORE、ON DUPLICATE KEY UPDATE、INSERT ... SELECT等
+ * 无法从总影响行数推出每行的结果，不改写。
+ */
+final class MultiRowInsert {
+    /**
+     * MySQL预编译语句的占位符上限
+     */
+    static final int MAX_PLACEHOLDERS = 65535;
+
+    /**
+     * 不能改写的sql的标记
+     */
+    static final MultiRowInsert NOT_REWRITABLE = new MultiRowInsert("", "", 0);
+
+    private static final int MAX_CACHED_SHAPES = 8;
+
+    /**
+     * VALUES之前(含VALUES)的部分
+     */
+    final String head;
+    /**
+     * 一行的值，如(?,?)
+     */
+    final String tuple;
+    /**
+     * 每行的参数个数
+     */
+    final int paramsPerRow;
+    /**
+     * 按行数缓存改写后的sql
+     */
+    private final ConcurrentMap<Integer, String> shapes = new ConcurrentHashMap<Integer, String>();
+
+    private MultiRowInsert(String head, String tuple, int paramsPerRow) {
+        this.head = head;
+        this.tuple = tuple;
+        this.paramsPerRow = paramsPerRow;
+    }
+
+    /**
+     * 解析单行INSERT语句
+     *
+     * @return 不能改写时返回NOT_REWRITABLE
+     */
+    static MultiRowInsert of(String sql) {
+        String trimmed = sql.trim();
+        if (trimmed.endsWith(";")) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1).trim();
+        }
+        if (SqlScanner.indexOfKeyword(trimmed, "insert") != 0
+                || SqlScanner.indexOfKeyword(trimmed, "ignore") >= 0
+                || SqlScanner.indexOfKeyword(trimmed, "select") >= 0
+                || SqlScanner.indexOfKeyword(trimmed, "on") >= 0) {
+            return NOT_REWRITABLE;
+        }
+        int values = SqlScanner.indexOfKeyword(trimmed, "values");
+        int keywordLength = "values".length();
+        if (values < 0) {
+            values = SqlScanner.indexOfKeyword(trimmed, "value");
+            keywordLength = "value".length();
+        }
+        if (values < 0) {
+            return NOT_REWRITABLE;
+        }
+        int open = values + keywordLength;
+        while (open < trimmed.length() && Character.isWhitespace(trimmed.charAt(open))) {
+            open++;
+        }
+        int close = closingParenthesis(trimmed, open);
+        // VALUES后面只能有一行
+        if (close != trimmed.length() - 1) {
+            return NOT_REWRITABLE;
+        }
+        String tuple = trimmed.substring(open);
+        int paramsPerRow = SqlScanner.countPlaceholders(tuple);
+        if (paramsPerRow == 0 || SqlScanner.countPlaceholders(trimmed) != paramsPerRow) {
+            return NOT_REWRITABLE;
+        }
+        return new MultiRowInsert(trimmed.substring(0, values) + "VALUES ", tuple, paramsPerRow);
+    }
+
+    /**
+     * @return 与open处的左括号匹配的右括号位置，open处不是左括号或不匹配时返回-1
+     */
+    private static int closingParenthesis(String sql, int open) {
+        if (open >= sql.length() || sql.charAt(open) != '(') {
+            return -1;
+        }
+        int depth = 0;
+        char quote = 0;
+        for (int i = open; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 插入rows行的sql
+     */
+    String sql(int rows) {
+        String sql = shapes.get(rows);
+        if (sql == null) {
+            StringBuilder sb = new StringBuilder(head.length() + rows * (tuple.length() + 1));
+            sb.append(head);
+            for (int i = 0; i < rows; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(tuple);
+            }
+            sql = sb.toString();
+            if (shapes.size() < MAX_CACHED_SHAPES) {
+                shapes.putIfAbsent(rows, sql);
+            }
+        }
+        return sql;
+    }
+
+    /**
+     * 计算每条语句插入的行数：不超过maxRows和占位符上限，按最大的一行估算语句长度不超过maxBytes
+     *
+     * @param params   全部行的参数
+     * @param maxRows  每条语句的最大行数
+     * @param maxBytes 每条语句的最大字节数，MySQL客户端预编译时参数值会拼进sql，受max_allowed_packet限制
+     */
+    int rowsPerStatement(Object[][] params, int maxRows, long maxBytes) {
+        long maxRowBytes = 1;
+        for (Object[] row : params) {
+            long rowBytes = tuple.length() + 1;
+            if (row != null) {
+                for (Object value : row) {
+                    rowBytes += estimateBytes(value);
+                }
+            }
+            maxRowBytes = Math.max(maxRowBytes, rowBytes);
+        }
+        long byBytes = (maxBytes - head.length()) / maxRowBytes;
+        long rows = Math.min(Math.min(maxRows, MAX_PLACEHOLDERS / paramsPerRow), byBytes);
+        return (int) Math.max(1, Math.min(rows, params.length));
+    }
+
+    /**
+     * 参数值拼进sql后的字节数估算，字符串按UTF-8每字符3字节并加上引号和转义的余量
+     */
+    private static long estimateBytes(Object value) {
+        if (value == null) {
+            return 4;
+        }
+        if (value instanceof CharSequence) {
+            return 3L * ((CharSequence) value).length() + 8;
+        }
+        if (value instanceof byte[]) {
+            return 2L * ((byte[]) value).length + 8;
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return 24;
+        }
+        return 64;
+    }
+}
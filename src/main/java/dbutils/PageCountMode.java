@@ -0,0 +1,38 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+/**
+ * findPageResult取总记录数的方式
+ */
+public enum PageCountMode {
+    /**
+     * 先查当前页，再用select count(1) from (...)查总数，两次取连接、两次查询
+     */
+    TWO_QUERIES,
+    /**
+     * 在查询列中加count(*) over()，当前页和总数一次查出，需要MySQL 8.0+或支持窗口函数的数据库
+     */
+    WINDOW,
+    /**
+     * MySQL的SQL_CALC_FOUND_ROWS，在同一连接上紧接着select FOUND_ROWS()取总数
+     */
+    FOUND_ROWS,
+    /**
+     * 依次尝试WINDOW、FOUND_ROWS(仅MySQL)，数据库不支持时退回TWO_QUERIES
+     */
+    AUTO
+}
@@ -41,6 +41,10 @@ public class PageResult<T> {
      * 页面记录列表
      */
     List<T> beanList;
+    /**
+     * 总记录数的来源
+     */
+    CountType countType;
 
     /**
      * 构造函数
@@ -50,9 +54,44 @@ public class PageResult<T> {
      * @param count 页面记录列表
      */
     public PageResult(int currentPage, int pageSize, List<T> beanList, int count) {
+        this(currentPage, pageSize, beanList, count, CountType.EXACT);
+    }
+
+    /**
+     * 构造函数
+     * @param currentPage 当前页号
+     * @param pageSize 每页记录数量
+     * @param beanList 页面记录列表
+     * @param count 表中总记录数
+     * @param countType 总记录数的来源
+     */
+    public PageResult(int currentPage, int pageSize, List<T> beanList, int count, CountType countType) {
         this.currentPage = currentPage;
         this.pageSize = pageSize;
         this.count = count;
         this.beanList = beanList;
+        this.countType = countType;
+    }
+
+    public CountType getCountType() {
+        return countType;
+    }
+
+    /**
+     * 总记录数的来源
+     */
+    public enum CountType {
+        /**
+         * 本次查询精确计算
+         */
+        EXACT,
+        /**
+         * 取自计数缓存，可能落后于其他程序的写入，最多落后一个TTL
+         */
+        CACHED,
+        /**
+         * 来自数据库统计信息的估算值
+         */
+        ESTIMATED
     }
 }
@@ -0,0 +1,145 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按sql语句缓存参数个数和参数类型
+ * <p/>
+ * MySQL驱动每次getParameterMetaData()都可能要解析sql甚至访问一次服务器，
+ * 缓存后同一条sql只在第一次执行时读取ParameterMetaData。
+ * 缓存大小有上限，满了以后淘汰一条，淘汰的是ConcurrentHashMap迭代顺序中的第一条，不按使用频率。
+ * 分页查询的limit以占位符绑定，各页号共用一项，不会把常用的语句挤出缓存。
+ */
+public final class ParameterMetaDataCache {
+    public static final int DEFAULT_MAX_SIZE = 256;
+
+    private final ConcurrentMap<String, Entry> cache = new ConcurrentHashMap<String, Entry>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile int maxSize;
+
+    public ParameterMetaDataCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public ParameterMetaDataCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 取得sql的参数信息，没有缓存时从stmt读取并放入缓存
+     *
+     * @param sql  sql语句
+     * @param stmt 由sql创建的PreparedStatement
+     * @return 参数信息
+     */
+    Entry get(String sql, PreparedStatement stmt) throws SQLException {
+        Entry entry = cache.get(sql);
+        if (entry != null) {
+            hits.incrementAndGet();
+            return entry;
+        }
+        misses.incrementAndGet();
+        entry = Entry.of(stmt.getParameterMetaData());
+        if (maxSize > 0) {
+            while (cache.size() >= maxSize) {
+                Iterator<String> it = cache.keySet().iterator();
+                if (!it.hasNext()) {
+                    break;
+                }
+                cache.remove(it.next());
+            }
+            cache.put(sql, entry);
+        }
+        return entry;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * 一条sql的参数个数和各参数的sql类型
+     */
+    static final class Entry {
+        final int count;
+        private final int[] types;
+
+        private Entry(int count, int[] types) {
+            this.count = count;
+            this.types = types;
+        }
+
+        /**
+         * 读取参数元数据，驱动不支持参数类型时(如MySQL客户端预编译)全部按VARCHAR处理
+         */
+        static Entry of(ParameterMetaData pmd) throws SQLException {
+            int count = pmd.getParameterCount();
+            int[] types = new int[count];
+            boolean typesKnownBroken = false;
+            for (int i = 0; i < count; i++) {
+                if (!typesKnownBroken) {
+                    try {
+                        types[i] = pmd.getParameterType(i + 1);
+                        continue;
+                    } catch (SQLException e) {
+                        typesKnownBroken = true;
+                    }
+                }
+                // VARCHAR works with many drivers regardless
+                // of the actual column type.
+                types[i] = Types.VARCHAR;
+            }
+            return new Entry(count, types);
+        }
+
+        /**
+         * @param index 参数位置，从1开始
+         */
+        int type(int index) {
+            return types[index - 1];
+        }
+    }
+}
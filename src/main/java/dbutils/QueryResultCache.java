@@ -0,0 +1,556 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import org.apache.commons.dbutils.ResultSetHandler;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * find/findFirst/findBy的查询结果缓存，按(sql, 参数, 结果类型)缓存
+ * <p/>
+ * 按近似的最近最少使用(LRU)淘汰，条数和估算的内存都有上限，缓存项在TTL后过期；
+ * 通过DbUtilsTemplate执行的写操作会让读取同一张表的缓存项立即失效，其他程序的写入只能等TTL过期。
+ * 可以用setTables限定只缓存读取这些表的sql，适合test_team这类很少变化的表。
+ * <p/>
+ * 读取不加锁：缓存项放在ConcurrentHashMap中，命中时只记下访问时间；
+ * 超出上限时由写入的线程按访问时间一次淘汰最久未访问的约1/16，淘汰期间其他线程照常读取。
+ * <p/>
+ * 缓存的结果不会被调用方修改：Bean结果只缓存各行的值，每次命中用编译好的BeanRowMapper创建新的Bean；
+ * List、Map以及Date、byte[]每次返回新的拷贝，调用方可以像不使用缓存时一样修改返回的结果。
+ */
+public final class QueryResultCache {
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    /**
+     * 缓存的null结果
+     */
+    static final Object NULL = new Object();
+
+    private static final int MAX_CACHED_SQL_TABLES = 1024;
+    private static final Comparator<Map.Entry<Key, Entry>> LEAST_RECENTLY_USED =
+            new Comparator<Map.Entry<Key, Entry>>() {
+                public int compare(Map.Entry<Key, Entry> a, Map.Entry<Key, Entry> b) {
+                    long diff = a.getValue().accessedAt - b.getValue().accessedAt;
+                    return diff < 0 ? -1 : diff > 0 ? 1 : 0;
+                }
+            };
+
+    private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<Key, Entry>();
+    /**
+     * 同一时间只有一个线程淘汰
+     */
+    private final Object evictionLock = new Object();
+    private final ConcurrentMap<String, Set<String>> sqlTables = new ConcurrentHashMap<String, Set<String>>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    /**
+     * 每次失效加1，查询期间发生过失效的结果不放入缓存
+     */
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong estimatedBytes = new AtomicLong();
+    private volatile long ttlNanos;
+    private volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+    private volatile long maxBytes;
+    private volatile Set<String> tables;
+
+    public boolean isEnabled() {
+        return ttlNanos > 0 && maxEntries > 0;
+    }
+
+    /**
+     * sql读取的表是否都允许缓存
+     */
+    boolean isCacheable(String sql) {
+        Set<String> allowed = tables;
+        return allowed == null || allowed.containsAll(tablesOf(sql));
+    }
+
+    long version() {
+        return version.get();
+    }
+
+    /**
+     * 取得缓存的结果
+     *
+     * @param type 结果类型，即处理结果集的Handler
+     * @return 缓存的结果，结果为null时返回NULL，没有缓存或已过期时返回null
+     */
+    Object get(String sql, Object[] params, Object type) {
+        Key key = new Key(sql, params, type);
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            long now = System.nanoTime();
+            if (entry.expiresAt - now > 0) {
+                entry.accessedAt = now;
+                hits.incrementAndGet();
+                return entry.value;
+            }
+            remove(key, entry);
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 放入缓存，查询期间有过失效时放弃
+     *
+     * @param version 开始查询前的version()
+     */
+    void put(String sql, Object[] params, Object type, Object value, long version) {
+        if (!isEnabled()) {
+            return;
+        }
+        // 调用方可能复用参数数组，缓存中保存一份拷贝
+        Key key = new Key(sql, params == null ? null : params.clone(), type);
+        long bytes = estimateSize(sql) + estimateSize(value);
+        long now = System.nanoTime();
+        Entry entry = new Entry(value == null ? NULL : value, now + ttlNanos, now, tablesOf(sql), bytes);
+        if (this.version.get() != version) {
+            return;
+        }
+        estimatedBytes.addAndGet(bytes);
+        Entry replaced = entries.put(key, entry);
+        if (replaced != null) {
+            estimatedBytes.addAndGet(-replaced.bytes);
+        }
+        // 放入后再检查一次：失效在放入之前开始时，失效的遍历可能看不到这一项
+        if (this.version.get() != version) {
+            remove(key, entry);
+            return;
+        }
+        if (isOverLimit(0, 0)) {
+            evict();
+        }
+    }
+
+    private boolean isOverLimit(int entrySlack, long byteSlack) {
+        long max = maxBytes;
+        return entries.size() > maxEntries - entrySlack || max > 0 && estimatedBytes.get() > max - byteSlack;
+    }
+
+    /**
+     * 按访问时间淘汰最久未访问的项，直到比上限少约1/16，避免每次放入都要排序
+     */
+    private void evict() {
+        synchronized (evictionLock) {
+            if (!isOverLimit(0, 0)) {
+                return;
+            }
+            List<Map.Entry<Key, Entry>> candidates = new ArrayList<Map.Entry<Key, Entry>>(entries.entrySet());
+            Collections.sort(candidates, LEAST_RECENTLY_USED);
+            int entrySlack = maxEntries / 16;
+            long byteSlack = maxBytes / 16;
+            for (Map.Entry<Key, Entry> candidate : candidates) {
+                if (!isOverLimit(entrySlack, byteSlack)) {
+                    break;
+                }
+                if (remove(candidate.getKey(), candidate.getValue())) {
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * 写操作执行后调用，让读取同一张表的缓存项失效；找不到表名时清空缓存
+     *
+     * @param sql 写操作的sql语句
+     */
+    void invalidate(String sql) {
+        Set<String> written = SqlScanner.tableNames(sql);
+        if (written.isEmpty()) {
+            clear();
+        } else {
+            invalidateTables(written);
+        }
+    }
+
+    /**
+     * 让读取table的缓存项失效，供DbUtilsTemplate之外的写入通知使用
+     */
+    public void invalidateTable(String table) {
+        invalidateTables(Collections.singleton(table.toLowerCase()));
+    }
+
+    private void invalidateTables(Set<String> written) {
+        version.incrementAndGet();
+        for (Map.Entry<Key, Entry> item : entries.entrySet()) {
+            Entry entry = item.getValue();
+            if ((entry.tables.isEmpty() || !Collections.disjoint(entry.tables, written))
+                    && remove(item.getKey(), entry)) {
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    public void clear() {
+        version.incrementAndGet();
+        for (Map.Entry<Key, Entry> item : entries.entrySet()) {
+            if (remove(item.getKey(), item.getValue())) {
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 只删除仍是entry的项，并发放入的新项不受影响
+     *
+     * @return 是否删除
+     */
+    private boolean remove(Key key, Entry entry) {
+        if (entries.remove(key, entry)) {
+            estimatedBytes.addAndGet(-entry.bytes);
+            return true;
+        }
+        return false;
+    }
+
+    private Set<String> tablesOf(String sql) {
+        Set<String> result = sqlTables.get(sql);
+        if (result == null) {
+            result = SqlScanner.tableNames(sql);
+            if (sqlTables.size() < MAX_CACHED_SQL_TABLES) {
+                sqlTables.putIfAbsent(sql, result);
+            }
+        }
+        return result;
+    }
+
+    public void setTtl(long ttl, TimeUnit unit) {
+        this.ttlNanos = unit.toNanos(ttl);
+    }
+
+    public long getTtl(TimeUnit unit) {
+        return unit.convert(ttlNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 最多缓存的条数，默认1000
+     */
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * 缓存估算占用内存的上限，字节，默认0表示只按条数限制
+     */
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * 只缓存读取这些表的sql，默认null表示缓存所有sql
+     */
+    public void setTables(String... tables) {
+        if (tables == null) {
+            this.tables = null;
+            return;
+        }
+        Set<String> lowerCase = new HashSet<String>();
+        for (String table : tables) {
+            lowerCase.add(table.toLowerCase());
+        }
+        this.tables = lowerCase;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * 命中率，没有访问过时为0
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * 因超出条数或内存上限被淘汰的条数
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * 因写操作失效的条数
+     */
+    public long getInvalidationCount() {
+        return invalidations.get();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 缓存内容估算占用的内存，字节
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes.get();
+    }
+
+    /**
+     * 未命中时执行查询使用的Handler：Bean结果读成BeanRows，只保存各行的值；其他结果直接使用rsh
+     */
+    static ResultSetHandler<?> loader(ResultSetHandler<?> rsh) {
+        if (rsh instanceof CompiledBeanListHandler) {
+            return new BeanRowsHandler(((CompiledBeanListHandler<?>) rsh).getType(), true);
+        }
+        if (rsh instanceof CompiledBeanHandler) {
+            return new BeanRowsHandler(((CompiledBeanHandler<?>) rsh).getType(), false);
+        }
+        return rsh;
+    }
+
+    /**
+     * 放入缓存前调用：List和Map换成只读的，之后所有调用方读取的都是同一份
+     */
+    @SuppressWarnings("unchecked")
+    static Object freeze(Object value) {
+        if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            List<Object> frozen = new ArrayList<Object>(list.size());
+            for (Object element : list) {
+                frozen.add(element instanceof Map
+                        ? Collections.unmodifiableMap((Map<String, Object>) element) : element);
+            }
+            return Collections.unmodifiableList(frozen);
+        }
+        return value instanceof Map ? Collections.unmodifiableMap((Map<String, Object>) value) : value;
+    }
+
+    /**
+     * 返回给调用方的拷贝，与不使用缓存时一样可以修改：BeanRows映射为新的Bean，
+     * List和Map复制一份(Map的键不区分大小写，与BasicRowProcessor一致)，Date和byte[]复制
+     */
+    static Object copyOf(Object value) throws SQLException {
+        if (value instanceof BeanRows) {
+            return ((BeanRows) value).toResult();
+        }
+        if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            List<Object> copy = new ArrayList<Object>(list.size());
+            for (Object element : list) {
+                copy.add(copyElement(element));
+            }
+            return copy;
+        }
+        return copyElement(value);
+    }
+
+    private static Object copyElement(Object value) {
+        if (value instanceof Map) {
+            Map<String, Object> copy = new TreeMap<String, Object>(String.CASE_INSENSITIVE_ORDER);
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                copy.put((String) entry.getKey(), copyValue(entry.getValue()));
+            }
+            return copy;
+        }
+        return copyValue(value);
+    }
+
+    private static Object copyValue(Object value) {
+        if (value instanceof java.util.Date) {
+            return ((java.util.Date) value).clone();
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).clone();
+        }
+        return value;
+    }
+
+    /**
+     * 粗略估算对象占用的内存：集合、Map、数组和BeanRows递归计算
+     */
+    static long estimateSize(Object value) {
+        if (value == null || value == NULL) {
+            return 0;
+        }
+        if (value instanceof String) {
+            return 40 + 2L * ((String) value).length();
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character
+                || value instanceof java.util.Date) {
+            return 24;
+        }
+        if (value instanceof byte[]) {
+            return 16 + ((byte[]) value).length;
+        }
+        if (value instanceof Collection) {
+            long size = 40 + 8L * ((Collection<?>) value).size();
+            for (Object element : (Collection<?>) value) {
+                size += estimateSize(element);
+            }
+            return size;
+        }
+        if (value instanceof Map) {
+            long size = 48;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += 32 + estimateSize(entry.getKey()) + estimateSize(entry.getValue());
+            }
+            return size;
+        }
+        if (value instanceof Object[]) {
+            long size = 16 + 8L * ((Object[]) value).length;
+            for (Object element : (Object[]) value) {
+                size += estimateSize(element);
+            }
+            return size;
+        }
+        if (value instanceof BeanRows) {
+            return 16 + estimateSize(((BeanRows) value).rows);
+        }
+        return 32;
+    }
+
+    /**
+     * 缓存中的Bean结果：各行按BeanRowMapper的属性保存的值，每次命中用同一个编译好的映射器创建新的Bean
+     */
+    static final class BeanRows {
+        private final BeanRowMapper<?> mapper;
+        private final List<Object[]> rows;
+        private final boolean list;
+
+        BeanRows(BeanRowMapper<?> mapper, List<Object[]> rows, boolean list) {
+            this.mapper = mapper;
+            this.rows = rows;
+            this.list = list;
+        }
+
+        int size() {
+            return rows.size();
+        }
+
+        Object toResult() throws SQLException {
+            if (!list) {
+                return mapper.mapValues(rows.get(0));
+            }
+            List<Object> beans = new ArrayList<Object>(rows.size());
+            for (Object[] row : rows) {
+                beans.add(mapper.mapValues(row));
+            }
+            return beans;
+        }
+    }
+
+    /**
+     * 读取Bean结果的各行，list为false时只读第一行，没有记录时返回null(单个Bean)或空的BeanRows
+     */
+    private static final class BeanRowsHandler implements ResultSetHandler<BeanRows> {
+        private final Class<?> type;
+        private final boolean list;
+
+        BeanRowsHandler(Class<?> type, boolean list) {
+            this.type = type;
+            this.list = list;
+        }
+
+        public BeanRows handle(ResultSet rs) throws SQLException {
+            if (!rs.next()) {
+                return list ? new BeanRows(null, Collections.<Object[]>emptyList(), true) : null;
+            }
+            BeanRowMapper<?> mapper = BeanRowMapper.of(type, rs);
+            List<Object[]> rows = new ArrayList<Object[]>();
+            do {
+                rows.add(mapper.readRow(rs));
+            } while (list && rs.next());
+            return new BeanRows(mapper, rows, list);
+        }
+    }
+
+    private static final class Key {
+        private final String sql;
+        private final Object[] params;
+        private final Object type;
+        private final int hash;
+
+        Key(String sql, Object[] params, Object type) {
+            this.sql = sql;
+            this.params = params;
+            this.type = type;
+            this.hash = 31 * (31 * sql.hashCode() + Arrays.hashCode(params)) + System.identityHashCode(type);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && type == other.type && sql.equals(other.sql)
+                    && Arrays.equals(params, other.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry {
+        final Object value;
+        final long expiresAt;
+        final Set<String> tables;
+        final long bytes;
+        /**
+         * 最后一次命中的System.nanoTime()，淘汰时按它排序
+         */
+        volatile long accessedAt;
+
+        Entry(Object value, long expiresAt, long accessedAt, Set<String> tables, long bytes) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.accessedAt = accessedAt;
+            this.tables = tables;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,378 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import org.apache.commons.dbutils.DbUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 读写分离的数据源：getConnection()返回主库连接，getReadConnection()按权重从从库中选一个
+ * <p/>
+ * DbUtilsTemplate的find*、findBy、getCount等查询使用getReadConnection()，update、insert、batchUpdate等写入使用
+ * getConnection()，调用方不用改动。其他只认DataSource的代码(如JdbcTemplate)拿到的都是主库连接。
+ * <p/>
+ * 读己之写：线程归还主库连接后的stickiness时间内，这个线程的查询仍然走主库；
+ * 之后只选复制延迟小于距上次写入时间的从库，延迟未知时按0计算。
+ * <p/>
+ * 从库的选择概率与weight / (1 + 延迟秒数)成正比，延迟超过maxLag的从库不参与；
+ * 取连接失败或者复制中断的从库在retryInterval内不再使用，没有可用的从库时查询走主库。
+ * 复制延迟由startMonitor()启动的线程定期执行lagQuery得到，默认SHOW SLAVE STATUS的Seconds_Behind_Master。
+ * <code>
+ * ReadWriteDataSource dataSource = new ReadWriteDataSource(primary, replica1, replica2);
+ * dataSource.startMonitor(1, TimeUnit.SECONDS);
+ * DbUtilsTemplate template = new DbUtilsTemplate(dataSource);
+ * </code>
+ */
+public class ReadWriteDataSource implements DataSource {
+    public static final String DEFAULT_LAG_QUERY = "SHOW SLAVE STATUS";
+    private static final Logger LOG = LoggerFactory.getLogger(ReadWriteDataSource.class);
+    private static final String LAG_COLUMN = "Seconds_Behind_Master";
+
+    private final DataSource primary;
+    private final Replica[] replicas;
+    /**
+     * 当前线程最后一次使用主库连接的时间
+     */
+    private final ThreadLocal<Long> lastWrite = new ThreadLocal<Long>();
+    private volatile long stickinessNanos = TimeUnit.SECONDS.toNanos(1);
+    private volatile long maxLagNanos = TimeUnit.SECONDS.toNanos(10);
+    private volatile long retryNanos = TimeUnit.SECONDS.toNanos(5);
+    private volatile String lagQuery = DEFAULT_LAG_QUERY;
+    private final AtomicLong primaryReads = new AtomicLong();
+    private ScheduledExecutorService monitor;
+
+    /**
+     * @param primary  主库
+     * @param replicas 从库，权重默认都是1
+     */
+    public ReadWriteDataSource(DataSource primary, DataSource... replicas) {
+        this.primary = primary;
+        this.replicas = new Replica[replicas.length];
+        for (int i = 0; i < replicas.length; i++) {
+            this.replicas[i] = new Replica(replicas[i]);
+        }
+    }
+
+    /**
+     * 设置从库的权重，0表示不参与读取
+     *
+     * @param replica 从库在构造参数中的位置，从0开始
+     */
+    public void setWeight(int replica, int weight) {
+        if (weight < 0) {
+            throw new IllegalArgumentException("weight must not be negative: " + weight);
+        }
+        replicas[replica].weight = weight;
+    }
+
+    /**
+     * 写入后本线程的查询继续走主库的时间，默认1秒，0表示不保证读己之写
+     */
+    public void setStickiness(long stickiness, TimeUnit unit) {
+        this.stickinessNanos = unit.toNanos(stickiness);
+    }
+
+    /**
+     * 从库允许的最大复制延迟，默认10秒
+     */
+    public void setMaxLag(long maxLag, TimeUnit unit) {
+        this.maxLagNanos = unit.toNanos(maxLag);
+    }
+
+    /**
+     * 从库出错后暂停使用的时间，默认5秒
+     */
+    public void setRetryInterval(long retryInterval, TimeUnit unit) {
+        this.retryNanos = unit.toNanos(retryInterval);
+    }
+
+    /**
+     * 查询复制延迟(秒)的语句，结果中有Seconds_Behind_Master列时取这一列，否则取第一列；
+     * 值为null表示复制中断，没有结果行表示不是从库，延迟按0计算
+     */
+    public void setLagQuery(String lagQuery) {
+        this.lagQuery = lagQuery;
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    /**
+     * 主库连接，本线程在归还连接后的stickiness时间内读主库
+     */
+    public Connection getConnection() throws SQLException {
+        return tracked(primary.getConnection());
+    }
+
+    public Connection getConnection(String username, String password) throws SQLException {
+        return tracked(primary.getConnection(username, password));
+    }
+
+    /**
+     * 查询使用的连接，按读己之写、健康状况、复制延迟和权重选择从库，没有可用的从库时返回主库连接
+     */
+    public Connection getReadConnection() throws SQLException {
+        long now = System.nanoTime();
+        Long written = lastWrite.get();
+        long sinceWrite = written == null ? Long.MAX_VALUE : now - written;
+        if (sinceWrite >= stickinessNanos) {
+            boolean[] tried = new boolean[replicas.length];
+            Replica replica;
+            while ((replica = choose(now, sinceWrite, tried)) != null) {
+                try {
+                    Connection conn = replica.dataSource.getConnection();
+                    replica.reads.incrementAndGet();
+                    replica.healthy = true;
+                    return conn;
+                } catch (SQLException e) {
+                    LOG.warn("Replica " + indexOf(replica) + " unavailable, retry after "
+                            + TimeUnit.NANOSECONDS.toMillis(retryNanos) + "ms", e);
+                    replica.unhealthy(System.nanoTime() + retryNanos);
+                }
+            }
+        }
+        primaryReads.incrementAndGet();
+        return primary.getConnection();
+    }
+
+    /**
+     * 按有效权重随机选择，tried记录本次已经选过的从库
+     */
+    private Replica choose(long now, long sinceWrite, boolean[] tried) {
+        double[] weights = new double[replicas.length];
+        double total = 0;
+        for (int i = 0; i < replicas.length; i++) {
+            Replica replica = replicas[i];
+            long lag = replica.lagNanos;
+            if (!tried[i] && replica.weight > 0 && replica.available(now) && lag <= maxLagNanos && lag < sinceWrite) {
+                weights[i] = replica.weight / (1 + lag / 1e9);
+                total += weights[i];
+            }
+        }
+        if (total == 0) {
+            return null;
+        }
+        double r = ThreadLocalRandom.current().nextDouble(total);
+        int chosen = -1;
+        for (int i = 0; i < replicas.length; i++) {
+            if (weights[i] > 0) {
+                chosen = i;
+                r -= weights[i];
+                if (r < 0) {
+                    break;
+                }
+            }
+        }
+        tried[chosen] = true;
+        return replicas[chosen];
+    }
+
+    private int indexOf(Replica replica) {
+        for (int i = 0; i < replicas.length; i++) {
+            if (replicas[i] == replica) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 包装主库连接，归还时记下本线程的写入时间
+     */
+    private Connection tracked(Connection conn) {
+        lastWrite.set(System.nanoTime());
+        return new DelegatingConnection(conn) {
+            protected void onClose() {
+                lastWrite.set(System.nanoTime());
+            }
+        };
+    }
+
+    /**
+     * 启动后台线程，每隔interval查询一次各从库的复制延迟
+     */
+    public synchronized void startMonitor(long interval, TimeUnit unit) {
+        if (monitor != null) {
+            throw new IllegalStateException("Monitor already started");
+        }
+        monitor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "replica-monitor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        monitor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                checkReplicas();
+            }
+        }, 0, interval, unit);
+    }
+
+    /**
+     * 停止后台线程，不关闭主库和从库的连接池
+     */
+    public synchronized void close() {
+        if (monitor != null) {
+            monitor.shutdownNow();
+            monitor = null;
+        }
+    }
+
+    /**
+     * 查询一次各从库的复制延迟
+     */
+    public void checkReplicas() {
+        for (int i = 0; i < replicas.length; i++) {
+            Replica replica = replicas[i];
+            Connection conn = null;
+            Statement stmt = null;
+            ResultSet rs = null;
+            try {
+                conn = replica.dataSource.getConnection();
+                stmt = conn.createStatement();
+                rs = stmt.executeQuery(lagQuery);
+                if (!rs.next()) {
+                    replica.lagNanos = 0;
+                } else {
+                    Object seconds = rs.getObject(lagColumn(rs.getMetaData()));
+                    if (seconds == null) {
+                        LOG.warn("Replication stopped on replica " + i);
+                        replica.unhealthy(System.nanoTime() + retryNanos);
+                    } else {
+                        replica.lagNanos = (long) (((Number) seconds).doubleValue() * 1e9);
+                        replica.healthy = true;
+                    }
+                }
+                if (!conn.getAutoCommit()) {
+                    conn.commit();
+                }
+            } catch (SQLException e) {
+                LOG.warn("Failed to check replica " + i, e);
+                replica.unhealthy(System.nanoTime() + retryNanos);
+            } finally {
+                DbUtils.closeQuietly(conn, stmt, rs);
+            }
+        }
+    }
+
+    private static int lagColumn(ResultSetMetaData rsmd) throws SQLException {
+        for (int i = 1; i <= rsmd.getColumnCount(); i++) {
+            if (LAG_COLUMN.equalsIgnoreCase(rsmd.getColumnLabel(i))) {
+                return i;
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * 走主库的查询次数
+     */
+    public long getPrimaryReads() {
+        return primaryReads.get();
+    }
+
+    /**
+     * 从库承担的查询次数
+     */
+    public long getReads(int replica) {
+        return replicas[replica].reads.get();
+    }
+
+    /**
+     * 最近一次查到的复制延迟
+     */
+    public long getLagMillis(int replica) {
+        return TimeUnit.NANOSECONDS.toMillis(replicas[replica].lagNanos);
+    }
+
+    public boolean isHealthy(int replica) {
+        return replicas[replica].available(System.nanoTime());
+    }
+
+    public PrintWriter getLogWriter() throws SQLException {
+        return primary.getLogWriter();
+    }
+
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        primary.setLogWriter(out);
+    }
+
+    public void setLoginTimeout(int seconds) throws SQLException {
+        primary.setLoginTimeout(seconds);
+    }
+
+    public int getLoginTimeout() throws SQLException {
+        return primary.getLoginTimeout();
+    }
+
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return primary.unwrap(iface);
+    }
+
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || primary.isWrapperFor(iface);
+    }
+
+    private static final class Replica {
+        final DataSource dataSource;
+        final AtomicLong reads = new AtomicLong();
+        volatile int weight = 1;
+        volatile long lagNanos;
+        volatile boolean healthy = true;
+        volatile long retryAt;
+
+        Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        void unhealthy(long retryAt) {
+            this.retryAt = retryAt;
+            this.healthy = false;
+        }
+
+        /**
+         * 健康，或者已经到了重试时间
+         */
+        boolean available(long now) {
+            return healthy || now - retryAt >= 0;
+        }
+    }
+}
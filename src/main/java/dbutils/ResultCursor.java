@@ -0,0 +1,188 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import com.mysql.jdbc.MySQLConnection;
+import org.apache.commons.dbutils.DbUtils;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 流式查询的游标，逐行读取结果集，不把全部结果放入内存
+ * <p/>
+ * 游标持有一个数据库连接，读完最后一行或出错时自动关闭；提前结束时必须调用close()归还连接。
+ * MySQL驱动的cancel()在executeQuery()返回后不起作用，流式读取时关闭结果集要读完并丢弃剩余的行，
+ * 因此提前关闭时用另一个连接执行KILL QUERY，服务端停止发送后连接立即归还；其他数据库cancel语句：
+ * <code>
+ * ResultCursor&lt;Record&gt; cursor = dbUtilsTemplate.findCursor(Record.class, sql, params);
+ * try {
+ *     while (cursor.hasNext()) {
+ *         Record record = cursor.next();
+ *     }
+ * } finally {
+ *     cursor.close();
+ * }
+ * </code>
+ * 本类不是线程安全的。读取出错时hasNext()/next()抛出IllegalStateException，原因为SQLException。
+ */
+public class ResultCursor<T> implements Iterator<T>, Iterable<T>, Closeable {
+    private final Connection conn;
+    private final Statement stmt;
+    private final ResultSet rs;
+    private final RowMapper<T> rowMapper;
+    private boolean hasRow;
+    private boolean closed;
+    private boolean failed;
+    /**
+     * rs.next()已经返回false
+     */
+    private boolean exhausted;
+    private int rowCount;
+    private StatementStats stats;
+    private String sql;
+    private long start;
+    private Object[] params;
+
+    ResultCursor(Connection conn, Statement stmt, ResultSet rs, RowMapper<T> rowMapper) {
+        this.conn = conn;
+        this.stmt = stmt;
+        this.rs = rs;
+        this.rowMapper = rowMapper;
+    }
+
+    /**
+     * 关闭时把读取的行数和从开始执行到关闭的耗时记入stats
+     */
+    void recordTo(StatementStats stats, String sql, long start, Object[] params) {
+        this.stats = stats;
+        this.sql = sql;
+        this.start = start;
+        this.params = params;
+    }
+
+    public boolean hasNext() {
+        if (hasRow) {
+            return true;
+        }
+        if (closed) {
+            return false;
+        }
+        try {
+            hasRow = rs.next();
+        } catch (SQLException e) {
+            failed = true;
+            close();
+            throw new IllegalStateException("Error occured while attempting to read next row", e);
+        }
+        if (!hasRow) {
+            exhausted = true;
+            close();
+        }
+        return hasRow;
+    }
+
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        hasRow = false;
+        rowCount++;
+        try {
+            return rowMapper.mapRow(rs);
+        } catch (SQLException e) {
+            failed = true;
+            close();
+            throw new IllegalStateException("Error occured while attempting to map row " + rowCount, e);
+        }
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException("remove");
+    }
+
+    /**
+     * 只能遍历一次
+     */
+    public Iterator<T> iterator() {
+        return this;
+    }
+
+    /**
+     * @return 已经读取的行数
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 关闭结果集并归还连接，可以重复调用。没有读完时先结束服务端的查询
+     */
+    public void close() {
+        if (!closed) {
+            closed = true;
+            hasRow = false;
+            if (!exhausted && !failed) {
+                stopQuietly();
+            }
+            DbUtils.closeQuietly(conn, stmt, rs);
+            if (stats != null) {
+                stats.record(sql, start, failed ? -1 : rowCount, params, null);
+            }
+        }
+    }
+
+    /**
+     * MySQL流式读取时KILL QUERY，其他情况cancel语句。失败时照常关闭，驱动会读完剩余的行
+     */
+    private void stopQuietly() {
+        try {
+            if (conn.isWrapperFor(MySQLConnection.class)) {
+                // 非流式读取时结果已经全部在内存中，关闭不需要等待
+                if (stmt.getFetchSize() == Integer.MIN_VALUE) {
+                    killQuery(conn.unwrap(MySQLConnection.class));
+                }
+            } else {
+                stmt.cancel();
+            }
+        } catch (SQLException e) {
+            // 结束查询失败时照常关闭
+        }
+    }
+
+    /**
+     * 与驱动的查询超时处理相同，用duplicate()建立的新连接执行KILL QUERY，不占用连接池的连接
+     */
+    private static void killQuery(MySQLConnection mysql) throws SQLException {
+        Connection killer = mysql.duplicate();
+        Statement kill = null;
+        try {
+            kill = killer.createStatement();
+            kill.execute("KILL QUERY " + mysql.getId());
+        } finally {
+            DbUtils.closeQuietly(killer, kill, null);
+        }
+    }
+}
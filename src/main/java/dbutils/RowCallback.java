@@ -0,0 +1,29 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import java.sql.SQLException;
+
+/**
+ * 流式查询的逐行回调，每读到一行调用一次，处理完的行即可被回收
+ */
+public interface RowCallback<T> {
+
+    /**
+     * @param row 当前行映射后的对象
+     */
+    void processRow(T row) throws SQLException;
+}
@@ -0,0 +1,626 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分库：同一张表按分片键分布在多个库上，每个库一个DbUtilsTemplate
+ * <p/>
+ * sql的顶层WHERE中有AND连接的"分片键 = ?"、或者INSERT的VALUES中分片键是占位符时，只在分片键所在的库执行；
+ * 否则查询并行发到所有库(scatter-gather)，耗时取决于最慢的库而不是各库之和：
+ * <ul>
+ * <li>各库的结果按顶层ORDER BY做多路归并，ORDER BY只能是结果中的列名或列的位置，
+ * 字符串不区分大小写比较(与MySQL默认的*_ci排序规则一致)，null最小</li>
+ * <li>LIMIT和分页在归并后进行，每个库要取offset + limit行，翻页越深代价越大</li>
+ * <li>getCount和findPageResult的总记录数是各库之和；GROUP BY、DISTINCT和聚合函数的结果不会跨库合并</li>
+ * </ul>
+ * 没有分片键的UPDATE/DELETE在所有库执行，返回影响行数之和，各库分别提交；INSERT和batchUpdate必须能确定分片。
+ * 各库的自增主键会重复，分片表的主键应由调用方生成。
+ * <code>
+ * ShardedDbUtilsTemplate template = new ShardedDbUtilsTemplate("id", syncOneDataSource, syncTwoDataSource);
+ * template.insert("INSERT INTO test_student(id,name,gender,age) VALUES (?,?,?,?)", new Object[]{id, name, "男", 18});
+ * PageResult page = template.findPageResult(Student.class, "SELECT * FROM test_student ORDER BY age DESC, id",
+ *         null, 2, 20);
+ * </code>
+ */
+public class ShardedDbUtilsTemplate implements Closeable {
+    private static final int MAX_CACHED_SQL = 1024;
+    private static final RowMapper<Long> LONG_ROW_MAPPER = new RowMapper<Long>() {
+        public Long mapRow(ResultSet rs) throws SQLException {
+            return rs.getLong(1);
+        }
+    };
+
+    private final String shardColumn;
+    private final DbUtilsTemplate[] shards;
+    private final ExecutorService executor;
+    private final ConcurrentMap<String, ShardedSql> parsedSql = new ConcurrentHashMap<String, ShardedSql>();
+
+    /**
+     * @param shardColumn 分片键列名
+     * @param dataSources 各分库，分片键为整数或整数字符串时按 分片键 mod 库数 分配，否则按hashCode分配
+     */
+    public ShardedDbUtilsTemplate(String shardColumn, DataSource... dataSources) {
+        if (dataSources.length == 0) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shardColumn = shardColumn;
+        this.shards = new DbUtilsTemplate[dataSources.length];
+        for (int i = 0; i < dataSources.length; i++) {
+            shards[i] = new DbUtilsTemplate(dataSources[i]);
+        }
+        final AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "shard-query-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * 第index个库的DbUtilsTemplate，可以直接在单个库上执行任意sql
+     */
+    public DbUtilsTemplate getShard(int index) {
+        return shards[index];
+    }
+
+    /**
+     * 分片键所在的库，整数字符串按对应的整数分配，"7"和7L在同一个库
+     */
+    public int shardOf(Object shardKey) {
+        long hash;
+        if (shardKey instanceof Number) {
+            hash = ((Number) shardKey).longValue();
+        } else {
+            Long number = shardKey instanceof CharSequence ? parseLong(shardKey.toString()) : null;
+            hash = number != null ? number : shardKey.hashCode();
+        }
+        return (int) (((hash % shards.length) + shards.length) % shards.length);
+    }
+
+    /**
+     * 十进制整数字符串转为Long，不是整数时返回null
+     */
+    private static Long parseLong(String text) {
+        String s = text.trim();
+        int start = s.startsWith("-") || s.startsWith("+") ? 1 : 0;
+        if (s.length() == start) {
+            return null;
+        }
+        for (int i = start; i < s.length(); i++) {
+            if (s.charAt(i) < '0' || s.charAt(i) > '9') {
+                return null;
+            }
+        }
+        try {
+            return Long.parseLong(s);
+        } catch (NumberFormatException e) {
+            // 超出long范围
+            return null;
+        }
+    }
+
+    /**
+     * 分片键所在库的DbUtilsTemplate
+     */
+    public DbUtilsTemplate shard(Object shardKey) {
+        return shards[shardOf(shardKey)];
+    }
+
+    /**
+     * 执行INSERT、UPDATE或DELETE，没有分片键时在所有库执行
+     *
+     * @return 影响行数之和
+     */
+    public int update(final String sql, final Object[] params) throws SQLException {
+        ShardedSql parsed = parse(sql);
+        int shard = route(parsed, params);
+        if (shard >= 0) {
+            return shards[shard].update(sql, params);
+        }
+        if (parsed.insert) {
+            throw new SQLException("INSERT must bind shard column " + shardColumn + " to a placeholder: " + sql);
+        }
+        List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>(shards.length);
+        for (final DbUtilsTemplate template : shards) {
+            tasks.add(new Callable<Integer>() {
+                public Integer call() throws SQLException {
+                    return template.update(sql, params);
+                }
+            });
+        }
+        int affected = 0;
+        for (Integer count : invokeAll(tasks)) {
+            affected += count;
+        }
+        return affected;
+    }
+
+    /**
+     * 在分片键所在的库执行INSERT
+     *
+     * @return 自增主键，各库的自增主键会重复
+     */
+    public long insert(String sql, Object[] params) throws SQLException {
+        int shard = route(parse(sql), params);
+        if (shard < 0) {
+            throw new SQLException("INSERT must bind shard column " + shardColumn + " to a placeholder: " + sql);
+        }
+        return shards[shard].insert(sql, params);
+    }
+
+    /**
+     * 按分片键把各行分到所在的库，各库并行批量执行
+     *
+     * @return 每行的影响行数，顺序与params一致
+     */
+    public int[] batchUpdate(final String sql, Object[][] params) throws SQLException {
+        ShardedSql parsed = parse(sql);
+        if (parsed.keyParamIndex < 0) {
+            throw new SQLException("Batch must bind shard column " + shardColumn + " to a placeholder: " + sql);
+        }
+        final List<List<Integer>> positions = new ArrayList<List<Integer>>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            positions.add(new ArrayList<Integer>());
+        }
+        for (int i = 0; i < params.length; i++) {
+            positions.get(route(parsed, params[i])).add(i);
+        }
+        List<Callable<int[]>> tasks = new ArrayList<Callable<int[]>>(shards.length);
+        final List<Integer> used = new ArrayList<Integer>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            if (positions.get(i).isEmpty()) {
+                continue;
+            }
+            final DbUtilsTemplate template = shards[i];
+            final Object[][] rows = new Object[positions.get(i).size()][];
+            for (int r = 0; r < rows.length; r++) {
+                rows[r] = params[positions.get(i).get(r)];
+            }
+            used.add(i);
+            tasks.add(new Callable<int[]>() {
+                public int[] call() throws SQLException {
+                    return template.batchUpdate(sql, rows);
+                }
+            });
+        }
+        int[] result = new int[params.length];
+        List<int[]> counts = invokeAll(tasks);
+        for (int t = 0; t < counts.size(); t++) {
+            List<Integer> shardPositions = positions.get(used.get(t));
+            for (int r = 0; r < shardPositions.size(); r++) {
+                result[shardPositions.get(r)] = counts.get(t)[r];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 执行查询，将每行的结果保存到一个Map对象中
+     */
+    public List<Map<String, Object>> find(String sql, Object[] params) throws SQLException {
+        return gather(DbUtilsTemplate.MAP_ROW_MAPPER, null, sql, params, -1, -1);
+    }
+
+    /**
+     * 执行查询，将每行的结果保存到Bean中
+     */
+    public <T> List<T> find(Class<T> entityClass, String sql, Object[] params) throws SQLException {
+        return gather(null, entityClass, sql, params, -1, -1);
+    }
+
+    /**
+     * 执行分页查询，各库的结果归并排序后取第page页
+     *
+     * @param sql      sql语句，不能带LIMIT
+     * @param page     页号，从1开始
+     * @param pageSize 每页记录条数
+     */
+    public <T> List<T> find(Class<T> entityClass, String sql, Object[] params, int page, int pageSize)
+            throws SQLException {
+        return gather(null, entityClass, sql, params, offset(page, pageSize), pageSize);
+    }
+
+    /**
+     * 执行查询，返回排序后的第一行，没有结果时返回null
+     */
+    public <T> T findFirst(Class<T> entityClass, String sql, Object[] params) throws SQLException {
+        List<T> list = gather(null, entityClass, sql, params, 0, 1);
+        return list.isEmpty() ? null : list.get(0);
+    }
+
+    /**
+     * 执行分页查询，当前页和各库的总记录数同时查询
+     */
+    public <T> PageResult findPageResult(final Class<T> entityClass, final String sql, final Object[] params,
+                                         int page, final int pageSize) throws SQLException {
+        final int startPage = page < 1 ? 1 : page;
+        Future<Integer> count = executor.submit(new Callable<Integer>() {
+            public Integer call() throws SQLException {
+                return getCount(sql, params);
+            }
+        });
+        List<T> list = gather(null, entityClass, sql, params, offset(startPage, pageSize), pageSize);
+        int total = await(count);
+        return new PageResult<T>(DbUtilsTemplate.getBeginPage(startPage, pageSize, total), pageSize, list, total);
+    }
+
+    /**
+     * 查询记录总条数，没有分片键时是各库之和
+     */
+    public int getCount(String sql, final Object[] params) throws SQLException {
+        final String countSql = "select count(1) from (" + sql + ") _c";
+        List<Callable<Long>> tasks = new ArrayList<Callable<Long>>(shards.length);
+        for (final DbUtilsTemplate template : targets(parse(sql), params)) {
+            tasks.add(new Callable<Long>() {
+                public Long call() throws SQLException {
+                    ResultCursor<Long> cursor = template.findCursor(LONG_ROW_MAPPER, countSql, params);
+                    try {
+                        return cursor.hasNext() ? cursor.next() : 0L;
+                    } finally {
+                        cursor.close();
+                    }
+                }
+            });
+        }
+        long count = 0;
+        for (Long shardCount : invokeAll(tasks)) {
+            count += shardCount;
+        }
+        return (int) count;
+    }
+
+    /**
+     * 停止查询线程，不关闭各库的连接池
+     */
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private static long offset(int page, int pageSize) {
+        return ((long) (page < 1 ? 1 : page) - 1) * pageSize;
+    }
+
+    private ShardedSql parse(String sql) {
+        ShardedSql parsed = parsedSql.get(sql);
+        if (parsed == null) {
+            parsed = ShardedSql.parse(sql, shardColumn);
+            if (parsedSql.size() < MAX_CACHED_SQL) {
+                parsedSql.put(sql, parsed);
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * 分片键所在的库，不能确定时返回-1
+     */
+    private int route(ShardedSql parsed, Object[] params) throws SQLException {
+        if (parsed.keyParamIndex < 0) {
+            return -1;
+        }
+        if (params == null || params.length <= parsed.keyParamIndex || params[parsed.keyParamIndex] == null) {
+            throw new SQLException("No value for shard column " + shardColumn + ": " + parsed.sql);
+        }
+        return shardOf(params[parsed.keyParamIndex]);
+    }
+
+    private List<DbUtilsTemplate> targets(ShardedSql parsed, Object[] params) throws SQLException {
+        int shard = route(parsed, params);
+        List<DbUtilsTemplate> targets = new ArrayList<DbUtilsTemplate>(shards.length);
+        if (shard >= 0) {
+            targets.add(shards[shard]);
+        } else {
+            Collections.addAll(targets, shards);
+        }
+        return targets;
+    }
+
+    /**
+     * 在相关的库上并行查询，按ORDER BY归并后跳过offset行，最多返回limit行
+     *
+     * @param rowMapper   行映射，为null时按entityClass映射为Bean
+     * @param offset      跳过的行数，limit为-1时使用sql中的LIMIT
+     * @param limit       最多返回的行数，-1表示不限制
+     */
+    private <T> List<T> gather(RowMapper<T> rowMapper, Class<T> entityClass, String sql, Object[] params,
+                               long offset, long limit) throws SQLException {
+        final ShardedSql parsed = parse(sql);
+        if (limit < 0) {
+            offset = parsed.offset;
+            limit = parsed.limit;
+        } else if (parsed.limit >= 0) {
+            throw new SQLException("Paged sharded query must not have its own LIMIT: " + sql);
+        }
+        // 行数以占位符绑定，各页共用同一条sql
+        final String shardSql = limit < 0 ? parsed.sql : parsed.sql + " limit ?";
+        final Object[] shardParams = limit < 0 ? params : appendParam(params, offset + limit);
+        List<Callable<List<SortRow<T>>>> tasks = new ArrayList<Callable<List<SortRow<T>>>>(shards.length);
+        for (final DbUtilsTemplate template : targets(parsed, params)) {
+            final SortRowMapper<T> mapper = new SortRowMapper<T>(rowMapper, entityClass, parsed.orderKeys);
+            tasks.add(new Callable<List<SortRow<T>>>() {
+                public List<SortRow<T>> call() throws SQLException {
+                    List<SortRow<T>> rows = new ArrayList<SortRow<T>>();
+                    ResultCursor<SortRow<T>> cursor = template.findCursor(mapper, shardSql, shardParams);
+                    try {
+                        while (cursor.hasNext()) {
+                            rows.add(cursor.next());
+                        }
+                    } catch (IllegalStateException e) {
+                        if (e.getCause() instanceof SQLException) {
+                            throw (SQLException) e.getCause();
+                        }
+                        throw e;
+                    } finally {
+                        cursor.close();
+                    }
+                    return rows;
+                }
+            });
+        }
+        return merge(invokeAll(tasks), parsed.orderKeys, offset, limit);
+    }
+
+    private static Object[] appendParam(Object[] params, Object param) {
+        int length = params == null ? 0 : params.length;
+        Object[] result = new Object[length + 1];
+        if (length > 0) {
+            System.arraycopy(params, 0, result, 0, length);
+        }
+        result[length] = param;
+        return result;
+    }
+
+    /**
+     * 多路归并各库已排好序的结果，没有ORDER BY时按库的顺序拼接
+     */
+    static <T> List<T> merge(List<List<SortRow<T>>> shardRows, ShardedSql.OrderKey[] orderKeys, long offset,
+                             long limit) {
+        long end = limit < 0 ? Long.MAX_VALUE : offset + limit;
+        List<T> result = new ArrayList<T>();
+        long index = 0;
+        if (orderKeys.length == 0) {
+            for (List<SortRow<T>> rows : shardRows) {
+                for (SortRow<T> row : rows) {
+                    if (index >= end) {
+                        return result;
+                    }
+                    if (index++ >= offset) {
+                        result.add(row.value);
+                    }
+                }
+            }
+            return result;
+        }
+        final Comparator<SortRow<T>> comparator = new SortRowComparator<T>(orderKeys);
+        PriorityQueue<Head<T>> heads = new PriorityQueue<Head<T>>(Math.max(1, shardRows.size()),
+                new Comparator<Head<T>>() {
+                    public int compare(Head<T> a, Head<T> b) {
+                        int c = comparator.compare(a.current(), b.current());
+                        return c != 0 ? c : a.shard - b.shard;
+                    }
+                });
+        for (int i = 0; i < shardRows.size(); i++) {
+            if (!shardRows.get(i).isEmpty()) {
+                heads.add(new Head<T>(i, shardRows.get(i)));
+            }
+        }
+        while (!heads.isEmpty() && index < end) {
+            Head<T> head = heads.poll();
+            if (index++ >= offset) {
+                result.add(head.current().value);
+            }
+            if (++head.position < head.rows.size()) {
+                heads.add(head);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 比较两个排序列的值：null最小，字符串不区分大小写，不同类型的数字按数值比较
+     */
+    @SuppressWarnings("unchecked")
+    static int compareValues(Object a, Object b) {
+        if (a == b) {
+            return 0;
+        }
+        if (a == null) {
+            return -1;
+        }
+        if (b == null) {
+            return 1;
+        }
+        if (a instanceof String && b instanceof String) {
+            return String.CASE_INSENSITIVE_ORDER.compare((String) a, (String) b);
+        }
+        if (a instanceof Number && b instanceof Number && a.getClass() != b.getClass()) {
+            return new BigDecimal(a.toString()).compareTo(new BigDecimal(b.toString()));
+        }
+        if (a instanceof Comparable && a.getClass().isInstance(b)) {
+            return ((Comparable<Object>) a).compareTo(b);
+        }
+        return a.toString().compareTo(b.toString());
+    }
+
+    private <V> List<V> invokeAll(List<Callable<V>> tasks) throws SQLException {
+        if (tasks.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // 最后一个库在当前线程查询
+        List<Future<V>> futures = new ArrayList<Future<V>>(tasks.size() - 1);
+        for (int i = 0; i < tasks.size() - 1; i++) {
+            futures.add(executor.submit(tasks.get(i)));
+        }
+        List<V> results = new ArrayList<V>(tasks.size());
+        try {
+            V last = tasks.get(tasks.size() - 1).call();
+            for (Future<V> future : futures) {
+                results.add(await(future));
+            }
+            results.add(last);
+            return results;
+        } catch (SQLException e) {
+            cancel(futures);
+            throw e;
+        } catch (RuntimeException e) {
+            cancel(futures);
+            throw e;
+        } catch (Exception e) {
+            cancel(futures);
+            throw new SQLException("Sharded query failed", e);
+        }
+    }
+
+    private static void cancel(List<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    private static <V> V await(Future<V> future) throws SQLException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for shards", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new SQLException("Sharded query failed", e.getCause());
+        }
+    }
+
+    /**
+     * 一行映射结果和它的排序列的值
+     */
+    static final class SortRow<T> {
+        final Object[] keys;
+        final T value;
+
+        SortRow(Object[] keys, T value) {
+            this.keys = keys;
+            this.value = value;
+        }
+    }
+
+    /**
+     * 在映射每行的同时取出排序列，第一行时确定列的位置；每次查询一个实例
+     */
+    private static final class SortRowMapper<T> implements RowMapper<SortRow<T>> {
+        private final Class<T> entityClass;
+        private final ShardedSql.OrderKey[] orderKeys;
+        private RowMapper<T> rowMapper;
+        private int[] columns;
+
+        SortRowMapper(RowMapper<T> rowMapper, Class<T> entityClass, ShardedSql.OrderKey[] orderKeys) {
+            this.rowMapper = rowMapper;
+            this.entityClass = entityClass;
+            this.orderKeys = orderKeys;
+        }
+
+        public SortRow<T> mapRow(ResultSet rs) throws SQLException {
+            if (columns == null) {
+                int[] resolved = new int[orderKeys.length];
+                for (int i = 0; i < orderKeys.length; i++) {
+                    try {
+                        resolved[i] = orderKeys[i].position > 0 ? orderKeys[i].position
+                                : rs.findColumn(orderKeys[i].column);
+                    } catch (SQLException e) {
+                        throw new SQLException("ORDER BY " + orderKeys[i].column
+                                + " must be a selected column in a sharded query", e);
+                    }
+                }
+                if (rowMapper == null) {
+                    rowMapper = BeanRowMapper.of(entityClass, rs);
+                }
+                columns = resolved;
+            }
+            Object[] keys = new Object[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                keys[i] = rs.getObject(columns[i]);
+            }
+            return new SortRow<T>(keys, rowMapper.mapRow(rs));
+        }
+    }
+
+    private static final class SortRowComparator<T> implements Comparator<SortRow<T>> {
+        private final ShardedSql.OrderKey[] orderKeys;
+
+        SortRowComparator(ShardedSql.OrderKey[] orderKeys) {
+            this.orderKeys = orderKeys;
+        }
+
+        public int compare(SortRow<T> a, SortRow<T> b) {
+            for (int i = 0; i < orderKeys.length; i++) {
+                int c = compareValues(a.keys[i], b.keys[i]);
+                if (c != 0) {
+                    return orderKeys[i].descending ? -c : c;
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * 归并时一个库的结果和读到的位置
+     */
+    private static final class Head<T> {
+        final int shard;
+        final List<SortRow<T>> rows;
+        int position;
+
+        Head(int shard, List<SortRow<T>> rows) {
+            this.shard = shard;
+            this.rows = rows;
+        }
+
+        SortRow<T> current() {
+            return rows.get(position);
+        }
+    }
+}
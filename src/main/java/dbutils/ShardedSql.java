@@ -0,0 +1,265 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 分库查询对sql的解析结果：分片键绑定在第几个参数上，顶层的ORDER BY和LIMIT
+ */
+final class ShardedSql {
+    private static final Pattern LIMIT = Pattern.compile(
+            "(?i)limit\\s+(\\d+)(?:\\s*,\\s*(\\d+)|\\s+offset\\s+(\\d+))?\\s*");
+    private static final Pattern DIRECTION = Pattern.compile("(?s)(.*?)\\s+(asc|desc)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern IDENTIFIER = Pattern.compile("(?:`?\\w+`?\\.)*`?(\\w+)`?");
+
+    /**
+     * 去掉顶层LIMIT后的sql
+     */
+    final String sql;
+    /**
+     * 分片键对应的参数位置(从0开始)，-1表示不能确定分片
+     */
+    final int keyParamIndex;
+    final boolean insert;
+    final OrderKey[] orderKeys;
+    /**
+     * sql自带的LIMIT，没有时limit为-1
+     */
+    final long offset;
+    final long limit;
+
+    private ShardedSql(String sql, int keyParamIndex, boolean insert, OrderKey[] orderKeys, long offset, long limit) {
+        this.sql = sql;
+        this.keyParamIndex = keyParamIndex;
+        this.insert = insert;
+        this.orderKeys = orderKeys;
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    /**
+     * @param shardColumn 分片键列名
+     * @throws IllegalArgumentException LIMIT不是数字常量
+     */
+    static ShardedSql parse(String sql, String shardColumn) {
+        String trimmed = sql.trim();
+        boolean insert = trimmed.regionMatches(true, 0, "insert", 0, 6)
+                || trimmed.regionMatches(true, 0, "replace", 0, 7);
+        if (insert) {
+            return new ShardedSql(sql, insertKeyIndex(sql, shardColumn), true, new OrderKey[0], 0, -1);
+        }
+        String body = sql;
+        long offset = 0;
+        long limit = -1;
+        int limitAt = SqlScanner.indexOfKeyword(sql, "limit");
+        if (limitAt >= 0) {
+            Matcher m = LIMIT.matcher(sql.substring(limitAt));
+            if (!m.matches()) {
+                throw new IllegalArgumentException("Only LIMIT with constants is supported: " + sql);
+            }
+            if (m.group(2) != null) {
+                offset = Long.parseLong(m.group(1));
+                limit = Long.parseLong(m.group(2));
+            } else {
+                limit = Long.parseLong(m.group(1));
+                offset = m.group(3) == null ? 0 : Long.parseLong(m.group(3));
+            }
+            body = sql.substring(0, limitAt);
+        }
+        return new ShardedSql(body, whereKeyIndex(body, shardColumn), false, orderKeys(body), offset, limit);
+    }
+
+    /**
+     * INSERT INTO t (a, b) VALUES (?, ?)：分片键所在列对应的值必须是占位符，只能有一组VALUES
+     */
+    private static int insertKeyIndex(String sql, String shardColumn) {
+        int values = SqlScanner.indexOfKeyword(sql, "values");
+        if (values < 0) {
+            return -1;
+        }
+        int columnsStart = sql.indexOf('(');
+        if (columnsStart < 0 || columnsStart > values) {
+            return -1;
+        }
+        int tupleStart = sql.indexOf('(', values);
+        int tupleEnd = closingParenthesis(sql, tupleStart);
+        if (tupleEnd < 0 || sql.substring(tupleEnd + 1).trim().startsWith(",")) {
+            return -1;
+        }
+        List<String> columns = splitTopLevel(sql.substring(columnsStart + 1, closingParenthesis(sql, columnsStart)));
+        List<String> tuple = splitTopLevel(sql.substring(tupleStart + 1, tupleEnd));
+        int before = SqlScanner.countPlaceholders(sql.substring(0, tupleStart));
+        for (int i = 0; i < columns.size() && i < tuple.size(); i++) {
+            if (columnName(columns.get(i)).equalsIgnoreCase(shardColumn)) {
+                if (!"?".equals(tuple.get(i).trim())) {
+                    return -1;
+                }
+                return before;
+            }
+            before += SqlScanner.countPlaceholders(tuple.get(i));
+        }
+        return -1;
+    }
+
+    /**
+     * 顶层WHERE中AND连接的 分片键 = ? 条件，WHERE中有顶层OR时不能确定分片
+     */
+    private static int whereKeyIndex(String sql, String shardColumn) {
+        int where = SqlScanner.indexOfKeyword(sql, "where");
+        if (where < 0) {
+            return -1;
+        }
+        String clause = sql.substring(where);
+        if (SqlScanner.indexOfKeyword(clause, "or") >= 0) {
+            return -1;
+        }
+        Matcher m = Pattern.compile("(?i)(?<![\\w.`])(?:`?\\w+`?\\.)?`?" + Pattern.quote(shardColumn)
+                + "`?\\s*=\\s*\\?").matcher(clause);
+        while (m.find()) {
+            if (depth(clause, m.start()) == 0) {
+                return SqlScanner.countPlaceholders(sql.substring(0, where + m.end() - 1));
+            }
+        }
+        return -1;
+    }
+
+    private static OrderKey[] orderKeys(String sql) {
+        int order = SqlScanner.indexOfKeyword(sql, "order");
+        if (order < 0) {
+            return new OrderKey[0];
+        }
+        String clause = sql.substring(order + "order".length()).trim();
+        if (!clause.regionMatches(true, 0, "by", 0, 2)) {
+            return new OrderKey[0];
+        }
+        List<String> items = splitTopLevel(clause.substring(2));
+        OrderKey[] keys = new OrderKey[items.size()];
+        for (int i = 0; i < keys.length; i++) {
+            String item = items.get(i).trim();
+            boolean descending = false;
+            Matcher direction = DIRECTION.matcher(item);
+            if (direction.matches()) {
+                descending = direction.group(2).equalsIgnoreCase("desc");
+                item = direction.group(1);
+            }
+            keys[i] = item.matches("\\d+") ? new OrderKey(null, Integer.parseInt(item), descending)
+                    : new OrderKey(columnName(item), 0, descending);
+        }
+        return keys;
+    }
+
+    /**
+     * 去掉表名前缀和反引号，不是简单列名时原样返回
+     */
+    private static String columnName(String expression) {
+        Matcher m = IDENTIFIER.matcher(expression.trim());
+        return m.matches() ? m.group(1) : expression.trim();
+    }
+
+    /**
+     * 按顶层(不在括号和引号内)的逗号分割
+     */
+    static List<String> splitTopLevel(String s) {
+        List<String> parts = new ArrayList<String>();
+        int depth = 0;
+        char quote = 0;
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                parts.add(s.substring(start, i));
+                start = i + 1;
+            }
+        }
+        parts.add(s.substring(start));
+        return parts;
+    }
+
+    private static int closingParenthesis(String s, int open) {
+        if (open < 0) {
+            return -1;
+        }
+        char quote = 0;
+        int depth = 0;
+        for (int i = open; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * s中end之前未闭合的括号数，不计引号内的括号
+     */
+    private static int depth(String s, int end) {
+        int depth = 0;
+        char quote = 0;
+        for (int i = 0; i < end; i++) {
+            char c = s.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * ORDER BY中的一项：结果集中的列名，或者按位置(从1开始)
+     */
+    static final class OrderKey {
+        final String column;
+        final int position;
+        final boolean descending;
+
+        OrderKey(String column, int position, boolean descending) {
+            this.column = column;
+            this.position = position;
+            this.descending = descending;
+        }
+    }
+}
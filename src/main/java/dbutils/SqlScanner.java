@@ -0,0 +1,201 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 在sql的顶层(不在括号和引号内)查找关键字和占位符，供分页改写sql使用
+ */
+final class SqlScanner {
+    /**
+     * 表名前面的关键字
+     */
+    private static final Set<String> TABLE_KEYWORDS = new HashSet<String>(Arrays.asList(
+            "from", "join", "into", "update"));
+    /**
+     * 表名后面出现这些词时不是别名
+     */
+    private static final Set<String> CLAUSE_KEYWORDS = new HashSet<String>(Arrays.asList(
+            "where", "join", "inner", "left", "right", "outer", "cross", "natural", "straight_join", "on", "using",
+            "group", "having", "order", "limit", "union", "set", "values", "value", "select", "for", "lock",
+            "use", "force", "ignore", "partition", "window"));
+
+    private SqlScanner() {
+    }
+
+    /**
+     * 查找顶层第一次出现的关键字
+     *
+     * @param sql     sql语句
+     * @param keyword 小写关键字，匹配时忽略大小写
+     * @return 关键字的位置，没有时返回-1
+     */
+    static int indexOfKeyword(String sql, String keyword) {
+        int depth = 0;
+        char quote = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (depth == 0 && keywordAt(sql, i, keyword)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 统计引号外的?占位符个数
+     */
+    static int countPlaceholders(String sql) {
+        int count = 0;
+        char quote = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+            } else if (c == '?') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 找出sql中from/join/into/update后面的表名(包括子查询中的)，用于判断缓存是否受写操作影响。
+     * 宁多勿少：引号中的文字也会被扫描，多找出的名字只会让缓存多失效一次
+     *
+     * @return 小写、去掉引号和库名前缀的表名
+     */
+    static Set<String> tableNames(String sql) {
+        Set<String> tables = new HashSet<String>();
+        int i = 0;
+        int length = sql.length();
+        while (i < length) {
+            if (!isIdentifierPart(sql.charAt(i))) {
+                i++;
+                continue;
+            }
+            int end = identifierEnd(sql, i);
+            String word = sql.substring(i, end).toLowerCase();
+            i = end;
+            if (!TABLE_KEYWORDS.contains(word)) {
+                continue;
+            }
+            // from a, b c, d as e
+            while (true) {
+                i = skipWhitespace(sql, i);
+                end = qualifiedNameEnd(sql, i);
+                if (end == i) {
+                    break;
+                }
+                tables.add(unqualify(sql.substring(i, end)));
+                i = skipWhitespace(sql, end);
+                end = identifierEnd(sql, i);
+                String alias = sql.substring(i, end).toLowerCase();
+                if ("as".equals(alias)) {
+                    i = skipWhitespace(sql, end);
+                    end = identifierEnd(sql, i);
+                    i = end;
+                } else if (end > i && !CLAUSE_KEYWORDS.contains(alias) && !TABLE_KEYWORDS.contains(alias)) {
+                    i = end;
+                }
+                i = skipWhitespace(sql, i);
+                if (i < length && sql.charAt(i) == ',') {
+                    i++;
+                } else {
+                    break;
+                }
+            }
+        }
+        return tables;
+    }
+
+    private static int skipWhitespace(String sql, int i) {
+        while (i < sql.length() && Character.isWhitespace(sql.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int identifierEnd(String sql, int i) {
+        while (i < sql.length() && isIdentifierPart(sql.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * 表名结尾，表名可以带库名前缀，可以用`或"引起来
+     */
+    private static int qualifiedNameEnd(String sql, int i) {
+        int end = i;
+        while (end < sql.length()) {
+            char c = sql.charAt(end);
+            if (c == '`' || c == '"') {
+                int close = sql.indexOf(c, end + 1);
+                if (close < 0) {
+                    return end;
+                }
+                end = close + 1;
+            } else if (isIdentifierPart(c)) {
+                end = identifierEnd(sql, end);
+            } else {
+                return end;
+            }
+            if (end < sql.length() && sql.charAt(end) == '.') {
+                end++;
+            } else {
+                return end;
+            }
+        }
+        return end;
+    }
+
+    private static String unqualify(String name) {
+        String table = name.substring(name.lastIndexOf('.') + 1);
+        if (table.length() > 1 && (table.charAt(0) == '`' || table.charAt(0) == '"')) {
+            table = table.substring(1, table.length() - 1);
+        }
+        return table.toLowerCase();
+    }
+
+    private static boolean keywordAt(String sql, int i, String keyword) {
+        int end = i + keyword.length();
+        return sql.regionMatches(true, i, keyword, 0, keyword.length())
+                && (i == 0 || !isIdentifierPart(sql.charAt(i - 1)))
+                && (end == sql.length() || !isIdentifierPart(sql.charAt(end)));
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+}
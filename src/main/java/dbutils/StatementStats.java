@@ -0,0 +1,432 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * 按sql指纹汇总DbUtilsTemplate执行的语句：次数、耗时(总计/平均/最大/直方图)、返回或影响的行数、出错次数
+ * <p/>
+ * 指纹去掉注释，把字符串和数字常量替换为?，IN (?, ?, ...)和多行VALUES合并为(?+)，空白合并为一个空格并转为小写，
+ * 所以只是参数或IN列表长度不同的语句汇总在一起。
+ * 记录只在第一次遇到某个指纹时往ConcurrentHashMap放入一项，之后只有LongAdder累加，不加锁。
+ * 指纹数达到maxFingerprints(默认1000)后，新的指纹汇总到"(other)"中，内存有上限。
+ * <p/>
+ * 超过slowThreshold(默认1秒)的语句连同绑定的参数写到本类的日志(WARN)，每秒最多slowLogPerSecond(默认10)条，
+ * 其余只计数；可以在log4j中把dbutils.StatementStats单独输出到慢查询日志文件。
+ * 查询结果缓存命中时没有执行语句，不计入统计；findCursor/findEach的耗时到游标关闭为止，包括调用方处理各行的时间。
+ * 默认不启用，通过DbUtilsTemplate.setStatementStatsEnabled(true)打开。
+ */
+public final class StatementStats {
+    public static final int DEFAULT_MAX_FINGERPRINTS = 1000;
+    /**
+     * 超出maxFingerprints的指纹汇总到这一项
+     */
+    public static final String OTHER = "(other)";
+    /**
+     * 未启用时start()的返回值
+     */
+    static final long NOT_TIMED = Long.MIN_VALUE;
+
+    private static final Logger LOG = LoggerFactory.getLogger(StatementStats.class);
+    private static final int MAX_CACHED_SQL = 4096;
+    private static final int MAX_FINGERPRINT_LENGTH = 1024;
+    private static final int MAX_LOGGED_VALUE_LENGTH = 200;
+    private static final int MAX_LOGGED_BATCH_ROWS = 3;
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern MULTI_ROW = Pattern.compile("\\(\\?\\+\\)(?:\\s*,\\s*\\(\\?\\+\\))+");
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    /**
+     * 原始sql到指纹，大部分调用方的sql是常量，不用每次计算
+     */
+    private final ConcurrentMap<String, String> fingerprints = new ConcurrentHashMap<String, String>();
+    private volatile boolean enabled;
+    private volatile int maxFingerprints = DEFAULT_MAX_FINGERPRINTS;
+    private volatile long slowThresholdNanos = TimeUnit.SECONDS.toNanos(1);
+    private volatile int slowLogPerSecond = 10;
+
+    private final AtomicLong slowWindow = new AtomicLong();
+    private final AtomicInteger slowLogged = new AtomicInteger();
+    private final LongAdder slowSuppressed = new LongAdder();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * 最多汇总的指纹数，默认1000
+     */
+    public void setMaxFingerprints(int maxFingerprints) {
+        this.maxFingerprints = maxFingerprints;
+    }
+
+    /**
+     * 慢查询的阈值，默认1秒，0表示记录所有语句
+     */
+    public void setSlowThreshold(long threshold, TimeUnit unit) {
+        this.slowThresholdNanos = unit.toNanos(threshold);
+    }
+
+    /**
+     * 每秒最多写入日志的慢查询条数，默认10，0表示不写日志
+     */
+    public void setSlowLogPerSecond(int slowLogPerSecond) {
+        this.slowLogPerSecond = slowLogPerSecond;
+    }
+
+    /**
+     * 开始计时，未启用时返回NOT_TIMED
+     */
+    long start() {
+        return enabled ? System.nanoTime() : NOT_TIMED;
+    }
+
+    /**
+     * 记录一次执行
+     *
+     * @param start  start()的返回值，为NOT_TIMED时不记录
+     * @param rows   返回或影响的行数，负数表示出错
+     * @param params 绑定的参数，为DbUtilsTemplate.SINGLE_PARAM时参数是param；批量时为Object[][]
+     */
+    void record(String sql, long start, long rows, Object[] params, Object param) {
+        if (start == NOT_TIMED) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        Entry entry = entry(sql);
+        entry.latency.record(nanos);
+        if (rows < 0) {
+            entry.errors.increment();
+        } else {
+            entry.rows.add(rows);
+        }
+        if (nanos >= slowThresholdNanos) {
+            entry.slow.increment();
+            logSlow(sql, nanos, rows, params, param);
+        }
+    }
+
+    private Entry entry(String sql) {
+        String fingerprint = fingerprints.get(sql);
+        if (fingerprint == null) {
+            fingerprint = fingerprint(sql);
+            if (fingerprints.size() < MAX_CACHED_SQL) {
+                fingerprints.put(sql, fingerprint);
+            }
+        }
+        Entry entry = entries.get(fingerprint);
+        if (entry == null) {
+            if (entries.size() >= maxFingerprints) {
+                fingerprint = OTHER;
+                entry = entries.get(OTHER);
+            }
+            if (entry == null) {
+                Entry created = new Entry(fingerprint);
+                entry = entries.putIfAbsent(fingerprint, created);
+                if (entry == null) {
+                    entry = created;
+                }
+            }
+        }
+        return entry;
+    }
+
+    private void logSlow(String sql, long nanos, long rows, Object[] params, Object param) {
+        if (!LOG.isWarnEnabled() || !sampleSlow()) {
+            slowSuppressed.increment();
+            return;
+        }
+        StringBuilder message = new StringBuilder(256);
+        message.append("Slow statement ").append(TimeUnit.NANOSECONDS.toMillis(nanos)).append(" ms, ");
+        if (rows < 0) {
+            message.append("failed");
+        } else {
+            message.append(rows).append(" rows");
+        }
+        message.append(": ").append(sql.trim()).append(" params ");
+        if (params == DbUtilsTemplate.SINGLE_PARAM) {
+            message.append('[');
+            appendValue(message, param);
+            message.append(']');
+        } else if (params instanceof Object[][]) {
+            Object[][] batch = (Object[][]) params;
+            message.append(batch.length).append(" rows");
+            for (int i = 0; i < batch.length && i < MAX_LOGGED_BATCH_ROWS; i++) {
+                message.append(' ');
+                appendValues(message, batch[i]);
+            }
+            if (batch.length > MAX_LOGGED_BATCH_ROWS) {
+                message.append(" ...");
+            }
+        } else {
+            appendValues(message, params);
+        }
+        LOG.warn(message.toString());
+    }
+
+    /**
+     * 每秒最多写slowLogPerSecond条，窗口切换时的竞争只会让个别条目多写或少写
+     */
+    private boolean sampleSlow() {
+        long second = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+        long window = slowWindow.get();
+        if (window != second && slowWindow.compareAndSet(window, second)) {
+            slowLogged.set(0);
+        }
+        return slowLogged.incrementAndGet() <= slowLogPerSecond;
+    }
+
+    private static void appendValues(StringBuilder out, Object[] values) {
+        if (values == null) {
+            out.append("[]");
+            return;
+        }
+        out.append('[');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            appendValue(out, values[i]);
+        }
+        out.append(']');
+    }
+
+    private static void appendValue(StringBuilder out, Object value) {
+        if (value == null) {
+            out.append("NULL");
+        } else if (value instanceof byte[]) {
+            out.append('<').append(((byte[]) value).length).append(" bytes>");
+        } else if (value instanceof CharSequence) {
+            String s = value.toString();
+            out.append('\'');
+            if (s.length() > MAX_LOGGED_VALUE_LENGTH) {
+                out.append(s, 0, MAX_LOGGED_VALUE_LENGTH).append("...");
+            } else {
+                out.append(s);
+            }
+            out.append('\'');
+        } else {
+            out.append(value);
+        }
+    }
+
+    /**
+     * 原始sql的统计项，没有执行过时返回null
+     */
+    public Entry get(String sql) {
+        return entries.get(fingerprint(sql));
+    }
+
+    /**
+     * 所有统计项，按总耗时从大到小排列
+     */
+    public List<Entry> getEntries() {
+        List<Entry> list = new ArrayList<Entry>(entries.values());
+        Collections.sort(list, new Comparator<Entry>() {
+            public int compare(Entry a, Entry b) {
+                long x = a.latency.getSumNanos();
+                long y = b.latency.getSumNanos();
+                return x > y ? -1 : x < y ? 1 : 0;
+            }
+        });
+        return list;
+    }
+
+    /**
+     * 因为超过每秒条数没有写入日志的慢查询数
+     */
+    public long getSlowSuppressed() {
+        return slowSuppressed.sum();
+    }
+
+    /**
+     * 清空所有统计项
+     */
+    public void reset() {
+        entries.clear();
+        fingerprints.clear();
+    }
+
+    /**
+     * 计算sql指纹，超过1024个字符的截断
+     */
+    static String fingerprint(String sql) {
+        StringBuilder out = new StringBuilder(Math.min(sql.length(), MAX_FINGERPRINT_LENGTH) + 16);
+        int n = sql.length();
+        int i = 0;
+        boolean space = false;
+        while (i < n && out.length() < MAX_FINGERPRINT_LENGTH) {
+            char c = sql.charAt(i);
+            if (c == '/' && i + 1 < n && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? n : end + 2;
+                space = true;
+            } else if (c == '-' && i + 1 < n && sql.charAt(i + 1) == '-' || c == '#') {
+                int end = sql.indexOf('\n', i);
+                i = end < 0 ? n : end + 1;
+                space = true;
+            } else if (Character.isWhitespace(c)) {
+                i++;
+                space = true;
+            } else {
+                if (space && out.length() > 0) {
+                    out.append(' ');
+                }
+                space = false;
+                if (c == '\'' || c == '"') {
+                    i = skipQuoted(sql, i, c);
+                    out.append('?');
+                } else if (c == '`') {
+                    int end = sql.indexOf('`', i + 1);
+                    end = end < 0 ? n : end;
+                    out.append(sql.substring(i + 1, end).toLowerCase());
+                    i = end + 1;
+                } else if (Character.isDigit(c) && !identifierBefore(out)) {
+                    i++;
+                    while (i < n && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                        i++;
+                    }
+                    out.append('?');
+                } else {
+                    out.append(Character.toLowerCase(c));
+                    i++;
+                }
+            }
+        }
+        String fingerprint = PLACEHOLDER_LIST.matcher(out).replaceAll("(?+)");
+        return MULTI_ROW.matcher(fingerprint).replaceAll("(?+)");
+    }
+
+    /**
+     * 跳过引号中的内容，支持反斜杠转义和连续两个引号
+     *
+     * @return 结束引号之后的位置
+     */
+    private static int skipQuoted(String sql, int start, char quote) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * 数字紧跟在标识符后面时是标识符的一部分，如t1、col_2
+     */
+    private static boolean identifierBefore(StringBuilder out) {
+        if (out.length() == 0) {
+            return false;
+        }
+        char c = out.charAt(out.length() - 1);
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    /**
+     * 一个指纹的统计，读取的是各计数器的近似快照
+     */
+    public static final class Entry {
+        private final String fingerprint;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder slow = new LongAdder();
+
+        Entry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * 执行次数，包括出错的
+         */
+        public long getCount() {
+            return latency.getCount();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        /**
+         * 返回或影响的总行数，不含出错的执行
+         */
+        public long getRows() {
+            return rows.sum();
+        }
+
+        /**
+         * 超过慢查询阈值的次数
+         */
+        public long getSlowCount() {
+            return slow.sum();
+        }
+
+        public double getTotalMillis() {
+            return latency.getSumNanos() / 1e6;
+        }
+
+        public double getMeanMillis() {
+            return latency.getMeanNanos() / 1e6;
+        }
+
+        public double getMaxMillis() {
+            return latency.getMaxNanos() / 1e6;
+        }
+
+        public LatencyHistogram getHistogram() {
+            return latency;
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{fingerprint='" + fingerprint + "', count=" + getCount() + ", errors=" + getErrors()
+                    + ", rows=" + getRows() + ", totalMillis=" + getTotalMillis() + ", meanMillis=" + getMeanMillis()
+                    + ", maxMillis=" + getMaxMillis() + ", p99Millis=" + latency.percentileNanos(99) / 1e6 + '}';
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 合并单行INSERT的后写缓冲
+ * <p/>
+ * insert只把参数放入队列并返回自增主键的Future，后台线程攒够batchSize行或最早一行等待超过maxDelay时，
+ * 按sql分组、每组用一次batchInsert写入并提交。队列满时insert阻塞，形成背压。
+ * <code>
+ * WriteBehindInserter inserter = dbUtilsTemplate.writeBehindInserter(500, 5, TimeUnit.MILLISECONDS, 10000);
+ * Future&lt;Long&gt; id = inserter.insert("INSERT INTO record(description,content) VALUES(?,?)", params);
+ * </code>
+ * 每组在一个事务中写入，整批执行失败时已执行的语句一起回滚，再逐行重试，只有出错的行的Future以异常结束。
+ * insert返回时数据还没有写入，进程退出前必须close以写完队列中的数据。
+ */
+public final class WriteBehindInserter implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(WriteBehindInserter.class);
+
+    private static final Callable<Long> NOT_RUN = new Callable<Long>() {
+        public Long call() {
+            throw new IllegalStateException("Completed by the flusher");
+        }
+    };
+
+    /**
+     * 通知后台线程写完剩余数据后退出的标记
+     */
+    private static final Pending CLOSE = new Pending(null, null);
+
+    private final DbUtilsTemplate template;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<Pending> queue;
+    private final Thread flusher;
+    private final AtomicLong flushCount = new AtomicLong();
+    /**
+     * insert在读锁中检查closed并排队，close在写锁中设置closed，之后不会再有数据排在CLOSE之后
+     */
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private volatile boolean closed;
+
+    WriteBehindInserter(DbUtilsTemplate template, int batchSize, long maxDelay, TimeUnit unit, int capacity) {
+        if (batchSize < 1 || capacity < 1) {
+            throw new IllegalArgumentException("batchSize and capacity must be positive");
+        }
+        this.template = template;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+        this.queue = new ArrayBlockingQueue<Pending>(capacity);
+        this.flusher = new Thread(new Flusher(), "write-behind-inserter");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * 排队插入一条记录，队列满时等待
+     *
+     * @param sql    sql语句
+     * @param params 参数数组
+     * @return 自增主键，没有生成主键时为-1
+     */
+    public Future<Long> insert(String sql, Object[] params) throws InterruptedException {
+        Pending pending = new Pending(sql, params);
+        closeLock.readLock().lockInterruptibly();
+        try {
+            if (closed) {
+                throw new IllegalStateException("WriteBehindInserter is closed");
+            }
+            queue.put(pending);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+        return pending;
+    }
+
+    /**
+     * 已执行的批次数，一个批次是一次executeBatch
+     */
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    /**
+     * 排队等待写入的行数
+     */
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * 停止接收新数据，等待队列中的数据全部写完。
+     * 正在等待排队的insert先排进队列再写完，之后的insert抛出IllegalStateException
+     */
+    public void close() {
+        closeLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(CLOSE);
+                flusher.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        // 正常情况下队列已经为空，以防万一，剩下的Future不能一直等不到结果
+        List<Pending> left = new ArrayList<Pending>();
+        queue.drainTo(left);
+        for (Pending pending : left) {
+            pending.fail(new IllegalStateException("WriteBehindInserter is closed"));
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 按sql分组写入，组内保持排队的顺序
+     */
+    private void flush(List<Pending> batch) {
+        Map<String, List<Pending>> groups = new LinkedHashMap<String, List<Pending>>();
+        for (Pending pending : batch) {
+            if (pending.isCancelled()) {
+                continue;
+            }
+            List<Pending> group = groups.get(pending.sql);
+            if (group == null) {
+                group = new ArrayList<Pending>();
+                groups.put(pending.sql, group);
+            }
+            group.add(pending);
+        }
+        for (Map.Entry<String, List<Pending>> group : groups.entrySet()) {
+            try {
+                insertBatch(group.getKey(), group.getValue());
+            } catch (SQLException e) {
+                LOG.warn("Error occured while attempting to flush " + group.getValue().size()
+                        + " inserts, retrying one by one", e);
+                insertOneByOne(group.getKey(), group.getValue());
+            }
+            flushCount.incrementAndGet();
+        }
+    }
+
+    private void insertBatch(String sql, List<Pending> group) throws SQLException {
+        Object[][] params = new Object[group.size()][];
+        for (int i = 0; i < params.length; i++) {
+            params[i] = group.get(i).params;
+        }
+        long[] keys = template.batchInsert(sql, params);
+        for (int i = 0; i < keys.length; i++) {
+            group.get(i).complete(keys[i]);
+        }
+    }
+
+    private void insertOneByOne(String sql, List<Pending> group) {
+        for (Pending pending : group) {
+            try {
+                pending.complete(template.insert(sql, pending.params));
+            } catch (SQLException e) {
+                pending.fail(e);
+            }
+        }
+    }
+
+    /**
+     * 一条排队的INSERT，兼作返回给调用方的Future
+     */
+    private static final class Pending extends FutureTask<Long> {
+        final String sql;
+        final Object[] params;
+        final long enqueuedAt = System.nanoTime();
+
+        Pending(String sql, Object[] params) {
+            super(NOT_RUN);
+            this.sql = sql;
+            this.params = params;
+        }
+
+        void complete(long key) {
+            set(key);
+        }
+
+        void fail(Throwable e) {
+            setException(e);
+        }
+    }
+
+    private final class Flusher implements Runnable {
+        public void run() {
+            List<Pending> batch = new ArrayList<Pending>(batchSize);
+            boolean closing = false;
+            while (!closing) {
+                try {
+                    Pending first = queue.take();
+                    if (first == CLOSE) {
+                        break;
+                    }
+                    batch.add(first);
+                    long deadline = first.enqueuedAt + maxDelayNanos;
+                    while (batch.size() < batchSize) {
+                        long wait = deadline - System.nanoTime();
+                        Pending next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                        if (next == null) {
+                            break;
+                        }
+                        if (next == CLOSE) {
+                            closing = true;
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                } catch (InterruptedException e) {
+                    // 只有close会让线程退出
+                }
+                flushQuietly(batch);
+            }
+            // close之前已经排队的数据
+            queue.drainTo(batch);
+            batch.remove(CLOSE);
+            while (!batch.isEmpty()) {
+                List<Pending> chunk = new ArrayList<Pending>(batch.subList(0, Math.min(batchSize, batch.size())));
+                batch.subList(0, chunk.size()).clear();
+                flushQuietly(chunk);
+            }
+        }
+
+        private void flushQuietly(List<Pending> batch) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                flush(batch);
+            } catch (RuntimeException e) {
+                LOG.error("Error occured while attempting to flush inserts", e);
+                for (Pending pending : batch) {
+                    pending.fail(e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+}
@@ -8,14 +8,26 @@ package model;
  * To change this template use File | Settings | File Templates
  */
 public class Record {
+    private long id;
     private String description;
     private String content;
 
+    public Record() {
+    }
+
     public Record(String description, String content) {
         this.description = description;
         this.content = content;
     }
 
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
     public String getDescription() {
         return description;
     }
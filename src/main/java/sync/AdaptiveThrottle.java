@@ -0,0 +1,236 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package sync;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按延迟预算自动调节同步速度(AIMD)，避免同步抢占线上查询的数据库资源
+ * <p/>
+ * 同步每次读取或写入一块时报告语句耗时和从连接池取连接的等待时间：
+ * 都在预算之内时块大小加increment，块大小到上限后并发数加1，有暂停时暂停时间减半；
+ * 任何一项超出预算时块大小和并发数减半，已经是最小值时每块之间的暂停时间加倍。
+ * 一次减速之前开始的语句再超出预算不会重复减速，线上负载一来速度只减半一次，而不是每个正在执行的语句各减一次。
+ * <p/>
+ * 块越大语句越慢，所以空闲时块大小稳定在预算能容纳的大小附近；线上负载升高使语句变慢或连接池需要排队时自动退让。
+ * 一个实例可以在多次同步之间复用，保留已经调整好的速度。
+ * <code>
+ * AdaptiveThrottle throttle = new AdaptiveThrottle(200, TimeUnit.MILLISECONDS);
+ * incrementalSync.setThrottle(throttle);
+ * </code>
+ */
+public class AdaptiveThrottle {
+    private static final long RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long MIN_PAUSE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final long latencyBudgetNanos;
+    private long poolWaitBudgetNanos = TimeUnit.MILLISECONDS.toNanos(10);
+    private long maxPauseNanos = TimeUnit.SECONDS.toNanos(5);
+    private int minChunkSize = 100;
+    private int maxChunkSize = 10000;
+    private int increment = 100;
+    private int maxConcurrency = 1;
+
+    private int chunkSize = IncrementalSync.DEFAULT_CHUNK_SIZE;
+    private int concurrency = 1;
+    private long pauseNanos;
+    private long lastDecreaseNanos = System.nanoTime();
+    private long backoffs;
+    private long lastLatencyNanos;
+    private int activeWriters;
+
+    private long windowStart = System.nanoTime();
+    private long windowRows;
+    private double rowsPerSecond;
+
+    /**
+     * @param latencyBudget 读取或写入一块允许的最长时间
+     */
+    public AdaptiveThrottle(long latencyBudget, TimeUnit unit) {
+        if (latencyBudget <= 0) {
+            throw new IllegalArgumentException("latencyBudget must be positive: " + latencyBudget);
+        }
+        this.latencyBudgetNanos = unit.toNanos(latencyBudget);
+    }
+
+    /**
+     * 从连接池取连接允许的等待时间，默认10毫秒，超过说明连接池已被线上请求占满
+     */
+    public synchronized void setPoolWaitBudget(long poolWaitBudget, TimeUnit unit) {
+        this.poolWaitBudgetNanos = unit.toNanos(poolWaitBudget);
+    }
+
+    /**
+     * 块之间的最长暂停时间，默认5秒
+     */
+    public synchronized void setMaxPause(long maxPause, TimeUnit unit) {
+        this.maxPauseNanos = unit.toNanos(maxPause);
+    }
+
+    /**
+     * 块大小的范围，默认100到10000行，初始为1000行
+     */
+    public synchronized void setChunkSizeRange(int min, int max) {
+        if (min < 1 || max < min) {
+            throw new IllegalArgumentException("Invalid chunk size range: " + min + ".." + max);
+        }
+        this.minChunkSize = min;
+        this.maxChunkSize = max;
+        this.chunkSize = Math.max(min, Math.min(max, chunkSize));
+    }
+
+    /**
+     * 每次加速时块大小增加的行数，默认100
+     */
+    public synchronized void setIncrement(int increment) {
+        if (increment < 1) {
+            throw new IllegalArgumentException("increment must be positive: " + increment);
+        }
+        this.increment = increment;
+    }
+
+    /**
+     * 设置最大并发数，即并行写入的分区数，由IncrementalSync按applyParallelism设置
+     */
+    synchronized void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+        this.concurrency = Math.min(Math.max(1, concurrency), maxConcurrency);
+        notifyAll();
+    }
+
+    /**
+     * 报告一次读取或写入
+     *
+     * @param startNanos    开始取连接的时间
+     * @param poolWaitNanos 取连接的等待时间
+     * @param latencyNanos  语句(写入时包括提交)的耗时
+     */
+    synchronized void observe(long startNanos, long poolWaitNanos, long latencyNanos) {
+        lastLatencyNanos = latencyNanos;
+        if (latencyNanos <= latencyBudgetNanos && poolWaitNanos <= poolWaitBudgetNanos) {
+            increase();
+        } else if (startNanos - lastDecreaseNanos >= 0) {
+            decrease();
+        }
+    }
+
+    private void increase() {
+        if (pauseNanos > 0) {
+            pauseNanos = pauseNanos / 2 < MIN_PAUSE_NANOS ? 0 : pauseNanos / 2;
+        } else if (chunkSize < maxChunkSize) {
+            chunkSize = Math.min(maxChunkSize, chunkSize + increment);
+        } else if (concurrency < maxConcurrency) {
+            concurrency++;
+            notifyAll();
+        }
+    }
+
+    private void decrease() {
+        lastDecreaseNanos = System.nanoTime();
+        backoffs++;
+        if (chunkSize > minChunkSize || concurrency > 1) {
+            chunkSize = Math.max(minChunkSize, chunkSize / 2);
+            concurrency = Math.max(1, concurrency / 2);
+        } else {
+            pauseNanos = Math.min(maxPauseNanos, Math.max(MIN_PAUSE_NANOS, pauseNanos * 2));
+        }
+    }
+
+    /**
+     * 报告写入完成的行数，用来计算速度
+     */
+    synchronized void rowsApplied(int rows) {
+        long now = System.nanoTime();
+        windowRows += rows;
+        if (now - windowStart >= RATE_WINDOW_NANOS) {
+            rowsPerSecond = windowRows * 1e9 / (now - windowStart);
+            windowStart = now;
+            windowRows = 0;
+        }
+    }
+
+    /**
+     * 需要减速时在块之间暂停
+     */
+    void pause() throws InterruptedException {
+        long nanos;
+        synchronized (this) {
+            nanos = pauseNanos;
+        }
+        if (nanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        }
+    }
+
+    /**
+     * 开始写入之前等待，同时写入的线程数不超过当前并发数
+     */
+    synchronized void acquireWriter() throws InterruptedException {
+        while (activeWriters >= concurrency) {
+            wait();
+        }
+        activeWriters++;
+    }
+
+    synchronized void releaseWriter() {
+        activeWriters--;
+        notifyAll();
+    }
+
+    public synchronized int getChunkSize() {
+        return chunkSize;
+    }
+
+    public synchronized int getConcurrency() {
+        return concurrency;
+    }
+
+    public synchronized long getPauseMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(pauseNanos);
+    }
+
+    /**
+     * 减速的次数
+     */
+    public synchronized long getBackoffs() {
+        return backoffs;
+    }
+
+    /**
+     * 最近一次读取或写入的耗时
+     */
+    public synchronized long getLastLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastLatencyNanos);
+    }
+
+    /**
+     * 当前的写入速度(行/秒)，即上一个1秒窗口的速度；还没有完整的窗口或者已经超过1秒没有写入时按当前窗口计算
+     */
+    public synchronized double getRowsPerSecond() {
+        long elapsed = System.nanoTime() - windowStart;
+        if (elapsed >= RATE_WINDOW_NANOS || rowsPerSecond == 0 && elapsed > 0) {
+            return windowRows * 1e9 / elapsed;
+        }
+        return rowsPerSecond;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "AdaptiveThrottle{chunkSize=" + chunkSize + ", concurrency=" + concurrency + ", pause="
+                + getPauseMillis() + "ms, backoffs=" + backoffs + ", rowsPerSecond=" + Math.round(getRowsPerSecond())
+                + '}';
+    }
+}
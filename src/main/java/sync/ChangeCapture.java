@@ -0,0 +1,379 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package sync;
+
+import org.apache.commons.dbutils.DbUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于触发器的变更捕获：源库表的每次插入、更新和删除由触发器写一行(seq, 表名, 主键, 操作)到sync_change_log，
+ * 这里按seq分批读取日志，把变化的行同步到目标库，再删除已同步的日志。
+ * 和按修改时间增量同步相比，不用扫描源表，能同步删除，延迟取决于轮询间隔。
+ * <p/>
+ * 同步时不回放日志中的操作，而是按主键到源库读取行的当前状态：行存在就upsert到目标库，不存在就从目标库删除，
+ * 所以一批中同一主键的多次变化只同步一次，重复同步同一批日志也没有副作用。
+ * 日志按读到的seq逐个删除而不是按范围删除，seq较小但提交较晚的日志不会被误删，下次轮询再同步。
+ * <p/>
+ * 触发器用的是MySQL的语法，主键必须是单列整数；MySQL 5.7以前每张表每种事件只能有一个AFTER触发器。
+ * 安装触发器之后再用{@link IncrementalSync}或{@link ChecksumDiff}做一次全量复制，之后只需轮询日志。
+ * <code>
+ * ChangeCapture capture = new ChangeCapture(syncOneDataSource, syncTwoDataSource,
+ *         SyncTable.record(), SyncTable.student(), SyncTable.team());
+ * capture.install();
+ * capture.start(200, TimeUnit.MILLISECONDS);
+ * ...
+ * capture.close();
+ * </code>
+ */
+public class ChangeCapture implements Closeable {
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS sync_change_log ("
+            + "seq bigint NOT NULL AUTO_INCREMENT, table_name varchar(64) NOT NULL, pk bigint NOT NULL, "
+            + "op char(1) NOT NULL, PRIMARY KEY (seq))";
+    private static final Logger LOG = LoggerFactory.getLogger(ChangeCapture.class);
+
+    private final DataSource source;
+    private final DataSource target;
+    private final Map<String, SyncTable> tables = new LinkedHashMap<String, SyncTable>();
+    private volatile int batchSize = DEFAULT_BATCH_SIZE;
+    private final AtomicLong changesApplied = new AtomicLong();
+    private final AtomicLong rowsUpserted = new AtomicLong();
+    private final AtomicLong rowsDeleted = new AtomicLong();
+    private Thread tailer;
+    private boolean running;
+
+    /**
+     * @param source 安装触发器和日志表的源库
+     * @param target 目标库
+     * @param tables 捕获变更的表
+     */
+    public ChangeCapture(DataSource source, DataSource target, SyncTable... tables) {
+        this.source = source;
+        this.target = target;
+        for (SyncTable table : tables) {
+            this.tables.put(table.getName().toLowerCase(), table);
+        }
+    }
+
+    /**
+     * 每批读取的日志条数，默认1000
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * 在源库创建日志表，并为每张表重新创建插入、更新和删除的触发器
+     */
+    public void install() throws SQLException {
+        List<String> sqls = new ArrayList<String>();
+        sqls.add(CREATE_TABLE);
+        for (SyncTable table : tables.values()) {
+            sqls.addAll(dropTriggerSql(table));
+            sqls.addAll(triggerSql(table));
+        }
+        execute(source, sqls);
+        LOG.info("Installed change capture triggers on " + tables.keySet());
+    }
+
+    /**
+     * 删除源库中的触发器，保留日志表
+     */
+    public void uninstall() throws SQLException {
+        List<String> sqls = new ArrayList<String>();
+        for (SyncTable table : tables.values()) {
+            sqls.addAll(dropTriggerSql(table));
+        }
+        execute(source, sqls);
+    }
+
+    /**
+     * 创建日志表，不安装触发器
+     */
+    void createChangeLog() throws SQLException {
+        execute(source, Arrays.asList(CREATE_TABLE));
+    }
+
+    /**
+     * 一张表的三个触发器。更新了主键时先记录旧主键的删除
+     */
+    static List<String> triggerSql(SyncTable table) {
+        String insert = "INSERT INTO sync_change_log (table_name, pk, op) VALUES ('" + table.getName() + "', ";
+        String key = table.getKeyColumn();
+        return Arrays.asList(
+                "CREATE TRIGGER " + triggerName(table, "ai") + " AFTER INSERT ON " + table.getName()
+                        + " FOR EACH ROW " + insert + "NEW." + key + ", 'I')",
+                "CREATE TRIGGER " + triggerName(table, "au") + " AFTER UPDATE ON " + table.getName()
+                        + " FOR EACH ROW BEGIN IF OLD." + key + " <> NEW." + key + " THEN "
+                        + insert + "OLD." + key + ", 'D'); END IF; " + insert + "NEW." + key + ", 'U'); END",
+                "CREATE TRIGGER " + triggerName(table, "ad") + " AFTER DELETE ON " + table.getName()
+                        + " FOR EACH ROW " + insert + "OLD." + key + ", 'D')");
+    }
+
+    static List<String> dropTriggerSql(SyncTable table) {
+        List<String> sqls = new ArrayList<String>(3);
+        for (String event : new String[]{"ai", "au", "ad"}) {
+            sqls.add("DROP TRIGGER IF EXISTS " + triggerName(table, event));
+        }
+        return sqls;
+    }
+
+    private static String triggerName(SyncTable table, String event) {
+        return "sync_" + table.getName() + "_" + event;
+    }
+
+    /**
+     * 读取一批日志，同步到目标库并提交后删除这些日志
+     *
+     * @return 本批处理的日志条数，小于batchSize说明日志已经读完
+     */
+    public int poll() throws SQLException {
+        Connection sourceConn = null;
+        Connection targetConn = null;
+        boolean autoCommit = true;
+        try {
+            sourceConn = source.getConnection();
+            List<Long> seqs = new ArrayList<Long>();
+            Map<String, Set<Long>> changed = readLog(sourceConn, seqs);
+            if (seqs.isEmpty()) {
+                if (!sourceConn.getAutoCommit()) {
+                    sourceConn.commit();
+                }
+                return 0;
+            }
+            targetConn = target.getConnection();
+            autoCommit = targetConn.getAutoCommit();
+            targetConn.setAutoCommit(false);
+            long upserted = 0;
+            long deleted = 0;
+            for (Map.Entry<String, Set<Long>> entry : changed.entrySet()) {
+                SyncTable table = tables.get(entry.getKey());
+                if (table == null) {
+                    LOG.warn("Discarding " + entry.getValue().size() + " changes of unknown table " + entry.getKey());
+                    continue;
+                }
+                List<Long> keys = new ArrayList<Long>(entry.getValue());
+                IncrementalSync.Chunk chunk = IncrementalSync.select(sourceConn, table, "SELECT * FROM "
+                        + table.getName() + " WHERE " + table.getKeyColumn() + " IN ("
+                        + ChecksumDiff.placeholders(keys.size()) + ")", keys.size(), keys.toArray());
+                IncrementalSync.upsert(targetConn, table, chunk.columns, chunk.rows);
+                upserted += chunk.rows.size();
+                Set<Long> gone = entry.getValue();
+                for (Object[] row : chunk.rows) {
+                    gone.remove(((Number) row[chunk.keyIndex]).longValue());
+                }
+                if (!gone.isEmpty()) {
+                    deleted += delete(targetConn, "DELETE FROM " + table.getName() + " WHERE "
+                            + table.getKeyColumn() + " IN (", new ArrayList<Long>(gone));
+                }
+            }
+            targetConn.commit();
+            // 目标库提交之后才删除日志，在这之间退出的话下次会重复同步这一批
+            delete(sourceConn, "DELETE FROM sync_change_log WHERE seq IN (", seqs);
+            if (!sourceConn.getAutoCommit()) {
+                sourceConn.commit();
+            }
+            changesApplied.addAndGet(seqs.size());
+            rowsUpserted.addAndGet(upserted);
+            rowsDeleted.addAndGet(deleted);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Applied " + seqs.size() + " changes: " + upserted + " upserted, " + deleted + " deleted");
+            }
+            return seqs.size();
+        } catch (SQLException e) {
+            IncrementalSync.rollbackQuietly(targetConn);
+            IncrementalSync.rollbackQuietly(sourceConn);
+            throw e;
+        } finally {
+            DbUtils.closeQuietly(sourceConn);
+            IncrementalSync.close(targetConn, autoCommit);
+        }
+    }
+
+    /**
+     * 按seq顺序读取一批日志，合并成每张表变化的主键
+     *
+     * @param seqs 读到的seq
+     */
+    private Map<String, Set<Long>> readLog(Connection conn, List<Long> seqs) throws SQLException {
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = conn.prepareStatement("SELECT seq, table_name, pk FROM sync_change_log ORDER BY seq LIMIT "
+                    + batchSize);
+            rs = stmt.executeQuery();
+            Map<String, Set<Long>> changed = new LinkedHashMap<String, Set<Long>>();
+            while (rs.next()) {
+                seqs.add(rs.getLong(1));
+                String table = rs.getString(2).toLowerCase();
+                Set<Long> keys = changed.get(table);
+                if (keys == null) {
+                    keys = new LinkedHashSet<Long>();
+                    changed.put(table, keys);
+                }
+                keys.add(rs.getLong(3));
+            }
+            return changed;
+        } finally {
+            DbUtils.closeQuietly(rs);
+            DbUtils.closeQuietly(stmt);
+        }
+    }
+
+    /**
+     * 执行 prefix + 占位符列表 + ")"
+     */
+    private static int delete(Connection conn, String prefix, List<Long> keys) throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement(prefix + ChecksumDiff.placeholders(keys.size()) + ")");
+        try {
+            for (int i = 0; i < keys.size(); i++) {
+                stmt.setLong(i + 1, keys.get(i));
+            }
+            return stmt.executeUpdate();
+        } finally {
+            DbUtils.closeQuietly(stmt);
+        }
+    }
+
+    private static void execute(DataSource dataSource, List<String> sqls) throws SQLException {
+        Connection conn = dataSource.getConnection();
+        Statement stmt = null;
+        try {
+            stmt = conn.createStatement();
+            for (String sql : sqls) {
+                stmt.execute(sql);
+            }
+            if (!conn.getAutoCommit()) {
+                conn.commit();
+            }
+        } finally {
+            DbUtils.closeQuietly(conn, stmt, null);
+        }
+    }
+
+    /**
+     * 启动后台线程不断轮询日志：一批读满时立即读下一批，否则等待interval后再读；出错时记录日志，等待后重试
+     */
+    public synchronized void start(long interval, TimeUnit unit) {
+        if (tailer != null) {
+            throw new IllegalStateException("Change capture already started");
+        }
+        final long intervalMillis = Math.max(1, unit.toMillis(interval));
+        running = true;
+        tailer = new Thread(new Runnable() {
+            public void run() {
+                tail(intervalMillis);
+            }
+        }, "sync-capture");
+        tailer.setDaemon(true);
+        tailer.start();
+    }
+
+    private void tail(long intervalMillis) {
+        try {
+            while (isRunning()) {
+                int changes;
+                try {
+                    changes = poll();
+                } catch (SQLException e) {
+                    LOG.error("Failed to apply captured changes", e);
+                    changes = 0;
+                }
+                if (changes < batchSize) {
+                    pause(intervalMillis);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized boolean isRunning() {
+        return running;
+    }
+
+    private synchronized void pause(long millis) throws InterruptedException {
+        if (running) {
+            wait(millis);
+        }
+    }
+
+    /**
+     * 停止后台线程，等待正在同步的一批完成
+     */
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            thread = tailer;
+            tailer = null;
+            running = false;
+            notifyAll();
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 已同步并删除的日志条数
+     */
+    public long getChangesApplied() {
+        return changesApplied.get();
+    }
+
+    /**
+     * upsert到目标库的行数，一批中同一主键的多次变化只算一行
+     */
+    public long getRowsUpserted() {
+        return rowsUpserted.get();
+    }
+
+    /**
+     * 从目标库删除的行数
+     */
+    public long getRowsDeleted() {
+        return rowsDeleted.get();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package sync;
+
+import java.sql.Timestamp;
+
+/**
+ * 同步进度：所处阶段、本阶段的起始水位，以及最后一块已提交的行的游标位置
+ */
+public class Checkpoint {
+    public enum Phase {
+        /**
+         * 按主键全量复制，since为复制开始时源库的最大修改时间
+         */
+        FULL_COPY,
+        /**
+         * 增量同步，since为本次同步的水位
+         */
+        INCREMENTAL,
+        /**
+         * 同步完成，since为下次同步的水位
+         */
+        DONE
+    }
+
+    private final String table;
+    private final Phase phase;
+    private final Timestamp since;
+    private final Object lastKey;
+    private final Timestamp lastWatermark;
+    private final long chunkId;
+
+    /**
+     * @param table         表名
+     * @param phase         阶段
+     * @param since         水位，含义见Phase
+     * @param lastKey       本阶段最后一块已提交的行的主键，null表示本阶段还没有提交过
+     * @param lastWatermark 这一行的修改时间
+     * @param chunkId       本阶段已提交的块数
+     */
+    public Checkpoint(String table, Phase phase, Timestamp since, Object lastKey, Timestamp lastWatermark,
+                      long chunkId) {
+        this.table = table;
+        this.phase = phase;
+        this.since = since;
+        this.lastKey = lastKey;
+        this.lastWatermark = lastWatermark;
+        this.chunkId = chunkId;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public Timestamp getSince() {
+        return since;
+    }
+
+    public Object getLastKey() {
+        return lastKey;
+    }
+
+    public Timestamp getLastWatermark() {
+        return lastWatermark;
+    }
+
+    public long getChunkId() {
+        return chunkId;
+    }
+
+    @Override
+    public String toString() {
+        return table + " " + phase + " since " + since + ", chunk " + chunkId + " at (" + lastWatermark + ", "
+                + lastKey + ")";
+    }
+}
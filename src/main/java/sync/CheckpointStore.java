@@ -0,0 +1,30 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package sync;
+
+import java.sql.SQLException;
+
+/**
+ * 保存同步进度，IncrementalSync每提交一块保存一次，重启后从保存的位置继续
+ */
+public interface CheckpointStore {
+    /**
+     * @return 表的同步进度，没有时返回null
+     */
+    Checkpoint load(String table) throws SQLException;
+
+    void save(Checkpoint checkpoint) throws SQLException;
+}
@@ -0,0 +1,62 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package sync;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * 各数据库计算行校验和及按范围汇总的sql写法，两边必须使用同一种
+ */
+enum ChecksumDialect {
+    /**
+     * BIT_XOR(CRC32(...))
+     */
+    MYSQL("CRC32", "BIT_XOR"),
+    /**
+     * H2没有BIT_XOR和CRC32，用SUM(ORA_HASH(...))，同样与行的顺序无关
+     */
+    H2("ORA_HASH", "SUM");
+
+    private final String hashFunction;
+    private final String aggregateFunction;
+
+    ChecksumDialect(String hashFunction, String aggregateFunction) {
+        this.hashFunction = hashFunction;
+        this.aggregateFunction = aggregateFunction;
+    }
+
+    static ChecksumDialect of(Connection conn) throws SQLException {
+        return conn.getMetaData().getDatabaseProductName().toUpperCase().contains("H2") ? H2 : MYSQL;
+    }
+
+    /**
+     * 一行的校验和。CONCAT_WS会跳过null，最后再拼上各列是否为null，区分null和空串以及null所在的列
+     */
+    String rowHash(String[] columns) {
+        StringBuilder hash = new StringBuilder(hashFunction).append("(CONCAT_WS('#'");
+        StringBuilder nulls = new StringBuilder("CONCAT(''");
+        for (String column : columns) {
+            hash.append(", ").append(column);
+            nulls.append(", CASE WHEN ").append(column).append(" IS NULL THEN '1' ELSE '0' END");
+        }
+        return hash.append(", ").append(nulls).append(")))").toString();
+    }
+
+    String aggregate(String rowHash) {
+        return aggregateFunction + "(" + rowHash + ")";
+    }
+}
@@ -0,0 +1,432 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package sync;
+
+import org.apache.commons.dbutils.DbUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 按主键范围比较源库和目标库中同一张表的差异，并可按差异修复目标库
+ * <p/>
+ * 先在两边并行计算整个主键范围的行数和校验和(MySQL中为BIT_XOR(CRC32(CONCAT_WS(...))))，
+ * 不一致的范围再切成fanout段分别比较，范围内的行不超过leafSize时才逐行读取(主键, 行校验和)比较。
+ * 只有不一致的叶子范围的行校验和和修复时不一致的行会传到客户端，大表中少量不一致时很快就能定位。
+ * <p/>
+ * 主键必须是整数。比较的是执行时两边各自的快照，同步还在进行时可能报告正在同步的行。
+ * <code>
+ * ChecksumDiff checksumDiff = new ChecksumDiff(syncOneDataSource, syncTwoDataSource);
+ * DiffResult diff = checksumDiff.diff(SyncTable.record());
+ * if (!diff.isConsistent()) {
+ *     checksumDiff.repair(diff);
+ * }
+ * </code>
+ */
+public class ChecksumDiff {
+    public static final int DEFAULT_LEAF_SIZE = 1000;
+    public static final int DEFAULT_FANOUT = 16;
+    public static final int DEFAULT_PARALLELISM = 4;
+    private static final Logger LOG = LoggerFactory.getLogger(ChecksumDiff.class);
+
+    private final DataSource source;
+    private final DataSource target;
+    private volatile int leafSize = DEFAULT_LEAF_SIZE;
+    private volatile int fanout = DEFAULT_FANOUT;
+    private volatile int parallelism = DEFAULT_PARALLELISM;
+
+    public ChecksumDiff(DataSource source, DataSource target) {
+        this.source = source;
+        this.target = target;
+    }
+
+    /**
+     * 范围内的行数或主键跨度不超过leafSize时逐行比较，默认1000
+     */
+    public void setLeafSize(int leafSize) {
+        if (leafSize < 1) {
+            throw new IllegalArgumentException("leafSize must be positive: " + leafSize);
+        }
+        this.leafSize = leafSize;
+    }
+
+    /**
+     * 不一致的范围切成的段数，默认16
+     */
+    public void setFanout(int fanout) {
+        if (fanout < 2) {
+            throw new IllegalArgumentException("fanout must be at least 2: " + fanout);
+        }
+        this.fanout = fanout;
+    }
+
+    /**
+     * 每边同时执行的查询数，默认4
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    public DiffResult diff(SyncTable table) throws SQLException {
+        long start = System.nanoTime();
+        DiffResult result = new DiffResult(table);
+        ChecksumDialect dialect = dialect();
+        String rowHash = dialect.rowHash(columns(table));
+        String key = table.getKeyColumn();
+        String where = " FROM " + table.getName() + " WHERE " + key + " BETWEEN ? AND ?";
+        String rangeSql = "SELECT COUNT(*), " + dialect.aggregate(rowHash) + where;
+        String rowsSql = "SELECT " + key + ", " + rowHash + where + " ORDER BY " + key;
+
+        ExecutorService executor = Executors.newFixedThreadPool(2 * parallelism);
+        try {
+            long[] sourceBounds = bounds(source, table);
+            long[] targetBounds = bounds(target, table);
+            List<long[]> ranges = new ArrayList<long[]>();
+            if (sourceBounds != null || targetBounds != null) {
+                ranges.add(new long[]{
+                        Math.min(sourceBounds == null ? Long.MAX_VALUE : sourceBounds[0],
+                                targetBounds == null ? Long.MAX_VALUE : targetBounds[0]),
+                        Math.max(sourceBounds == null ? Long.MIN_VALUE : sourceBounds[1],
+                                targetBounds == null ? Long.MIN_VALUE : targetBounds[1])});
+            }
+            List<long[]> leaves = new ArrayList<long[]>();
+            // 每一层的所有范围在两边同时计算校验和，不一致的切分后进入下一层
+            while (!ranges.isEmpty()) {
+                List<Future<Checksum>> sourceSums = checksums(executor, source, rangeSql, ranges);
+                List<Future<Checksum>> targetSums = checksums(executor, target, rangeSql, ranges);
+                List<long[]> next = new ArrayList<long[]>();
+                for (int i = 0; i < ranges.size(); i++) {
+                    Checksum sourceSum = await(sourceSums.get(i));
+                    Checksum targetSum = await(targetSums.get(i));
+                    if (!sourceSum.equals(targetSum)) {
+                        long[] range = ranges.get(i);
+                        if (Math.max(sourceSum.count, targetSum.count) <= leafSize
+                                || range[1] - range[0] < leafSize) {
+                            leaves.add(range);
+                        } else {
+                            next.addAll(split(range));
+                        }
+                    }
+                }
+                result.rangesCompared += ranges.size();
+                ranges = next;
+            }
+
+            List<Future<List<RowHash>>> sourceRows = rowHashes(executor, source, rowsSql, leaves);
+            List<Future<List<RowHash>>> targetRows = rowHashes(executor, target, rowsSql, leaves);
+            for (int i = 0; i < leaves.size(); i++) {
+                compare(await(sourceRows.get(i)), await(targetRows.get(i)), result);
+            }
+            result.leafRanges = leaves.size();
+        } finally {
+            executor.shutdownNow();
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        LOG.info("Compared " + result);
+        return result;
+    }
+
+    /**
+     * 从源库复制缺少和不一致的行到目标库，删除目标库多出的行，每leafSize个主键提交一次
+     *
+     * @return 目标库的影响行数
+     */
+    public int repair(DiffResult diff) throws SQLException {
+        SyncTable table = diff.getTable();
+        List<Long> copyKeys = new ArrayList<Long>(diff.missingKeys);
+        copyKeys.addAll(diff.changedKeys);
+        Connection sourceConn = null;
+        Connection targetConn = null;
+        boolean autoCommit = true;
+        int affected = 0;
+        try {
+            sourceConn = source.getConnection();
+            targetConn = target.getConnection();
+            autoCommit = targetConn.getAutoCommit();
+            targetConn.setAutoCommit(false);
+            for (int from = 0; from < copyKeys.size(); from += leafSize) {
+                List<Long> keys = copyKeys.subList(from, Math.min(copyKeys.size(), from + leafSize));
+                IncrementalSync.Chunk chunk = IncrementalSync.select(sourceConn, table, "SELECT * FROM "
+                        + table.getName() + " WHERE " + table.getKeyColumn() + " IN (" + placeholders(keys.size())
+                        + ")", keys.size(), keys.toArray());
+                affected += IncrementalSync.upsert(targetConn, table, chunk.columns, chunk.rows);
+                targetConn.commit();
+            }
+            if (!sourceConn.getAutoCommit()) {
+                sourceConn.commit();
+            }
+            for (int from = 0; from < diff.extraKeys.size(); from += leafSize) {
+                List<Long> keys = diff.extraKeys.subList(from, Math.min(diff.extraKeys.size(), from + leafSize));
+                PreparedStatement stmt = targetConn.prepareStatement("DELETE FROM " + table.getName() + " WHERE "
+                        + table.getKeyColumn() + " IN (" + placeholders(keys.size()) + ")");
+                try {
+                    for (int i = 0; i < keys.size(); i++) {
+                        stmt.setLong(i + 1, keys.get(i));
+                    }
+                    affected += stmt.executeUpdate();
+                } finally {
+                    DbUtils.closeQuietly(stmt);
+                }
+                targetConn.commit();
+            }
+            return affected;
+        } catch (SQLException e) {
+            IncrementalSync.rollbackQuietly(targetConn);
+            throw e;
+        } finally {
+            DbUtils.closeQuietly(sourceConn);
+            IncrementalSync.close(targetConn, autoCommit);
+        }
+    }
+
+    /**
+     * 两边都是同一种数据库时才能比较校验和
+     */
+    private ChecksumDialect dialect() throws SQLException {
+        ChecksumDialect sourceDialect = dialect(source);
+        if (sourceDialect != dialect(target)) {
+            throw new SQLException("Source and target compute different checksums");
+        }
+        return sourceDialect;
+    }
+
+    private static ChecksumDialect dialect(DataSource dataSource) throws SQLException {
+        Connection conn = dataSource.getConnection();
+        try {
+            return ChecksumDialect.of(conn);
+        } finally {
+            DbUtils.closeQuietly(conn);
+        }
+    }
+
+    /**
+     * 源库表的所有列
+     */
+    private String[] columns(SyncTable table) throws SQLException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = source.getConnection();
+            stmt = conn.prepareStatement("SELECT * FROM " + table.getName() + " WHERE 1 = 0");
+            rs = stmt.executeQuery();
+            ResultSetMetaData rsmd = rs.getMetaData();
+            String[] columns = new String[rsmd.getColumnCount()];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = rsmd.getColumnLabel(i + 1);
+            }
+            return columns;
+        } finally {
+            DbUtils.closeQuietly(conn, stmt, rs);
+        }
+    }
+
+    /**
+     * 最小和最大主键，空表时返回null
+     */
+    private static long[] bounds(DataSource dataSource, SyncTable table) throws SQLException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = dataSource.getConnection();
+            stmt = conn.prepareStatement("SELECT MIN(" + table.getKeyColumn() + "), MAX(" + table.getKeyColumn()
+                    + ") FROM " + table.getName());
+            rs = stmt.executeQuery();
+            rs.next();
+            long min = rs.getLong(1);
+            return rs.wasNull() ? null : new long[]{min, rs.getLong(2)};
+        } finally {
+            DbUtils.closeQuietly(conn, stmt, rs);
+        }
+    }
+
+    /**
+     * 把[from, to]切成fanout段
+     */
+    List<long[]> split(long[] range) {
+        long step = (range[1] - range[0]) / fanout + 1;
+        List<long[]> ranges = new ArrayList<long[]>(fanout);
+        for (long from = range[0]; from <= range[1]; from += step) {
+            long to = range[1] - from < step ? range[1] : from + step - 1;
+            ranges.add(new long[]{from, to});
+            if (to == range[1]) {
+                break;
+            }
+        }
+        return ranges;
+    }
+
+    private static List<Future<Checksum>> checksums(ExecutorService executor, final DataSource dataSource,
+                                                    final String sql, List<long[]> ranges) {
+        List<Future<Checksum>> futures = new ArrayList<Future<Checksum>>(ranges.size());
+        for (final long[] range : ranges) {
+            futures.add(executor.submit(new Callable<Checksum>() {
+                public Checksum call() throws SQLException {
+                    Connection conn = null;
+                    PreparedStatement stmt = null;
+                    ResultSet rs = null;
+                    try {
+                        conn = dataSource.getConnection();
+                        stmt = conn.prepareStatement(sql);
+                        stmt.setLong(1, range[0]);
+                        stmt.setLong(2, range[1]);
+                        rs = stmt.executeQuery();
+                        rs.next();
+                        return new Checksum(rs.getLong(1), rs.getString(2));
+                    } finally {
+                        DbUtils.closeQuietly(conn, stmt, rs);
+                    }
+                }
+            }));
+        }
+        return futures;
+    }
+
+    private static List<Future<List<RowHash>>> rowHashes(ExecutorService executor, final DataSource dataSource,
+                                                         final String sql, List<long[]> ranges) {
+        List<Future<List<RowHash>>> futures = new ArrayList<Future<List<RowHash>>>(ranges.size());
+        for (final long[] range : ranges) {
+            futures.add(executor.submit(new Callable<List<RowHash>>() {
+                public List<RowHash> call() throws SQLException {
+                    Connection conn = null;
+                    PreparedStatement stmt = null;
+                    ResultSet rs = null;
+                    try {
+                        conn = dataSource.getConnection();
+                        stmt = conn.prepareStatement(sql);
+                        stmt.setLong(1, range[0]);
+                        stmt.setLong(2, range[1]);
+                        rs = stmt.executeQuery();
+                        List<RowHash> rows = new ArrayList<RowHash>();
+                        while (rs.next()) {
+                            rows.add(new RowHash(rs.getLong(1), rs.getString(2)));
+                        }
+                        return rows;
+                    } finally {
+                        DbUtils.closeQuietly(conn, stmt, rs);
+                    }
+                }
+            }));
+        }
+        return futures;
+    }
+
+    /**
+     * 合并比较两边按主键排序的行校验和
+     */
+    private static void compare(List<RowHash> sourceRows, List<RowHash> targetRows, DiffResult result) {
+        result.rowHashesFetched += sourceRows.size() + targetRows.size();
+        int s = 0;
+        int t = 0;
+        while (s < sourceRows.size() || t < targetRows.size()) {
+            RowHash sourceRow = s < sourceRows.size() ? sourceRows.get(s) : null;
+            RowHash targetRow = t < targetRows.size() ? targetRows.get(t) : null;
+            if (targetRow == null || (sourceRow != null && sourceRow.key < targetRow.key)) {
+                result.missingKeys.add(sourceRow.key);
+                s++;
+            } else if (sourceRow == null || targetRow.key < sourceRow.key) {
+                result.extraKeys.add(targetRow.key);
+                t++;
+            } else {
+                if (!equal(sourceRow.hash, targetRow.hash)) {
+                    result.changedKeys.add(sourceRow.key);
+                }
+                s++;
+                t++;
+            }
+        }
+    }
+
+    static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder(2 * count);
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ",?");
+        }
+        return sb.toString();
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static <T> T await(Future<T> future) throws SQLException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while comparing checksums", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Failed to compute checksums", e.getCause());
+        }
+    }
+
+    /**
+     * 一个范围的行数和汇总校验和
+     */
+    private static final class Checksum {
+        final long count;
+        final String sum;
+
+        Checksum(long count, String sum) {
+            this.count = count;
+            this.sum = sum;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Checksum)) {
+                return false;
+            }
+            Checksum other = (Checksum) o;
+            return count == other.count && equal(sum, other.sum);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) count;
+        }
+    }
+
+    private static final class RowHash {
+        final long key;
+        final String hash;
+
+        RowHash(long key, String hash) {
+            this.key = key;
+            this.hash = hash;
+        }
+    }
+}
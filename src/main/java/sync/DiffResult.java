@@ -0,0 +1,98 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package sync;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 两边同一张表的差异，按主键列出
+ */
+public class DiffResult {
+    private final SyncTable table;
+    /**
+     * 源库有、目标库没有的主键
+     */
+    final List<Long> missingKeys = new ArrayList<Long>();
+    /**
+     * 目标库有、源库没有的主键
+     */
+    final List<Long> extraKeys = new ArrayList<Long>();
+    /**
+     * 两边都有但内容不同的主键
+     */
+    final List<Long> changedKeys = new ArrayList<Long>();
+    int rangesCompared;
+    int leafRanges;
+    long rowHashesFetched;
+    long elapsedNanos;
+
+    DiffResult(SyncTable table) {
+        this.table = table;
+    }
+
+    public SyncTable getTable() {
+        return table;
+    }
+
+    public boolean isConsistent() {
+        return missingKeys.isEmpty() && extraKeys.isEmpty() && changedKeys.isEmpty();
+    }
+
+    public List<Long> getMissingKeys() {
+        return missingKeys;
+    }
+
+    public List<Long> getExtraKeys() {
+        return extraKeys;
+    }
+
+    public List<Long> getChangedKeys() {
+        return changedKeys;
+    }
+
+    /**
+     * 两边各计算过校验和的主键范围数
+     */
+    public int getRangesCompared() {
+        return rangesCompared;
+    }
+
+    /**
+     * 逐行比较过的范围数
+     */
+    public int getLeafRanges() {
+        return leafRanges;
+    }
+
+    /**
+     * 逐行比较时两边读取的(主键, 校验和)行数
+     */
+    public long getRowHashesFetched() {
+        return rowHashesFetched;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return table + ": " + missingKeys.size() + " missing, " + extraKeys.size() + " extra, "
+                + changedKeys.size() + " changed; " + rangesCompared + " ranges, " + leafRanges + " leaves, "
+                + rowHashesFetched + " row hashes, " + elapsedNanos / 1000000 + " ms";
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package sync;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Properties;
+
+/**
+ * 把同步进度保存在本地目录中，每张表一个properties文件
+ * <p/>
+ * 先写临时文件并刷到磁盘，再改名覆盖原文件，进程或机器在写入中途崩溃时不会留下半个文件。
+ */
+public class FileCheckpointStore implements CheckpointStore {
+    private final File directory;
+
+    public FileCheckpointStore(File directory) {
+        this.directory = directory;
+    }
+
+    public Checkpoint load(String table) throws SQLException {
+        File file = file(table);
+        if (!file.exists()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            properties.load(in);
+        } catch (IOException e) {
+            throw new SQLException("Failed to read checkpoint " + file, e);
+        } finally {
+            closeQuietly(in);
+        }
+        String key = properties.getProperty("lastKey");
+        return new Checkpoint(table, Checkpoint.Phase.valueOf(properties.getProperty("phase")),
+                timestamp(properties.getProperty("since")),
+                key == null ? null : "long".equals(properties.getProperty("lastKeyType")) ? (Object) Long.valueOf(key) : key,
+                timestamp(properties.getProperty("lastWatermark")),
+                Long.parseLong(properties.getProperty("chunkId", "0")));
+    }
+
+    public void save(Checkpoint checkpoint) throws SQLException {
+        Properties properties = new Properties();
+        properties.setProperty("phase", checkpoint.getPhase().name());
+        properties.setProperty("chunkId", String.valueOf(checkpoint.getChunkId()));
+        if (checkpoint.getSince() != null) {
+            properties.setProperty("since", String.valueOf(checkpoint.getSince().getTime()));
+        }
+        if (checkpoint.getLastKey() != null) {
+            Object key = checkpoint.getLastKey();
+            properties.setProperty("lastKey", key instanceof Number ? String.valueOf(((Number) key).longValue())
+                    : key.toString());
+            properties.setProperty("lastKeyType", key instanceof Number ? "long" : "string");
+        }
+        if (checkpoint.getLastWatermark() != null) {
+            properties.setProperty("lastWatermark", String.valueOf(checkpoint.getLastWatermark().getTime()));
+        }
+        File file = file(checkpoint.getTable());
+        File tmp = new File(directory, file.getName() + ".tmp");
+        FileOutputStream out = null;
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Cannot create " + directory);
+            }
+            out = new FileOutputStream(tmp);
+            properties.store(out, null);
+            out.getFD().sync();
+            out.close();
+            out = null;
+            if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+                throw new IOException("Cannot rename " + tmp + " to " + file);
+            }
+        } catch (IOException e) {
+            throw new SQLException("Failed to write checkpoint " + file, e);
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    private File file(String table) {
+        return new File(directory, table + ".checkpoint");
+    }
+
+    private static Timestamp timestamp(String millis) {
+        return millis == null ? null : new Timestamp(Long.parseLong(millis));
+    }
+
+    private static void closeQuietly(java.io.Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+}
@@ -0,0 +1,620 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package sync;
+
+import org.apache.commons.dbutils.DbUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 以修改时间为高水位，把源库中变化的行增量同步到目标库
+ * <p/>
+ * 按(修改时间, 主键)做游标分块读取，每块一条有上限的查询，不使用OFFSET，也不长时间占用源库的读视图；
+ * 每块在目标库用一条多行的INSERT ... ON DUPLICATE KEY UPDATE写入并提交，重复写入同一块没有副作用。
+ * 写入当前块的同时，另一个线程已经在源库读取下一块；写入也可以按主键分区由多个线程并行进行。
+ * <p/>
+ * 没有水位时按主键全量复制。增量同步时从水位往前多读lagMargin，
+ * 以免漏掉提交较晚但修改时间较早的行。源库的删除不会同步，需要同步删除时用{@link ChangeCapture}。
+ * <p/>
+ * 修改时间列必须在每次插入和更新时由数据库维护，如MySQL的
+ * <code>modifyTime datetime NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP</code>(见table.sql)，
+ * 否则没有设置修改时间的插入和更新在全量复制之后不会再被同步。
+ * 每次同步都检查源库中修改时间为NULL的行，有这样的行时写警告日志，行数见SyncResult.getUnwatermarkedRows()。
+ * <p/>
+ * 设置了CheckpointStore时每提交一块保存一次进度，同步中途退出后再次调用sync()会从最后提交的块之后继续，
+ * 只需重做保存进度前已写入的最多一块(并行写入时为还在队列中的几块)，重做的块用upsert写入，没有副作用。
+ * <p/>
+ * 设置了AdaptiveThrottle时块大小和并行写入的线程数由它按延迟预算调节，不再使用chunkSize。
+ * <code>
+ * IncrementalSync sync = new IncrementalSync(syncOneDataSource, syncTwoDataSource);
+ * SyncResult result = sync.sync(SyncTable.record());
+ * </code>
+ */
+public class IncrementalSync {
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+    private static final Logger LOG = LoggerFactory.getLogger(IncrementalSync.class);
+    /**
+     * 一条语句最多的占位符个数
+     */
+    private static final int MAX_PLACEHOLDERS = 65535;
+
+    private final DataSource source;
+    private final DataSource target;
+    private volatile int chunkSize = DEFAULT_CHUNK_SIZE;
+    private volatile long lagMarginMillis = TimeUnit.SECONDS.toMillis(5);
+    private volatile int applyParallelism = 1;
+    private volatile CheckpointStore checkpointStore;
+    private volatile AdaptiveThrottle throttle;
+
+    public IncrementalSync(DataSource source, DataSource target) {
+        this.source = source;
+        this.target = target;
+    }
+
+    /**
+     * 每块读取和写入的行数，默认1000
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * 增量同步时从水位往前多读的时间，默认5秒，应大于源库最长事务的时长
+     */
+    public void setLagMargin(long margin, TimeUnit unit) {
+        this.lagMarginMillis = unit.toMillis(margin);
+    }
+
+    /**
+     * 并行写入目标库的线程数，默认1表示每块在一个事务中写入。
+     * 大于1时按主键哈希分区，每个线程占用目标库的一个连接，不应超过目标库连接池的大小，见PartitionedApplier
+     */
+    public void setApplyParallelism(int applyParallelism) {
+        if (applyParallelism < 1) {
+            throw new IllegalArgumentException("applyParallelism must be positive: " + applyParallelism);
+        }
+        this.applyParallelism = applyParallelism;
+    }
+
+    /**
+     * 保存同步进度的位置，默认null表示不保存，中途退出后只能重新同步
+     */
+    public void setCheckpointStore(CheckpointStore checkpointStore) {
+        this.checkpointStore = checkpointStore;
+    }
+
+    /**
+     * 按延迟预算自动调节块大小和写入并发数，默认null表示按chunkSize和applyParallelism全速同步。
+     * 并发数不超过applyParallelism
+     */
+    public void setThrottle(AdaptiveThrottle throttle) {
+        this.throttle = throttle;
+    }
+
+    public AdaptiveThrottle getThrottle() {
+        return throttle;
+    }
+
+    /**
+     * 继续未完成的同步，或者从上次同步完成时保存的水位开始增量同步；
+     * 没有保存进度时从目标库中最大的修改时间开始，目标库没有数据时全量复制
+     */
+    public SyncResult sync(SyncTable table) throws SQLException {
+        Checkpoint checkpoint = loadCheckpoint(table);
+        if (checkpoint == null) {
+            return sync(table, maxWatermark(target, table));
+        }
+        return sync(table, checkpoint.getPhase() == Checkpoint.Phase.DONE ? checkpoint.getSince() : null);
+    }
+
+    /**
+     * 同步修改时间不早于since的行，有未完成的同步时先从保存的进度继续，忽略since
+     *
+     * @param table 同步的表
+     * @param since 上次同步的水位，null表示全量复制
+     * @return 同步结果，其中的水位供下次同步使用
+     */
+    public SyncResult sync(SyncTable table, Timestamp since) throws SQLException {
+        if (table.getWatermarkColumn() == null) {
+            throw new IllegalArgumentException("Table " + table + " has no watermark column");
+        }
+        long start = System.nanoTime();
+        SyncResult result = new SyncResult(table);
+        Checkpoint resume = loadCheckpoint(table);
+        if (resume != null && resume.getPhase() != Checkpoint.Phase.DONE) {
+            LOG.info("Resuming " + resume);
+            result.resumedFrom = resume;
+            since = resume.getSince();
+        } else {
+            resume = null;
+        }
+        if (resume == null ? since == null : resume.getPhase() == Checkpoint.Phase.FULL_COPY) {
+            // 全量复制按主键进行，复制期间被修改的行再从复制开始时的水位增量同步一次，
+            // 之后目标库中的最大修改时间才能作为水位
+            if (resume == null) {
+                since = maxWatermark(source, table);
+            }
+            copy(table, null, since, result, resume);
+            resume = null;
+        }
+        if (since != null) {
+            result.watermark = since;
+            if (resume != null && resume.getLastWatermark() != null && resume.getLastWatermark().after(since)) {
+                result.watermark = resume.getLastWatermark();
+            }
+            copy(table, new Timestamp(since.getTime() - lagMarginMillis), since, result, resume);
+        }
+        saveCheckpoint(new Checkpoint(table.getName(), Checkpoint.Phase.DONE, result.watermark, null, null, 0));
+        result.unwatermarkedRows = countUnwatermarked(table);
+        if (result.unwatermarkedRows > 0) {
+            LOG.warn(result.unwatermarkedRows + " rows of " + table + " have NULL " + table.getWatermarkColumn()
+                    + ", their later inserts and updates will not be synchronized");
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        LOG.info("Synchronized " + result);
+        return result;
+    }
+
+    /**
+     * 分块复制修改时间不早于from的行，from为null时复制全表
+     *
+     * @param since  保存到进度中的水位
+     * @param resume 本阶段已保存的进度，null表示从头开始
+     */
+    private void copy(final SyncTable table, final Timestamp from, Timestamp since, SyncResult result,
+                      Checkpoint resume) throws SQLException {
+        Checkpoint.Phase phase = from == null ? Checkpoint.Phase.FULL_COPY : Checkpoint.Phase.INCREMENTAL;
+        long chunkId = resume == null ? 0 : resume.getChunkId();
+        if (resume == null) {
+            saveCheckpoint(new Checkpoint(table.getName(), phase, since, null, null, 0));
+        }
+        final AdaptiveThrottle throttle = this.throttle;
+        if (throttle != null) {
+            throttle.setMaxConcurrency(applyParallelism);
+        }
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        PartitionedApplier applier = applyParallelism > 1
+                ? new PartitionedApplier(target, table, applyParallelism) : null;
+        if (applier != null) {
+            applier.setThrottle(throttle);
+        }
+        // 并行写入时已提交到分区但还没全部写完的块的进度，按块号排列
+        LinkedList<Checkpoint> pending = new LinkedList<Checkpoint>();
+        try {
+            // 本块读取时的行数上限，读满说明后面还有
+            int limit = chunkSize(throttle);
+            Chunk chunk = readChunk(table, from, resume == null || resume.getLastKey() == null ? null
+                    : Chunk.position(resume.getLastKey(), resume.getLastWatermark()), limit);
+            while (chunk.rows.size() > 0) {
+                Future<Chunk> next = null;
+                int nextLimit = chunkSize(throttle);
+                if (chunk.rows.size() == limit) {
+                    final Chunk previous = chunk;
+                    final int size = nextLimit;
+                    pause(throttle);
+                    next = reader.submit(new Callable<Chunk>() {
+                        public Chunk call() throws SQLException {
+                            return readChunk(table, from, previous, size);
+                        }
+                    });
+                }
+                Checkpoint checkpoint = new Checkpoint(table.getName(), phase, since, chunk.lastKey,
+                        chunk.lastWatermark, ++chunkId);
+                if (applier == null) {
+                    result.rowsAffected += apply(table, chunk);
+                    saveCheckpoint(checkpoint);
+                } else {
+                    long seq = applier.apply(chunk.columns, chunk.rows, chunk.keyIndex);
+                    pending.add(checkpoint);
+                    saveCompleted(pending, seq - applier.getCompletedThrough());
+                }
+                result.rowsRead += chunk.rows.size();
+                result.chunks++;
+                if (from != null && chunk.lastWatermark.after(result.watermark)) {
+                    result.watermark = chunk.lastWatermark;
+                }
+                chunk = next == null ? Chunk.EMPTY : await(next);
+                limit = nextLimit;
+            }
+            if (applier != null) {
+                applier.flush();
+                saveCompleted(pending, 0);
+                result.rowsAffected += applier.getAffectedRows();
+                result.partitions = applier.getStats();
+            }
+        } finally {
+            reader.shutdownNow();
+            if (applier != null) {
+                applier.close();
+            }
+        }
+    }
+
+    /**
+     * 保存已全部写入的最后一块的进度，留下还没写完的unfinished块
+     */
+    private void saveCompleted(LinkedList<Checkpoint> pending, long unfinished) throws SQLException {
+        Checkpoint completed = null;
+        while (pending.size() > unfinished) {
+            completed = pending.removeFirst();
+        }
+        if (completed != null) {
+            saveCheckpoint(completed);
+        }
+    }
+
+    private int chunkSize(AdaptiveThrottle throttle) {
+        return throttle == null ? chunkSize : throttle.getChunkSize();
+    }
+
+    private static void pause(AdaptiveThrottle throttle) throws SQLException {
+        if (throttle != null) {
+            try {
+                throttle.pause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while throttling", e);
+            }
+        }
+    }
+
+    /**
+     * 源库中修改时间为NULL的行数，增量同步读不到这些行；走(修改时间, 主键)索引，不扫描全表
+     */
+    private long countUnwatermarked(SyncTable table) throws SQLException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = source.getConnection();
+            stmt = conn.prepareStatement("SELECT COUNT(*) FROM " + table.getName() + " WHERE "
+                    + table.getWatermarkColumn() + " IS NULL");
+            rs = stmt.executeQuery();
+            long count = rs.next() ? rs.getLong(1) : 0;
+            if (!conn.getAutoCommit()) {
+                conn.commit();
+            }
+            return count;
+        } finally {
+            DbUtils.closeQuietly(conn, stmt, rs);
+        }
+    }
+
+    private Checkpoint loadCheckpoint(SyncTable table) throws SQLException {
+        return checkpointStore == null ? null : checkpointStore.load(table.getName());
+    }
+
+    private void saveCheckpoint(Checkpoint checkpoint) throws SQLException {
+        if (checkpointStore != null) {
+            checkpointStore.save(checkpoint);
+        }
+    }
+
+    /**
+     * 读取after之后最多limit行：全量复制按主键排序，增量同步按(修改时间, 主键)排序
+     */
+    private Chunk readChunk(SyncTable table, Timestamp from, Chunk after, int limit) throws SQLException {
+        String key = table.getKeyColumn();
+        String watermark = table.getWatermarkColumn();
+        String select = "SELECT * FROM " + table.getName();
+        Connection conn = null;
+        try {
+            long start = System.nanoTime();
+            conn = source.getConnection();
+            long acquired = System.nanoTime();
+            Chunk chunk;
+            if (from == null) {
+                chunk = after == null
+                        ? select(conn, table, select + " ORDER BY " + key, limit)
+                        : select(conn, table, select + " WHERE " + key + " > ? ORDER BY " + key, limit,
+                        after.lastKey);
+            } else if (after == null) {
+                chunk = select(conn, table, select + " WHERE " + watermark + " >= ? ORDER BY " + watermark + ", " + key,
+                        limit, from);
+            } else {
+                // (watermark, key) > (lastWatermark, lastKey)拆成两段，每段都是(修改时间, 主键)索引上的一个范围，
+                // 大量行的修改时间相同时也不会每块都从头扫描这些行
+                chunk = select(conn, table, select + " WHERE " + watermark + " = ? AND " + key + " > ? ORDER BY " + key,
+                        limit, after.lastWatermark, after.lastKey);
+                if (chunk.rows.size() < limit) {
+                    chunk = chunk.append(select(conn, table, select + " WHERE " + watermark + " > ? ORDER BY "
+                            + watermark + ", " + key, limit - chunk.rows.size(), after.lastWatermark));
+                }
+            }
+            if (!conn.getAutoCommit()) {
+                conn.commit();
+            }
+            AdaptiveThrottle throttle = this.throttle;
+            if (throttle != null) {
+                throttle.observe(start, acquired - start, System.nanoTime() - acquired);
+            }
+            return chunk;
+        } finally {
+            DbUtils.closeQuietly(conn);
+        }
+    }
+
+    static Chunk select(Connection conn, SyncTable table, String sql, int limit, Object... params)
+            throws SQLException {
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = conn.prepareStatement(sql + " LIMIT " + limit);
+            for (int i = 0; i < params.length; i++) {
+                stmt.setObject(i + 1, params[i]);
+            }
+            rs = stmt.executeQuery();
+            ResultSetMetaData rsmd = rs.getMetaData();
+            String[] columns = new String[rsmd.getColumnCount()];
+            int keyIndex = -1;
+            int watermarkIndex = -1;
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = rsmd.getColumnLabel(i + 1);
+                if (columns[i].equalsIgnoreCase(table.getKeyColumn())) {
+                    keyIndex = i;
+                } else if (columns[i].equalsIgnoreCase(table.getWatermarkColumn())) {
+                    watermarkIndex = i;
+                }
+            }
+            if (keyIndex < 0 || watermarkIndex < 0 && table.getWatermarkColumn() != null) {
+                throw new SQLException("Table " + table + " has no column "
+                        + (keyIndex < 0 ? table.getKeyColumn() : table.getWatermarkColumn()));
+            }
+            List<Object[]> rows = new ArrayList<Object[]>(limit);
+            while (rs.next()) {
+                Object[] row = new Object[columns.length];
+                for (int i = 0; i < columns.length; i++) {
+                    row[i] = rs.getObject(i + 1);
+                }
+                rows.add(row);
+            }
+            return new Chunk(columns, rows, keyIndex, watermarkIndex);
+        } finally {
+            DbUtils.closeQuietly(rs);
+            DbUtils.closeQuietly(stmt);
+        }
+    }
+
+    /**
+     * 在目标库中插入或更新一块，整块在一个事务中提交
+     *
+     * @return 影响行数
+     */
+    private int apply(SyncTable table, Chunk chunk) throws SQLException {
+        Connection conn = null;
+        boolean autoCommit = true;
+        try {
+            long start = System.nanoTime();
+            conn = target.getConnection();
+            long acquired = System.nanoTime();
+            autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            int affected = upsert(conn, table, chunk.columns, chunk.rows);
+            conn.commit();
+            AdaptiveThrottle throttle = this.throttle;
+            if (throttle != null) {
+                throttle.observe(start, acquired - start, System.nanoTime() - acquired);
+                throttle.rowsApplied(chunk.rows.size());
+            }
+            return affected;
+        } catch (SQLException e) {
+            rollbackQuietly(conn);
+            throw e;
+        } finally {
+            close(conn, autoCommit);
+        }
+    }
+
+    /**
+     * 用多行INSERT ... ON DUPLICATE KEY UPDATE写入rows，不提交
+     *
+     * @return 影响行数
+     */
+    static int upsert(Connection conn, SyncTable table, String[] columns, List<Object[]> rows) throws SQLException {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        int rowsPerStatement = Math.min(rows.size(), MAX_PLACEHOLDERS / columns.length);
+        PreparedStatement stmt = null;
+        try {
+            int affected = 0;
+            for (int from = 0; from < rows.size(); from += rowsPerStatement) {
+                int count = Math.min(rowsPerStatement, rows.size() - from);
+                if (stmt == null || count != rowsPerStatement) {
+                    DbUtils.closeQuietly(stmt);
+                    stmt = conn.prepareStatement(upsertSql(table, columns, count));
+                }
+                int index = 1;
+                for (int r = from; r < from + count; r++) {
+                    for (Object value : rows.get(r)) {
+                        stmt.setObject(index++, value);
+                    }
+                }
+                affected += stmt.executeUpdate();
+            }
+            return affected;
+        } finally {
+            DbUtils.closeQuietly(stmt);
+        }
+    }
+
+    /**
+     * 恢复autoCommit后归还连接
+     */
+    static void close(Connection conn, boolean autoCommit) {
+        if (conn != null) {
+            try {
+                conn.setAutoCommit(autoCommit);
+            } catch (SQLException e) {
+                LOG.warn("Failed to restore autoCommit", e);
+            }
+            DbUtils.closeQuietly(conn);
+        }
+    }
+
+    static void rollbackQuietly(Connection conn) {
+        if (conn != null) {
+            try {
+                conn.rollback();
+            } catch (SQLException e) {
+                LOG.warn("Rollback failed", e);
+            }
+        }
+    }
+
+    /**
+     * INSERT INTO t (c1,c2) VALUES (?,?),(?,?) ON DUPLICATE KEY UPDATE c2=VALUES(c2)
+     */
+    static String upsertSql(SyncTable table, String[] columns, int rows) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table.getName()).append(" (");
+        StringBuilder tuple = new StringBuilder("(");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                sql.append(',');
+                tuple.append(',');
+            }
+            sql.append(columns[i]);
+            tuple.append('?');
+        }
+        tuple.append(')');
+        sql.append(") VALUES ");
+        for (int r = 0; r < rows; r++) {
+            if (r > 0) {
+                sql.append(',');
+            }
+            sql.append(tuple);
+        }
+        sql.append(" ON DUPLICATE KEY UPDATE ");
+        boolean first = true;
+        for (String column : columns) {
+            if (!column.equalsIgnoreCase(table.getKeyColumn())) {
+                if (!first) {
+                    sql.append(',');
+                }
+                sql.append(column).append("=VALUES(").append(column).append(')');
+                first = false;
+            }
+        }
+        return sql.toString();
+    }
+
+    static Timestamp maxWatermark(DataSource dataSource, SyncTable table) throws SQLException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = dataSource.getConnection();
+            stmt = conn.prepareStatement("SELECT max(" + table.getWatermarkColumn() + ") FROM " + table.getName());
+            rs = stmt.executeQuery();
+            Timestamp max = rs.next() ? rs.getTimestamp(1) : null;
+            if (!conn.getAutoCommit()) {
+                conn.commit();
+            }
+            return max;
+        } finally {
+            DbUtils.closeQuietly(conn, stmt, rs);
+        }
+    }
+
+    private static Chunk await(Future<Chunk> next) throws SQLException {
+        try {
+            return next.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while reading the next chunk", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Failed to read the next chunk", e.getCause());
+        }
+    }
+
+    /**
+     * 从源库读出的一块，以及这块最后一行的游标位置
+     */
+    static final class Chunk {
+        static final Chunk EMPTY = new Chunk(new String[0], new ArrayList<Object[]>(0), -1, -1);
+
+        final String[] columns;
+        final List<Object[]> rows;
+        final Object lastKey;
+        final Timestamp lastWatermark;
+        final int keyIndex;
+        private final int watermarkIndex;
+
+        Chunk(String[] columns, List<Object[]> rows, int keyIndex, int watermarkIndex) {
+            this.columns = columns;
+            this.rows = rows;
+            this.keyIndex = keyIndex;
+            this.watermarkIndex = watermarkIndex;
+            Object[] last = rows.isEmpty() ? null : rows.get(rows.size() - 1);
+            this.lastKey = last == null ? null : last[keyIndex];
+            this.lastWatermark = last == null || watermarkIndex < 0 ? null : (Timestamp) last[watermarkIndex];
+        }
+
+        /**
+         * 只有游标位置的空块，用于从保存的进度继续读取
+         */
+        static Chunk position(Object lastKey, Timestamp lastWatermark) {
+            return new Chunk(lastKey, lastWatermark);
+        }
+
+        private Chunk(Object lastKey, Timestamp lastWatermark) {
+            this.columns = new String[0];
+            this.rows = new ArrayList<Object[]>(0);
+            this.keyIndex = -1;
+            this.watermarkIndex = -1;
+            this.lastKey = lastKey;
+            this.lastWatermark = lastWatermark;
+        }
+
+        /**
+         * 后面接上next中的行
+         */
+        Chunk append(Chunk next) {
+            if (rows.isEmpty()) {
+                return next;
+            }
+            rows.addAll(next.rows);
+            return new Chunk(columns, rows, keyIndex, watermarkIndex);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package sync;
+
+import org.apache.commons.dbutils.DbUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+/**
+ * 把同步进度保存在数据库的sync_checkpoint表中，表不存在时自动创建，一般放在目标库
+ */
+public class JdbcCheckpointStore implements CheckpointStore {
+    static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS sync_checkpoint ("
+            + "table_name varchar(64) NOT NULL, phase varchar(16) NOT NULL, since datetime DEFAULT NULL, "
+            + "last_key varchar(64) DEFAULT NULL, last_watermark datetime DEFAULT NULL, chunk_id bigint NOT NULL, "
+            + "modifyTime datetime NOT NULL, PRIMARY KEY (table_name))";
+
+    private final DataSource dataSource;
+    private volatile boolean tableCreated;
+
+    public JdbcCheckpointStore(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public Checkpoint load(String table) throws SQLException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = connection();
+            stmt = conn.prepareStatement("SELECT phase, since, last_key, last_watermark, chunk_id "
+                    + "FROM sync_checkpoint WHERE table_name = ?");
+            stmt.setString(1, table);
+            rs = stmt.executeQuery();
+            Checkpoint checkpoint = null;
+            if (rs.next()) {
+                String key = rs.getString(3);
+                checkpoint = new Checkpoint(table, Checkpoint.Phase.valueOf(rs.getString(1)), rs.getTimestamp(2),
+                        key == null ? null : key.matches("-?\\d{1,18}") ? (Object) Long.valueOf(key) : key,
+                        rs.getTimestamp(4), rs.getLong(5));
+            }
+            if (!conn.getAutoCommit()) {
+                conn.commit();
+            }
+            return checkpoint;
+        } finally {
+            DbUtils.closeQuietly(conn, stmt, rs);
+        }
+    }
+
+    public void save(Checkpoint checkpoint) throws SQLException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        try {
+            conn = connection();
+            stmt = conn.prepareStatement("INSERT INTO sync_checkpoint "
+                    + "(table_name, phase, since, last_key, last_watermark, chunk_id, modifyTime) "
+                    + "VALUES (?,?,?,?,?,?,?) ON DUPLICATE KEY UPDATE phase=VALUES(phase), since=VALUES(since), "
+                    + "last_key=VALUES(last_key), last_watermark=VALUES(last_watermark), "
+                    + "chunk_id=VALUES(chunk_id), modifyTime=VALUES(modifyTime)");
+            stmt.setString(1, checkpoint.getTable());
+            stmt.setString(2, checkpoint.getPhase().name());
+            stmt.setTimestamp(3, checkpoint.getSince());
+            if (checkpoint.getLastKey() == null) {
+                stmt.setNull(4, Types.VARCHAR);
+            } else {
+                stmt.setString(4, checkpoint.getLastKey().toString());
+            }
+            stmt.setTimestamp(5, checkpoint.getLastWatermark());
+            stmt.setLong(6, checkpoint.getChunkId());
+            stmt.setTimestamp(7, new Timestamp(System.currentTimeMillis()));
+            stmt.executeUpdate();
+            if (!conn.getAutoCommit()) {
+                conn.commit();
+            }
+        } finally {
+            DbUtils.closeQuietly(stmt);
+            DbUtils.closeQuietly(conn);
+        }
+    }
+
+    private Connection connection() throws SQLException {
+        Connection conn = dataSource.getConnection();
+        if (!tableCreated) {
+            Statement stmt = null;
+            try {
+                stmt = conn.createStatement();
+                stmt.execute(CREATE_TABLE);
+                if (!conn.getAutoCommit()) {
+                    conn.commit();
+                }
+                tableCreated = true;
+            } catch (SQLException e) {
+                DbUtils.closeQuietly(conn);
+                throw e;
+            } finally {
+                DbUtils.closeQuietly(stmt);
+            }
+        }
+        return conn;
+    }
+}
@@ -15,12 +15,76 @@
  */
 package sync;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+import javax.sql.DataSource;
+import java.util.concurrent.TimeUnit;
+
 /**
- * 模拟多个数据库同步
+ * 模拟多个数据库同步：把sync_one中record表的变化定时增量同步到sync_two
+ * <code>
+ * java sync.MultipleDbSimulation [同步间隔秒数，默认10] [同步次数，默认一直运行]
+ * </code>
+ * 或者在sync_one安装触发器，把record、test_student和test_team的变化(包括删除)持续同步到sync_two
+ * <code>
+ * java sync.MultipleDbSimulation capture [轮询间隔毫秒数，默认200]
+ * </code>
  * User: Administrator
  * Date: 12-8-10
  * Time: 下午3:23
  */
 public class MultipleDbSimulation {
-    String subject = "我的还是我的，你的也是我的";
+    private static final Logger LOG = LoggerFactory.getLogger(MultipleDbSimulation.class);
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && "capture".equals(args[0])) {
+            capture(args.length > 1 ? Long.parseLong(args[1]) : 200);
+            return;
+        }
+        long interval = args.length > 0 ? Long.parseLong(args[0]) : 10;
+        int times = args.length > 1 ? Integer.parseInt(args[1]) : Integer.MAX_VALUE;
+        ClassPathXmlApplicationContext context = new ClassPathXmlApplicationContext("classpath:applicationContext.xml");
+        try {
+            DataSource target = context.getBean("syncTwoDataSource", DataSource.class);
+            IncrementalSync sync = new IncrementalSync(context.getBean("syncOneDataSource", DataSource.class), target);
+            // 进度保存在sync_two的sync_checkpoint表中，中途退出后重新运行会从最后提交的块继续
+            sync.setCheckpointStore(new JdbcCheckpointStore(target));
+            SyncTable table = SyncTable.record();
+            for (int i = 0; i < times; i++) {
+                LOG.info(sync.sync(table).toString());
+                if (i + 1 < times) {
+                    TimeUnit.SECONDS.sleep(interval);
+                }
+            }
+        } finally {
+            context.close();
+        }
+    }
+
+    private static void capture(long interval) throws Exception {
+        final ClassPathXmlApplicationContext context =
+                new ClassPathXmlApplicationContext("classpath:applicationContext.xml");
+        DataSource source = context.getBean("syncOneDataSource", DataSource.class);
+        DataSource target = context.getBean("syncTwoDataSource", DataSource.class);
+        final ChangeCapture capture = new ChangeCapture(source, target,
+                SyncTable.record(), SyncTable.student(), SyncTable.team());
+        capture.install();
+        // 触发器安装之后再对齐一次已有数据
+        ChecksumDiff checksumDiff = new ChecksumDiff(source, target);
+        for (SyncTable table : new SyncTable[]{SyncTable.record(), SyncTable.student(), SyncTable.team()}) {
+            checksumDiff.repair(checksumDiff.diff(table));
+        }
+        capture.start(interval, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                capture.close();
+                LOG.info("Applied " + capture.getChangesApplied() + " changes");
+                context.close();
+            }
+        });
+        Thread.currentThread().join();
+    }
 }
@@ -0,0 +1,88 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package sync;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PartitionedApplier中一个分区的统计快照
+ */
+public class PartitionStats {
+    private final int partition;
+    private final long rowsApplied;
+    private final long batchesApplied;
+    private final long pendingRows;
+    private final long lagNanos;
+    private final long busyNanos;
+    private final long elapsedNanos;
+
+    PartitionStats(int partition, long rowsApplied, long batchesApplied, long pendingRows, long lagNanos,
+                   long busyNanos, long elapsedNanos) {
+        this.partition = partition;
+        this.rowsApplied = rowsApplied;
+        this.batchesApplied = batchesApplied;
+        this.pendingRows = pendingRows;
+        this.lagNanos = lagNanos;
+        this.busyNanos = busyNanos;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getPartition() {
+        return partition;
+    }
+
+    public long getRowsApplied() {
+        return rowsApplied;
+    }
+
+    public long getBatchesApplied() {
+        return batchesApplied;
+    }
+
+    /**
+     * 已分到这个分区还没写入目标库的行数
+     */
+    public long getPendingRows() {
+        return pendingRows;
+    }
+
+    /**
+     * 最早一批未写入的行已经等待的时间，没有积压时为0
+     */
+    public long getLag(TimeUnit unit) {
+        return unit.convert(lagNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 从启动到现在平均每秒写入的行数
+     */
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : rowsApplied * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * 写入目标库所占的时间比例，接近1说明这个分区是瓶颈
+     */
+    public double getBusyRatio() {
+        return elapsedNanos == 0 ? 0 : (double) busyNanos / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "partition " + partition + ": " + rowsApplied + " rows, " + pendingRows + " pending, lag "
+                + getLag(TimeUnit.MILLISECONDS) + " ms, " + Math.round(getRowsPerSecond()) + " rows/s";
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package sync;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按主键哈希分区，多个线程并行把变化写入目标库
+ * <p/>
+ * 每个分区一个线程，按提交的顺序逐批写入，每批从连接池借一个连接，写入并提交后归还，
+ * 借连接的等待时间和写入耗时都报告给AdaptiveThrottle，连接池饱和时同样会降低并发。同一主键总是落在同一分区，
+ * 所以同一行的多次变化按原顺序写入，不同主键的变化并行写入。
+ * 分区队列满时apply()阻塞，读取的速度不会超过写入太多。
+ * <p/>
+ * 一块中的行分到多个分区各自提交，块不再是一个整体的事务；getCompletedThrough()返回已全部写入的连续块号，
+ * 需要确认之前提交的行都已写入时调用flush()。
+ * 某个分区写入失败后，之后的apply()和flush()抛出这个异常，其余分区丢弃还没写入的批次。
+ */
+public class PartitionedApplier implements Closeable {
+    public static final int DEFAULT_QUEUE_CAPACITY = 4;
+    private static final Logger LOG = LoggerFactory.getLogger(PartitionedApplier.class);
+    private static final Batch END = new Batch(0, null, new ArrayList<Object[]>(0));
+
+    private final DataSource target;
+    private final SyncTable table;
+    private final Partition[] partitions;
+    private final long startNanos = System.nanoTime();
+    private volatile SQLException error;
+    private volatile AdaptiveThrottle throttle;
+    /**
+     * 块号，以及每块还有几个分区没有写完
+     */
+    private long submitted;
+    private final ConcurrentMap<Long, AtomicInteger> remainingPartitions = new ConcurrentHashMap<Long, AtomicInteger>();
+    private final Set<Long> completedOutOfOrder = new HashSet<Long>();
+    private volatile long completedThrough;
+
+    public PartitionedApplier(DataSource target, SyncTable table, int partitions) {
+        this(target, table, partitions, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param partitions    分区数，即写入线程数和同时占用的目标库连接数上限
+     * @param queueCapacity 每个分区最多排队的批次数
+     */
+    public PartitionedApplier(DataSource target, SyncTable table, int partitions, int queueCapacity) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("partitions must be positive: " + partitions);
+        }
+        this.target = target;
+        this.table = table;
+        this.partitions = new Partition[partitions];
+        for (int i = 0; i < partitions; i++) {
+            this.partitions[i] = new Partition(i, queueCapacity);
+            Thread thread = new Thread(this.partitions[i], "sync-apply-" + table + "-" + i);
+            thread.setDaemon(true);
+            this.partitions[i].thread = thread;
+            thread.start();
+        }
+    }
+
+    /**
+     * 设置后同时写入的分区数不超过throttle的当前并发数，并向它报告每批的写入耗时
+     */
+    public void setThrottle(AdaptiveThrottle throttle) {
+        this.throttle = throttle;
+    }
+
+    /**
+     * 按主键分区后放入各分区的队列，只能由一个线程调用
+     *
+     * @param columns  列名
+     * @param rows     行，同一主键的多次变化按先后顺序排列
+     * @param keyIndex 主键在行中的位置
+     * @return 块号，从1开始
+     */
+    public long apply(String[] columns, List<Object[]> rows, int keyIndex) throws SQLException {
+        checkError();
+        List<List<Object[]>> split = new ArrayList<List<Object[]>>(partitions.length);
+        for (int i = 0; i < partitions.length; i++) {
+            split.add(new ArrayList<Object[]>(rows.size() / partitions.length + 1));
+        }
+        for (Object[] row : rows) {
+            split.get(partition(row[keyIndex])).add(row);
+        }
+        long seq = ++submitted;
+        int used = 0;
+        for (List<Object[]> part : split) {
+            if (!part.isEmpty()) {
+                used++;
+            }
+        }
+        if (used == 0) {
+            completed(seq);
+            return seq;
+        }
+        remainingPartitions.put(seq, new AtomicInteger(used));
+        for (int i = 0; i < partitions.length; i++) {
+            if (!split.get(i).isEmpty()) {
+                partitions[i].enqueue(new Batch(seq, columns, split.get(i)));
+            }
+        }
+        return seq;
+    }
+
+    /**
+     * 已在所有分区写入并提交的最大连续块号，这一块及之前的块都不会再因为重启而丢失
+     */
+    public long getCompletedThrough() {
+        return completedThrough;
+    }
+
+    private void batchDone(Batch batch) {
+        AtomicInteger remaining = remainingPartitions.get(batch.seq);
+        if (remaining != null && remaining.decrementAndGet() == 0) {
+            remainingPartitions.remove(batch.seq);
+            completed(batch.seq);
+        }
+    }
+
+    private synchronized void completed(long seq) {
+        completedOutOfOrder.add(seq);
+        long through = completedThrough;
+        while (completedOutOfOrder.remove(through + 1)) {
+            through++;
+        }
+        completedThrough = through;
+    }
+
+    /**
+     * 等待已提交的行全部写入目标库
+     */
+    public void flush() throws SQLException {
+        for (Partition partition : partitions) {
+            partition.awaitIdle();
+        }
+        checkError();
+    }
+
+    /**
+     * 写入完已提交的行后停止所有线程，不抛出写入错误，需要时先调用flush()
+     */
+    public void close() {
+        boolean interrupted = false;
+        for (Partition partition : partitions) {
+            try {
+                while (partition.thread.isAlive() && !partition.queue.offer(END, 100, TimeUnit.MILLISECONDS)) {
+                    // 队列满，等待分区线程取走
+                }
+                partition.thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 目标库返回的影响行数之和
+     */
+    public long getAffectedRows() {
+        long affected = 0;
+        for (Partition partition : partitions) {
+            affected += partition.affectedRows.get();
+        }
+        return affected;
+    }
+
+    public List<PartitionStats> getStats() {
+        long now = System.nanoTime();
+        List<PartitionStats> stats = new ArrayList<PartitionStats>(partitions.length);
+        for (Partition partition : partitions) {
+            stats.add(partition.stats(now));
+        }
+        return stats;
+    }
+
+    int partition(Object key) {
+        return (key.hashCode() & Integer.MAX_VALUE) % partitions.length;
+    }
+
+    private void checkError() throws SQLException {
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * 一个分区的一批行，记下放入队列的时间用来计算延迟
+     */
+    private static final class Batch {
+        final long seq;
+        final String[] columns;
+        final List<Object[]> rows;
+        final long enqueuedAt = System.nanoTime();
+
+        Batch(long seq, String[] columns, List<Object[]> rows) {
+            this.seq = seq;
+            this.columns = columns;
+            this.rows = rows;
+        }
+    }
+
+    private final class Partition implements Runnable {
+        final int index;
+        final BlockingQueue<Batch> queue;
+        final AtomicLong rowsApplied = new AtomicLong();
+        final AtomicLong batchesApplied = new AtomicLong();
+        final AtomicLong affectedRows = new AtomicLong();
+        final AtomicLong pendingRows = new AtomicLong();
+        final AtomicLong busyNanos = new AtomicLong();
+        /**
+         * 正在写入的批次
+         */
+        volatile Batch current;
+        Thread thread;
+
+        Partition(int index, int queueCapacity) {
+            this.index = index;
+            this.queue = new ArrayBlockingQueue<Batch>(queueCapacity);
+        }
+
+        void enqueue(Batch batch) throws SQLException {
+            pendingRows.addAndGet(batch.rows.size());
+            try {
+                while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                    if (error != null || !thread.isAlive()) {
+                        pendingRows.addAndGet(-batch.rows.size());
+                        checkError();
+                        throw new SQLException("Apply thread " + thread.getName() + " has stopped");
+                    }
+                }
+            } catch (InterruptedException e) {
+                pendingRows.addAndGet(-batch.rows.size());
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for partition " + index, e);
+            }
+        }
+
+        synchronized void awaitIdle() throws SQLException {
+            try {
+                while (pendingRows.get() > 0 && thread.isAlive()) {
+                    wait(100);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while flushing partition " + index, e);
+            }
+        }
+
+        public void run() {
+            try {
+                while (true) {
+                    Batch batch = queue.take();
+                    if (batch == END) {
+                        break;
+                    }
+                    current = batch;
+                    if (error == null) {
+                        AdaptiveThrottle throttle = PartitionedApplier.this.throttle;
+                        if (throttle != null) {
+                            throttle.acquireWriter();
+                        }
+                        long start = System.nanoTime();
+                        Connection conn = null;
+                        boolean autoCommit = true;
+                        try {
+                            conn = target.getConnection();
+                            long poolWait = System.nanoTime() - start;
+                            autoCommit = conn.getAutoCommit();
+                            conn.setAutoCommit(false);
+                            affectedRows.addAndGet(IncrementalSync.upsert(conn, table, batch.columns, batch.rows));
+                            conn.commit();
+                            rowsApplied.addAndGet(batch.rows.size());
+                            batchesApplied.incrementAndGet();
+                            if (throttle != null) {
+                                throttle.observe(start, poolWait, System.nanoTime() - start - poolWait);
+                                throttle.rowsApplied(batch.rows.size());
+                            }
+                            batchDone(batch);
+                        } catch (SQLException e) {
+                            LOG.error("Failed to apply " + batch.rows.size() + " rows to " + table, e);
+                            IncrementalSync.rollbackQuietly(conn);
+                            error = e;
+                        } finally {
+                            IncrementalSync.close(conn, autoCommit);
+                            if (throttle != null) {
+                                throttle.releaseWriter();
+                            }
+                        }
+                        busyNanos.addAndGet(System.nanoTime() - start);
+                    }
+                    current = null;
+                    done(batch);
+                }
+            } catch (InterruptedException e) {
+                LOG.warn("Apply thread " + Thread.currentThread().getName() + " interrupted");
+            } finally {
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+        }
+
+        private synchronized void done(Batch batch) {
+            if (pendingRows.addAndGet(-batch.rows.size()) == 0) {
+                notifyAll();
+            }
+        }
+
+        PartitionStats stats(long now) {
+            Batch oldest = current;
+            if (oldest == null) {
+                oldest = queue.peek();
+            }
+            long lag = oldest == null || oldest == END ? 0 : now - oldest.enqueuedAt;
+            return new PartitionStats(index, rowsApplied.get(), batchesApplied.get(), pendingRows.get(), lag,
+                    busyNanos.get(), now - startNanos);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package sync;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一次同步的结果
+ */
+public class SyncResult {
+    private final SyncTable table;
+    long rowsRead;
+    long rowsAffected;
+    int chunks;
+    /**
+     * 已同步的最大修改时间，下次增量同步从这里开始
+     */
+    Timestamp watermark;
+    long elapsedNanos;
+    /**
+     * 并行写入时最后一次复制各分区的统计
+     */
+    List<PartitionStats> partitions = Collections.emptyList();
+    /**
+     * 继续的未完成同步的进度
+     */
+    Checkpoint resumedFrom;
+    long unwatermarkedRows;
+
+    SyncResult(SyncTable table) {
+        this.table = table;
+    }
+
+    public SyncTable getTable() {
+        return table;
+    }
+
+    /**
+     * 从源库读出并写入目标库的行数
+     */
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    /**
+     * 目标库返回的影响行数，MySQL中新插入的行计1，更新的行计2，没有变化的行计0
+     */
+    public long getRowsAffected() {
+        return rowsAffected;
+    }
+
+    public int getChunks() {
+        return chunks;
+    }
+
+    public Timestamp getWatermark() {
+        return watermark;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * 并行写入时各分区的写入行数和速度，单线程写入时为空
+     */
+    public List<PartitionStats> getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * 本次同步从保存的进度继续时为保存的进度，否则为null
+     */
+    public Checkpoint getResumedFrom() {
+        return resumedFrom;
+    }
+
+    /**
+     * 同步结束时源库中修改时间为NULL的行数，这些行之后的插入和更新不会被增量同步，应为0
+     */
+    public long getUnwatermarkedRows() {
+        return unwatermarkedRows;
+    }
+
+    @Override
+    public String toString() {
+        return table + ": " + rowsRead + " rows in " + chunks + " chunks, "
+                + elapsedNanos / 1000000 + " ms, watermark " + watermark;
+    }
+}
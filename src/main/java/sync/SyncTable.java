@@ -0,0 +1,73 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package sync;
+
+/**
+ * 参与同步的表：表名、主键列和作为高水位的修改时间列
+ * <p/>
+ * 主键必须是单列；修改时间列需要在源库每次插入和更新时写入，并建有(修改时间, 主键)索引，
+ * 修改时间为null的行只在全量复制时同步。没有修改时间列的表(watermarkColumn为null)不能增量同步，
+ * 只能用于{@link ChecksumDiff}和{@link ChangeCapture}。
+ */
+public final class SyncTable {
+    private final String name;
+    private final String keyColumn;
+    private final String watermarkColumn;
+
+    public SyncTable(String name, String keyColumn, String watermarkColumn) {
+        this.name = name;
+        this.keyColumn = keyColumn;
+        this.watermarkColumn = watermarkColumn;
+    }
+
+    /**
+     * record表，按modifyTime增量同步
+     */
+    public static SyncTable record() {
+        return new SyncTable("record", "id", "modifyTime");
+    }
+
+    /**
+     * test_student表，没有修改时间列
+     */
+    public static SyncTable student() {
+        return new SyncTable("test_student", "id", null);
+    }
+
+    /**
+     * test_team表，没有修改时间列
+     */
+    public static SyncTable team() {
+        return new SyncTable("test_team", "id", null);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getKeyColumn() {
+        return keyColumn;
+    }
+
+    public String getWatermarkColumn() {
+        return watermarkColumn;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -4,8 +4,9 @@ CREATE TABLE record (
   description varchar(255) DEFAULT NULL,
   content text,
   createdTime datetime DEFAULT NULL,
-  modifyTime datetime DEFAULT NULL,
-  PRIMARY KEY (id)
+  modifyTime datetime NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+  PRIMARY KEY (id),
+  KEY idx_record_modify_time (modifyTime, id)
 ) ENGINE=InnoDB AUTO_INCREMENT=62549 DEFAULT CHARSET=utf8;
 
 DROP TABLE IF EXISTS test_student;
@@ -26,3 +27,24 @@ CREATE TABLE test_team (
   rank int(3) DEFAULT NULL COMMENT '团队排名',
   PRIMARY KEY (id)
 ) ENGINE=InnoDB AUTO_INCREMENT=4 DEFAULT CHARSET=utf8;
+
+DROP TABLE IF EXISTS sync_checkpoint;
+CREATE TABLE sync_checkpoint (
+  table_name varchar(64) NOT NULL COMMENT '同步的表',
+  phase varchar(16) NOT NULL COMMENT 'FULL_COPY/INCREMENTAL/DONE',
+  since datetime DEFAULT NULL COMMENT '本阶段的水位',
+  last_key varchar(64) DEFAULT NULL COMMENT '最后提交的行的主键',
+  last_watermark datetime DEFAULT NULL COMMENT '最后提交的行的修改时间',
+  chunk_id bigint NOT NULL COMMENT '本阶段已提交的块数',
+  modifyTime datetime NOT NULL,
+  PRIMARY KEY (table_name)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+DROP TABLE IF EXISTS sync_change_log;
+CREATE TABLE sync_change_log (
+  seq bigint NOT NULL AUTO_INCREMENT COMMENT '变更序号',
+  table_name varchar(64) NOT NULL COMMENT '变化的表',
+  pk bigint NOT NULL COMMENT '变化的行的主键',
+  op char(1) NOT NULL COMMENT 'I/U/D',
+  PRIMARY KEY (seq)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
@@ -0,0 +1,93 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package benchmark;
+
+import dbutils.CompiledBeanListHandler;
+import model.Student;
+import org.apache.commons.dbutils.DbUtils;
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.ResultSetHandler;
+import org.apache.commons.dbutils.handlers.BeanListHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 大结果集映射为Student：commons-dbutils的BeanListHandler(反射) 对比 CompiledBeanListHandler
+ * <code>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark=BeanMappingBenchmark -Dbenchmark.jvmArgs="-Dbenchmark.threads=1"
+ * </code>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class BeanMappingBenchmark {
+    private static final String SQL = "SELECT id, name, gender, age, team_id as teamId FROM test_student LIMIT ?";
+
+    @Param({"10000", "100000"})
+    public int rows;
+
+    private ClassPathXmlApplicationContext ctx;
+    private DataSource dataSource;
+    private final QueryRunner queryRunner = new QueryRunner();
+    private final BeanListHandler<Student> reflective = new BeanListHandler<Student>(Student.class);
+    private final CompiledBeanListHandler<Student> compiled = new CompiledBeanListHandler<Student>(Student.class);
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        ctx = BenchmarkDataSources.openContext();
+        dataSource = (DataSource) ctx.getBean("boneCPDataSource");
+        BenchmarkDataSources.prepareStudentTable(dataSource, rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ctx.close();
+    }
+
+    @Benchmark
+    public List<Student> beanListHandler() throws SQLException {
+        return query(reflective);
+    }
+
+    @Benchmark
+    public List<Student> compiledBeanListHandler() throws SQLException {
+        return query(compiled);
+    }
+
+    private List<Student> query(ResultSetHandler<List<Student>> rsh) throws SQLException {
+        Connection conn = dataSource.getConnection();
+        try {
+            return queryRunner.query(conn, SQL, rsh, rows);
+        } finally {
+            DbUtils.closeQuietly(conn);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package benchmark;
+
+import org.apache.commons.dbutils.DbUtils;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 基准测试使用的数据源，直接从applicationContext.xml中取得连接池Bean
+ * <p/>
+ * 默认把jdbc.*指向H2内存库(MySQL兼容模式)，这样不依赖本地MySQL也能跑；
+ * 需要压测真实MySQL时，通过-Djdbc.url、-Djdbc.driverClassName等系统属性覆盖即可。
+ */
+public final class BenchmarkDataSources {
+    public static final String H2_URL = "jdbc:h2:mem:bench;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    private BenchmarkDataSources() {
+    }
+
+    /**
+     * 加载Spring上下文，系统属性中未指定的jdbc配置(包括sync_one/sync_two)使用H2内存库
+     *
+     * @return Spring上下文，用完需要close以关闭连接池
+     */
+    public static ClassPathXmlApplicationContext openContext() {
+        defaultProperty("jdbc.driverClassName", "org.h2.Driver");
+        defaultProperty("jdbc.url", H2_URL);
+        defaultProperty("jdbc.username", "sa");
+        defaultProperty("jdbc.password", "");
+        for (String db : new String[]{"one", "two"}) {
+            defaultProperty("jdbc.driverClassName." + db, "org.h2.Driver");
+            defaultProperty("jdbc.url." + db, "jdbc:h2:mem:sync_" + db + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+            defaultProperty("jdbc.username." + db, "sa");
+            defaultProperty("jdbc.password." + db, "");
+        }
+        return new ClassPathXmlApplicationContext("classpath:applicationContext.xml");
+    }
+
+    /**
+     * 建表，并在record表为空时写入rows条数据
+     *
+     * @param dataSource 数据源
+     * @param rows       初始化数据条数
+     * @return record表中的最大id
+     */
+    public static long prepareRecordTable(DataSource dataSource, int rows) throws SQLException {
+        Connection conn = dataSource.getConnection();
+        Statement stmt = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            stmt = conn.createStatement();
+            stmt.execute("CREATE TABLE IF NOT EXISTS record (id bigint NOT NULL AUTO_INCREMENT, "
+                    + "description varchar(255) DEFAULT NULL, content text, createdTime datetime DEFAULT NULL, "
+                    + "modifyTime datetime DEFAULT NULL, PRIMARY KEY (id))");
+            rs = stmt.executeQuery("SELECT count(1) FROM record");
+            rs.next();
+            long existing = rs.getLong(1);
+            rs.close();
+            if (existing < rows) {
+                ps = conn.prepareStatement("INSERT INTO record(description,content) VALUES(?,?)");
+                for (long i = existing; i < rows; i++) {
+                    ps.setString(1, "benchmark description" + i);
+                    ps.setString(2, "benchmark content" + i);
+                    ps.addBatch();
+                    if (i % 1000 == 999) {
+                        ps.executeBatch();
+                    }
+                }
+                ps.executeBatch();
+            }
+            if (!conn.getAutoCommit()) {
+                conn.commit();
+            }
+            rs = stmt.executeQuery("SELECT max(id) FROM record");
+            return rs.next() ? rs.getLong(1) : 0L;
+        } finally {
+            DbUtils.closeQuietly(ps);
+            DbUtils.closeQuietly(conn, stmt, rs);
+        }
+    }
+
+    /**
+     * 建test_student表，并在表为空时写入rows条数据
+     *
+     * @param dataSource 数据源
+     * @param rows       初始化数据条数
+     */
+    public static void prepareStudentTable(DataSource dataSource, int rows) throws SQLException {
+        Connection conn = dataSource.getConnection();
+        Statement stmt = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            stmt = conn.createStatement();
+            stmt.execute("CREATE TABLE IF NOT EXISTS test_student (id bigint NOT NULL AUTO_INCREMENT, "
+                    + "name varchar(20) DEFAULT NULL, gender char(1) NOT NULL, age int NOT NULL, "
+                    + "team_id bigint DEFAULT NULL, PRIMARY KEY (id))");
+            rs = stmt.executeQuery("SELECT count(1) FROM test_student");
+            rs.next();
+            long existing = rs.getLong(1);
+            if (existing < rows) {
+                ps = conn.prepareStatement("INSERT INTO test_student(name,gender,age,team_id) VALUES (?,?,?,?)");
+                for (long i = existing; i < rows; i++) {
+                    ps.setString(1, "student" + i);
+                    ps.setString(2, i % 2 == 0 ? "男" : "女");
+                    ps.setInt(3, (int) (18 + i % 10));
+                    ps.setLong(4, i % 100);
+                    ps.addBatch();
+                    if (i % 1000 == 999) {
+                        ps.executeBatch();
+                    }
+                }
+                ps.executeBatch();
+            }
+            if (!conn.getAutoCommit()) {
+                conn.commit();
+            }
+        } finally {
+            DbUtils.closeQuietly(ps);
+            DbUtils.closeQuietly(conn, stmt, rs);
+        }
+    }
+
+    private static void defaultProperty(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+}
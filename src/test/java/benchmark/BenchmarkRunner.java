@@ -0,0 +1,85 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基准测试入口，按线程数逐个运行匹配的基准测试
+ * <code>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark=PoolBenchmark
+ * </code>
+ * 可用的系统属性(通过 -Dbenchmark.jvmArgs 传入)：
+ * <ul>
+ * <li>benchmark.threads 线程数列表，默认 1,4,16,64,256</li>
+ * <li>benchmark.forks/benchmark.warmups/benchmark.iterations 分叉数、预热及测量轮数</li>
+ * <li>benchmark.param.&lt;参数名&gt; 覆盖@Param的取值，多个值以逗号分隔，如 -Dbenchmark.param.rows=100000</li>
+ * <li>jdbc.* 覆盖jdbc.properties中的数据库配置，默认使用H2内存库</li>
+ * </ul>
+ * 结果以JSON格式写到 target/jmh-&lt;线程数&gt;.json
+ */
+public class BenchmarkRunner {
+    private static final String PARAM_PREFIX = "benchmark.param.";
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : ".*";
+        String[] threads = System.getProperty("benchmark.threads", "1,4,16,64,256").split(",");
+        String[] jvmArgs = forwardedProperties();
+        for (String t : threads) {
+            int threadCount = Integer.parseInt(t.trim());
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threadCount)
+                    .forks(Integer.getInteger("benchmark.forks", 1))
+                    .warmupIterations(Integer.getInteger("benchmark.warmups", 3))
+                    .warmupTime(TimeValue.seconds(1))
+                    .measurementIterations(Integer.getInteger("benchmark.iterations", 5))
+                    .measurementTime(TimeValue.seconds(2))
+                    .jvmArgsAppend(jvmArgs)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("target/jmh-" + threadCount + ".json");
+            for (String name : System.getProperties().stringPropertyNames()) {
+                if (name.startsWith(PARAM_PREFIX)) {
+                    options.param(name.substring(PARAM_PREFIX.length()), System.getProperty(name).split(","));
+                }
+            }
+            new Runner(options.build()).run();
+        }
+    }
+
+    /**
+     * 把jdbc.*和benchmark.*系统属性传给JMH分叉出来的JVM
+     */
+    private static String[] forwardedProperties() {
+        List<String> jvmArgs = new ArrayList<String>();
+        for (Map.Entry<Object, Object> entry : System.getProperties().entrySet()) {
+            String key = entry.getKey().toString();
+            if (key.startsWith("jdbc.") || key.startsWith("benchmark.")) {
+                jvmArgs.add("-D" + key + "=" + entry.getValue());
+            }
+        }
+        return jvmArgs.toArray(new String[jvmArgs.size()]);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package benchmark;
+
+import dbutils.BulkLoadResult;
+import dbutils.BulkLoader;
+import dbutils.DbUtilsTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 写入10000条record：ExampleJDBC的单连接单批次(逐行或改写为多行INSERT) 对比 BulkLoader并行分块
+ * <p/>
+ * 并行的收益取决于数据库的写入并发能力和CPU核数，H2内存库只能说明额外开销，需要指向MySQL测：
+ * <code>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark=BulkInsertBenchmark
+ *     -Dbenchmark.jvmArgs="-Dbenchmark.threads=1 -Djdbc.url=jdbc:mysql://... -Djdbc.driverClassName=com.mysql.jdbc.Driver"
+ * </code>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class BulkInsertBenchmark {
+    private static final String SQL = "INSERT INTO record(description,content) VALUES(?,?)";
+
+    @Param({"10000"})
+    public int rows;
+
+    @Param({"1", "4", "8"})
+    public int parallelism;
+
+    @Param({"1000"})
+    public int chunkSize;
+
+    /**
+     * batchUpdate改写多行INSERT的行数，0表示不改写
+     */
+    @Param({"0", "1000"})
+    public int multiRowInsertSize;
+
+    private ClassPathXmlApplicationContext ctx;
+    private DbUtilsTemplate template;
+    private Object[][] params;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        ctx = BenchmarkDataSources.openContext();
+        DataSource dataSource = (DataSource) ctx.getBean("boneCPDataSource");
+        BenchmarkDataSources.prepareRecordTable(dataSource, 0);
+        template = new DbUtilsTemplate(dataSource);
+        template.setMultiRowInsertSize(multiRowInsertSize);
+        params = new Object[rows][];
+        for (int i = 0; i < rows; i++) {
+            params[i] = new Object[]{"BonCP测试description" + i, "BonCP测试content" + i};
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ctx.close();
+    }
+
+    @Benchmark
+    public int[] singleBatch() throws SQLException {
+        return template.batchUpdate(SQL, params);
+    }
+
+    @Benchmark
+    public long[] batchInsertWithKeys() throws SQLException {
+        return template.batchInsert(SQL, params);
+    }
+
+    @Benchmark
+    public BulkLoadResult bulkLoad() throws SQLException {
+        BulkLoader loader = template.bulkLoader();
+        loader.setParallelism(parallelism);
+        loader.setChunkSize(chunkSize);
+        BulkLoadResult result = loader.load(SQL, params);
+        if (result.hasFailures()) {
+            throw result.getFailedChunks().get(0).getError();
+        }
+        return result;
+    }
+}
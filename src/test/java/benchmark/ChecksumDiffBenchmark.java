@@ -0,0 +1,130 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package benchmark;
+
+import org.apache.commons.dbutils.DbUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import sync.ChecksumDiff;
+import sync.DiffResult;
+import sync.SyncTable;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 比较sync_one和sync_two中的record表：ChecksumDiff按范围校验和 对比 两边全表读出逐行比较
+ * <code>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark=ChecksumDiffBenchmark
+ *     -Dbenchmark.jvmArgs="-Dbenchmark.threads=1 -Dbenchmark.param.rows=1000000"
+ * </code>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ChecksumDiffBenchmark {
+    @Param({"200000"})
+    public int rows;
+
+    /**
+     * 目标库中被修改的行数
+     */
+    @Param({"10"})
+    public int differences;
+
+    private ClassPathXmlApplicationContext ctx;
+    private DataSource source;
+    private DataSource target;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        ctx = BenchmarkDataSources.openContext();
+        source = (DataSource) ctx.getBean("syncOneDataSource");
+        target = (DataSource) ctx.getBean("syncTwoDataSource");
+        BenchmarkDataSources.prepareRecordTable(source, rows);
+        BenchmarkDataSources.prepareRecordTable(target, rows);
+        Connection conn = target.getConnection();
+        Statement stmt = null;
+        try {
+            stmt = conn.createStatement();
+            stmt.executeUpdate("UPDATE record SET description = 'changed' WHERE MOD(id, " + rows / differences
+                    + ") = 0");
+            if (!conn.getAutoCommit()) {
+                conn.commit();
+            }
+        } finally {
+            DbUtils.closeQuietly(stmt);
+            DbUtils.closeQuietly(conn);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ctx.close();
+    }
+
+    @Benchmark
+    public DiffResult checksumDiff() throws SQLException {
+        return new ChecksumDiff(source, target).diff(SyncTable.record());
+    }
+
+    /**
+     * 两边同时按主键顺序读出全表逐行比较
+     */
+    @Benchmark
+    public int fullCompare() throws SQLException {
+        Connection sourceConn = source.getConnection();
+        Connection targetConn = target.getConnection();
+        Statement sourceStmt = null;
+        Statement targetStmt = null;
+        ResultSet sourceRs = null;
+        ResultSet targetRs = null;
+        try {
+            sourceStmt = sourceConn.createStatement();
+            targetStmt = targetConn.createStatement();
+            sourceRs = sourceStmt.executeQuery("SELECT * FROM record ORDER BY id");
+            targetRs = targetStmt.executeQuery("SELECT * FROM record ORDER BY id");
+            int columns = sourceRs.getMetaData().getColumnCount();
+            int different = 0;
+            while (sourceRs.next() & targetRs.next()) {
+                for (int i = 1; i <= columns; i++) {
+                    if (!Arrays.equals(new Object[]{sourceRs.getString(i)}, new Object[]{targetRs.getString(i)})) {
+                        different++;
+                        break;
+                    }
+                }
+            }
+            return different;
+        } finally {
+            DbUtils.closeQuietly(sourceConn, sourceStmt, sourceRs);
+            DbUtils.closeQuietly(targetConn, targetStmt, targetRs);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package benchmark;
+
+import dbutils.DbUtilsTemplate;
+import dbutils.LocalInfileLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 导入100万条record：LOAD DATA LOCAL INFILE 对比 JDBC批量INSERT
+ * <p/>
+ * loadData只能在MySQL上运行(H2上会报错跳过)，需要服务器开启local_infile：
+ * <code>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark=LoadDataBenchmark
+ *     -Dbenchmark.jvmArgs="-Dbenchmark.threads=1 -Xmx2g -Djdbc.url=jdbc:mysql://... -Djdbc.driverClassName=com.mysql.jdbc.Driver"
+ * </code>
+ * encodeOnly只测客户端把数据编码为LOAD DATA格式的开销。
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class LoadDataBenchmark {
+    private static final String[] COLUMNS = {"description", "content"};
+
+    @Param({"1000000"})
+    public int rows;
+
+    private ClassPathXmlApplicationContext ctx;
+    private DataSource dataSource;
+    private DbUtilsTemplate template;
+    private Object[][] params;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        ctx = BenchmarkDataSources.openContext();
+        dataSource = (DataSource) ctx.getBean("boneCPDataSource");
+        BenchmarkDataSources.prepareRecordTable(dataSource, 0);
+        template = new DbUtilsTemplate(dataSource);
+        params = new Object[rows][];
+        for (int i = 0; i < rows; i++) {
+            params[i] = new Object[]{"nightly description\t" + i, "nightly content\n" + i};
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void truncate() throws SQLException {
+        Connection conn = dataSource.getConnection();
+        try {
+            conn.createStatement().execute("TRUNCATE TABLE record");
+            if (!conn.getAutoCommit()) {
+                conn.commit();
+            }
+        } finally {
+            conn.close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ctx.close();
+    }
+
+    @Benchmark
+    public int loadData() throws SQLException {
+        LocalInfileLoader loader = template.localInfileLoader();
+        return loader.load("record", COLUMNS, params);
+    }
+
+    @Benchmark
+    public int[] batchInsert() throws SQLException {
+        return template.batchUpdate("INSERT INTO record(description,content) VALUES(?,?)", params);
+    }
+
+    @Benchmark
+    public long encodeOnly() throws IOException {
+        InputStream in = LocalInfileLoader.encode(COLUMNS.length, Arrays.asList(params).iterator());
+        byte[] buf = new byte[64 * 1024];
+        long bytes = 0;
+        int n;
+        while ((n = in.read(buf, 0, buf.length)) > 0) {
+            bytes += n;
+        }
+        return bytes;
+    }
+}
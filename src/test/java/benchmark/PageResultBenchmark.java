@@ -0,0 +1,85 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package benchmark;
+
+import dbutils.DbUtilsTemplate;
+import dbutils.PageCountMode;
+import dbutils.PageResult;
+import model.Record;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * findPageResult：两次查询 对比 一次查询取当前页和总数
+ * <p/>
+ * H2不支持SQL_CALC_FOUND_ROWS，FOUND_ROWS在H2上会退回两次查询，需要指向MySQL才有意义：
+ * <code>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark=PageResultBenchmark -Dbenchmark.jvmArgs="-Dbenchmark.threads=1,16"
+ * </code>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class PageResultBenchmark {
+    private static final String SQL = "select id, description from record where id > ? order by id";
+
+    @Param({"100000"})
+    public int rows;
+
+    @Param({"TWO_QUERIES", "WINDOW", "FOUND_ROWS"})
+    public PageCountMode mode;
+
+    @Param({"20"})
+    public int pageSize;
+
+    private ClassPathXmlApplicationContext ctx;
+    private DbUtilsTemplate template;
+    private long minId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        ctx = BenchmarkDataSources.openContext();
+        DataSource dataSource = (DataSource) ctx.getBean("boneCPDataSource");
+        long maxId = BenchmarkDataSources.prepareRecordTable(dataSource, rows);
+        // 过滤掉一半记录，避免数据库直接用表的行数作为count结果
+        minId = maxId / 2;
+        template = new DbUtilsTemplate(dataSource);
+        template.setPageCountMode(mode);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ctx.close();
+    }
+
+    @Benchmark
+    public PageResult pageResult() {
+        return template.findPageResult(Record.class, SQL, minId, 2, pageSize);
+    }
+}
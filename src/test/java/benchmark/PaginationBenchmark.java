@@ -0,0 +1,95 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package benchmark;
+
+import dbutils.DbUtilsTemplate;
+import dbutils.KeysetPage;
+import model.Record;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 深分页：limit offset分页 对比 键集(seek)分页
+ * <p/>
+ * 在record表的不同深度取一页，offset分页的耗时随深度线性增长，键集分页应保持平稳。
+ * 默认造200万行数据，H2内存库需要较大的堆，也可以用 -Dbenchmark.param.rows 调小或指向MySQL：
+ * <code>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark=PaginationBenchmark -Dbenchmark.jvmArgs="-Dbenchmark.threads=1"
+ * </code>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class PaginationBenchmark {
+    private static final String SQL = "select id, description from record";
+
+    @Param({"2000000"})
+    public int rows;
+
+    /**
+     * 翻页深度，即跳过的记录数，按rows的比例
+     */
+    @Param({"0", "0.1", "0.5", "0.99"})
+    public double depth;
+
+    @Param({"20"})
+    public int pageSize;
+
+    private ClassPathXmlApplicationContext ctx;
+    private DbUtilsTemplate template;
+    private int page;
+    private Object afterKey;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        ctx = BenchmarkDataSources.openContext();
+        DataSource dataSource = (DataSource) ctx.getBean("boneCPDataSource");
+        BenchmarkDataSources.prepareRecordTable(dataSource, rows);
+        template = new DbUtilsTemplate(dataSource);
+        int skip = (int) (rows * depth) / pageSize * pageSize;
+        page = skip / pageSize + 1;
+        afterKey = skip == 0 ? null : template.findBy(SQL + " order by id limit ?, 1", "id", skip - 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ctx.close();
+    }
+
+    @Benchmark
+    public List<Record> offsetPage() {
+        return template.find(Record.class, SQL + " order by id", page, pageSize);
+    }
+
+    @Benchmark
+    public KeysetPage<Record> keysetPage() {
+        return template.findKeysetPage(Record.class, SQL, "id", afterKey, pageSize);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package benchmark;
+
+import dbutils.InstrumentedDataSource;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BoneCP与C3P0连接池在并发下的对比测试
+ * <p/>
+ * 取代boncp.ExampleJDBC/c3p0.ExampleJDBC中用System.currentTimeMillis()计时的单线程批量插入，
+ * 这里只测连接池本身：Spring上下文的启动和连接池关闭都在计时之外。
+ * <ul>
+ * <li>checkout: 借出并归还一个连接，反映连接池的借还开销</li>
+ * <li>query: 借出连接，按主键查询record表的一行，再归还</li>
+ * </ul>
+ * Throughput模式给出吞吐量，SampleTime模式给出p50/p99/p999延迟。
+ * 线程数由BenchmarkRunner按 -Dbenchmark.threads 逐个运行(默认1到256)。
+ * 借连接超时(如c3p0的checkoutTimeout)不会中断测试，而是计入checkoutTimeouts。
+ * instrumented=true时连接池外包一层InstrumentedDataSource，对比得出统计借还的开销。
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PoolBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Pool {
+        /**
+         * applicationContext.xml中的连接池Bean
+         */
+        @Param({"boneCPDataSource", "c3p0DataSource"})
+        public String pool;
+
+        /**
+         * record表中准备的数据条数
+         */
+        @Param({"10000"})
+        public int rows;
+
+        /**
+         * 是否用InstrumentedDataSource包装，用来衡量统计本身的开销
+         */
+        @Param({"false", "true"})
+        public boolean instrumented;
+
+        ClassPathXmlApplicationContext ctx;
+        DataSource dataSource;
+        long maxId;
+
+        @Setup(Level.Trial)
+        public void setUp() throws SQLException {
+            ctx = BenchmarkDataSources.openContext();
+            dataSource = (DataSource) ctx.getBean(pool);
+            maxId = BenchmarkDataSources.prepareRecordTable(dataSource, rows);
+            if (instrumented) {
+                dataSource = new InstrumentedDataSource(pool, dataSource);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            // 关闭上下文时会调用连接池的close方法
+            ctx.close();
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Failures {
+        public long checkoutTimeouts;
+    }
+
+    @Benchmark
+    public boolean checkout(Pool pool, Failures failures) {
+        Connection conn;
+        try {
+            conn = pool.dataSource.getConnection();
+        } catch (SQLException e) {
+            failures.checkoutTimeouts++;
+            return false;
+        }
+        close(conn);
+        return true;
+    }
+
+    @Benchmark
+    public void query(Pool pool, Failures failures, Blackhole bh) throws SQLException {
+        Connection conn;
+        try {
+            conn = pool.dataSource.getConnection();
+        } catch (SQLException e) {
+            failures.checkoutTimeouts++;
+            return;
+        }
+        try {
+            PreparedStatement ps = conn.prepareStatement("SELECT id, description FROM record WHERE id = ?");
+            try {
+                ps.setLong(1, 1 + ThreadLocalRandom.current().nextLong(pool.maxId));
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) {
+                    bh.consume(rs.getLong(1));
+                    bh.consume(rs.getString(2));
+                }
+                rs.close();
+            } finally {
+                ps.close();
+            }
+        } finally {
+            close(conn);
+        }
+    }
+
+    private static void close(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException ignored) {
+            // 归还失败不影响计时
+        }
+    }
+}
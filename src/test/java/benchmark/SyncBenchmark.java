@@ -0,0 +1,150 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package benchmark;
+
+import org.apache.commons.dbutils.DbUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import sync.AdaptiveThrottle;
+import sync.IncrementalSync;
+import sync.SyncResult;
+import sync.SyncTable;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * syncOneDataSource到syncTwoDataSource的record表同步：全量复制 对比 只有少量行变化时的增量同步，
+ * 以及单线程写入 对比 按主键分区并行写入，不限速 对比 AdaptiveThrottle按延迟预算调节
+ * <code>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark=SyncBenchmark
+ *     -Dbenchmark.jvmArgs="-Dbenchmark.threads=1 -Dbenchmark.param.rows=1000000"
+ * </code>
+ * 指向MySQL时通过-Djdbc.url.one、-Djdbc.url.two等覆盖syncjdbc.properties
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class SyncBenchmark {
+    @Param({"100000"})
+    public int rows;
+
+    @Param({"1000"})
+    public int chunkSize;
+
+    /**
+     * 并行写入目标库的线程数
+     */
+    @Param({"1", "4"})
+    public int applyParallelism;
+
+    /**
+     * 增量同步前修改的行数占比
+     */
+    @Param({"0.01"})
+    public double changedRatio;
+
+    /**
+     * AdaptiveThrottle的延迟预算，0表示不限速
+     */
+    @Param({"0", "100"})
+    public long latencyBudgetMillis;
+
+    private ClassPathXmlApplicationContext ctx;
+    private DataSource source;
+    private DataSource target;
+    private IncrementalSync sync;
+    private Timestamp watermark;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        ctx = BenchmarkDataSources.openContext();
+        source = (DataSource) ctx.getBean("syncOneDataSource");
+        target = (DataSource) ctx.getBean("syncTwoDataSource");
+        BenchmarkDataSources.prepareRecordTable(source, rows);
+        BenchmarkDataSources.prepareRecordTable(target, 0);
+        watermark = new Timestamp(System.currentTimeMillis() / 1000 * 1000);
+        execute(source, "UPDATE record SET modifyTime = ? WHERE modifyTime IS NULL", watermark);
+        execute(source, "CREATE INDEX idx_record_modify_time ON record (modifyTime, id)", null);
+        sync = new IncrementalSync(source, target);
+        sync.setChunkSize(chunkSize);
+        sync.setApplyParallelism(applyParallelism);
+        sync.setLagMargin(0, TimeUnit.SECONDS);
+        if (latencyBudgetMillis > 0) {
+            sync.setThrottle(new AdaptiveThrottle(latencyBudgetMillis, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void touchRows() throws SQLException {
+        // 每次增量同步前把一部分行的修改时间往后推一秒
+        watermark = new Timestamp(watermark.getTime() + 1000);
+        execute(source, "UPDATE record SET modifyTime = ? WHERE MOD(id, " + Math.max(1, Math.round(1 / changedRatio))
+                + ") = 0", watermark);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ctx.close();
+    }
+
+    @Benchmark
+    public SyncResult fullCopy() throws SQLException {
+        execute(target, "DELETE FROM record", null);
+        return sync.sync(SyncTable.record(), null);
+    }
+
+    @Benchmark
+    public SyncResult incremental() throws SQLException {
+        return sync.sync(SyncTable.record(), new Timestamp(watermark.getTime() - 1));
+    }
+
+    private static void execute(DataSource dataSource, String sql, Timestamp param) throws SQLException {
+        Connection conn = dataSource.getConnection();
+        PreparedStatement stmt = null;
+        try {
+            stmt = conn.prepareStatement(sql);
+            if (param != null) {
+                stmt.setTimestamp(1, param);
+            }
+            stmt.execute();
+            if (!conn.getAutoCommit()) {
+                conn.commit();
+            }
+        } catch (SQLException e) {
+            // 索引已存在
+            if (param != null || !sql.startsWith("CREATE INDEX")) {
+                throw e;
+            }
+        } finally {
+            DbUtils.closeQuietly(stmt);
+            DbUtils.closeQuietly(conn);
+        }
+    }
+}
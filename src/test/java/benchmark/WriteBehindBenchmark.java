@@ -0,0 +1,87 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package benchmark;
+
+import dbutils.DbUtilsTemplate;
+import dbutils.WriteBehindInserter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每个事件一次insert：直接insert 对比 后写缓冲合并写入
+ * <p/>
+ * writeBehind等待Future完成，衡量的是调用方拿到主键为止的吞吐量；线程越多合并效果越明显：
+ * <code>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark=WriteBehindBenchmark -Dbenchmark.jvmArgs="-Dbenchmark.threads=1,16,64"
+ * </code>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class WriteBehindBenchmark {
+    private static final String SQL = "INSERT INTO record(description,content) VALUES(?,?)";
+
+    @Param({"500"})
+    public int batchSize;
+
+    /**
+     * 最长等待时间，毫秒
+     */
+    @Param({"5"})
+    public int maxDelay;
+
+    private ClassPathXmlApplicationContext ctx;
+    private DbUtilsTemplate template;
+    private WriteBehindInserter inserter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        ctx = BenchmarkDataSources.openContext();
+        DataSource dataSource = (DataSource) ctx.getBean("boneCPDataSource");
+        BenchmarkDataSources.prepareRecordTable(dataSource, 0);
+        template = new DbUtilsTemplate(dataSource);
+        inserter = template.writeBehindInserter(batchSize, maxDelay, TimeUnit.MILLISECONDS, 10000);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        inserter.close();
+        ctx.close();
+    }
+
+    @Benchmark
+    public long direct() throws SQLException {
+        return template.insert(SQL, new Object[]{"event description", "event content"});
+    }
+
+    @Benchmark
+    public long writeBehind() throws Exception {
+        return inserter.insert(SQL, new Object[]{"event description", "event content"}).get();
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import com.jolbox.bonecp.BoneCPDataSource;
+import model.Student;
+import model.Team;
+import org.apache.commons.dbutils.DbUtils;
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.ResultSetHandler;
+import org.apache.commons.dbutils.handlers.BeanListHandler;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * 编译后的Bean映射与commons-dbutils的BeanListHandler结果一致
+ */
+public class BeanRowMapperTest {
+    private static BoneCPDataSource dataSource;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        dataSource = EmbeddedDatabase.create("mapper");
+        EmbeddedDatabase.execute(dataSource,
+                "INSERT INTO test_team(name,income,rank) VALUES ('一队', 1234.50, 1), (NULL, NULL, NULL)",
+                "INSERT INTO test_student(name,gender,age,team_id) VALUES ('张三','男',20,1), ('李四','女',21,NULL)");
+    }
+
+    @AfterClass
+    public static void destroy() {
+        dataSource.close();
+    }
+
+    @Test
+    public void testSameAsBeanListHandler() throws Exception {
+        String sql = "SELECT id, name, income, rank FROM test_team ORDER BY id";
+        List<Team> expected = query(sql, new BeanListHandler<Team>(Team.class));
+        List<Team> actual = query(sql, new CompiledBeanListHandler<Team>(Team.class));
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getId(), actual.get(i).getId());
+            assertEquals(expected.get(i).getName(), actual.get(i).getName());
+            assertEquals(expected.get(i).getIncome(), actual.get(i).getIncome(), 0.001f);
+            assertEquals(expected.get(i).getRank(), actual.get(i).getRank());
+        }
+        assertEquals(1234.5f, actual.get(0).getIncome(), 0.001f);
+        assertNull(actual.get(1).getName());
+        assertEquals(0, actual.get(1).getRank());
+    }
+
+    @Test
+    public void testLabelsAreCaseInsensitiveAndUnknownColumnsIgnored() throws Exception {
+        List<Student> students = query("SELECT ID, NAME, gender AS Gender, team_id AS TEAMID, 1 AS extra_col "
+                + "FROM test_student ORDER BY id", new CompiledBeanListHandler<Student>(Student.class));
+        assertEquals(2, students.size());
+        assertEquals("张三", students.get(0).getName());
+        assertEquals("男", students.get(0).getGender());
+        assertEquals(1L, students.get(0).getTeamId());
+        assertEquals(0L, students.get(1).getTeamId());
+        assertEquals(0, students.get(1).getAge());
+    }
+
+    @Test
+    public void testMapperIsCompiledOncePerLayout() throws Exception {
+        final String sql = "SELECT id, name FROM test_team";
+        BeanRowMapper<?> first = query(sql, new MapperHandler());
+        BeanRowMapper<?> second = query(sql, new MapperHandler());
+        assertSame(first, second);
+    }
+
+    private static <T> T query(String sql, ResultSetHandler<T> rsh) throws Exception {
+        Connection conn = dataSource.getConnection();
+        try {
+            return new QueryRunner().query(conn, sql, rsh);
+        } finally {
+            DbUtils.closeQuietly(conn);
+        }
+    }
+
+    private static class MapperHandler implements ResultSetHandler<BeanRowMapper<Team>> {
+        public BeanRowMapper<Team> handle(ResultSet rs) throws SQLException {
+            return BeanRowMapper.of(Team.class, rs);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import com.jolbox.bonecp.BoneCPDataSource;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 并行分块批量写入测试，使用H2内存库
+ */
+public class BulkLoaderTest {
+    private static final String INSERT_STUDENT = "INSERT INTO test_student(name,gender,age,team_id) VALUES (?,?,?,?)";
+
+    private static BoneCPDataSource dataSource;
+    private static DbUtilsTemplate template;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        dataSource = EmbeddedDatabase.create("bulk");
+        template = new DbUtilsTemplate(dataSource);
+    }
+
+    @AfterClass
+    public static void destroy() {
+        dataSource.close();
+    }
+
+    @Before
+    public void clean() throws Exception {
+        EmbeddedDatabase.execute(dataSource, "DELETE FROM test_student");
+    }
+
+    @Test
+    public void testLoadInParallelChunks() throws Exception {
+        BulkLoader loader = template.bulkLoader();
+        loader.setChunkSize(500);
+        loader.setParallelism(3);
+        BulkLoadResult result = loader.load(INSERT_STUDENT, students(2300, -1));
+        assertFalse(result.hasFailures());
+        assertEquals(2300, result.getRowCount());
+        assertEquals(5, result.getChunks().size());
+        assertEquals(2000L, result.getChunks().get(4).getFirstRow());
+        assertEquals(300, result.getChunks().get(4).getUpdateCounts().length);
+        assertEquals(2300, template.getCount("SELECT id FROM test_student", null));
+        assertEquals(0, dataSource.getTotalLeased());
+    }
+
+    @Test
+    public void testFailedChunkIsReportedAndOthersCommitted() throws Exception {
+        BulkLoader loader = template.bulkLoader();
+        loader.setChunkSize(100);
+        loader.setParallelism(2);
+        BulkLoadResult result = loader.load(INSERT_STUDENT, students(1000, 345));
+        assertTrue(result.hasFailures());
+        assertEquals(1, result.getFailedChunks().size());
+        BulkLoadResult.Chunk failed = result.getFailedChunks().get(0);
+        assertEquals(3, failed.getIndex());
+        assertNotNull(failed.getError());
+        assertEquals(900, result.getRowCount());
+        assertEquals(900, template.getCount("SELECT id FROM test_student", null));
+    }
+
+    @Test
+    public void testFailureRollsBackEverythingWithoutPerChunkCommit() throws Exception {
+        BulkLoader loader = template.bulkLoader();
+        loader.setChunkSize(100);
+        loader.setParallelism(2);
+        loader.setCommitPerChunk(false);
+        BulkLoadResult result = loader.load(INSERT_STUDENT, students(1000, 745));
+        assertEquals(0, result.getRowCount());
+        assertEquals(10, result.getFailedChunks().size());
+        assertEquals(0, template.getCount("SELECT id FROM test_student", null));
+
+        result = loader.load(INSERT_STUDENT, students(1000, -1));
+        assertFalse(result.hasFailures());
+        assertEquals(1000, template.getCount("SELECT id FROM test_student", null));
+        assertEquals(0, dataSource.getTotalLeased());
+    }
+
+    /**
+     * @param badRow 该行的gender为null，违反非空约束；-1表示没有
+     */
+    private static Object[][] students(int rows, int badRow) {
+        List<Object[]> students = new ArrayList<Object[]>(rows);
+        for (int i = 0; i < rows; i++) {
+            students.add(new Object[]{"student" + i, i == badRow ? null : "男", 18 + i % 10, (long) (i % 7)});
+        }
+        return students.toArray(new Object[rows][]);
+    }
+}
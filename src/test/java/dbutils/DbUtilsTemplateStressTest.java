@@ -0,0 +1,162 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import com.jolbox.bonecp.BoneCPDataSource;
+import model.Student;
+import org.apache.commons.dbutils.DbUtils;
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.handlers.BeanListHandler;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 多线程共享同一个DbUtilsTemplate实例的压力测试
+ * <p/>
+ * 与旧的实现方式(每次调用new QueryRunner()、new BeanListHandler()、new Object[]{param})对比，
+ * 日志中输出两者的吞吐量和每次调用分配的字节数。
+ */
+public class DbUtilsTemplateStressTest {
+    private static final Logger LOG = LoggerFactory.getLogger(DbUtilsTemplateStressTest.class);
+    private static final String SQL = "SELECT id, name, gender, age, team_id as teamId FROM test_student WHERE team_id=?";
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 5000;
+    private static final int TEAMS = 10;
+
+    private static BoneCPDataSource dataSource;
+    private static DbUtilsTemplate template;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        dataSource = EmbeddedDatabase.create("stress");
+        template = new DbUtilsTemplate(dataSource);
+        Object[][] rows = new Object[TEAMS * 3][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[]{"student" + i, "男", 20, (long) (i % TEAMS)};
+        }
+        template.batchUpdate("INSERT INTO test_student(name,gender,age,team_id) VALUES (?,?,?,?)", rows);
+    }
+
+    @AfterClass
+    public static void destroy() {
+        dataSource.close();
+    }
+
+    @Test
+    public void testSharedTemplateUnderConcurrency() throws Exception {
+        Workload shared = new Workload() {
+            public List<Student> find(long teamId) throws Exception {
+                return template.find(Student.class, SQL, teamId);
+            }
+        };
+        Workload legacy = new Workload() {
+            public List<Student> find(long teamId) throws Exception {
+                QueryRunner queryRunner = new QueryRunner();
+                Connection conn = dataSource.getConnection();
+                try {
+                    return queryRunner.query(conn, SQL, new BeanListHandler<Student>(Student.class),
+                            new Object[]{teamId});
+                } finally {
+                    DbUtils.closeQuietly(conn);
+                }
+            }
+        };
+        // 预热
+        run(legacy);
+        run(shared);
+
+        Result legacyResult = run(legacy);
+        Result sharedResult = run(shared);
+        LOG.info("legacy : " + legacyResult);
+        LOG.info("shared : " + sharedResult);
+        assertTrue(sharedResult.bytesPerOp <= legacyResult.bytesPerOp);
+    }
+
+    private Result run(final Workload workload) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(THREADS);
+        final AtomicLong allocated = new AtomicLong();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        for (int t = 0; t < THREADS; t++) {
+            final int seed = t;
+            new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                        long before = allocatedBytes();
+                        for (int i = 0; i < ITERATIONS; i++) {
+                            long teamId = (seed + i) % TEAMS;
+                            List<Student> students = workload.find(teamId);
+                            assertEquals(3, students.size());
+                            for (Student student : students) {
+                                assertEquals(teamId, student.getTeamId());
+                            }
+                        }
+                        allocated.addAndGet(allocatedBytes() - before);
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        assertNull(String.valueOf(failure.get()), failure.get());
+        int ops = THREADS * ITERATIONS;
+        return new Result(ops * 1000000000L / elapsed, allocated.get() / ops);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private interface Workload {
+        List<Student> find(long teamId) throws Exception;
+    }
+
+    private static class Result {
+        final long opsPerSecond;
+        final long bytesPerOp;
+
+        Result(long opsPerSecond, long bytesPerOp) {
+            this.opsPerSecond = opsPerSecond;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        public String toString() {
+            return opsPerSecond + " ops/s, " + bytesPerOp + " bytes/op";
+        }
+    }
+}
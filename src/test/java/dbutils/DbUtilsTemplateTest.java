@@ -0,0 +1,671 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import com.jolbox.bonecp.BoneCPDataSource;
+import com.mysql.jdbc.MySQLConnection;
+import model.Student;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * DbUtilsTemplate基本功能测试，使用H2内存库
+ */
+public class DbUtilsTemplateTest {
+    private static BoneCPDataSource dataSource;
+    private static DbUtilsTemplate template;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        dataSource = EmbeddedDatabase.create("template");
+        template = new DbUtilsTemplate(dataSource);
+        template.batchUpdate("INSERT INTO test_student(name,gender,age,team_id) VALUES (?,?,?,?)", new Object[][]{
+                {"张三", "男", 20, 1L}, {"李四", "女", 21, 1L}, {"王五", "男", 22, 2L}});
+    }
+
+    @AfterClass
+    public static void destroy() {
+        dataSource.close();
+    }
+
+    @Test
+    public void testInsertAndFindFirst() throws Exception {
+        long id = template.insert("INSERT INTO test_student(name,gender,age,team_id) VALUES (?,?,?,?)",
+                new Object[]{"赵六", "女", 23, null});
+        assertTrue(id > 0);
+        Student student = template.findFirst(Student.class,
+                "SELECT id, name, gender, age, team_id as teamId FROM test_student WHERE id=?", id);
+        assertEquals("赵六", student.getName());
+        assertEquals(0L, student.getTeamId());
+        assertEquals(1, template.update("DELETE FROM test_student WHERE id=?", id));
+        assertNull(template.findFirst(Student.class, "SELECT id FROM test_student WHERE id=?", id));
+    }
+
+    @Test
+    public void testFind() {
+        List<Student> students = template.find(Student.class,
+                "SELECT id, name, gender, age, team_id as teamId FROM test_student WHERE team_id=? ORDER BY id", 1L);
+        assertEquals(2, students.size());
+        assertEquals("张三", students.get(0).getName());
+
+        List<Map<String, Object>> rows = template.find("SELECT name FROM test_student WHERE team_id=?", 2L);
+        assertEquals(1, rows.size());
+        assertEquals("王五", rows.get(0).get("name"));
+    }
+
+    @Test
+    public void testFindByAndCount() {
+        assertEquals("李四", template.findBy("SELECT name FROM test_student WHERE age=?", "name", 21));
+        assertEquals("王五", template.findBy("SELECT name FROM test_student WHERE age=?", 1, new Object[]{22}));
+        assertEquals(2, template.getCount("SELECT id FROM test_student WHERE team_id=?", 1L));
+    }
+
+    @Test
+    public void testParameterMetaDataCache() throws Exception {
+        DbUtilsTemplate cached = new DbUtilsTemplate(dataSource);
+        ParameterMetaDataCache cache = cached.getParameterMetaDataCache();
+        String sql = "UPDATE test_student SET team_id=? WHERE name=?";
+        cached.update(sql, new Object[]{null, "nobody"});
+        cached.update(sql, new Object[]{3L, "nobody"});
+        cached.update(sql, new Object[]{null, "nobody"});
+        assertEquals(1, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+
+        cached.setParameterMetaDataCacheSize(2);
+        for (int i = 0; i < 5; i++) {
+            cached.find("SELECT name FROM test_student WHERE age=? AND " + i + "=" + i, 20);
+        }
+        assertEquals(2, cache.size());
+
+        // 分页查询的各页共用一项
+        cached.getParameterMetaDataCache().clear();
+        String pageSql = "SELECT id, name FROM test_student WHERE age>=? ORDER BY id";
+        for (int page = 1; page <= 4; page++) {
+            cached.find(Student.class, pageSql, 20, page, 1);
+        }
+        assertEquals("王五", cached.find(Student.class, pageSql, 20, 2, 2).get(0).getName());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testFindEach() throws Exception {
+        final List<String> names = new ArrayList<String>();
+        int rows = template.findEach(Student.class, "SELECT id, name FROM test_student WHERE team_id=? ORDER BY id",
+                new Object[]{1L}, new RowCallback<Student>() {
+                    public void processRow(Student row) {
+                        names.add(row.getName());
+                    }
+                });
+        assertEquals(2, rows);
+        assertEquals(Arrays.asList("张三", "李四"), names);
+    }
+
+    @Test
+    public void testFindCursorReleasesConnection() throws Exception {
+        int leased = dataSource.getTotalLeased();
+        ResultCursor<Map<String, Object>> cursor = template.findCursor("SELECT name FROM test_student ORDER BY id", null);
+        assertEquals(leased + 1, dataSource.getTotalLeased());
+        int rows = 0;
+        for (Map<String, Object> row : cursor) {
+            rows++;
+        }
+        assertEquals(cursor.getRowCount(), rows);
+        assertTrue(cursor.isClosed());
+        assertEquals(leased, dataSource.getTotalLeased());
+
+        ResultCursor<Student> students = template.findCursor(Student.class, "SELECT id, name FROM test_student", null);
+        assertTrue(students.hasNext());
+        students.next();
+        students.close();
+        assertEquals(leased, dataSource.getTotalLeased());
+    }
+
+    @Test
+    public void testEarlyCloseCancelsStatement() throws Exception {
+        final AtomicInteger cancels = new AtomicInteger();
+        DbUtilsTemplate counting = new DbUtilsTemplate(countCancels(dataSource, cancels));
+        int leased = dataSource.getTotalLeased();
+
+        // 读完时不cancel
+        ResultCursor<Map<String, Object>> cursor = counting.findCursor("SELECT name FROM test_student", null);
+        while (cursor.hasNext()) {
+            cursor.next();
+        }
+        cursor.close();
+        assertEquals(0, cancels.get());
+
+        // 提前结束时先cancel再关闭，连接立即归还
+        cursor = counting.findCursor("SELECT name FROM test_student ORDER BY id", null);
+        assertEquals("张三", cursor.next().get("name"));
+        cursor.close();
+        cursor.close();
+        assertEquals(1, cancels.get());
+        assertEquals(1, cursor.getRowCount());
+        assertEquals(leased, dataSource.getTotalLeased());
+
+        // findEach中回调抛出异常也是提前结束
+        try {
+            counting.findEach("SELECT name FROM test_student", null, new RowCallback<Map<String, Object>>() {
+                public void processRow(Map<String, Object> row) {
+                    throw new IllegalArgumentException("stop");
+                }
+            });
+        } catch (IllegalArgumentException e) {
+            assertEquals("stop", e.getMessage());
+        }
+        assertEquals(2, cancels.get());
+        assertEquals(leased, dataSource.getTotalLeased());
+    }
+
+    @Test
+    public void testEarlyCloseKillsMySqlStreamingQuery() throws Exception {
+        // 模拟Connector/J 5.1的流式结果集：cancel()不起作用，关闭结果集时一直读取到服务端停止发送
+        final CountDownLatch killed = new CountDownLatch(1);
+        final List<String> kills = new ArrayList<String>();
+        final AtomicInteger returned = new AtomicInteger();
+        final Object killer = stub(com.mysql.jdbc.Connection.class, new Stub() {
+            Object answer(Object proxy, String method, Object[] args) {
+                if (!method.equals("createStatement")) {
+                    return null;
+                }
+                return stub(java.sql.Statement.class, new Stub() {
+                    Object answer(Object proxy, String method, Object[] args) {
+                        if (method.equals("execute")) {
+                            kills.add((String) args[0]);
+                            killed.countDown();
+                        }
+                        return null;
+                    }
+                });
+            }
+        });
+        java.sql.Connection conn = (java.sql.Connection) stub(MySQLConnection.class, new Stub() {
+            Object answer(Object proxy, String method, Object[] args) {
+                if (method.equals("isWrapperFor")) {
+                    return true;
+                } else if (method.equals("unwrap")) {
+                    return proxy;
+                } else if (method.equals("getId")) {
+                    return 42L;
+                } else if (method.equals("duplicate")) {
+                    return killer;
+                } else if (method.equals("close")) {
+                    returned.incrementAndGet();
+                }
+                return null;
+            }
+        });
+        java.sql.Statement stmt = (java.sql.Statement) stub(java.sql.PreparedStatement.class, new Stub() {
+            Object answer(Object proxy, String method, Object[] args) {
+                return method.equals("getFetchSize") ? Integer.MIN_VALUE : null;
+            }
+        });
+        ResultSet rs = (ResultSet) stub(ResultSet.class, new Stub() {
+            Object answer(Object proxy, String method, Object[] args) throws InterruptedException {
+                if (method.equals("next")) {
+                    return true;
+                } else if (method.equals("close")) {
+                    killed.await(10, TimeUnit.SECONDS);
+                }
+                return null;
+            }
+        });
+        ResultCursor<String> cursor = new ResultCursor<String>(conn, stmt, rs, new RowMapper<String>() {
+            public String mapRow(ResultSet rs) {
+                return "row";
+            }
+        });
+        assertEquals("row", cursor.next());
+        long start = System.nanoTime();
+        cursor.close();
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("Close took " + millis + "ms", millis < 5000);
+        assertEquals(Arrays.asList("KILL QUERY 42"), kills);
+        assertEquals(1, returned.get());
+    }
+
+    /**
+     * 按方法名应答的接口桩，返回null时基本类型返回默认值
+     */
+    private static Object stub(Class<?> type, final Stub stub) {
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                Object result = stub.answer(proxy, method.getName(), args);
+                Class<?> returnType = method.getReturnType();
+                if (result != null || !returnType.isPrimitive() || returnType == void.class) {
+                    return result;
+                }
+                return returnType == boolean.class ? Boolean.FALSE : returnType == long.class ? (Object) 0L : 0;
+            }
+        });
+    }
+
+    private abstract static class Stub {
+        abstract Object answer(Object proxy, String method, Object[] args) throws Exception;
+    }
+
+    /**
+     * 统计Statement.cancel()调用次数的DataSource
+     */
+    private static DataSource countCancels(final DataSource target, final AtomicInteger cancels) {
+        return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class<?>[]{DataSource.class},
+                new Forwarder(target) {
+                    Object forward(Method method, Object[] args, Object result) {
+                        if (!method.getName().equals("getConnection")) {
+                            return result;
+                        }
+                        return Proxy.newProxyInstance(DataSource.class.getClassLoader(),
+                                new Class<?>[]{java.sql.Connection.class}, new Forwarder(result) {
+                                    Object forward(Method method, Object[] args, Object result) {
+                                        if (!method.getName().equals("prepareStatement")) {
+                                            return result;
+                                        }
+                                        return Proxy.newProxyInstance(DataSource.class.getClassLoader(),
+                                                new Class<?>[]{java.sql.PreparedStatement.class},
+                                                new Forwarder(result) {
+                                                    Object forward(Method method, Object[] args, Object result) {
+                                                        if (method.getName().equals("cancel")) {
+                                                            cancels.incrementAndGet();
+                                                        }
+                                                        return result;
+                                                    }
+                                                });
+                                    }
+                                });
+                    }
+                });
+    }
+
+    /**
+     * 含窗口函数的语句在prepareStatement时抛出error，共failures次
+     */
+    private static DataSource failWindowQueries(final DataSource target, final AtomicInteger failures,
+                                                final SQLException error) {
+        return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class<?>[]{DataSource.class},
+                new Forwarder(target) {
+                    Object forward(Method method, Object[] args, Object result) {
+                        if (!method.getName().equals("getConnection")) {
+                            return result;
+                        }
+                        return Proxy.newProxyInstance(DataSource.class.getClassLoader(),
+                                new Class<?>[]{java.sql.Connection.class}, new Forwarder(result) {
+                                    Object forward(Method method, Object[] args, Object result) throws SQLException {
+                                        if (method.getName().equals("prepareStatement")
+                                                && ((String) args[0]).contains("over()")
+                                                && failures.getAndDecrement() > 0) {
+                                            ((java.sql.Statement) result).close();
+                                            throw error;
+                                        }
+                                        return result;
+                                    }
+                                });
+                    }
+                });
+    }
+
+    private abstract static class Forwarder implements InvocationHandler {
+        private final Object target;
+
+        Forwarder(Object target) {
+            this.target = target;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            try {
+                return forward(method, args, method.invoke(target, args));
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        abstract Object forward(Method method, Object[] args, Object result) throws SQLException;
+    }
+
+    @Test
+    public void testFindPage() {
+        String sql = "SELECT id, name FROM test_student WHERE age>=? ORDER BY id";
+        List<Student> secondPage = template.find(Student.class, sql, 20, 2, 2);
+        assertEquals(1, secondPage.size());
+        assertEquals("王五", secondPage.get(0).getName());
+    }
+
+    @Test
+    public void testFindPageResultWithWindowCount() {
+        DbUtilsTemplate windowTemplate = new DbUtilsTemplate(dataSource);
+        windowTemplate.setPageCountMode(PageCountMode.WINDOW);
+        String sql = "SELECT id, name FROM test_student WHERE age BETWEEN ? AND 22 ORDER BY id";
+        PageResult result = windowTemplate.findPageResult(Student.class, sql, 20, 2, 2);
+        assertEquals(3, result.count);
+        assertEquals(2, result.currentPage);
+        assertEquals("王五", ((Student) result.beanList.get(0)).getName());
+        // 页号超出范围时补查总数，与两次查询的结果一致
+        result = windowTemplate.findPageResult(Student.class, sql, 20, 5, 2);
+        assertEquals(3, result.count);
+        assertEquals(2, result.currentPage);
+        assertTrue(result.beanList.isEmpty());
+        // distinct查询包一层再计数
+        result = windowTemplate.findPageResult(Student.class,
+                "SELECT DISTINCT team_id as teamId FROM test_student WHERE age BETWEEN 20 AND 22", 1, 10);
+        assertEquals(2, result.count);
+        assertEquals(PageCountMode.WINDOW, windowTemplate.getEffectivePageCountMode());
+    }
+
+    @Test
+    public void testFindPageResultFallsBackToTwoQueries() {
+        DbUtilsTemplate foundRowsTemplate = new DbUtilsTemplate(dataSource);
+        foundRowsTemplate.setPageCountMode(PageCountMode.FOUND_ROWS);
+        String sql = "SELECT id, name FROM test_student WHERE age BETWEEN ? AND 22 ORDER BY id";
+        // H2不支持SQL_CALC_FOUND_ROWS，退回两次查询并记住
+        PageResult result = foundRowsTemplate.findPageResult(Student.class, sql, 20, 1, 2);
+        assertEquals(3, result.count);
+        assertEquals(2, result.beanList.size());
+        assertEquals(PageCountMode.TWO_QUERIES, foundRowsTemplate.getEffectivePageCountMode());
+
+        DbUtilsTemplate autoTemplate = new DbUtilsTemplate(dataSource);
+        autoTemplate.setPageCountMode(PageCountMode.AUTO);
+        result = autoTemplate.findPageResult(Student.class, sql, 20, 1, 2);
+        assertEquals(3, result.count);
+        assertEquals(PageCountMode.WINDOW, autoTemplate.getEffectivePageCountMode());
+    }
+
+    @Test
+    public void testTransientErrorDoesNotDowngradePageCountMode() {
+        String sql = "SELECT id, name FROM test_student WHERE age BETWEEN ? AND 22 ORDER BY id";
+        // 窗口函数查询遇到一次连接断开：本次退回两次查询，之后仍然使用WINDOW
+        AtomicInteger failures = new AtomicInteger(1);
+        DbUtilsTemplate windowTemplate = new DbUtilsTemplate(failWindowQueries(dataSource, failures,
+                new SQLException("Communications link failure", "08S01")));
+        windowTemplate.setPageCountMode(PageCountMode.WINDOW);
+        PageResult result = windowTemplate.findPageResult(Student.class, sql, 20, 1, 2);
+        assertEquals(3, result.count);
+        assertEquals(2, result.beanList.size());
+        assertTrue(failures.get() <= 0);
+        assertEquals(PageCountMode.WINDOW, windowTemplate.getEffectivePageCountMode());
+
+        // 探测语句也失败但不是语法错误，同样不改变
+        failures.set(2);
+        windowTemplate.findPageResult(Student.class, sql, 20, 1, 2);
+        assertEquals(PageCountMode.WINDOW, windowTemplate.getEffectivePageCountMode());
+
+        // 探测语句语法错误才认为数据库不支持
+        failures.set(2);
+        DbUtilsTemplate unsupported = new DbUtilsTemplate(failWindowQueries(dataSource, failures,
+                new java.sql.SQLSyntaxErrorException("You have an error in your SQL syntax", "42000")));
+        unsupported.setPageCountMode(PageCountMode.WINDOW);
+        result = unsupported.findPageResult(Student.class, sql, 20, 2, 2);
+        assertEquals(3, result.count);
+        assertEquals(PageCountMode.TWO_QUERIES, unsupported.getEffectivePageCountMode());
+    }
+
+    @Test
+    public void testCountCacheInvalidatedByWrites() throws Exception {
+        DbUtilsTemplate cachingTemplate = new DbUtilsTemplate(dataSource);
+        cachingTemplate.setCountCacheTtl(1, TimeUnit.MINUTES);
+        cachingTemplate.setApproximateCount(true);
+        String sql = "SELECT id, name FROM test_student WHERE age BETWEEN ? AND 30";
+        PageResult result = cachingTemplate.findPageResult(Student.class, sql, 20, 1, 2);
+        // H2不是MySQL，不估算
+        assertEquals(PageResult.CountType.EXACT, result.getCountType());
+        assertEquals(3, result.count);
+        result = cachingTemplate.findPageResult(Student.class, sql, 20, 1, 2);
+        assertEquals(PageResult.CountType.CACHED, result.getCountType());
+        assertEquals(3, result.count);
+        assertEquals(1, cachingTemplate.getCountCache().getHitCount());
+
+        // 其他表的写入不影响缓存
+        cachingTemplate.update("UPDATE test_team SET rank = 1 WHERE id = ?", 1L);
+        assertEquals(PageResult.CountType.CACHED,
+                cachingTemplate.findPageResult(Student.class, sql, 20, 1, 2).getCountType());
+
+        long id = cachingTemplate.insert("INSERT INTO test_student(name,gender,age,team_id) VALUES (?,?,?,?)",
+                new Object[]{"孙七", "男", 30, 3L});
+        try {
+            result = cachingTemplate.findPageResult(Student.class, sql, 20, 1, 2);
+            assertEquals(PageResult.CountType.EXACT, result.getCountType());
+            assertEquals(4, result.count);
+        } finally {
+            cachingTemplate.update("DELETE FROM test_student WHERE id=?", id);
+        }
+        assertEquals(3, cachingTemplate.findPageResult(Student.class, sql, 20, 1, 2).count);
+    }
+
+    @Test
+    public void testResultCacheInvalidatedByWrites() throws Exception {
+        DbUtilsTemplate cachingTemplate = new DbUtilsTemplate(dataSource);
+        cachingTemplate.setResultCacheTtl(1, TimeUnit.MINUTES);
+        QueryResultCache cache = cachingTemplate.getResultCache();
+        String sql = "SELECT name FROM test_team WHERE rank=?";
+        long id = cachingTemplate.insert("INSERT INTO test_team(name,rank) VALUES (?,?)", new Object[]{"缓存队", 9});
+        try {
+            assertEquals(1, cachingTemplate.find(sql, 9).size());
+            List<Map<String, Object>> cached = cachingTemplate.find(sql, 9);
+            assertEquals(1, cache.getHitCount());
+            // 返回的List是拷贝，修改不影响缓存
+            cached.clear();
+            assertEquals(1, cachingTemplate.find(sql, 9).size());
+            assertNull(cachingTemplate.findFirst(sql, 8));
+            assertNull(cachingTemplate.findFirst(sql, 8));
+            assertEquals(3, cache.getHitCount());
+            assertTrue(cache.getEstimatedBytes() > 0);
+
+            // 其他表的写入不影响缓存，同一张表的写入立即失效
+            cachingTemplate.update("UPDATE test_student SET age = age WHERE id = ?", 1L);
+            assertEquals(2, cache.size());
+            cachingTemplate.update("UPDATE test_team SET rank = 8 WHERE id = ?", id);
+            assertEquals(0, cache.size());
+            assertEquals("缓存队", cachingTemplate.findFirst(sql, 8).get("name"));
+            assertTrue(cachingTemplate.find(sql, 9).isEmpty());
+
+            // withoutResultCache中的查询跳过缓存
+            long misses = cache.getMissCount();
+            final DbUtilsTemplate bypassing = cachingTemplate;
+            final String bypassSql = sql;
+            int rows = cachingTemplate.withoutResultCache(new Callable<Integer>() {
+                public Integer call() {
+                    return bypassing.find(bypassSql, 8).size();
+                }
+            });
+            assertEquals(1, rows);
+            assertEquals(misses, cache.getMissCount());
+
+            // 只缓存指定的表
+            cache.setTables("test_student");
+            cachingTemplate.find(sql, 8);
+            assertEquals(misses, cache.getMissCount());
+        } finally {
+            cachingTemplate.update("DELETE FROM test_team WHERE id=?", id);
+        }
+    }
+
+    @Test
+    public void testCachedResultsAreNotShared() throws Exception {
+        DbUtilsTemplate cachingTemplate = new DbUtilsTemplate(dataSource);
+        cachingTemplate.setResultCacheTtl(1, TimeUnit.MINUTES);
+        QueryResultCache cache = cachingTemplate.getResultCache();
+        String sql = "SELECT id, name, age FROM test_student WHERE age=?";
+        // 修改返回的Bean不影响缓存和其他调用方
+        Student first = cachingTemplate.findFirst(Student.class, sql, 20);
+        first.setName("改名");
+        Student second = cachingTemplate.findFirst(Student.class, sql, 20);
+        assertEquals(1, cache.getHitCount());
+        assertEquals("张三", second.getName());
+        assertTrue(first != second);
+        List<Student> list = cachingTemplate.find(Student.class, sql, 20);
+        list.get(0).setName("改名");
+        assertEquals("张三", cachingTemplate.find(Student.class, sql, 20).get(0).getName());
+
+        // Date属性每次是新的对象
+        String stampSql = "SELECT id, TIMESTAMP '2013-10-17 00:00:00' AS stamp FROM test_student WHERE age=?";
+        Stamp stamp = cachingTemplate.findFirst(Stamp.class, stampSql, 20);
+        long time = stamp.getStamp().getTime();
+        stamp.getStamp().setTime(0);
+        assertEquals(time, cachingTemplate.findFirst(Stamp.class, stampSql, 20).getStamp().getTime());
+
+        // Map与不使用缓存时一样可以修改，键不区分大小写，修改不影响缓存
+        Map<String, Object> row = cachingTemplate.findFirst(sql, 20);
+        row.put("NAME", "改名");
+        assertEquals("改名", row.get("name"));
+        row.remove("age");
+        Map<String, Object> again = cachingTemplate.findFirst(sql, 20);
+        assertEquals("张三", again.get("NAME"));
+        assertEquals(20, ((Number) again.get("Age")).intValue());
+        List<Map<String, Object>> rows = cachingTemplate.find(sql, 20);
+        rows.get(0).put("name", "改名");
+        rows.clear();
+        assertEquals("张三", cachingTemplate.find(sql, 20).get(0).get("name"));
+        assertEquals(5, cache.getHitCount());
+    }
+
+    public static class Stamp {
+        private long id;
+        private java.util.Date stamp;
+
+        public long getId() {
+            return id;
+        }
+
+        public void setId(long id) {
+            this.id = id;
+        }
+
+        public java.util.Date getStamp() {
+            return stamp;
+        }
+
+        public void setStamp(java.util.Date stamp) {
+            this.stamp = stamp;
+        }
+    }
+
+    @Test
+    public void testResultCacheEvictsLeastRecentlyUsed() {
+        DbUtilsTemplate cachingTemplate = new DbUtilsTemplate(dataSource);
+        cachingTemplate.setResultCacheTtl(1, TimeUnit.MINUTES);
+        QueryResultCache cache = cachingTemplate.getResultCache();
+        cache.setMaxEntries(2);
+        String sql = "SELECT id, name FROM test_student WHERE age=?";
+        cachingTemplate.find(Student.class, sql, 20);
+        cachingTemplate.find(Student.class, sql, 21);
+        cachingTemplate.find(Student.class, sql, 20);
+        cachingTemplate.find(Student.class, sql, 22);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        // 21最久未访问，已被淘汰
+        cachingTemplate.find(Student.class, sql, 20);
+        assertEquals(2, cache.getHitCount());
+        assertEquals("李四", cachingTemplate.find(Student.class, sql, 21).get(0).getName());
+        assertEquals(2, cache.getHitCount());
+        // 同一条sql按结果类型分别缓存，出错的查询不缓存
+        assertEquals(1, cachingTemplate.find(sql, 21).size());
+        assertTrue(cachingTemplate.find("SELECT nothing FROM test_student WHERE age=?", 21).isEmpty());
+        assertTrue(cachingTemplate.find("SELECT nothing FROM test_student WHERE age=?", 21).isEmpty());
+        assertEquals(2, cache.getHitCount());
+    }
+
+    @Test
+    public void testBatchInsertIsRewrittenToMultiRow() throws Exception {
+        DbUtilsTemplate batchTemplate = new DbUtilsTemplate(dataSource);
+        batchTemplate.setMultiRowInsertSize(4);
+        Object[][] rows = new Object[10][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[]{"batch" + i, "content" + i};
+        }
+        String sql = "INSERT INTO record(description,content) VALUES(?,?)";
+        int[] counts = batchTemplate.batchUpdate(sql, rows);
+        assertEquals(10, counts.length);
+        for (int count : counts) {
+            assertEquals(1, count);
+        }
+        assertEquals(10, batchTemplate.getCount("SELECT id FROM record WHERE description LIKE 'batch%'", null));
+        // 4行和2行两种语句
+        assertEquals(2, batchTemplate.getParameterMetaDataCache().getMissCount() - 1);
+
+        // 某一行参数个数不对时整批回滚
+        rows[7] = new Object[]{"bad"};
+        try {
+            batchTemplate.batchUpdate(sql, rows);
+            assertTrue(false);
+        } catch (SQLException e) {
+            assertTrue(e.getMessage().contains("row 7"));
+        }
+        assertEquals(10, batchTemplate.getCount("SELECT id FROM record WHERE description LIKE 'batch%'", null));
+        batchTemplate.update("DELETE FROM record WHERE description LIKE 'batch%'");
+    }
+
+    @Test
+    public void testBatchInsertReturnsKeysInOrder() throws Exception {
+        DbUtilsTemplate batchTemplate = new DbUtilsTemplate(dataSource);
+        batchTemplate.setMultiRowInsertSize(3);
+        Object[][] rows = new Object[7][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[]{"keys" + i, "content" + i};
+        }
+        for (int multiRowInsertSize : new int[]{3, 0}) {
+            batchTemplate.setMultiRowInsertSize(multiRowInsertSize);
+            long[] keys = batchTemplate.batchInsert("INSERT INTO record(description,content) VALUES(?,?)", rows);
+            assertEquals(7, keys.length);
+            for (int i = 0; i < keys.length; i++) {
+                Map<String, Object> row = batchTemplate.findFirst("SELECT description FROM record WHERE id=?", keys[i]);
+                assertEquals("keys" + i, row.get("description"));
+            }
+            batchTemplate.update("DELETE FROM record WHERE description LIKE 'keys%'");
+        }
+        assertEquals(0, batchTemplate.batchInsert("INSERT INTO record(description) VALUES(?)", new Object[0][]).length);
+    }
+
+    @Test
+    public void testFindKeysetPage() {
+        String sql = "SELECT id, name FROM test_student WHERE age>=?";
+        List<String> names = new ArrayList<String>();
+        KeysetPage<Student> page = template.findKeysetPage(Student.class, sql, new Object[]{20}, "id", null, 2);
+        for (Student student : page.getBeanList()) {
+            names.add(student.getName());
+        }
+        assertTrue(page.hasNext());
+        page = template.findKeysetPage(Student.class, sql, new Object[]{20}, "id", page.getNextKey(), 2);
+        for (Student student : page.getBeanList()) {
+            names.add(student.getName());
+        }
+        assertTrue(!page.hasNext());
+        assertEquals(Arrays.asList("张三", "李四", "王五"), names);
+    }
+
+    @Test
+    public void testWrongParameterCountReturnsEmpty() {
+        assertTrue(template.find("SELECT name FROM test_student WHERE team_id=? AND age=?", 1L).isEmpty());
+    }
+}
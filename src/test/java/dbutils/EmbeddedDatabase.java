@@ -0,0 +1,83 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import com.jolbox.bonecp.BoneCPDataSource;
+import org.apache.commons.dbutils.DbUtils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 单元测试使用的H2内存库(MySQL兼容模式)，表结构与table.sql一致，用BoneCP作连接池
+ */
+public final class EmbeddedDatabase {
+
+    private EmbeddedDatabase() {
+    }
+
+    /**
+     * 创建一个新的内存库并建表
+     *
+     * @param name 库名，不同测试类使用不同的库互不干扰
+     * @return 连接池，用完需要close
+     */
+    public static BoneCPDataSource create(String name) throws SQLException {
+        BoneCPDataSource dataSource = new BoneCPDataSource();
+        dataSource.setDriverClass("org.h2.Driver");
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setPassword("");
+        dataSource.setPartitionCount(1);
+        dataSource.setMinConnectionsPerPartition(2);
+        dataSource.setMaxConnectionsPerPartition(20);
+        // 同步归还连接，测试中getTotalLeased()才准确
+        dataSource.setReleaseHelperThreads(0);
+        // DbUtilsTemplate自己提交事务
+        dataSource.setDefaultAutoCommit(false);
+        execute(dataSource,
+                "DROP TABLE IF EXISTS record",
+                "CREATE TABLE record (id bigint NOT NULL AUTO_INCREMENT, description varchar(255) DEFAULT NULL, "
+                        + "content text, createdTime datetime DEFAULT NULL, modifyTime datetime NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP, "
+                        + "PRIMARY KEY (id))",
+                "DROP TABLE IF EXISTS test_student",
+                "CREATE TABLE test_student (id bigint NOT NULL AUTO_INCREMENT, name varchar(20) DEFAULT NULL, "
+                        + "gender char(1) NOT NULL, age int NOT NULL, team_id bigint DEFAULT NULL, PRIMARY KEY (id))",
+                "DROP TABLE IF EXISTS test_team",
+                "CREATE TABLE test_team (id bigint NOT NULL AUTO_INCREMENT, name varchar(20) DEFAULT NULL, "
+                        + "income decimal(6,2) DEFAULT NULL, rank int DEFAULT NULL, PRIMARY KEY (id))");
+        return dataSource;
+    }
+
+    /**
+     * 依次执行sql语句并提交
+     */
+    public static void execute(BoneCPDataSource dataSource, String... sqls) throws SQLException {
+        Connection conn = dataSource.getConnection();
+        Statement stmt = null;
+        try {
+            stmt = conn.createStatement();
+            for (String sql : sqls) {
+                stmt.execute(sql);
+            }
+            conn.commit();
+        } finally {
+            DbUtils.closeQuietly(stmt);
+            DbUtils.closeQuietly(conn);
+        }
+    }
+}
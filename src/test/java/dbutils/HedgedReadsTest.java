@@ -0,0 +1,216 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import com.jolbox.bonecp.BoneCPDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * HedgedReads测试：原连接池每25次查询有一次卡住50毫秒(可以被cancel打断)，对冲池是数据相同的另一个库
+ */
+public class HedgedReadsTest {
+    private static final String SQL = "SELECT * FROM record WHERE id = ?";
+    private static final long STALL_MILLIS = 50;
+
+    private BoneCPDataSource primary;
+    private BoneCPDataSource replica;
+    private StallingDataSource stalling;
+    private DbUtilsTemplate template;
+
+    @Before
+    public void init() throws Exception {
+        primary = EmbeddedDatabase.create("hedge_primary");
+        replica = EmbeddedDatabase.create("hedge_replica");
+        EmbeddedDatabase.execute(primary, "INSERT INTO record(id,description) VALUES (1,'one')");
+        EmbeddedDatabase.execute(replica, "INSERT INTO record(id,description) VALUES (1,'one')");
+        stalling = new StallingDataSource(primary, 25);
+        template = new DbUtilsTemplate(stalling);
+    }
+
+    @After
+    public void destroy() {
+        primary.close();
+        replica.close();
+    }
+
+    @Test
+    public void testHedgingCutsTailLatency() throws Exception {
+        long unhedged = p99(1000);
+        assertTrue("unhedged p99 " + unhedged + "ms", unhedged >= STALL_MILLIS);
+
+        HedgedReads hedgedReads = new HedgedReads(replica);
+        hedgedReads.setBudgetPercent(10);
+        template.setHedgedReads(hedgedReads);
+        try {
+            p99(200);
+            int cancelsBefore = stalling.cancels.get();
+            long hedgesBefore = hedgedReads.getHedges();
+            long hedged = p99(1000);
+            String stats = "unhedged p99 " + unhedged + "ms, hedged p99 " + hedged + "ms, " + hedgedReads;
+            assertTrue(stats, hedged < STALL_MILLIS / 2);
+            // 输掉的原查询被取消
+            assertTrue(stats, stalling.cancels.get() - cancelsBefore >= 30);
+            // 额外的查询不超过预算：每次查询0.1个令牌，开始时最多积累10个
+            assertTrue(stats, hedgedReads.getHedges() - hedgesBefore <= 1000 / 10 + 10);
+        } finally {
+            hedgedReads.close();
+        }
+    }
+
+    @Test
+    public void testBudgetAndFailover() throws Exception {
+        HedgedReads hedgedReads = new HedgedReads(replica);
+        hedgedReads.setBudgetPercent(0);
+        template.setHedgedReads(hedgedReads);
+        try {
+            p99(600);
+            // 没有预算时只能用掉开始时的10个令牌
+            assertTrue(hedgedReads.toString(), hedgedReads.getHedges() <= 10);
+            assertTrue(hedgedReads.toString(), hedgedReads.getBudgetRejections() > 0);
+
+            // 原库每次都卡住时，每次查询都由对冲查询返回，原查询被取消
+            hedgedReads.setBudgetPercent(100);
+            p99(20);
+            stalling.stallEvery = 1;
+            int cancelsBefore = stalling.cancels.get();
+            long winsBefore = hedgedReads.getHedgeWins();
+            assertTrue(p99(20) < STALL_MILLIS);
+            assertEquals(20, hedgedReads.getHedgeWins() - winsBefore);
+            assertEquals(20, stalling.cancels.get() - cancelsBefore);
+        } finally {
+            hedgedReads.close();
+        }
+    }
+
+    private long p99(int reads) {
+        long[] millis = new long[reads];
+        for (int i = 0; i < reads; i++) {
+            long start = System.nanoTime();
+            Map<String, Object> row = template.findFirst(SQL, 1L);
+            millis[i] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertEquals("one", row.get("description"));
+        }
+        Arrays.sort(millis);
+        return millis[reads * 99 / 100];
+    }
+
+    /**
+     * 每stallEvery次executeQuery卡住STALL_MILLIS毫秒后再执行，卡住时cancel()立即打断并抛出SQLException
+     */
+    private static final class StallingDataSource implements DataSource {
+        private final DataSource target;
+        private final AtomicInteger queries = new AtomicInteger();
+        final AtomicInteger cancels = new AtomicInteger();
+        volatile int stallEvery;
+
+        StallingDataSource(DataSource target, int stallEvery) {
+            this.target = target;
+            this.stallEvery = stallEvery;
+        }
+
+        public Connection getConnection() throws SQLException {
+            final Connection conn = target.getConnection();
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                    new InvocationHandler() {
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            Object result = invokeTarget(conn, method, args);
+                            if (method.getName().equals("prepareStatement")) {
+                                return statement((PreparedStatement) result);
+                            }
+                            return result;
+                        }
+                    });
+        }
+
+        private PreparedStatement statement(final PreparedStatement stmt) {
+            final CountDownLatch cancelled = new CountDownLatch(1);
+            return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, new InvocationHandler() {
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            if (method.getName().equals("cancel")) {
+                                cancelled.countDown();
+                            } else if (method.getName().equals("executeQuery")
+                                    && queries.incrementAndGet() % stallEvery == 0
+                                    && cancelled.await(STALL_MILLIS, TimeUnit.MILLISECONDS)) {
+                                cancels.incrementAndGet();
+                                throw new SQLException("Query execution was interrupted", "70100");
+                            }
+                            return invokeTarget(stmt, method, args);
+                        }
+                    });
+        }
+
+        private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        public Connection getConnection(String username, String password) throws SQLException {
+            throw new SQLFeatureNotSupportedException();
+        }
+
+        public PrintWriter getLogWriter() {
+            return null;
+        }
+
+        public void setLogWriter(PrintWriter out) {
+        }
+
+        public void setLoginTimeout(int seconds) {
+        }
+
+        public int getLoginTimeout() {
+            return 0;
+        }
+
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+
+        public <T> T unwrap(Class<T> iface) throws SQLException {
+            throw new SQLException("Not a wrapper");
+        }
+
+        public boolean isWrapperFor(Class<?> iface) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import com.jolbox.bonecp.BoneCPDataSource;
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * InstrumentedDataSource测试，分别包装BoneCP和c3p0连接池
+ */
+public class InstrumentedDataSourceTest {
+
+    @Test
+    public void testHoldTimeAndJmx() throws Exception {
+        BoneCPDataSource pool = EmbeddedDatabase.create("instrumented");
+        InstrumentedDataSource dataSource = new InstrumentedDataSource("bonecp-test", pool);
+        dataSource.register();
+        try {
+            Connection[] conns = new Connection[3];
+            for (int i = 0; i < conns.length; i++) {
+                conns[i] = dataSource.getConnection();
+            }
+            assertEquals(3, dataSource.getActive());
+            assertEquals(3, pool.getTotalLeased());
+            Thread.sleep(30);
+            for (Connection conn : conns) {
+                conn.close();
+            }
+            // 重复close不重复计数
+            conns[0].close();
+            assertTrue(conns[0].isClosed());
+            assertTrue(conns[0].equals(conns[0]));
+            assertFalse(conns[0].equals(conns[1]));
+            assertEquals(0, dataSource.getActive());
+            assertEquals(3, dataSource.getCheckouts());
+            assertEquals(-1, dataSource.getIdle());
+            assertEquals(3, dataSource.getWaitHistogram().getCount());
+            assertEquals(3, dataSource.getHoldHistogram().getCount());
+            assertTrue(dataSource.getHoldP99Millis() >= 30);
+            assertTrue(dataSource.getHoldMaxMillis() <= dataSource.getHoldP99Millis() + 1e-9);
+
+            // 通过DbUtilsTemplate使用
+            DbUtilsTemplate template = new DbUtilsTemplate(dataSource);
+            template.update("INSERT INTO record(description) VALUES (?)", "x");
+            assertEquals(1, template.getCount("SELECT * FROM record"));
+            assertEquals(0, dataSource.getActive());
+            assertEquals(5, dataSource.getCheckouts());
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("dbutils:type=ConnectionPool,name=\"bonecp-test\"");
+            assertEquals(5L, server.getAttribute(name, "Checkouts"));
+            assertEquals(0L, server.getAttribute(name, "Active"));
+            assertTrue((Double) server.getAttribute(name, "HoldMaxMillis") >= 30);
+
+            String text = dataSource.toPrometheusText();
+            assertTrue(text, text.contains("# TYPE db_pool_hold_seconds histogram\n"));
+            assertTrue(text, text.contains("db_pool_hold_seconds_bucket{pool=\"bonecp-test\",le=\"+Inf\"} 5\n"));
+            assertTrue(text, text.contains("db_pool_hold_seconds_count{pool=\"bonecp-test\"} 5\n"));
+            assertTrue(text, text.contains("db_pool_checkouts_total{pool=\"bonecp-test\"} 5\n"));
+            assertFalse(text, text.contains("db_pool_idle_connections"));
+
+            dataSource.unregister();
+            assertFalse(server.isRegistered(name));
+        } finally {
+            dataSource.unregister();
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testPendingAndTimeout() throws Exception {
+        ComboPooledDataSource pool = new ComboPooledDataSource();
+        pool.setDriverClass("org.h2.Driver");
+        pool.setJdbcUrl("jdbc:h2:mem:instrumented_c3p0;DB_CLOSE_DELAY=-1");
+        pool.setUser("sa");
+        pool.setPassword("");
+        pool.setInitialPoolSize(1);
+        pool.setMinPoolSize(1);
+        pool.setMaxPoolSize(1);
+        pool.setCheckoutTimeout(200);
+        final InstrumentedDataSource dataSource = new InstrumentedDataSource("c3p0-test", pool);
+        try {
+            Connection held = dataSource.getConnection();
+            assertEquals(0, dataSource.getIdle());
+            try {
+                dataSource.getConnection();
+                fail("checkout should time out");
+            } catch (SQLException e) {
+                // expected
+            }
+            assertEquals(1, dataSource.getTimeouts());
+            assertEquals(1, dataSource.getFailures());
+            assertEquals(0, dataSource.getPending());
+
+            // 等待中的线程计入pending，归还后借到连接
+            pool.setCheckoutTimeout(5000);
+            final AtomicReference<Object> result = new AtomicReference<Object>();
+            Thread waiter = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        Connection conn = dataSource.getConnection();
+                        result.set(conn);
+                        conn.close();
+                    } catch (SQLException e) {
+                        result.set(e);
+                    }
+                }
+            });
+            waiter.start();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+            while (dataSource.getPending() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(1, dataSource.getPending());
+            Thread.sleep(50);
+            held.close();
+            waiter.join(5000);
+            assertTrue(String.valueOf(result.get()), result.get() instanceof Connection);
+            assertEquals(0, dataSource.getPending());
+            assertEquals(2, dataSource.getCheckouts());
+            assertTrue(dataSource.getWaitMaxMillis() >= 50);
+            assertTrue(dataSource.toPrometheusText().contains("db_pool_idle_connections{pool=\"c3p0-test\"} 1\n"));
+
+            // 带用户名密码借出的连接同样计数
+            Connection withCredentials = dataSource.getConnection("sa", "");
+            assertEquals(1, dataSource.getActive());
+            withCredentials.close();
+            assertEquals(0, dataSource.getActive());
+            assertEquals(3, dataSource.getCheckouts());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 98; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(200));
+        }
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(30));
+        histogram.record(TimeUnit.SECONDS.toNanos(20));
+        assertEquals(100, histogram.getCount());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(250), histogram.percentileNanos(50));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(50), histogram.percentileNanos(99));
+        assertEquals(TimeUnit.SECONDS.toNanos(20), histogram.percentileNanos(100));
+        StringBuilder out = new StringBuilder();
+        histogram.writePrometheus(out, "q", "");
+        String text = out.toString();
+        assertTrue(text, text.contains("q_bucket{le=\"0.00025\"} 98\n"));
+        assertTrue(text, text.contains("q_bucket{le=\"10\"} 99\n"));
+        assertTrue(text, text.contains("q_bucket{le=\"+Inf\"} 100\n"));
+        assertTrue(text, text.contains("q_sum 20.0496\n"));
+    }
+}
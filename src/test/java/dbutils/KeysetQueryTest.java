@@ -0,0 +1,67 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 键集分页的sql改写
+ */
+public class KeysetQueryTest {
+
+    @Test
+    public void testWithoutWhere() {
+        KeysetQuery query = KeysetQuery.of("select id, description from record", "id");
+        assertEquals("select id, description from record order by id limit ?", query.firstSql);
+        assertEquals("select id, description from record where id > ? order by id limit ?", query.nextSql);
+        assertEquals(Arrays.asList(100L, 21), Arrays.asList(query.nextParams(null, 100L, 21)));
+    }
+
+    @Test
+    public void testWhereIsParenthesized() {
+        KeysetQuery query = KeysetQuery.of("select r.id from record r where r.description = ? or r.content = ?", "r.id");
+        assertEquals("select r.id from record r where (r.description = ? or r.content = ?) and r.id > ? "
+                + "order by r.id limit ?", query.nextSql);
+        assertEquals(Arrays.asList("a", "b", 5L, 11),
+                Arrays.asList(query.nextParams(new Object[]{"a", "b"}, 5L, 11)));
+        assertEquals(Arrays.asList("a", "b", 11), Arrays.asList(KeysetQuery.firstParams(new Object[]{"a", "b"}, 11)));
+    }
+
+    @Test
+    public void testKeyConditionGoesBeforeGroupBy() {
+        KeysetQuery query = KeysetQuery.of("select team_id as id, count(1) as c from test_student "
+                + "where gender = '?' and age > ? group by team_id having count(1) > ?", "team_id");
+        assertEquals("select team_id as id, count(1) as c from test_student where (gender = '?' and age > ?) "
+                + "and team_id > ? group by team_id having count(1) > ? order by team_id limit ?", query.nextSql);
+        assertEquals(Arrays.asList(18, 3L, 2, 11), Arrays.asList(query.nextParams(new Object[]{18, 2}, 3L, 11)));
+    }
+
+    @Test
+    public void testSubqueryWhereIsIgnored() {
+        KeysetQuery query = KeysetQuery.of("select id from (select id from record where id < ?) t", "id");
+        assertEquals("select id from (select id from record where id < ?) t where id > ? order by id limit ?",
+                query.nextSql);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOrderByIsRejected() {
+        KeysetQuery.of("select id from record order by id desc", "id");
+    }
+}
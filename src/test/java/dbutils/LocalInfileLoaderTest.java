@@ -0,0 +1,110 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import com.jolbox.bonecp.BoneCPDataSource;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * LOAD DATA LOCAL INFILE的数据编码和语句，实际导入需要MySQL，这里不测
+ */
+public class LocalInfileLoaderTest {
+
+    @Test
+    public void testEscaping() throws Exception {
+        Object[][] rows = {
+                {1L, "tab\there", null},
+                {2L, "line\nbreak\\slash\r\u0000", new BigDecimal("1E+3")},
+                {3L, "中文😀", Boolean.TRUE},
+                {4L, new byte[]{'a', '\t', (byte) 0xff}, Timestamp.valueOf("2013-06-05 10:20:30")}};
+        byte[] encoded = readAll(new LoadDataInputStream(Arrays.asList(rows).iterator(), 3));
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(("1\ttab\\there\t\\N\n"
+                + "2\tline\\nbreak\\\\slash\\r\\0\t1000\n"
+                + "3\t中文😀\t1\n").getBytes("UTF-8"));
+        expected.write(new byte[]{'4', '\t', 'a', '\\', 't', (byte) 0xff, '\t'});
+        expected.write("2013-06-05 10:20:30.0\n".getBytes("UTF-8"));
+        assertEquals(new String(expected.toByteArray(), "ISO-8859-1"), new String(encoded, "ISO-8859-1"));
+    }
+
+    @Test
+    public void testLargeInputIsStreamedInPieces() throws Exception {
+        Object[][] rows = new Object[100000][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[]{"description" + i};
+        }
+        LoadDataInputStream in = new LoadDataInputStream(Arrays.asList(rows).iterator(), 1);
+        assertEquals('d', in.read());
+        assertTrue(in.available() < 64 * 1024);
+        readAll(in);
+        assertEquals(100000, in.getRowCount());
+    }
+
+    @Test
+    public void testWrongRowLength() {
+        LoadDataInputStream in = new LoadDataInputStream(Arrays.asList(new Object[][]{{1L, "a"}, {2L}}).iterator(), 2);
+        try {
+            readAll(in);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("row 1"));
+            assertEquals(e, in.getError());
+        }
+    }
+
+    @Test
+    public void testLoadDataSql() {
+        LocalInfileLoader loader = new DbUtilsTemplate().localInfileLoader();
+        assertEquals("LOAD DATA LOCAL INFILE 'stream' INTO TABLE `test`.`record` CHARACTER SET utf8 "
+                        + "FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n' (`description`,`content`)",
+                loader.loadDataSql("test.record", new String[]{"description", "content"}));
+    }
+
+    @Test
+    public void testNonMySqlConnectionIsRejected() throws Exception {
+        BoneCPDataSource dataSource = EmbeddedDatabase.create("infile");
+        try {
+            new DbUtilsTemplate(dataSource).localInfileLoader().load("record", new String[]{"description"},
+                    new Object[][]{{"a"}});
+            fail();
+        } catch (SQLException e) {
+            assertTrue(e.getMessage().contains("MySQL"));
+        } finally {
+            dataSource.close();
+        }
+    }
+
+    private static byte[] readAll(LoadDataInputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[1000];
+        int n;
+        while ((n = in.read(buf, 0, buf.length)) > 0) {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * 单行INSERT改写为多行INSERT
+ */
+public class MultiRowInsertTest {
+
+    @Test
+    public void testRewrite() {
+        MultiRowInsert insert = MultiRowInsert.of("INSERT INTO record(description,content) values (?, now());");
+        assertEquals(1, insert.paramsPerRow);
+        assertEquals("INSERT INTO record(description,content) VALUES (?, now())", insert.sql(1));
+        assertEquals("INSERT INTO record(description,content) VALUES (?, now()),(?, now()),(?, now())",
+                insert.sql(3));
+    }
+
+    @Test
+    public void testNotRewritable() {
+        assertSame(MultiRowInsert.NOT_REWRITABLE, MultiRowInsert.of("UPDATE record SET content=? WHERE id=?"));
+        assertSame(MultiRowInsert.NOT_REWRITABLE, MultiRowInsert.of("INSERT IGNORE INTO record(id) VALUES (?)"));
+        assertSame(MultiRowInsert.NOT_REWRITABLE,
+                MultiRowInsert.of("INSERT INTO record(id, content) VALUES (?, ?) ON DUPLICATE KEY UPDATE content=?"));
+        assertSame(MultiRowInsert.NOT_REWRITABLE, MultiRowInsert.of("INSERT INTO record(id) SELECT id FROM t"));
+        assertSame(MultiRowInsert.NOT_REWRITABLE, MultiRowInsert.of("INSERT INTO record(id) VALUES (?),(?)"));
+        assertSame(MultiRowInsert.NOT_REWRITABLE, MultiRowInsert.of("INSERT INTO record(id) VALUES (1)"));
+    }
+
+    @Test
+    public void testRowsPerStatement() {
+        MultiRowInsert insert = MultiRowInsert.of("INSERT INTO record(description,content) VALUES (?,?)");
+        Object[][] rows = new Object[5000][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[]{"d" + i, null};
+        }
+        assertEquals(1000, insert.rowsPerStatement(rows, 1000, Long.MAX_VALUE));
+        assertEquals(30, insert.rowsPerStatement(new Object[30][], 1000, Long.MAX_VALUE));
+        // 一行很大时按字节数限制
+        rows[10] = new Object[]{"d", new String(new char[10000])};
+        assertEquals(34, insert.rowsPerStatement(rows, 1000, 1024 * 1024));
+    }
+}
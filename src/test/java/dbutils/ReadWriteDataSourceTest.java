@@ -0,0 +1,129 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import com.jolbox.bonecp.BoneCPDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ReadWriteDataSource测试，主库和从库是两个互不复制的H2内存库，通过查到的数据区分走了哪个库
+ */
+public class ReadWriteDataSourceTest {
+    private static final String SQL = "SELECT description FROM record WHERE id = 1";
+
+    private BoneCPDataSource primary;
+    private BoneCPDataSource replica1;
+    private BoneCPDataSource replica2;
+    private ReadWriteDataSource dataSource;
+    private DbUtilsTemplate template;
+
+    @Before
+    public void init() throws Exception {
+        primary = EmbeddedDatabase.create("rw_primary");
+        replica1 = EmbeddedDatabase.create("rw_replica1");
+        replica2 = EmbeddedDatabase.create("rw_replica2");
+        EmbeddedDatabase.execute(primary, "INSERT INTO record(id,description) VALUES (1,'primary')");
+        EmbeddedDatabase.execute(replica1, "INSERT INTO record(id,description) VALUES (1,'replica1')");
+        EmbeddedDatabase.execute(replica2, "INSERT INTO record(id,description) VALUES (1,'replica2')");
+        dataSource = new ReadWriteDataSource(primary, replica1, replica2);
+        template = new DbUtilsTemplate(dataSource);
+    }
+
+    @After
+    public void destroy() {
+        dataSource.close();
+        primary.close();
+        replica1.close();
+        replica2.close();
+    }
+
+    @Test
+    public void testReadsGoToReplicasByWeight() throws Exception {
+        dataSource.setWeight(0, 3);
+        for (int i = 0; i < 4000; i++) {
+            assertTrue(((String) template.findBy(SQL, "description")).startsWith("replica"));
+        }
+        assertEquals(0, dataSource.getPrimaryReads());
+        assertEquals(4000, dataSource.getReads(0) + dataSource.getReads(1));
+        assertTrue("replica1 reads: " + dataSource.getReads(0), Math.abs(dataSource.getReads(0) - 3000) < 200);
+        // 写入走主库
+        template.update("UPDATE record SET description = 'written' WHERE id = 1");
+        assertEquals("written", query(primary));
+        assertEquals("replica1", query(replica1));
+    }
+
+    @Test
+    public void testReadYourWrites() throws Exception {
+        dataSource.setStickiness(200, TimeUnit.MILLISECONDS);
+        template.update("UPDATE record SET description = 'written' WHERE id = 1");
+        assertEquals("written", template.findBy(SQL, "description"));
+        assertEquals(1, template.getCount("SELECT id FROM record WHERE description = 'written'", null));
+        Thread.sleep(250);
+        assertTrue(((String) template.findBy(SQL, "description")).startsWith("replica"));
+
+        // 其他线程不受影响
+        template.update("UPDATE record SET description = 'again' WHERE id = 1");
+        final Object[] other = new Object[1];
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                other[0] = template.findBy(SQL, "description");
+            }
+        };
+        thread.start();
+        thread.join();
+        assertTrue(((String) other[0]).startsWith("replica"));
+    }
+
+    @Test
+    public void testLagAndHealth() throws Exception {
+        dataSource.setStickiness(0, TimeUnit.MILLISECONDS);
+        dataSource.setMaxLag(3, TimeUnit.SECONDS);
+        // 从库没有复制状态，用固定的延迟代替：两个从库都是5秒，超过maxLag
+        dataSource.setLagQuery("SELECT 5");
+        dataSource.checkReplicas();
+        assertEquals(5000, dataSource.getLagMillis(1));
+        assertEquals("primary", template.findBy(SQL, "description"));
+
+        dataSource.setLagQuery("SELECT 0");
+        dataSource.checkReplicas();
+        dataSource.setRetryInterval(1, TimeUnit.MINUTES);
+        replica1.close();
+        for (int i = 0; i < 20; i++) {
+            assertEquals("replica2", template.findBy(SQL, "description"));
+        }
+        assertFalse(dataSource.isHealthy(0));
+        assertTrue(dataSource.isHealthy(1));
+
+        // 复制中断
+        dataSource.setLagQuery("SELECT NULL");
+        dataSource.checkReplicas();
+        assertFalse(dataSource.isHealthy(1));
+        assertEquals("primary", template.findBy(SQL, "description"));
+    }
+
+    private static Object query(BoneCPDataSource ds) {
+        return new DbUtilsTemplate(ds).findBy(SQL, "description");
+    }
+}
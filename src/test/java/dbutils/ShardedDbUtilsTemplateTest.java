@@ -0,0 +1,188 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import com.jolbox.bonecp.BoneCPDataSource;
+import model.Student;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * ShardedDbUtilsTemplate测试，两个H2内存库按id奇偶分片，结果与在单个库上排序的期望值比较
+ */
+public class ShardedDbUtilsTemplateTest {
+    private static final String INSERT = "INSERT INTO test_student(id,name,gender,age) VALUES (?,?,?,?)";
+
+    private BoneCPDataSource shard0;
+    private BoneCPDataSource shard1;
+    private ShardedDbUtilsTemplate template;
+    private List<Student> students;
+
+    @Before
+    public void init() throws Exception {
+        shard0 = EmbeddedDatabase.create("shard0");
+        shard1 = EmbeddedDatabase.create("shard1");
+        template = new ShardedDbUtilsTemplate("id", shard0, shard1);
+        students = new ArrayList<Student>();
+        Object[][] params = new Object[100][];
+        for (int i = 0; i < params.length; i++) {
+            Student student = new Student();
+            student.setId(i + 1);
+            student.setName("student" + ((i * 37) % 100 + 100));
+            student.setAge(18 + i % 7);
+            students.add(student);
+            params[i] = new Object[]{student.getId(), student.getName(), "男", student.getAge()};
+        }
+        int[] counts = template.batchUpdate(INSERT, params);
+        assertEquals(100, counts.length);
+        assertEquals(1, counts[99]);
+    }
+
+    @After
+    public void destroy() {
+        template.close();
+        shard0.close();
+        shard1.close();
+    }
+
+    @Test
+    public void testRouting() throws Exception {
+        assertEquals(50, template.getShard(0).getCount("SELECT * FROM test_student", null));
+        assertEquals(50, template.getShard(1).getCount("SELECT id FROM test_student WHERE MOD(id, 2) = 1", null));
+        assertEquals(100, template.getCount("SELECT * FROM test_student", null));
+
+        template.insert(INSERT, new Object[]{101L, "late", "女", 30});
+        assertEquals(51, template.getShard(1).getCount("SELECT * FROM test_student", null));
+        Student found = template.findFirst(Student.class, "SELECT * FROM test_student s WHERE s.age > ? AND s.id = ?",
+                new Object[]{20, 101L});
+        assertEquals("late", found.getName());
+        assertNull(template.findFirst(Student.class, "SELECT * FROM test_student WHERE id = ?", new Object[]{1000L}));
+        try {
+            template.insert("INSERT INTO test_student(name,gender,age) VALUES (?,?,?)", new Object[]{"x", "男", 1});
+            fail("insert without shard key");
+        } catch (SQLException e) {
+            // expected
+        }
+
+        // 没有分片键的更新在所有库执行
+        assertEquals(15, template.update("UPDATE test_student SET gender = '女' WHERE age = ?", new Object[]{18}));
+        assertEquals(1, template.update("UPDATE test_student SET age = 99 WHERE id = ?", new Object[]{42L}));
+        assertEquals(1, template.getCount("SELECT * FROM test_student WHERE age = 99", null));
+    }
+
+    @Test
+    public void testMixedKeyTypes() throws Exception {
+        // 字符串形式的整数分片键与数值分片键分到同一个库
+        assertEquals(template.shardOf(10L), template.shardOf("10"));
+        assertEquals(template.shardOf(-3), template.shardOf(" -3 "));
+        assertEquals(template.shardOf(8), template.shardOf(new StringBuilder("8")));
+        assertEquals(template.shardOf("abc".hashCode()), template.shardOf("abc"));
+        assertEquals(template.shardOf("99999999999999999999".hashCode()), template.shardOf("99999999999999999999"));
+
+        template.insert(INSERT, new Object[]{"103", "text key", "女", 30});
+        assertEquals(1, template.getShard(1).getCount("SELECT * FROM test_student WHERE id = 103", null));
+        Student found = template.findFirst(Student.class, "SELECT * FROM test_student WHERE id = ?",
+                new Object[]{103L});
+        assertEquals("text key", found.getName());
+        assertEquals(1, template.update("UPDATE test_student SET age = 31 WHERE id = ?", new Object[]{"103"}));
+    }
+
+    @Test
+    public void testOrderedScatter() throws Exception {
+        List<Student> expected = new ArrayList<Student>(students);
+        Collections.sort(expected, new Comparator<Student>() {
+            public int compare(Student a, Student b) {
+                if (a.getAge() != b.getAge()) {
+                    return b.getAge() - a.getAge();
+                }
+                return a.getId() < b.getId() ? -1 : 1;
+            }
+        });
+        List<Student> top = template.find(Student.class,
+                "SELECT * FROM test_student ORDER BY age DESC, id LIMIT 5, 10", null);
+        assertEquals(10, top.size());
+        for (int i = 0; i < top.size(); i++) {
+            assertEquals(expected.get(i + 5).getId(), top.get(i).getId());
+        }
+
+        List<Map<String, Object>> rows = template.find("SELECT id, age FROM test_student ORDER BY 2 DESC, 1", null);
+        assertEquals(100, rows.size());
+        assertEquals(expected.get(99).getId(), ((Number) rows.get(99).get("id")).longValue());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPageResult() throws Exception {
+        List<Student> expected = new ArrayList<Student>(students);
+        Collections.sort(expected, new Comparator<Student>() {
+            public int compare(Student a, Student b) {
+                return a.getName().compareTo(b.getName());
+            }
+        });
+        PageResult<Student> page = template.findPageResult(Student.class,
+                "SELECT * FROM test_student WHERE age >= ? ORDER BY name", new Object[]{0}, 3, 7);
+        assertEquals(100, page.count);
+        assertEquals(3, page.currentPage);
+        assertEquals(7, page.beanList.size());
+        for (int i = 0; i < 7; i++) {
+            assertEquals(expected.get(14 + i).getName(), page.beanList.get(i).getName());
+        }
+        // 最后一页
+        page = template.findPageResult(Student.class, "SELECT * FROM test_student ORDER BY name", null, 15, 7);
+        assertEquals(2, page.beanList.size());
+        assertEquals(expected.get(99).getName(), page.beanList.get(1).getName());
+    }
+
+    @Test
+    public void testParse() {
+        ShardedSql parsed = ShardedSql.parse("SELECT * FROM t WHERE (a = ? OR b = ?) AND t.id = ? LIMIT 10", "id");
+        assertEquals(2, parsed.keyParamIndex);
+        assertEquals("SELECT * FROM t WHERE (a = ? OR b = ?) AND t.id = ? ", parsed.sql);
+        assertEquals(10, parsed.limit);
+        assertEquals(-1, ShardedSql.parse("SELECT * FROM t WHERE a = ? OR id = ?", "id").keyParamIndex);
+        assertEquals(-1, ShardedSql.parse("SELECT * FROM t WHERE uid = ?", "id").keyParamIndex);
+        assertEquals(-1, ShardedSql.parse("SELECT * FROM t WHERE a IN (SELECT a FROM u WHERE id = ?)", "id")
+                .keyParamIndex);
+        assertEquals(1, ShardedSql.parse("INSERT INTO t(name, `id`, age) VALUES (?, ?, ?)", "id").keyParamIndex);
+        assertEquals(-1, ShardedSql.parse("INSERT INTO t(name, id) VALUES (?, 5)", "id").keyParamIndex);
+
+        parsed = ShardedSql.parse("SELECT * FROM t ORDER BY t.age desc, name LIMIT 20 OFFSET 40", "id");
+        assertEquals(2, parsed.orderKeys.length);
+        assertEquals("age", parsed.orderKeys[0].column);
+        assertEquals(true, parsed.orderKeys[0].descending);
+        assertEquals(false, parsed.orderKeys[1].descending);
+        assertEquals(40, parsed.offset);
+        assertEquals(20, parsed.limit);
+        try {
+            ShardedSql.parse("SELECT * FROM t LIMIT ?", "id");
+            fail("LIMIT with placeholder");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
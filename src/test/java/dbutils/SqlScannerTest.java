@@ -0,0 +1,53 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * sql顶层关键字及表名的扫描
+ */
+public class SqlScannerTest {
+
+    @Test
+    public void testIndexOfKeywordSkipsSubqueriesAndQuotes() {
+        String sql = "select (select max(id) from t) as m, 'from' from record where id > ?";
+        assertEquals(sql.lastIndexOf("from"), SqlScanner.indexOfKeyword(sql, "from"));
+        assertEquals(-1, SqlScanner.indexOfKeyword(sql, "order"));
+        assertEquals(1, SqlScanner.countPlaceholders("select '?' from record where id > ?"));
+    }
+
+    @Test
+    public void testTableNames() {
+        assertEquals(new HashSet<String>(Arrays.asList("test_student", "test_team")), SqlScanner.tableNames(
+                "SELECT s.name FROM test_student s LEFT JOIN `test_team` t ON s.team_id = t.id WHERE s.age > ?"));
+        assertEquals(new HashSet<String>(Arrays.asList("record", "test_team")),
+                SqlScanner.tableNames("select count(1) from db.record r, test_team as t where r.id = t.id"));
+        assertEquals(new HashSet<String>(Arrays.asList("record")),
+                SqlScanner.tableNames("select id from (select id from RECORD where id < ?) t"));
+        assertEquals(new HashSet<String>(Arrays.asList("record")),
+                SqlScanner.tableNames("INSERT INTO record(description,content) VALUES(?,?)"));
+        assertEquals(new HashSet<String>(Arrays.asList("test_student")),
+                SqlScanner.tableNames("update test_student set age = age + 1 where id = ?"));
+        assertEquals(new HashSet<String>(Arrays.asList("test_student")),
+                SqlScanner.tableNames("delete from test_student where id = ?"));
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import com.jolbox.bonecp.BoneCPDataSource;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * StatementStats测试：sql指纹、DbUtilsTemplate各执行路径的统计、指纹数上限和慢查询日志
+ */
+public class StatementStatsTest {
+
+    @Test
+    public void testFingerprint() {
+        assertEquals("select * from record where id = ? and description = ?",
+                StatementStats.fingerprint("SELECT *  FROM record\n WHERE id = 42 AND description = 'it''s'"));
+        assertEquals("select * from t1 where col_2 in (?+)",
+                StatementStats.fingerprint("select * from `T1` where col_2 in (1, 2, 3)"));
+        assertEquals(StatementStats.fingerprint("select * from t where id in (?)"),
+                StatementStats.fingerprint("select * from t where id in (?, ?, ?, ?)"));
+        assertEquals("insert into record(description) values (?+)",
+                StatementStats.fingerprint("INSERT INTO record(description) VALUES (?), (?),(?)"));
+        assertEquals("select id from record where id > ?",
+                StatementStats.fingerprint("/* report */ select id -- key\n from record # x\n where id > 1.5e3"));
+        assertEquals("select ? from dual", StatementStats.fingerprint("select \"a\\\"b\" from dual"));
+    }
+
+    @Test
+    public void testTemplateStats() throws SQLException {
+        BoneCPDataSource dataSource = EmbeddedDatabase.create("statement_stats");
+        try {
+            DbUtilsTemplate template = new DbUtilsTemplate(dataSource);
+            StatementStats stats = template.getStatementStats();
+            // 未启用时不记录
+            template.update("INSERT INTO record(description) VALUES ('off')");
+            assertTrue(stats.getEntries().isEmpty());
+
+            template.setStatementStatsEnabled(true);
+            template.update("INSERT INTO record(description) VALUES ('a')");
+            template.update("INSERT INTO record(description) VALUES ('b')");
+            template.insert("INSERT INTO record(description) VALUES (?)", "c");
+            template.batchUpdate("INSERT INTO record(description) VALUES (?)",
+                    new Object[][]{{"d"}, {"e"}, {"f"}});
+            StatementStats.Entry literal = stats.get("INSERT INTO record(description) VALUES ('x')");
+            // 常量和绑定参数的语句指纹相同
+            assertEquals(literal, stats.get("INSERT INTO record(description) VALUES (?)"));
+            assertEquals(4, literal.getCount());
+            assertEquals(2 + 1 + 3, literal.getRows());
+
+            template.update("UPDATE record SET description = ? WHERE description IN (?, ?)",
+                    new Object[]{"z", "a", "b"});
+            assertEquals(2, stats.get("update record set description = ? where description in (?)").getRows());
+
+            List<Map<String, Object>> rows = template.find("SELECT * FROM record WHERE id > ?", 0);
+            assertEquals(7, rows.size());
+            template.find("SELECT * FROM record WHERE id > 3");
+            StatementStats.Entry find = stats.get("SELECT * FROM record WHERE id > ?");
+            assertEquals(2, find.getCount());
+            assertEquals(7 + 4, find.getRows());
+            assertEquals(0, find.getErrors());
+
+            assertNotNull(template.findFirst("SELECT * FROM record WHERE description = ?", "z"));
+            assertEquals(1, stats.get("SELECT * FROM record WHERE description = ?").getRows());
+            assertEquals(7, template.getCount("SELECT * FROM record"));
+            boolean counted = false;
+            for (StatementStats.Entry entry : stats.getEntries()) {
+                counted |= entry.getFingerprint().startsWith("select count(");
+            }
+            assertTrue(stats.getEntries().toString(), counted);
+
+            // 出错的语句计入errors，不计行数
+            assertTrue(template.find("SELECT * FROM no_such_table").isEmpty());
+            try {
+                template.update("UPDATE no_such_table SET a = 1");
+                fail("update should fail");
+            } catch (SQLException e) {
+                // expected
+            }
+            assertEquals(1, stats.get("SELECT * FROM no_such_table").getErrors());
+            assertEquals(1, stats.get("UPDATE no_such_table SET a = 2").getErrors());
+            assertEquals(0, stats.get("UPDATE no_such_table SET a = 2").getRows());
+
+            // 游标在关闭时记录读取的行数
+            ResultCursor<Map<String, Object>> cursor =
+                    template.findCursor("SELECT id FROM record WHERE id <= ?", new Object[]{5});
+            assertNull(stats.get("SELECT id FROM record WHERE id <= ?"));
+            for (Map<String, Object> row : cursor) {
+                assertNotNull(row.get("id"));
+            }
+            cursor.close();
+            cursor.close();
+            StatementStats.Entry cursorEntry = stats.get("SELECT id FROM record WHERE id <= ?");
+            assertEquals(1, cursorEntry.getCount());
+            assertEquals(5, cursorEntry.getRows());
+
+            assertTrue(stats.getEntries().get(0).getTotalMillis()
+                    >= stats.getEntries().get(stats.getEntries().size() - 1).getTotalMillis());
+            stats.reset();
+            assertTrue(stats.getEntries().isEmpty());
+        } finally {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    public void testMaxFingerprintsAndSlowLog() {
+        StatementStats stats = new StatementStats();
+        stats.setEnabled(true);
+        stats.setMaxFingerprints(2);
+        stats.setSlowThreshold(0, TimeUnit.MILLISECONDS);
+        stats.setSlowLogPerSecond(3);
+        for (int i = 0; i < 10; i++) {
+            stats.record("select * from t" + i, stats.start(), 1, new Object[]{"v", null, new byte[16]}, null);
+        }
+        assertEquals(3, stats.getEntries().size());
+        StatementStats.Entry other = null;
+        for (StatementStats.Entry entry : stats.getEntries()) {
+            assertEquals(entry.getCount(), entry.getSlowCount());
+            if (StatementStats.OTHER.equals(entry.getFingerprint())) {
+                other = entry;
+            }
+        }
+        assertNotNull(other);
+        assertEquals(8, other.getCount());
+        assertEquals(8, other.getRows());
+        // 同一秒内最多写3条日志，窗口切换时可能多写几条
+        assertTrue(String.valueOf(stats.getSlowSuppressed()), stats.getSlowSuppressed() >= 4);
+
+        stats.setEnabled(false);
+        assertEquals(StatementStats.NOT_TIMED, stats.start());
+        stats.record("select 1", stats.start(), 1, null, null);
+        assertEquals(3, stats.getEntries().size());
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package dbutils;
+
+import com.jolbox.bonecp.BoneCPDataSource;
+import model.Student;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 后写缓冲测试，使用H2内存库
+ */
+public class WriteBehindInserterTest {
+    private static final String INSERT_STUDENT = "INSERT INTO test_student(name,gender,age,team_id) VALUES (?,?,?,?)";
+
+    private static BoneCPDataSource dataSource;
+    private static DbUtilsTemplate template;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        dataSource = EmbeddedDatabase.create("writebehind");
+        template = new DbUtilsTemplate(dataSource);
+    }
+
+    @AfterClass
+    public static void destroy() {
+        dataSource.close();
+    }
+
+    @Test
+    public void testInsertsAreCoalesced() throws Exception {
+        final WriteBehindInserter inserter = template.writeBehindInserter(20, 50, TimeUnit.MILLISECONDS, 100);
+        final List<Future<Long>> futures = new ArrayList<Future<Long>>();
+        Thread[] threads = new Thread[5];
+        for (int t = 0; t < threads.length; t++) {
+            final int team = t;
+            threads[t] = new Thread(new Runnable() {
+                public void run() {
+                    for (int i = 0; i < 40; i++) {
+                        try {
+                            Future<Long> future = inserter.insert(INSERT_STUDENT,
+                                    new Object[]{"wb" + team + "-" + i, "男", 20, (long) team});
+                            synchronized (futures) {
+                                futures.add(future);
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Set<Long> keys = new HashSet<Long>();
+        for (Future<Long> future : futures) {
+            keys.add(future.get(5, TimeUnit.SECONDS));
+        }
+        inserter.close();
+        assertEquals(200, keys.size());
+        assertTrue("flushes: " + inserter.getFlushCount(), inserter.getFlushCount() < 100);
+        // 返回的主键对应各自的行
+        Future<Long> last = futures.get(futures.size() - 1);
+        Student student = template.findFirst(Student.class, "SELECT id, name FROM test_student WHERE id=?", last.get());
+        assertTrue(student.getName().startsWith("wb"));
+        assertEquals(200, template.getCount("SELECT id FROM test_student WHERE name LIKE 'wb%'", null));
+    }
+
+    @Test
+    public void testFailedRowDoesNotFailOthers() throws Exception {
+        WriteBehindInserter inserter = template.writeBehindInserter(10, 1, TimeUnit.SECONDS, 100);
+        Future<Long> good = inserter.insert(INSERT_STUDENT, new Object[]{"good", "女", 21, 1L});
+        Future<Long> bad = inserter.insert(INSERT_STUDENT, new Object[]{"bad", null, 21, 1L});
+        Future<Long> alsoGood = inserter.insert(INSERT_STUDENT, new Object[]{"good", "女", 22, 1L});
+        // close写完未满一批的数据
+        inserter.close();
+        assertTrue(good.isDone());
+        assertTrue(good.get() > 0);
+        assertTrue(alsoGood.get() > good.get());
+        try {
+            bad.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof java.sql.SQLException);
+        }
+        try {
+            inserter.insert(INSERT_STUDENT, new Object[]{"late", "女", 22, 1L});
+            fail();
+        } catch (IllegalStateException e) {
+            // closed
+        }
+    }
+
+    @Test
+    public void testFailedRowOnAutoCommitPool() throws Exception {
+        // 与applicationContext中的连接池一样自动提交
+        BoneCPDataSource autoCommitPool = new BoneCPDataSource();
+        autoCommitPool.setDriverClass("org.h2.Driver");
+        autoCommitPool.setJdbcUrl("jdbc:h2:mem:writebehind;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        autoCommitPool.setUsername("sa");
+        autoCommitPool.setPassword("");
+        autoCommitPool.setDefaultAutoCommit(true);
+        // 同步归还连接，关闭后立即检查借出数
+        autoCommitPool.setReleaseHelperThreads(0);
+        try {
+            for (int rowsPerStatement : new int[]{1, 2}) {
+                DbUtilsTemplate autoCommit = new DbUtilsTemplate(autoCommitPool);
+                // 1表示逐行executeBatch，2表示每两行一条多行INSERT，出错的行都在已执行的语句之后
+                autoCommit.setMultiRowInsertSize(rowsPerStatement);
+                String name = "ac" + rowsPerStatement;
+                WriteBehindInserter inserter = autoCommit.writeBehindInserter(10, 1, TimeUnit.SECONDS, 100);
+                List<Future<Long>> futures = new ArrayList<Future<Long>>();
+                for (int i = 0; i < 5; i++) {
+                    futures.add(inserter.insert(INSERT_STUDENT,
+                            new Object[]{name + "-" + i, i == 3 ? null : "男", 20, 1L}));
+                }
+                inserter.close();
+                for (int i = 0; i < futures.size(); i++) {
+                    try {
+                        assertTrue(futures.get(i).get() > 0);
+                        assertTrue(i != 3);
+                    } catch (ExecutionException e) {
+                        assertEquals(3, i);
+                    }
+                }
+                // 出错前已执行的行没有提交，逐行重试时不会重复插入
+                for (int i = 0; i < 5; i++) {
+                    assertEquals(i == 3 ? 0 : 1, template.getCount("SELECT id FROM test_student WHERE name = ?",
+                            name + "-" + i));
+                }
+            }
+            assertEquals(0, autoCommitPool.getTotalLeased());
+        } finally {
+            autoCommitPool.close();
+        }
+    }
+
+    @Test
+    public void testCloseWhileInserting() throws Exception {
+        final WriteBehindInserter inserter = template.writeBehindInserter(5, 1, TimeUnit.MILLISECONDS, 4);
+        final List<Future<Long>> futures = new ArrayList<Future<Long>>();
+        final AtomicInteger rejected = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                public void run() {
+                    for (int i = 0; i < 200; i++) {
+                        try {
+                            Future<Long> future = inserter.insert(INSERT_STUDENT, new Object[]{"race", "女", 20, 2L});
+                            synchronized (futures) {
+                                futures.add(future);
+                            }
+                        } catch (IllegalStateException e) {
+                            rejected.incrementAndGet();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        Thread.sleep(20);
+        inserter.close();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // 接收的数据都已写完，close之后的insert都被拒绝
+        for (Future<Long> future : futures) {
+            assertTrue(future.isDone());
+            assertTrue(future.get() > 0);
+        }
+        assertEquals(800, futures.size() + rejected.get());
+        assertEquals(futures.size(), template.getCount("SELECT id FROM test_student WHERE name = 'race'", null));
+    }
+}
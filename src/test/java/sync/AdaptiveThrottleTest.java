@@ -0,0 +1,106 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package sync;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * AdaptiveThrottle的加速和减速
+ */
+public class AdaptiveThrottleTest {
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(200);
+
+    @Test
+    public void testAdditiveIncreaseMultiplicativeDecrease() {
+        AdaptiveThrottle throttle = new AdaptiveThrottle(100, TimeUnit.MILLISECONDS);
+        throttle.setChunkSizeRange(100, 1200);
+        throttle.setMaxConcurrency(2);
+        assertEquals(1000, throttle.getChunkSize());
+        assertEquals(1, throttle.getConcurrency());
+
+        throttle.observe(System.nanoTime(), 0, FAST);
+        throttle.observe(System.nanoTime(), 0, FAST);
+        assertEquals(1200, throttle.getChunkSize());
+        // 块大小到上限后增加并发
+        throttle.observe(System.nanoTime(), 0, FAST);
+        assertEquals(2, throttle.getConcurrency());
+
+        long startedBeforeBackoff = System.nanoTime();
+        throttle.observe(System.nanoTime(), 0, SLOW);
+        assertEquals(600, throttle.getChunkSize());
+        assertEquals(1, throttle.getConcurrency());
+        // 减速之前开始的语句不再重复减速
+        throttle.observe(startedBeforeBackoff, 0, SLOW);
+        assertEquals(600, throttle.getChunkSize());
+        assertEquals(1, throttle.getBackoffs());
+
+        // 连接池等待超出预算同样减速
+        throttle.observe(System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(50), FAST);
+        assertEquals(300, throttle.getChunkSize());
+        throttle.observe(System.nanoTime(), 0, SLOW);
+        throttle.observe(System.nanoTime(), 0, SLOW);
+        assertEquals(100, throttle.getChunkSize());
+        assertEquals(0, throttle.getPauseMillis());
+
+        // 已经最慢时在块之间暂停，暂停时间加倍
+        throttle.observe(System.nanoTime(), 0, SLOW);
+        assertEquals(10, throttle.getPauseMillis());
+        throttle.observe(System.nanoTime(), 0, SLOW);
+        assertEquals(20, throttle.getPauseMillis());
+
+        // 恢复时先减少暂停，再加大块
+        throttle.observe(System.nanoTime(), 0, FAST);
+        assertEquals(10, throttle.getPauseMillis());
+        throttle.observe(System.nanoTime(), 0, FAST);
+        assertEquals(0, throttle.getPauseMillis());
+        assertEquals(100, throttle.getChunkSize());
+        throttle.observe(System.nanoTime(), 0, FAST);
+        assertEquals(200, throttle.getChunkSize());
+    }
+
+    @Test
+    public void testConcurrencyLimitsWriters() throws Exception {
+        final AdaptiveThrottle throttle = new AdaptiveThrottle(100, TimeUnit.MILLISECONDS);
+        throttle.setMaxConcurrency(4);
+        throttle.acquireWriter();
+        final CountDownLatch acquired = new CountDownLatch(1);
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    throttle.acquireWriter();
+                    acquired.countDown();
+                    throttle.releaseWriter();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        writer.start();
+        assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+        throttle.releaseWriter();
+        assertTrue(acquired.await(1, TimeUnit.SECONDS));
+        writer.join();
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package sync;
+
+import com.jolbox.bonecp.BoneCPDataSource;
+import dbutils.DbUtilsTemplate;
+import dbutils.EmbeddedDatabase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * ChangeCapture测试，H2中用ChangeLogTrigger代替MySQL触发器
+ */
+public class ChangeCaptureTest {
+    private BoneCPDataSource sourceDataSource;
+    private BoneCPDataSource targetDataSource;
+    private DbUtilsTemplate source;
+    private DbUtilsTemplate target;
+    private ChangeCapture capture;
+
+    @Before
+    public void init() throws Exception {
+        sourceDataSource = EmbeddedDatabase.create("capture_one");
+        targetDataSource = EmbeddedDatabase.create("capture_two");
+        source = new DbUtilsTemplate(sourceDataSource);
+        target = new DbUtilsTemplate(targetDataSource);
+        capture = new ChangeCapture(sourceDataSource, targetDataSource,
+                SyncTable.record(), SyncTable.student(), SyncTable.team());
+        EmbeddedDatabase.execute(sourceDataSource, "DROP TABLE IF EXISTS sync_change_log");
+        capture.createChangeLog();
+        for (String table : new String[]{"record", "test_student", "test_team"}) {
+            EmbeddedDatabase.execute(sourceDataSource, "CREATE TRIGGER sync_" + table
+                    + " AFTER INSERT, UPDATE, DELETE ON " + table + " FOR EACH ROW CALL \"sync.ChangeLogTrigger\"");
+        }
+    }
+
+    @After
+    public void destroy() {
+        capture.close();
+        sourceDataSource.close();
+        targetDataSource.close();
+    }
+
+    @Test
+    public void testApplyAndPurge() throws Exception {
+        for (int i = 1; i <= 3; i++) {
+            source.insert("INSERT INTO record(description) VALUES (?)", new Object[]{"description" + i});
+        }
+        source.update("UPDATE record SET description = 'first' WHERE id = 2");
+        source.update("UPDATE record SET description = 'second' WHERE id = 2");
+        source.insert("INSERT INTO test_student(name,gender,age) VALUES ('a','男',18)");
+        source.insert("INSERT INTO test_student(name,gender,age) VALUES ('b','女',19)");
+        source.update("DELETE FROM test_student WHERE id = 1");
+        source.insert("INSERT INTO test_team(name,income,rank) VALUES ('team',10.5,1)");
+        assertEquals(9, logSize());
+
+        assertEquals(9, capture.poll());
+        assertEquals(0, logSize());
+        assertEquals(0, capture.poll());
+        assertEquals(3, count("record"));
+        assertEquals("second", target.findBy("SELECT description FROM record WHERE id = 2", "description"));
+        assertEquals(1, count("test_student"));
+        assertEquals("b", target.findBy("SELECT name FROM test_student WHERE id = 2", "name"));
+        assertEquals(1, count("test_team"));
+        // 同一主键的多次变化只同步一次，插入又删除的行目标库里本来就没有
+        assertEquals(5L, capture.getRowsUpserted());
+        assertEquals(0L, capture.getRowsDeleted());
+
+        source.update("DELETE FROM record WHERE id = 3");
+        source.update("UPDATE test_team SET id = 100 WHERE id = 1");
+        assertEquals(3, capture.poll());
+        assertEquals(2, count("record"));
+        assertNull(target.findBy("SELECT name FROM test_team WHERE id = 1", "name"));
+        assertEquals("team", target.findBy("SELECT name FROM test_team WHERE id = 100", "name"));
+        assertEquals(2L, capture.getRowsDeleted());
+        assertEquals(12L, capture.getChangesApplied());
+    }
+
+    @Test
+    public void testTailInBackground() throws Exception {
+        capture.setBatchSize(100);
+        Object[][] params = new Object[1000][];
+        for (int i = 0; i < params.length; i++) {
+            params[i] = new Object[]{"description" + i};
+        }
+        source.batchUpdate("INSERT INTO record(description) VALUES (?)", params);
+        capture.start(20, TimeUnit.MILLISECONDS);
+        long deadline = System.currentTimeMillis() + 10000;
+        while (count("record") < 1000 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(1000, count("record"));
+
+        // 删除在同一个期限内最终同步到目标库，不对耗时做断言
+        source.update("DELETE FROM record WHERE id <= 500");
+        while (count("record") > 500 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(500, count("record"));
+        capture.close();
+        assertEquals(0, logSize());
+    }
+
+    @Test
+    public void testMySqlTriggers() {
+        List<String> sqls = ChangeCapture.triggerSql(SyncTable.record());
+        assertEquals("CREATE TRIGGER sync_record_ai AFTER INSERT ON record FOR EACH ROW "
+                + "INSERT INTO sync_change_log (table_name, pk, op) VALUES ('record', NEW.id, 'I')", sqls.get(0));
+        assertEquals("CREATE TRIGGER sync_record_au AFTER UPDATE ON record FOR EACH ROW BEGIN IF OLD.id <> NEW.id THEN "
+                + "INSERT INTO sync_change_log (table_name, pk, op) VALUES ('record', OLD.id, 'D'); END IF; "
+                + "INSERT INTO sync_change_log (table_name, pk, op) VALUES ('record', NEW.id, 'U'); END", sqls.get(1));
+        assertEquals("CREATE TRIGGER sync_record_ad AFTER DELETE ON record FOR EACH ROW "
+                + "INSERT INTO sync_change_log (table_name, pk, op) VALUES ('record', OLD.id, 'D')", sqls.get(2));
+        assertEquals("DROP TRIGGER IF EXISTS sync_test_team_au", ChangeCapture.dropTriggerSql(SyncTable.team()).get(1));
+    }
+
+    private int logSize() {
+        return source.getCount("SELECT seq FROM sync_change_log", null);
+    }
+
+    private int count(String table) {
+        return target.getCount("SELECT id FROM " + table, null);
+    }
+}
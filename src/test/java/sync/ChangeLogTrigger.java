@@ -0,0 +1,61 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package sync;
+
+import org.h2.api.Trigger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * H2的触发器只能用Java实现，这里按ChangeCapture中MySQL触发器的逻辑写sync_change_log，主键是第一列
+ */
+public class ChangeLogTrigger implements Trigger {
+    private String table;
+
+    public void init(Connection conn, String schemaName, String triggerName, String tableName, boolean before,
+                     int type) {
+        this.table = tableName.toLowerCase();
+    }
+
+    public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+        if (oldRow != null && (newRow == null || !oldRow[0].equals(newRow[0]))) {
+            log(conn, oldRow[0], "D");
+        }
+        if (newRow != null) {
+            log(conn, newRow[0], oldRow == null ? "I" : "U");
+        }
+    }
+
+    private void log(Connection conn, Object pk, String op) throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement("INSERT INTO sync_change_log (table_name, pk, op) VALUES (?,?,?)");
+        try {
+            stmt.setString(1, table);
+            stmt.setObject(2, pk);
+            stmt.setString(3, op);
+            stmt.executeUpdate();
+        } finally {
+            stmt.close();
+        }
+    }
+
+    public void close() {
+    }
+
+    public void remove() {
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package sync;
+
+import com.jolbox.bonecp.BoneCPDataSource;
+import dbutils.DbUtilsTemplate;
+import dbutils.EmbeddedDatabase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ChecksumDiff测试，H2中用SUM(ORA_HASH(...))计算校验和
+ */
+public class ChecksumDiffTest {
+    private BoneCPDataSource sourceDataSource;
+    private BoneCPDataSource targetDataSource;
+    private DbUtilsTemplate target;
+
+    @Before
+    public void init() throws Exception {
+        sourceDataSource = EmbeddedDatabase.create("diff_one");
+        targetDataSource = EmbeddedDatabase.create("diff_two");
+        target = new DbUtilsTemplate(targetDataSource);
+        Timestamp now = Timestamp.valueOf("2026-10-17 08:00:00");
+        Object[][] rows = new Object[20000][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[]{"description" + i, i % 7 == 0 ? null : "content" + i, now, now};
+        }
+        String sql = "INSERT INTO record(description,content,createdTime,modifyTime) VALUES (?,?,?,?)";
+        new DbUtilsTemplate(sourceDataSource).batchUpdate(sql, rows);
+        target.batchUpdate(sql, rows);
+    }
+
+    @After
+    public void destroy() {
+        sourceDataSource.close();
+        targetDataSource.close();
+    }
+
+    @Test
+    public void testFindAndRepairDifferences() throws Exception {
+        ChecksumDiff checksumDiff = new ChecksumDiff(sourceDataSource, targetDataSource);
+        checksumDiff.setLeafSize(100);
+        DiffResult diff = checksumDiff.diff(SyncTable.record());
+        assertTrue(diff.isConsistent());
+        assertEquals(1, diff.getRangesCompared());
+
+        // null和空串不同
+        target.update("UPDATE record SET content = '' WHERE id = 7");
+        target.update("UPDATE record SET description = 'changed' WHERE id = 12345");
+        target.update("DELETE FROM record WHERE id = 500");
+        target.insert("INSERT INTO record(id,description) VALUES (?,?)", new Object[]{30000L, "extra"});
+        diff = checksumDiff.diff(SyncTable.record());
+        assertEquals(Collections.singletonList(500L), diff.getMissingKeys());
+        assertEquals(Collections.singletonList(30000L), diff.getExtraKeys());
+        assertEquals(Arrays.asList(7L, 12345L), sorted(diff.getChangedKeys()));
+        // 只有不一致的小范围逐行比较
+        assertTrue(diff.getRowHashesFetched() < 1000);
+
+        assertTrue(checksumDiff.repair(diff) >= 4);
+        diff = checksumDiff.diff(SyncTable.record());
+        assertTrue(diff.toString(), diff.isConsistent());
+        assertEquals(20000, target.getCount("SELECT id FROM record", null));
+    }
+
+    @Test
+    public void testSplit() {
+        ChecksumDiff checksumDiff = new ChecksumDiff(sourceDataSource, targetDataSource);
+        checksumDiff.setFanout(4);
+        List<long[]> ranges = checksumDiff.split(new long[]{1, 10});
+        assertEquals(4, ranges.size());
+        assertEquals(1, ranges.get(0)[0]);
+        assertEquals(3, ranges.get(0)[1]);
+        assertEquals(10, ranges.get(3)[1]);
+        assertEquals(2, checksumDiff.split(new long[]{5, 6}).size());
+    }
+
+    private static List<Long> sorted(List<Long> keys) {
+        Collections.sort(keys);
+        return keys;
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package sync;
+
+import com.jolbox.bonecp.BoneCPDataSource;
+import dbutils.DbUtilsTemplate;
+import dbutils.EmbeddedDatabase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * IncrementalSync测试，两个H2内存库分别模拟sync_one和sync_two
+ */
+public class IncrementalSyncTest {
+    private static final Timestamp T0 = Timestamp.valueOf("2026-10-17 08:00:00");
+    private static final Timestamp T1 = Timestamp.valueOf("2026-10-17 09:00:00");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BoneCPDataSource sourceDataSource;
+    private BoneCPDataSource targetDataSource;
+    private DbUtilsTemplate source;
+    private DbUtilsTemplate target;
+
+    @Before
+    public void init() throws Exception {
+        sourceDataSource = EmbeddedDatabase.create("sync_one");
+        targetDataSource = EmbeddedDatabase.create("sync_two");
+        source = new DbUtilsTemplate(sourceDataSource);
+        target = new DbUtilsTemplate(targetDataSource);
+        Object[][] rows = new Object[2500][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[]{"description" + i, "content" + i, T0, T0};
+        }
+        source.batchUpdate("INSERT INTO record(description,content,createdTime,modifyTime) VALUES (?,?,?,?)", rows);
+    }
+
+    @After
+    public void destroy() {
+        sourceDataSource.close();
+        targetDataSource.close();
+    }
+
+    @Test
+    public void testFullCopyThenIncremental() throws Exception {
+        IncrementalSync sync = new IncrementalSync(sourceDataSource, targetDataSource);
+        sync.setChunkSize(1000);
+        SyncResult result = sync.sync(SyncTable.record());
+        // 全量复制3块，再从复制开始时的水位补同步一次
+        assertEquals(5000, result.getRowsRead());
+        assertEquals(T0, result.getWatermark());
+        assertEquals(2500, target.getCount("SELECT id FROM record", null));
+
+        source.update("UPDATE record SET content = 'changed', modifyTime = ? WHERE id <= 1500", T1);
+        source.insert("INSERT INTO record(description,content,createdTime,modifyTime) VALUES (?,?,?,?)",
+                new Object[]{"new", "new content", T1, T1});
+        // 目标库的水位还是T0，从T0开始同步
+        result = sync.sync(SyncTable.record());
+        assertEquals(2501, result.getRowsRead());
+        assertEquals(3, result.getChunks());
+        assertEquals(T1, result.getWatermark());
+        assertEquals(1500, target.getCount("SELECT id FROM record WHERE content = 'changed'", null));
+        Map<String, Object> row = target.findFirst("SELECT description FROM record WHERE id = ?", 2501L);
+        assertEquals("new", row.get("description"));
+
+        // 从上次的水位T1开始只读修改时间为T1的行，1500行相同修改时间跨越块的边界，重复写入没有影响
+        sync.setLagMargin(0, TimeUnit.SECONDS);
+        result = sync.sync(SyncTable.record(), result.getWatermark());
+        assertEquals(1501, result.getRowsRead());
+        assertEquals(2, result.getChunks());
+        assertEquals(2501, target.getCount("SELECT id FROM record", null));
+    }
+
+    @Test
+    public void testUnsetModifyTime() throws Exception {
+        // 把已有行的修改时间移到当前时间之前，之后由数据库维护的修改时间一定晚于水位
+        Timestamp past = Timestamp.valueOf("2013-10-17 08:00:00");
+        source.update("UPDATE record SET modifyTime = ?", past);
+        IncrementalSync sync = new IncrementalSync(sourceDataSource, targetDataSource);
+        SyncResult result = sync.sync(SyncTable.record());
+        assertEquals(past, result.getWatermark());
+        assertEquals(0, result.getUnwatermarkedRows());
+
+        // 和ExampleJDBC一样插入和更新时都不设置modifyTime
+        source.update("INSERT INTO record(description,content) VALUES ('inserted', 'no modifyTime')");
+        source.update("UPDATE record SET content = 'changed' WHERE id = 7");
+        result = sync.sync(SyncTable.record());
+        assertTrue(result.getWatermark().after(past));
+        assertEquals(2501, target.getCount("SELECT id FROM record", null));
+        assertEquals(1, target.getCount("SELECT id FROM record WHERE id = 7 AND content = 'changed'", null));
+
+        // 修改时间可以为NULL的旧表结构：全量复制之后的变化同步不到，结果中报告这些行
+        source.update("ALTER TABLE record ALTER COLUMN modifyTime SET NULL");
+        source.update("INSERT INTO record(description,content,modifyTime) VALUES ('legacy', 'no watermark', NULL)");
+        result = sync.sync(SyncTable.record());
+        assertEquals(1, result.getUnwatermarkedRows());
+        assertEquals(2501, target.getCount("SELECT id FROM record", null));
+    }
+
+    @Test
+    public void testParallelApply() throws Exception {
+        IncrementalSync sync = new IncrementalSync(sourceDataSource, targetDataSource);
+        sync.setChunkSize(700);
+        sync.setApplyParallelism(3);
+        SyncResult result = sync.sync(SyncTable.record());
+        assertEquals(3, result.getPartitions().size());
+        assertEquals(2500, target.getCount("SELECT id FROM record", null));
+        source.update("UPDATE record SET content = 'changed', modifyTime = ? WHERE MOD(id, 10) = 0", T1);
+        result = sync.sync(SyncTable.record(), T0);
+        long applied = 0;
+        for (PartitionStats partition : result.getPartitions()) {
+            applied += partition.getRowsApplied();
+        }
+        assertEquals(result.getRowsRead(), applied);
+        assertEquals(250, target.getCount("SELECT id FROM record WHERE content = 'changed'", null));
+        assertEquals(0, targetDataSource.getTotalLeased());
+    }
+
+    @Test
+    public void testThrottle() throws Exception {
+        IncrementalSync sync = new IncrementalSync(sourceDataSource, targetDataSource);
+        sync.setApplyParallelism(2);
+        AdaptiveThrottle throttle = new AdaptiveThrottle(1, TimeUnit.NANOSECONDS);
+        throttle.setChunkSizeRange(50, 1000);
+        throttle.setMaxPause(5, TimeUnit.MILLISECONDS);
+        sync.setThrottle(throttle);
+        SyncResult result = sync.sync(SyncTable.record());
+        assertEquals(2500, target.getCount("SELECT id FROM record", null));
+        // 每次读写都超出预算，一直退到最小块
+        assertEquals(50, throttle.getChunkSize());
+        assertEquals(1, throttle.getConcurrency());
+        assertTrue(throttle.getBackoffs() > 0);
+        assertTrue(result.getChunks() > 3);
+
+        throttle = new AdaptiveThrottle(1, TimeUnit.MINUTES);
+        throttle.setChunkSizeRange(100, 5000);
+        throttle.setIncrement(1000);
+        sync.setThrottle(throttle);
+        source.update("UPDATE record SET content = 'changed', modifyTime = ?", T1);
+        result = sync.sync(SyncTable.record());
+        assertEquals(2500, target.getCount("SELECT id FROM record WHERE content = 'changed'", null));
+        assertEquals(0, throttle.getBackoffs());
+        assertTrue(throttle.getChunkSize() > IncrementalSync.DEFAULT_CHUNK_SIZE);
+        assertTrue(throttle.getRowsPerSecond() > 0);
+    }
+
+    @Test
+    public void testResumeFromCheckpoint() throws Exception {
+        final FileCheckpointStore store = new FileCheckpointStore(folder.getRoot());
+        IncrementalSync sync = new IncrementalSync(sourceDataSource, targetDataSource);
+        sync.setChunkSize(1000);
+        // 第2块提交后、保存进度前退出
+        sync.setCheckpointStore(new CheckpointStore() {
+            public Checkpoint load(String table) throws SQLException {
+                return store.load(table);
+            }
+
+            public void save(Checkpoint checkpoint) throws SQLException {
+                if (checkpoint.getChunkId() == 2) {
+                    throw new SQLException("crash");
+                }
+                store.save(checkpoint);
+            }
+        });
+        try {
+            sync.sync(SyncTable.record());
+            fail();
+        } catch (SQLException e) {
+            assertEquals("crash", e.getMessage());
+        }
+        assertEquals(2000, target.getCount("SELECT id FROM record", null));
+
+        sync = new IncrementalSync(sourceDataSource, targetDataSource);
+        sync.setChunkSize(1000);
+        sync.setCheckpointStore(store);
+        SyncResult result = sync.sync(SyncTable.record());
+        assertEquals(Checkpoint.Phase.FULL_COPY, result.getResumedFrom().getPhase());
+        assertEquals(1, result.getResumedFrom().getChunkId());
+        // 全量复制只重做第2块，剩下1500行，再从T0补同步2500行
+        assertEquals(4000, result.getRowsRead());
+        assertEquals(2500, target.getCount("SELECT id FROM record", null));
+        assertEquals(Checkpoint.Phase.DONE, store.load("record").getPhase());
+        assertEquals(T0, store.load("record").getSince());
+
+        // 下次从保存的水位开始
+        source.update("UPDATE record SET modifyTime = ? WHERE id = 1", T1);
+        result = sync.sync(SyncTable.record());
+        assertNull(result.getResumedFrom());
+        assertEquals(T1, result.getWatermark());
+    }
+
+    @Test
+    public void testJdbcCheckpointStore() throws Exception {
+        JdbcCheckpointStore store = new JdbcCheckpointStore(targetDataSource);
+        assertNull(store.load("record"));
+        store.save(new Checkpoint("record", Checkpoint.Phase.INCREMENTAL, T0, 42L, T1, 3));
+        Checkpoint checkpoint = store.load("record");
+        assertEquals(Checkpoint.Phase.INCREMENTAL, checkpoint.getPhase());
+        assertEquals(T0, checkpoint.getSince());
+        assertEquals(42L, checkpoint.getLastKey());
+        assertEquals(T1, checkpoint.getLastWatermark());
+        assertEquals(3, checkpoint.getChunkId());
+        store.save(new Checkpoint("record", Checkpoint.Phase.DONE, T1, null, null, 0));
+        assertNull(store.load("record").getLastKey());
+    }
+
+    @Test
+    public void testUpsertSql() {
+        String sql = IncrementalSync.upsertSql(SyncTable.record(), new String[]{"id", "description", "modifyTime"}, 2);
+        assertEquals("INSERT INTO record (id,description,modifyTime) VALUES (?,?,?),(?,?,?) "
+                + "ON DUPLICATE KEY UPDATE description=VALUES(description),modifyTime=VALUES(modifyTime)", sql);
+        assertTrue(IncrementalSync.upsertSql(SyncTable.record(), new String[]{"id"}, 1).endsWith("UPDATE "));
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Created on 26-10-17
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Copyright @2026 the original author or authors.
+ */
+package sync;
+
+import com.jolbox.bonecp.BoneCPDataSource;
+import dbutils.DbUtilsTemplate;
+import dbutils.EmbeddedDatabase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * PartitionedApplier测试
+ */
+public class PartitionedApplierTest {
+    private static final String[] COLUMNS = {"id", "description", "content"};
+
+    private BoneCPDataSource dataSource;
+    private DbUtilsTemplate template;
+
+    @Before
+    public void init() throws Exception {
+        dataSource = EmbeddedDatabase.create("apply");
+        template = new DbUtilsTemplate(dataSource);
+    }
+
+    @After
+    public void destroy() {
+        dataSource.close();
+    }
+
+    @Test
+    public void testKeepsPerKeyOrder() throws Exception {
+        PartitionedApplier applier = new PartitionedApplier(dataSource, SyncTable.record(), 4, 2);
+        try {
+            // 同一批主键改写10遍，每个主键最后的值必须是最后一遍的
+            for (int version = 0; version < 10; version++) {
+                List<Object[]> rows = new ArrayList<Object[]>();
+                for (long id = 1; id <= 200; id++) {
+                    rows.add(new Object[]{id, "v" + version, "content" + id});
+                }
+                applier.apply(COLUMNS, rows, 0);
+            }
+            applier.flush();
+            assertEquals(10, applier.getCompletedThrough());
+            List<PartitionStats> stats = applier.getStats();
+            assertEquals(4, stats.size());
+            long rows = 0;
+            for (PartitionStats partition : stats) {
+                assertEquals(0, partition.getPendingRows());
+                assertEquals(0, partition.getLag(TimeUnit.NANOSECONDS));
+                assertEquals(10, partition.getBatchesApplied());
+                assertTrue(partition.getRowsPerSecond() > 0);
+                rows += partition.getRowsApplied();
+            }
+            assertEquals(2000, rows);
+        } finally {
+            applier.close();
+        }
+        assertEquals(200, template.getCount("SELECT id FROM record WHERE description = 'v9'", null));
+        assertEquals(0, dataSource.getTotalLeased());
+    }
+
+    @Test
+    public void testPoolWaitIsMeasuredPerBatch() throws Exception {
+        // 取连接变慢模拟连接池被线上请求占满
+        final AtomicBoolean saturated = new AtomicBoolean();
+        DataSource pool = (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(),
+                new Class<?>[]{DataSource.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("getConnection") && saturated.get()) {
+                            Thread.sleep(50);
+                        }
+                        try {
+                            return method.invoke(dataSource, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+                });
+        AdaptiveThrottle throttle = new AdaptiveThrottle(10, TimeUnit.SECONDS);
+        throttle.setPoolWaitBudget(10, TimeUnit.MILLISECONDS);
+        PartitionedApplier applier = new PartitionedApplier(pool, SyncTable.record(), 1);
+        applier.setThrottle(throttle);
+        try {
+            applier.apply(COLUMNS, Collections.singletonList(new Object[]{1L, "a", "c"}), 0);
+            applier.flush();
+            assertEquals(0, throttle.getBackoffs());
+            // 每批写完归还连接
+            assertEquals(0, dataSource.getTotalLeased());
+
+            saturated.set(true);
+            applier.apply(COLUMNS, Collections.singletonList(new Object[]{2L, "b", "c"}), 0);
+            applier.flush();
+            assertEquals(1, throttle.getBackoffs());
+        } finally {
+            applier.close();
+        }
+    }
+
+    @Test
+    public void testFailureIsReported() throws Exception {
+        PartitionedApplier applier = new PartitionedApplier(dataSource, SyncTable.record(), 2);
+        try {
+            applier.apply(new String[]{"id", "no_such_column"},
+                    Collections.singletonList(new Object[]{1L, "x"}), 0);
+            applier.flush();
+            fail();
+        } catch (SQLException e) {
+            assertTrue(e.getMessage().toUpperCase().contains("NO_SUCH_COLUMN"));
+        } finally {
+            applier.close();
+        }
+        assertEquals(0, dataSource.getTotalLeased());
+    }
+}